@@ -0,0 +1,138 @@
+package trader.benchmark;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpMarketData;
+
+/**
+ * 合成的CTP行情数据, 不依赖行情数据目录.
+ * <BR>按合约交易时间每500ms一个TICK, 价格随机游走, 相同参数生成的数据完全相同
+ */
+public class BenchmarkTicks {
+
+    private final Exchangeable instrument;
+    private final LocalDate tradingDay;
+    private final ExchangeableTradingTimes tradingTimes;
+    private final List<CThostFtdcDepthMarketDataField> fields;
+
+    public BenchmarkTicks(Exchangeable instrument, LocalDate tradingDay, double startPrice, double priceTick) {
+        this(instrument, tradingDay, startPrice, priceTick, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxTicks 只生成开盘后的前maxTicks个TICK
+     */
+    public BenchmarkTicks(Exchangeable instrument, LocalDate tradingDay, double startPrice, double priceTick, int maxTicks) {
+        this.instrument = instrument;
+        this.tradingDay = tradingDay;
+        tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
+        fields = generate(startPrice, priceTick, maxTicks);
+    }
+
+    public Exchangeable getInstrument() {
+        return instrument;
+    }
+
+    public LocalDate getTradingDay() {
+        return tradingDay;
+    }
+
+    public ExchangeableTradingTimes getTradingTimes() {
+        return tradingTimes;
+    }
+
+    public List<CThostFtdcDepthMarketDataField> getFields(){
+        return fields;
+    }
+
+    /**
+     * 创建MarketData对象, 已经计算市场时间
+     */
+    public List<MarketData> toMarketDatas(){
+        List<MarketData> result = new ArrayList<>(fields.size());
+        for(CThostFtdcDepthMarketDataField field:fields) {
+            MarketData md = new CtpMarketData("ctp", instrument, field, tradingDay);
+            md.postProcess(tradingTimes);
+            result.add(md);
+        }
+        return result;
+    }
+
+    /**
+     * TICK_CTP格式的CSV文本
+     */
+    public String toCsv() {
+        CSVWriter<CThostFtdcDepthMarketDataField> csvWriter = new CSVWriter<>(new CtpCSVMarshallHelper());
+        for(CThostFtdcDepthMarketDataField field:fields) {
+            csvWriter.next().marshall(field);
+        }
+        return csvWriter.toString();
+    }
+
+    private List<CThostFtdcDepthMarketDataField> generate(double startPrice, double priceTick, int maxTicks) {
+        List<CThostFtdcDepthMarketDataField> result = new ArrayList<>();
+        Random random = new Random(instrument.uniqueId().hashCode());
+        String tradingDayStr = DateUtil.date2str(tradingDay);
+        double price = startPrice, open = startPrice, high = startPrice, low = startPrice;
+        int volume = 0;
+        double turnover = 0, openInt = 200000;
+        LocalDateTime[] marketTimes = tradingTimes.getMarketTimes();
+        for(int i=0;i<marketTimes.length;i+=2) {
+            for(LocalDateTime time=marketTimes[i]; time.isBefore(marketTimes[i+1]) && result.size()<maxTicks; time=time.plusNanos(500*1000*1000)) {
+                price += (random.nextInt(5)-2)*priceTick;
+                high = Math.max(high, price);
+                low = Math.min(low, price);
+                int tickVolume = 1+random.nextInt(20);
+                volume += tickVolume;
+                turnover += tickVolume*price;
+                openInt += random.nextInt(11)-5;
+
+                CThostFtdcDepthMarketDataField field = new CThostFtdcDepthMarketDataField();
+                field.TradingDay = tradingDayStr;
+                field.ActionDay = DateUtil.date2str(time.toLocalDate());
+                field.InstrumentID = instrument.id();
+                field.ExchangeID = instrument.exchange().name().toUpperCase();
+                field.ExchangeInstID = "";
+                field.LastPrice = price;
+                field.PreSettlementPrice = startPrice;
+                field.PreClosePrice = startPrice;
+                field.PreOpenInterest = 200000;
+                field.OpenPrice = open;
+                field.HighestPrice = high;
+                field.LowestPrice = low;
+                field.Volume = volume;
+                field.Turnover = turnover;
+                field.OpenInterest = openInt;
+                field.UpperLimitPrice = startPrice*1.1;
+                field.LowerLimitPrice = startPrice*0.9;
+                field.UpdateTime = DateUtil.time2str(time.toLocalTime());
+                field.UpdateMillisec = time.getNano()/1000000;
+                field.BidPrice1 = price-priceTick; field.BidVolume1 = 1+random.nextInt(50);
+                field.AskPrice1 = price; field.AskVolume1 = 1+random.nextInt(50);
+                field.BidPrice2 = price-2*priceTick; field.BidVolume2 = 1+random.nextInt(50);
+                field.AskPrice2 = price+priceTick; field.AskVolume2 = 1+random.nextInt(50);
+                field.BidPrice3 = price-3*priceTick; field.BidVolume3 = 1+random.nextInt(50);
+                field.AskPrice3 = price+2*priceTick; field.AskVolume3 = 1+random.nextInt(50);
+                field.BidPrice4 = price-4*priceTick; field.BidVolume4 = 1+random.nextInt(50);
+                field.AskPrice4 = price+3*priceTick; field.AskVolume4 = 1+random.nextInt(50);
+                field.BidPrice5 = price-5*priceTick; field.BidVolume5 = 1+random.nextInt(50);
+                field.AskPrice5 = price+4*priceTick; field.AskVolume5 = 1+random.nextInt(50);
+                field.AveragePrice = turnover/volume;
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+}
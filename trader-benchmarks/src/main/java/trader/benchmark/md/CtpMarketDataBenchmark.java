@@ -0,0 +1,125 @@
+package trader.benchmark.md;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpDayTimeBase;
+import trader.service.md.ctp.CtpMarketData;
+
+/**
+ * CTP行情TICK创建的开销: 每TICK新建对象 vs 池化对象原地填充.
+ * <BR>使用 -prof gc 运行, 比较 gc.alloc.rate.norm (每TICK分配字节数)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CtpMarketDataBenchmark {
+    private static final ZoneId CFFEX_ZONE_ID = Exchange.CFFEX.getZoneId();
+
+    static final String CSV_HEAD = "TradingDay,InstrumentID,ExchangeID,ExchangeInstID,LastPrice,PreSettlementPrice,PreClosePrice,PreOpenInterest,OpenPrice,HighestPrice,LowestPrice,Volume,Turnover,OpenInterest,ClosePrice,SettlementPrice,UpperLimitPrice,LowerLimitPrice,PreDelta,CurrDelta,UpdateTime,UpdateMillisec,BidPrice1,BidVolume1,AskPrice1,AskVolume1,BidPrice2,BidVolume2,AskPrice2,AskVolume2,BidPrice3,BidVolume3,AskPrice3,AskVolume3,BidPrice4,BidVolume4,AskPrice4,AskVolume4,BidPrice5,BidVolume5,AskPrice5,AskVolume5,AveragePrice,ActionDay\n";
+
+    /**
+     * SHFE日市, DCE夜市(需要调整ActionDay), CZCE日市
+     */
+    @Param({"ru2101:09:30:01", "m2101:21:30:01", "SR101:10:15:01"})
+    public String tickCase;
+
+    private Exchangeable instrument;
+    private LocalDate tradingDay;
+    private CtpDayTimeBase tradingDayBase;
+    private ExchangeableTradingTimes tradingTimes;
+    private CThostFtdcDepthMarketDataField field;
+    private CtpMarketData pooledTick;
+
+    @Setup
+    public void setup() {
+        int idx = tickCase.indexOf(':');
+        instrument = Exchangeable.fromString(tickCase.substring(0, idx));
+        String updateTime = tickCase.substring(idx+1);
+        tradingDay = DateUtil.str2localdate("20201012");
+        tradingDayBase = CtpDayTimeBase.of(tradingDay);
+        tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
+        //DCE夜市的ActionDay与TradingDay相同, 需要计算前一交易日
+        String actionDay = "20201012";
+        String row = "20201012,"+instrument.id()+",,,13990.00,13960.00,13975.00,243320.00,13980.00,14030.00,13955.00,297788,41601801652.00,244542.00,0.00,N/A,14800.00,13100.00,0.00,0.00,"
+            +updateTime+",500,13985.00,3,13990.00,36,13980.00,11,13995.00,7,13975.00,20,14000.00,9,13970.00,4,14005.00,12,13965.00,30,14010.00,8,13985.00,"+actionDay+"\n";
+        CSVDataSet ds = CSVUtil.parse(CSV_HEAD+row);
+        ds.next();
+        field = new CtpCSVMarshallHelper().unmarshall(ds.getRow());
+        pooledTick = CtpMarketData.createPooled();
+    }
+
+    /**
+     * 每TICK创建新对象, 并为"merged"保存复制一份 (原有的处理方式)
+     */
+    @Benchmark
+    public void newTick(Blackhole bh) {
+        MarketData tick = new CtpMarketData("ctp", instrument, field, tradingDay);
+        bh.consume(tick);
+        bh.consume(tick.clone());
+    }
+
+    /**
+     * 池化对象原地填充
+     */
+    @Benchmark
+    public void pooledTick(Blackhole bh) {
+        bh.consume(pooledTick.update("ctp", instrument, field, tradingDayBase));
+    }
+
+    /**
+     * 池化对象原地填充后计算市场时间/阶段
+     */
+    @Benchmark
+    public void pooledTickPostProcess(Blackhole bh) {
+        MarketData tick = pooledTick.update("ctp", instrument, field, tradingDayBase);
+        tick.postProcess(tradingTimes);
+        bh.consume(tick.mktTime);
+    }
+
+    /**
+     * 原有的字符串解析计算时间戳
+     */
+    @Benchmark
+    public long parseTimestamp() {
+        LocalDateTime updateTime = DateUtil.str2localdatetime(field.ActionDay, field.UpdateTime, field.UpdateMillisec);
+        return DateUtil.localdatetime2long(CFFEX_ZONE_ID, updateTime);
+    }
+
+    /**
+     * 基于缓存日期基准的时间戳计算
+     */
+    @Benchmark
+    public long cachedTimestamp() {
+        CtpDayTimeBase actionDay = CtpDayTimeBase.of(field.ActionDay);
+        return actionDay.toEpochMillis(CtpDayTimeBase.secondOfDay(field.UpdateTime), field.UpdateMillisec);
+    }
+
+}
@@ -0,0 +1,107 @@
+package trader.benchmark.md;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.benchmark.BenchmarkTicks;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.event.AsyncEvent;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataListener;
+import trader.service.md.MarketDataServiceImpl;
+import trader.simulator.SimMarketTimeService;
+
+/**
+ * MarketDataServiceImpl.onAsyncEvent 的开销: 检查TICK, 计算市场时间, 回调合约的全部listener.
+ * <BR>不启动disruptor和行情源, 通过反射注入依赖并直接调用事件处理函数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarketDataFanoutBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int listenerCount;
+
+    private MarketDataServiceImpl mdService;
+    private ExecutorService executorService;
+    private MethodHandle onAsyncEvent;
+    private List<MarketData> ticks;
+    private AsyncEvent event = new AsyncEvent();
+    private int tickIndex;
+    private long volume;
+    private long priceSum;
+
+    @Setup
+    public void setup() throws Exception {
+        LocalDate tradingDay = DateUtil.str2localdate("20201012");
+        Exchangeable instrument = Exchangeable.fromString("ru2101");
+        ticks = new BenchmarkTicks(instrument, tradingDay, 14000, 5).toMarketDatas();
+
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        mtService.setTradingDay(tradingDay);
+        executorService = Executors.newSingleThreadExecutor();
+        mdService = new MarketDataServiceImpl();
+        inject(mdService, "mtService", mtService);
+        inject(mdService, "executorService", executorService);
+        Method method = MarketDataServiceImpl.class.getDeclaredMethod("onAsyncEvent", AsyncEvent.class);
+        method.setAccessible(true);
+        onAsyncEvent = MethodHandles.lookup().unreflect(method);
+
+        for(int i=0;i<listenerCount;i++) {
+            mdService.addListener(new MarketDataListener() {
+                @Override
+                public void onMarketData(MarketData md) {
+                    priceSum += md.lastPrice;
+                }
+            }, instrument);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Benchmark
+    public long onAsyncEvent() throws Throwable {
+        MarketData tick = ticks.get(tickIndex);
+        tickIndex = (tickIndex+1)%ticks.size();
+        //成交量单调增加, 循环使用的TICK仍然被视为新的行情
+        tick.volume = ++volume;
+        event.setData(AsyncEvent.EVENT_TYPE_MARKETDATA, null, tick, null);
+        onAsyncEvent.invokeExact(mdService, event);
+        return priceSum;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+}
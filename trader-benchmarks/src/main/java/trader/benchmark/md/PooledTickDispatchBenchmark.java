@@ -0,0 +1,190 @@
+package trader.benchmark.md;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.benchmark.BenchmarkTicks;
+import trader.common.beans.ServiceState;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.event.AsyncEvent;
+import trader.service.event.AsyncEventFilter;
+import trader.service.event.AsyncEventProcessor;
+import trader.service.event.AsyncEventService;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataListener;
+import trader.service.md.MarketDataServiceImpl;
+import trader.service.md.ctp.CtpDayTimeBase;
+import trader.service.md.ctp.CtpMarketData;
+import trader.service.md.spi.AbsMarketDataProducer;
+import trader.simulator.SimMarketTimeService;
+
+/**
+ * 分片线程处理一个TICK的开销: 填充TICK, 检查TICK, 回调两个保留TICK的分片安全listener(KBar, 交易组队列),
+ * 以及转发一个非分片安全的listener(账户).
+ * <BR>pooled=true 在16个预分配的槽位上循环填充, 模拟RingBuffer; pooled=false 每TICK新建对象
+ * <BR>使用 -prof gc 运行, 比较 gc.alloc.rate.norm (每TICK分配字节数)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PooledTickDispatchBenchmark {
+
+    private static final int SLOTS = 16;
+
+    /**
+     * 只记录转发的TICK, 不启动disruptor
+     */
+    private static class ForwardingEventService implements AsyncEventService {
+        Object forwarded;
+
+        @Override
+        public ServiceState getState() {
+            return ServiceState.Ready;
+        }
+
+        @Override
+        public boolean addFilter(String filterChainId, AsyncEventFilter filter, int eventMask) {
+            return false;
+        }
+
+        @Override
+        public int getMarketDataShards() {
+            return 1;
+        }
+
+        @Override
+        public long publishEvent(int eventType, AsyncEventProcessor processor, Object data, Object data2) {
+            forwarded = data;
+            return 0;
+        }
+
+        @Override
+        public <T> long publishPooledMarketData(AbsMarketDataProducer<T> producer, T rawMarketData, Exchangeable instrument) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long publishMarketData(MarketData md) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void publishProcessorEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class RetainingListener implements MarketDataListener {
+        MarketData retained;
+
+        @Override
+        public void onMarketData(MarketData md) {
+            retained = md.detach();
+        }
+
+        @Override
+        public boolean isShardSafe() {
+            return true;
+        }
+    }
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private Exchangeable instrument;
+    private LocalDate tradingDay;
+    private CtpDayTimeBase tradingDayBase;
+    private List<CThostFtdcDepthMarketDataField> fields;
+    private CtpMarketData[] slots = new CtpMarketData[SLOTS];
+    private MarketDataServiceImpl mdService;
+    private ForwardingEventService asyncEventService = new ForwardingEventService();
+    private RetainingListener barListener = new RetainingListener();
+    private RetainingListener tradletListener = new RetainingListener();
+    private ExecutorService executorService;
+    private MethodHandle onShardAsyncEvent;
+    private AsyncEvent event = new AsyncEvent();
+    private int tickIndex;
+    private long volume;
+
+    @Setup
+    public void setup() throws Exception {
+        tradingDay = DateUtil.str2localdate("20201012");
+        tradingDayBase = CtpDayTimeBase.of(tradingDay);
+        instrument = Exchangeable.fromString("ru2101");
+        fields = new BenchmarkTicks(instrument, tradingDay, 14000, 5).getFields();
+        for(int i=0;i<SLOTS;i++) {
+            slots[i] = CtpMarketData.createPooled();
+        }
+
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        mtService.setTradingDay(tradingDay);
+        executorService = Executors.newSingleThreadExecutor();
+        mdService = new MarketDataServiceImpl();
+        inject(mdService, "mtService", mtService);
+        inject(mdService, "executorService", executorService);
+        inject(mdService, "asyncEventService", asyncEventService);
+        inject(mdService, "mdShards", 1);
+        inject(mdService, "pooledTicks", pooled);
+        Method method = MarketDataServiceImpl.class.getDeclaredMethod("onShardAsyncEvent", AsyncEvent.class);
+        method.setAccessible(true);
+        onShardAsyncEvent = MethodHandles.lookup().unreflect(method);
+
+        mdService.addListener(barListener, instrument);
+        mdService.addListener(tradletListener, instrument);
+        mdService.addListener((MarketData md)->{}, instrument);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Benchmark
+    public Object dispatch() throws Throwable {
+        CThostFtdcDepthMarketDataField field = fields.get(tickIndex%fields.size());
+        MarketData tick;
+        if ( pooled ) {
+            tick = slots[tickIndex%SLOTS].update("ctp", instrument, field, tradingDayBase);
+        } else {
+            tick = new CtpMarketData("ctp", instrument, field, tradingDay);
+        }
+        tickIndex++;
+        //成交量单调增加, 循环使用的TICK仍然被视为新的行情
+        tick.volume = ++volume;
+        event.setData(AsyncEvent.EVENT_TYPE_MARKETDATA, null, tick, null);
+        onShardAsyncEvent.invokeExact(mdService, event);
+        return asyncEventService.forwarded;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+}
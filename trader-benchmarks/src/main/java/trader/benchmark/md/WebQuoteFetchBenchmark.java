@@ -0,0 +1,111 @@
+package trader.benchmark.md;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.util.NetUtil;
+import trader.common.util.NetUtil.HttpMethod;
+import trader.common.util.StringUtil;
+import trader.service.md.web.WebMarketDataProducer;
+import trader.service.md.web.WebQuoteFetcher;
+import trader.service.md.web.WebQuoteFormat;
+import trader.service.md.web.WebQuoteParser;
+import trader.simulator.SimWebQuoteServer;
+
+/**
+ * 从本地模拟行情网站抓取一轮全部股票的耗时.
+ * <BR>blocking: 原有方式, 每组合约占用一个线程, NetUtil读取为String后再解析
+ * <BR>async: WebQuoteFetcher, 异步请求, 响应字节流直接解析
+ * <BR>两种方式同时进行的请求数都是4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebQuoteFetchBenchmark {
+    private static final int CONCURRENT_REQUESTS = 4;
+
+    @Param({"3000"})
+    public int itemCount;
+
+    @Param({"150"})
+    public int itemsPerRequest;
+
+    private SimWebQuoteServer server;
+    private ExecutorService executorService;
+    private List<List<String>> chunks;
+    private WebQuoteFetcher fetcher;
+    private AtomicInteger quoteCount = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new SimWebQuoteServer();
+        executorService = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        List<String> items = new ArrayList<>();
+        for(int i=0;i<itemCount;i++) {
+            items.add(i%2==0?"sh"+(600000+i):"sz"+String.format("%06d", i));
+        }
+        chunks = Lists.partition(items, itemsPerRequest);
+        fetcher = new WebQuoteFetcher(WebQuoteFormat.Sina, server.getSinaUrl(), executorService, (String item, CThostFtdcDepthMarketDataField field)->{
+            quoteCount.incrementAndGet();
+        });
+        fetcher.setItemsPerRequest(itemsPerRequest);
+        fetcher.setMaxConcurrentRequests(CONCURRENT_REQUESTS);
+        fetcher.setSubscriptions(items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public int blocking() throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>();
+        for(List<String> items:chunks) {
+            futures.add(executorService.submit(()->{
+                String text = NetUtil.readHttpAsText(server.getSinaUrl()+String.join(",", items), HttpMethod.GET, null, StringUtil.GBK, WebMarketDataProducer.SINA_WEB_REFER);
+                WebQuoteParser parser = new WebQuoteParser(WebQuoteFormat.Sina, items, (int itemIndex, CThostFtdcDepthMarketDataField field)->{});
+                parser.feed(ByteBuffer.wrap(text.getBytes(StringUtil.GBK)));
+                return parser.finish();
+            }));
+        }
+        int result = 0;
+        for(Future<Integer> future:futures) {
+            result += future.get();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int async() throws Exception {
+        return fetcher.fetch().get();
+    }
+
+}
@@ -0,0 +1,121 @@
+package trader.benchmark.node;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import trader.service.node.NodeConstants;
+import trader.service.node.NodeMessage;
+import trader.service.node.NodeMessageCodec;
+
+/**
+ * NodeMessage 编解码开销: JSON文本, 二进制, 二进制+压缩.
+ * <BR>order: 单个报单推送; accounts: 带50个报单的账户信息推送. 每条消息的字节数在Setup时写入日志
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeMessageCodecBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(NodeMessageCodecBenchmark.class);
+
+    @Param({NodeMessageCodec.CODEC_JSON, NodeMessageCodec.CODEC_BINARY, NodeMessageCodec.CODEC_BINARY_DEFLATE})
+    public String codecName;
+
+    @Param({"order", "accounts"})
+    public String message;
+
+    private NodeMessageCodec codec;
+    private NodeMessage msg;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws Exception {
+        codec = new NodeMessageCodec(codecName);
+        if ( "order".equals(message) ) {
+            msg = new NodeMessage(NodeConstants.TYPE_TOPICPUB_REQ);
+            msg.setField(NodeMessage.FIELD_TOPIC, NodeConstants.TOPIC_TRADE_ORDER);
+            msg.setField("accountId", "sim-account1");
+            msg.setField("order", createOrder(1));
+        } else {
+            msg = new NodeMessage(NodeConstants.TYPE_TOPICPUB_REQ);
+            msg.setField(NodeMessage.FIELD_TOPIC, NodeConstants.TOPIC_TRADE_ACCOUNT_INFO);
+            JsonObject account = new JsonObject();
+            account.addProperty("id", "sim-account1");
+            account.addProperty("state", "Ready");
+            account.add("money", createMoney());
+            JsonArray orders = new JsonArray();
+            for(int i=0;i<50;i++) {
+                orders.add(createOrder(i));
+            }
+            account.add("orders", orders);
+            JsonArray accounts = new JsonArray();
+            accounts.add(account);
+            msg.setField("accounts", accounts);
+        }
+        encoded = encode();
+        logger.info(codecName+" "+message+" bytes per message: "+encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        if ( codec.isBinary() ) {
+            return codec.encode(msg);
+        }
+        return msg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public NodeMessage decode() throws Exception {
+        if ( codec.isBinary() ) {
+            return codec.decode(encoded, 0, encoded.length);
+        }
+        return NodeMessage.fromString(new String(encoded, StandardCharsets.UTF_8));
+    }
+
+    private static JsonObject createOrder(int idx) {
+        JsonObject order = new JsonObject();
+        order.addProperty("id", "ODR_"+(100000+idx));
+        order.addProperty("ref", String.format("%06d", idx));
+        order.addProperty("instrument", "ru2101");
+        order.addProperty("direction", idx%2==0?"Buy":"Sell");
+        order.addProperty("offsetFlag", "OPEN");
+        order.addProperty("priceType", "LimitPrice");
+        order.addProperty("limitPrice", "14385.0");
+        order.addProperty("state", "Complete");
+        order.addProperty("time", 1602466200000L+idx*500);
+        order.add("money", createMoney());
+        JsonArray volumes = new JsonArray();
+        volumes.add(1); volumes.add(idx%2); volumes.add(0);
+        order.add("volumes", volumes);
+        return order;
+    }
+
+    private static JsonObject createMoney() {
+        JsonObject money = new JsonObject();
+        money.addProperty("balance", 1000000.25);
+        money.addProperty("available", 850000.5);
+        money.addProperty("frozenMargin", 0);
+        money.addProperty("currMargin", 145230);
+        return money;
+    }
+
+}
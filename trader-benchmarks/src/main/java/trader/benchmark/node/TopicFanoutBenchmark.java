@@ -0,0 +1,91 @@
+package trader.benchmark.node;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.service.node.TopicTrie;
+
+/**
+ * Broker推送主题消息时查找订阅会话的开销: 500个会话, 10000个主题.
+ * <BR>每个会话订阅100个主题, 其中10个会话另外使用通配符订阅一个交易所的全部主题.
+ * <BR>scanSessions 是原来逐个会话判断的方式, 只比较完整主题名, 不支持通配符; trieMatch 使用TopicTrie, 包含通配符订阅
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicFanoutBenchmark {
+
+    private static final int SESSION_COUNT = 500;
+    private static final int TOPIC_COUNT = 10000;
+    private static final int TOPICS_PER_SESSION = 100;
+    private static final String[] EXCHANGES = {"shfe", "dce", "czce", "cffex"};
+
+    private String[] topics;
+    private List<Set<String>> sessionTopics = new ArrayList<>();
+    private TopicTrie<Integer> topicTrie = new TopicTrie<>();
+    private int topicIndex;
+
+    @Setup
+    public void setup() {
+        topics = new String[TOPIC_COUNT];
+        for(int i=0;i<TOPIC_COUNT;i++) {
+            topics[i] = "/md/"+EXCHANGES[i%EXCHANGES.length]+"/"+i;
+        }
+        Random random = new Random(1);
+        for(int s=0;s<SESSION_COUNT;s++) {
+            Set<String> subscribed = new HashSet<>();
+            while(subscribed.size()<TOPICS_PER_SESSION) {
+                subscribed.add(topics[random.nextInt(TOPIC_COUNT)]);
+            }
+            if ( s%50==0 ) {
+                subscribed.add("/md/"+EXCHANGES[s%EXCHANGES.length]+"/*");
+            }
+            sessionTopics.add(subscribed);
+            topicTrie.setSubscriptions(s, subscribed);
+        }
+    }
+
+    @Benchmark
+    public int scanSessions() {
+        String topic = nextTopic();
+        int result = 0;
+        for(Set<String> subscribed:sessionTopics) {
+            if ( subscribed.contains(topic) ) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int trieMatch() {
+        return topicTrie.match(nextTopic()).size();
+    }
+
+    private String nextTopic() {
+        String topic = topics[topicIndex++];
+        if ( topicIndex>=topics.length ) {
+            topicIndex = 0;
+        }
+        return topic;
+    }
+
+}
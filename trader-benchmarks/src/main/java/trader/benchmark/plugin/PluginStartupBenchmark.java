@@ -0,0 +1,94 @@
+package trader.benchmark.plugin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+
+import trader.common.util.FileUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.plugin.Plugin;
+import trader.service.plugin.PluginServiceImpl;
+import trader.service.util.SimpleBeansContainer;
+
+/**
+ * PluginServiceImpl启动时加载全部插件的耗时.
+ * <BR>在临时TraderHome下创建pluginCount个插件, 每个插件的jars目录包含一份guava jar
+ * <BR>indexed=false: 每次启动前删除扫描索引, 所有插件都用ClassGraph扫描; indexed=true: 从索引加载
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PluginStartupBenchmark {
+
+    @Param({"4"})
+    public int pluginCount;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private File traderHome;
+    private File indexDir;
+
+    /**
+     * 必须在TraderHomeUtil加载前设置trader.home
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        traderHome = Files.createTempDirectory("pluginStartup").toFile();
+        System.setProperty(TraderHomeUtil.PROP_TRADER_HOME, traderHome.getAbsolutePath());
+        File jar = new File(Lists.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        for(int i=0;i<pluginCount;i++) {
+            File pluginDir = new File(traderHome, "plugin/bench"+i);
+            File jarsDir = new File(pluginDir, "jars");
+            jarsDir.mkdirs();
+            FileUtil.save(new File(pluginDir, Plugin.FILE_DESCRIPTOR), "id=bench"+i+"\n");
+            FileUtil.copy(jar, new File(jarsDir, jar.getName()));
+        }
+        indexDir = new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_CACHE), "pluginIndex");
+        //生成索引
+        startup();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        if ( !indexed ) {
+            FileUtil.deleteDirectory(indexDir);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtil.deleteDirectory(traderHome);
+    }
+
+    @Benchmark
+    public int startup() {
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        PluginServiceImpl pluginService = new PluginServiceImpl();
+        pluginService.setBeansContainer(beansContainer);
+        pluginService.init();
+        int result = pluginService.getPlugins().size();
+        pluginService.destroy();
+        return result;
+    }
+
+}
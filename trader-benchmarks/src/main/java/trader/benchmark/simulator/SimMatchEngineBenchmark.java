@@ -0,0 +1,160 @@
+package trader.benchmark.simulator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+import trader.service.trade.TradeConstants.OrderDirection;
+import trader.service.trade.TradeConstants.OrderOffsetFlag;
+import trader.service.trade.TradeConstants.OrderPriceType;
+import trader.simulator.trade.LastPriceMatchEngine;
+import trader.simulator.trade.OrderBookMatchEngine;
+import trader.simulator.trade.SimMatchEngine;
+import trader.simulator.trade.SimOrder;
+
+/**
+ * 大量挂单时每个行情的撮合开销: 逐个扫描所有挂单 vs 按价格索引的撮合引擎.
+ * <BR>挂单分布在买卖各50个价位上, 行情在买一卖一之间波动, 不会穿过挂单价格
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimMatchEngineBenchmark {
+
+    private static class BenchmarkMarketData extends MarketData {
+
+        BenchmarkMarketData(Exchangeable instrument, long volume, long lastPrice, long bid, long ask, int depth, long priceTick){
+            this.instrument = instrument;
+            this.volume = volume;
+            this.lastPrice = lastPrice;
+            this.depth = depth;
+            bidPrices = new long[depth];
+            bidVolumes = new int[depth];
+            askPrices = new long[depth];
+            askVolumes = new int[depth];
+            for(int i=0;i<depth;i++) {
+                bidPrices[i] = bid-i*priceTick;
+                askPrices[i] = ask+i*priceTick;
+                bidVolumes[i] = 10+i;
+                askVolumes[i] = 10+i;
+            }
+        }
+
+        @Override
+        public String getCsvHead() {
+            return null;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+        }
+
+        @Override
+        public MarketData clone() {
+            return null;
+        }
+
+        @Override
+        protected MarketData newInstance() {
+            return null;
+        }
+    }
+
+    @Param({"1000", "10000"})
+    public int orderCount;
+
+    private static final int TICK_COUNT = 1024;
+
+    private List<SimOrder> orders;
+    private MarketData[] ticks;
+    private SimMatchEngine lastPriceEngine;
+    private SimMatchEngine orderBookEngine;
+    private int tickIndex;
+
+    @Setup
+    public void setup() {
+        Exchangeable instrument = Exchangeable.fromString("ru2101");
+        long priceTick = PriceUtil.price2long(5);
+        long mid = PriceUtil.price2long(14000);
+        LocalDateTime time = LocalDateTime.of(2020, 10, 12, 9, 0);
+        MarketData md0 = new BenchmarkMarketData(instrument, 0, mid, mid-priceTick, mid+priceTick, 5, priceTick);
+
+        orders = new ArrayList<>(orderCount);
+        lastPriceEngine = new LastPriceMatchEngine();
+        orderBookEngine = new OrderBookMatchEngine();
+        for(int i=0;i<orderCount;i++) {
+            //挂单价格离中间价3~52个priceTick
+            long offset = (3+(i/2)%50)*priceTick;
+            OrderDirection direction = (i%2)==0?OrderDirection.Buy:OrderDirection.Sell;
+            long price = direction==OrderDirection.Buy?mid-offset:mid+offset;
+            SimOrder order = new SimOrder(""+i, instrument, direction, OrderOffsetFlag.OPEN, OrderPriceType.LimitPrice, price, 1000000, time);
+            orders.add(order);
+            lastPriceEngine.addOrder(order, md0);
+            orderBookEngine.addOrder(order, md0);
+        }
+        ticks = new MarketData[TICK_COUNT];
+        for(int i=0;i<TICK_COUNT;i++) {
+            long last = mid + ((i%3)-1)*priceTick;
+            ticks[i] = new BenchmarkMarketData(instrument, (i+1)*10, last, mid-priceTick, mid+priceTick, 5, priceTick);
+        }
+    }
+
+    private MarketData nextTick() {
+        MarketData md = ticks[tickIndex];
+        tickIndex = (tickIndex+1)%TICK_COUNT;
+        return md;
+    }
+
+    /**
+     * 原实现: 每个行情复制挂单列表, 逐个检查是否成交
+     */
+    @Benchmark
+    public void scanAllOrders(Blackhole bh) {
+        MarketData md = nextTick();
+        List<SimOrder> orders = new ArrayList<>(this.orders);
+        for(SimOrder order:orders) {
+            boolean fill = false;
+            if ( order.getDirection()==OrderDirection.Buy ) {
+                fill = order.getLimitPrice()>=md.lastAskPrice();
+            } else {
+                fill = order.getLimitPrice()<=md.lastBidPrice();
+            }
+            bh.consume(fill);
+        }
+    }
+
+    @Benchmark
+    public void lastPriceEngine(Blackhole bh) {
+        lastPriceEngine.match(nextTick(), (order, price, volume)->{
+            bh.consume(order);
+        });
+    }
+
+    @Benchmark
+    public void orderBookEngine(Blackhole bh) {
+        orderBookEngine.match(nextTick(), (order, price, volume)->{
+            bh.consume(order);
+        });
+    }
+
+}
@@ -0,0 +1,59 @@
+package trader.benchmark.ta;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.benchmark.BenchmarkTicks;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.service.md.MarketData;
+import trader.service.ta.bar.FutureBarBuilder;
+
+/**
+ * 一个交易日的全部TICK逐个调用 FutureBarBuilder.update 生成K线的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FutureBarBuilderBenchmark {
+
+    @Param({"min1", "min5", "vol1k"})
+    public String level;
+
+    private BenchmarkTicks ticks;
+    private List<MarketData> marketDatas;
+    private PriceLevel priceLevel;
+
+    @Setup
+    public void setup() {
+        ticks = new BenchmarkTicks(Exchangeable.fromString("ru2101"), DateUtil.str2localdate("20201012"), 14000, 5);
+        marketDatas = ticks.toMarketDatas();
+        priceLevel = PriceLevel.valueOf(level);
+    }
+
+    @Benchmark
+    public int updateDay() {
+        FutureBarBuilder barBuilder = new FutureBarBuilder(ticks.getTradingTimes(), priceLevel);
+        for(int i=0;i<marketDatas.size();i++) {
+            barBuilder.update(marketDatas.get(i));
+        }
+        return barBuilder.getTimeSeries(priceLevel).getBarCount();
+    }
+
+}
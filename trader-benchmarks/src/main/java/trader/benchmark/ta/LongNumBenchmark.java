@@ -0,0 +1,77 @@
+package trader.benchmark.ta;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ta4j.core.num.DoubleNum;
+import org.ta4j.core.num.Num;
+
+import trader.service.ta.LongNum;
+
+/**
+ * LongNum 四则运算的开销, 以ta4j的DoubleNum作为参照.
+ * <BR>每次运算都会创建新对象, 使用 -prof gc 运行可以看到分配速率
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongNumBenchmark {
+
+    private static final int SIZE = 1024;
+
+    private Num[] longNums = new Num[SIZE];
+    private Num[] doubleNums = new Num[SIZE];
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for(int i=0;i<SIZE;i++) {
+            double value = 1000+random.nextInt(100000)/100.0;
+            longNums[i] = LongNum.valueOf(value);
+            doubleNums[i] = DoubleNum.valueOf(value);
+        }
+    }
+
+    /**
+     * EMA类指标的典型计算: (a-b)*k/n+b
+     */
+    private static Num ema(Num a, Num b, Num k, Num n) {
+        return a.minus(b).multipliedBy(k).dividedBy(n).plus(b);
+    }
+
+    @Benchmark
+    public Num longNum() {
+        int i = index;
+        index = (i+1)&(SIZE-1);
+        return ema(longNums[i], longNums[(i+1)&(SIZE-1)], LongNum.D2, LongNum.valueOf(13));
+    }
+
+    @Benchmark
+    public Num doubleNum() {
+        int i = index;
+        index = (i+1)&(SIZE-1);
+        return ema(doubleNums[i], doubleNums[(i+1)&(SIZE-1)], DoubleNum.valueOf(2), DoubleNum.valueOf(13));
+    }
+
+    @Benchmark
+    public int longNumCompare() {
+        int i = index;
+        index = (i+1)&(SIZE-1);
+        return longNums[i].compareTo(longNums[(i+1)&(SIZE-1)]);
+    }
+
+}
@@ -0,0 +1,214 @@
+package trader.benchmark.trade;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import trader.benchmark.BenchmarkTicks;
+import trader.common.config.XMLConfigProvider;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.ServiceConstants.AccountState;
+import trader.service.config.ConfigServiceImpl;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.repository.BORepository;
+import trader.service.repository.BORepositoryConstants.BOEntityType;
+import trader.service.trade.AccountImpl;
+import trader.service.trade.MarketTimeService;
+import trader.service.trade.TradeConstants.PosDirection;
+import trader.service.trade.TradeService;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.SimBORepository;
+import trader.simulator.SimMarketDataService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.SimScheduledExecutorService;
+import trader.simulator.trade.SimPositionDetail;
+import trader.simulator.trade.SimTradeService;
+import trader.simulator.trade.SimTxnSession;
+
+/**
+ * 持有多个合约的仓位时, 每个行情更新持仓盈亏的开销:
+ * AccountImpl.onMarketData (本地账户) 和 SimTxnSession.onMarketData (模拟撮合及模拟账户).
+ * <BR>在临时目录生成TraderHome配置和手续费文件, 仓位通过SimBORepository预先加载
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountMarketDataBenchmark {
+
+    private static final String[] COMMODITIES = {"ru", "zn", "cu", "al", "ni"};
+    private static final int TICKS_PER_INSTRUMENT = 256;
+
+    @Param({"1", "10", "50"})
+    public int positionCount;
+
+    private File traderHome;
+    private AccountImpl account;
+    private SimTxnSession txnSession;
+    private MarketData[] ticks;
+    private int tickIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        LocalDate tradingDay = DateUtil.str2localdate("20201012");
+        List<Exchangeable> instruments = new ArrayList<>();
+        for(int i=0;i<positionCount;i++) {
+            int month = 1+i/COMMODITIES.length;
+            instruments.add(Exchangeable.fromString(COMMODITIES[i%COMMODITIES.length]+"21"+(month<10?"0":"")+month));
+        }
+        initTraderHome(instruments);
+
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
+        SimMarketDataService mdService = new SimMarketDataService();
+        SimBORepository repository = new SimBORepository();
+        SimTradeService tradeService = new SimTradeService();
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(BORepository.class, repository);
+        beansContainer.addBean(TradeService.class, tradeService);
+
+        LocalDateTime openTime = LocalDateTime.of(2020, 10, 12, 9, 0);
+        mtService.setTimeRanges(tradingDay, new LocalDateTime[] {openTime, openTime.plusHours(6)});
+        scheduledExecutorService.init(beansContainer);
+        mdService.init(beansContainer);
+        repository.save(BOEntityType.Default, "simTxn", simTxnJson(instruments, openTime));
+        tradeService.init(beansContainer);
+
+        account = (AccountImpl)tradeService.getPrimaryAccount();
+        if ( account.getState()!=AccountState.Ready || account.getPositions().size()!=positionCount ) {
+            throw new IllegalStateException("Account is not ready: "+account.getState()+", positions "+account.getPositions().size());
+        }
+        txnSession = (SimTxnSession)account.getSession();
+
+        //不同合约的TICK交替出现
+        ticks = new MarketData[positionCount*TICKS_PER_INSTRUMENT];
+        for(int i=0;i<positionCount;i++) {
+            List<MarketData> instrumentTicks = new BenchmarkTicks(instruments.get(i), tradingDay, 10000, 5, TICKS_PER_INSTRUMENT).toMarketDatas();
+            for(int j=0;j<TICKS_PER_INSTRUMENT;j++) {
+                ticks[j*positionCount+i] = instrumentTicks.get(j);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.deleteDirectory(traderHome);
+    }
+
+    private MarketData nextTick() {
+        MarketData tick = ticks[tickIndex];
+        tickIndex = (tickIndex+1)%ticks.length;
+        return tick;
+    }
+
+    @Benchmark
+    public void accountOnMarketData() {
+        account.onMarketData(nextTick());
+    }
+
+    @Benchmark
+    public void txnSessionOnMarketData() {
+        txnSession.onMarketData(nextTick());
+    }
+
+    /**
+     * 临时TraderHome: trader.xml 和手续费文件
+     */
+    private void initTraderHome(List<Exchangeable> instruments) throws Exception {
+        traderHome = Files.createTempDirectory("trader-benchmark").toFile();
+        File etcDir = new File(traderHome, "etc");
+        etcDir.mkdirs();
+        JsonObject feeInfos = new JsonObject();
+        for(Exchangeable instrument:instruments) {
+            JsonObject feeInfo = new JsonObject();
+            feeInfo.addProperty("priceTick", PriceUtil.long2str(instrument.getPriceTick()));
+            feeInfo.addProperty("volumeMultiple", instrument.getVolumeMutiplier());
+            JsonArray marginRatios = new JsonArray();
+            JsonArray commissionRatios = new JsonArray();
+            for(int i=0;i<4;i++) {
+                marginRatios.add(i%2==0?0.1:0.0);
+            }
+            for(int i=0;i<6;i++) {
+                commissionRatios.add(i%2==0?0.00005:0.0);
+            }
+            feeInfo.add("marginRatios", marginRatios);
+            feeInfo.add("commissionRatios", commissionRatios);
+            feeInfos.add(instrument.uniqueId(), feeInfo);
+        }
+        JsonObject commissions = new JsonObject();
+        commissions.add("feeInfos", feeInfos);
+        File commissionsFile = new File(etcDir, "bench-account.commissions.json");
+        FileUtil.save(commissionsFile, commissions.toString());
+
+        String traderXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>\n"
+            +"<TradeService><account id=\"bench-account\"><![CDATA[\n"
+            +"[connectionProps]\n"
+            +"initMoney=100000000.00\n"
+            +"commissionsFile="+commissionsFile.getAbsolutePath()+"\n"
+            +"]]></account></TradeService>\n"
+            +"</root>\n";
+        File traderConfigFile = new File(etcDir, "trader.xml");
+        FileUtil.save(traderConfigFile, traderXml);
+
+        System.setProperty(TraderHomeUtil.PROP_TRADER_HOME, traderHome.getAbsolutePath());
+        System.setProperty(TraderHomeUtil.PROP_REPOSITORY_DIR, new File(traderHome, "data").getAbsolutePath());
+        System.setProperty(TraderHomeUtil.PROP_TRADER_CONFIG_FILE, traderConfigFile.getAbsolutePath());
+        ConfigServiceImpl.staticRegisterProvider("TRADER", new XMLConfigProvider(traderConfigFile));
+    }
+
+    /**
+     * 模拟账户的初始仓位: 每个合约多空各一半, 每个仓位3条持仓明细
+     */
+    private static JsonObject simTxnJson(List<Exchangeable> instruments, LocalDateTime openTime) {
+        JsonArray positions = new JsonArray();
+        for(int i=0;i<instruments.size();i++) {
+            PosDirection direction = (i%2==0)?PosDirection.Long:PosDirection.Short;
+            JsonObject pos = new JsonObject();
+            pos.addProperty("instrument", instruments.get(i).uniqueId());
+            pos.addProperty("direction", direction.name());
+            pos.addProperty("lastPrice", "10000");
+            JsonArray details = new JsonArray();
+            for(int j=0;j<3;j++) {
+                details.add(new SimPositionDetail(direction, 2, PriceUtil.price2long(10000-j*5), openTime.minusDays(j)).toJson());
+            }
+            pos.add("details", details);
+            positions.add(pos);
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("balance", "100000000.00");
+        json.add("positions", positions);
+        return json;
+    }
+
+}
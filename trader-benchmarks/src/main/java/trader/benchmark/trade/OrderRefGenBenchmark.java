@@ -0,0 +1,66 @@
+package trader.benchmark.trade;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonElement;
+
+import trader.service.repository.BORepositoryConstants.BOEntityType;
+import trader.service.trade.OrderRefGenImpl;
+import trader.simulator.SimBORepository;
+
+/**
+ * 多线程并发生成OrderRef的吞吐量(refs/ms).
+ * <BR>blockSize=1 相当于每个ID保存一次; 预留下一块时同步保存, SimBORepository只保存到内存, 不包含数据库写入的耗时.
+ * 实际的同步保存耗时按块分摊, blockSize越大影响越小
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class OrderRefGenBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int blockSize;
+
+    private OrderRefGenImpl orderRefGen;
+
+    //每轮重新开始, 避免ID溢出
+    @Setup(Level.Iteration)
+    public void setup() {
+        orderRefGen = new OrderRefGenImpl(new SyncBORepository(), LocalDate.of(2020, 10, 12), blockSize);
+    }
+
+    @Benchmark
+    public String nextRefId() {
+        return orderRefGen.nextRefId("acc");
+    }
+
+    /**
+     * SimBORepository不是线程安全的
+     */
+    private static class SyncBORepository extends SimBORepository {
+        @Override
+        public synchronized void save(BOEntityType entityType, String id, JsonElement json) {
+            super.save(entityType, id, json);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package trader.benchmark.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.benchmark.BenchmarkTicks;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+
+/**
+ * 解析一个交易日的TICK_CTP文件: 只解析CSV, 以及解析后转换为CTP行情结构
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CSVParseBenchmark {
+
+    private String csvText;
+
+    @Setup
+    public void setup() {
+        csvText = new BenchmarkTicks(Exchangeable.fromString("ru2101"), DateUtil.str2localdate("20201012"), 14000, 5).toCsv();
+    }
+
+    @Benchmark
+    public int parse() {
+        CSVDataSet ds = CSVUtil.parse(csvText);
+        int rows = 0;
+        while(ds.next()) {
+            rows++;
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public double parseAndUnmarshall() {
+        CtpCSVMarshallHelper csvHelper = new CtpCSVMarshallHelper();
+        CSVDataSet ds = CSVUtil.parse(csvText);
+        double result = 0;
+        while(ds.next()) {
+            CThostFtdcDepthMarketDataField field = csvHelper.unmarshall(ds.getRow());
+            result += field.LastPrice;
+        }
+        return result;
+    }
+
+}
@@ -1,5 +1,6 @@
 package trader.service.node;
 
+import java.io.BufferedReader;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -18,10 +19,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.MarketDayUtil;
 import trader.common.util.ConversionUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.StringUtil;
@@ -36,6 +39,11 @@ import trader.service.stats.StatsItem;
 public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, NodeService {
     private static final Logger logger = LoggerFactory.getLogger(NodeServiceImpl.class);
 
+    /**
+     * 数据查询每个返回消息的缺省行数
+     */
+    private static final int DEFAULT_DATAQUERY_CHUNK_ROWS = 2000;
+
     @Autowired
     private StatsCollector statsCollector;
 
@@ -50,6 +58,11 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
      */
     private Map<String, NodeSessionImpl> sessions = new ConcurrentHashMap<>();
 
+    /**
+     * 会话的主题订阅索引
+     */
+    private TopicTrie<NodeSessionImpl> topicIndex = new TopicTrie<>();
+
     private List<NodeServiceListener> listeners = new ArrayList<>();
 
     @PostConstruct
@@ -157,25 +170,27 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
         closeSession(session);
     }
 
-    public void onSessionMessage(NodeSessionImpl session, String text) {
-        if ( logger.isDebugEnabled() ) {
-            logger.error("On session "+session.getId()+" message: "+text);
-        }
+    public void onSessionMessage(NodeSessionImpl session, WebSocketMessage<?> wsMessage) {
         NodeMessage reqMessage = null;
         try{
-            reqMessage = NodeMessage.fromString(text);
+            reqMessage = session.decode(wsMessage);
         }catch(Throwable t) {
-            logger.error("Parse session "+session.getId()+" message "+text+" failed: "+t, t);
+            logger.error("Parse session "+session.getId()+" message "+wsMessage+" failed: "+t, t);
             return;
         }
+        if ( logger.isDebugEnabled() ) {
+            logger.error("On session "+session.getId()+" message: "+reqMessage);
+        }
         NodeMessage reqMessage0 = reqMessage;
         NodeMessage respMessage = null;
         NodeState newState = null;
+        String codecName = null;
         switch(reqMessage.getType()) {
         case TYPE_INIT_REQ: //作为管理节点, 接收初始化消息, 并对应的创建NodeInfo
             respMessage = initSession(session, reqMessage);
             if ( respMessage.getErrCode()==0 ) {
                 newState = NodeState.Ready;
+                codecName = (String)respMessage.getField(NodeMessage.FIELD_CODEC);
             }else {
                 newState = NodeState.Closed;
             }
@@ -194,6 +209,7 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
         case TYPE_TOPICSUB_REQ:
             Collection<String> topics = (Collection)reqMessage.getField(NodeMessage.FIELD_TOPICS);
             session.setTopics(topics);
+            topicIndex.setSubscriptions(session, topics);
             respMessage = reqMessage.createResponse();
             break;
         case TYPE_TOPICPUB_REQ:
@@ -220,6 +236,10 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
                 newState = newState0;
             }
         }
+        //InitRep使用JSON发送, 之后切换为协商的格式
+        if ( codecName!=null ) {
+            session.setCodec(new NodeMessageCodec(codecName));
+        }
         if ( newState!=null ) {
             session.changeState(newState);
             if ( newState==NodeState.Ready) {
@@ -254,6 +274,7 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
         session.init(initMessage);
         result = initMessage.createResponse();
         result.setField(NodeMessage.FIELD_NODE_ID, session.getId());
+        result.setField(NodeMessage.FIELD_CODEC, NodeMessageCodec.negotiate(initMessage.getField(NodeMessage.FIELD_CODECS)));
         result.setErrCode(0);
         if ( logger.isInfoEnabled()) {
             logger.info("Session "+session.getConsistentId()+"/"+session.getId()+" addr "+session.getRemoteAddress()+" is ready");
@@ -265,6 +286,7 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
      * 关闭WebSocket Session
      */
     private void closeSession(NodeSessionImpl session) {
+        topicIndex.unsubscribeAll(session);
         if ( sessions.remove(session.getId())!=null ) {
             if ( logger.isInfoEnabled() ) {
                 logger.info("Session "+session.getConsistentId()+"/"+session.getId()+" addr "+session.getRemoteAddress()+" is closed");
@@ -279,8 +301,8 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
      */
     private void doTopicPub(NodeSessionImpl session, NodeMessage msg) {
         String topic = ConversionUtil.toString(msg.getField(NodeMessage.FIELD_TOPIC));
-        for(NodeSessionImpl session0:sessions.values()) {
-            if ( session0.getState()==NodeState.Ready && session0!=session && session0.isTopicMatch(topic) ) {
+        for(NodeSessionImpl session0:topicIndex.match(topic)) {
+            if ( session0.getState()==NodeState.Ready && session0!=session ) {
                 try{
                     session0.send(msg);
                 }catch(Throwable t) {
@@ -291,31 +313,105 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
         doDispatchTopic(msg);
     }
 
+    private void performDataQuery(NodeSessionImpl session, NodeMessage req) {
+        performDataQuery(session, req, TraderHomeUtil.getExchangeableData());
+    }
+
     /**
-     * 执行查询
+     * 执行查询, 按行分块返回查询结果, 每块都包含CSV表头, 最后一块moreData为false.
+     * <BR>逐行读取数据文件, 同步发送每一块, 发送阻塞时暂停读取, 内存占用只与块大小有关
      */
-    private void performDataQuery(NodeSessionImpl session, NodeMessage req) {
-        NodeMessage resp = req.createResponse();
+    void performDataQuery(NodeSessionImpl session, NodeMessage req, ExchangeableData edata) {
+        int chunkRows = ConversionUtil.toInt(req.getField(NodeMessage.FIELD_CHUNK_ROWS), 0);
+        if ( chunkRows<=0 ) {
+            chunkRows = DEFAULT_DATAQUERY_CHUNK_ROWS;
+        }
+        String header = null;
+        List<String> rows = new ArrayList<>(chunkRows);
+        int totalRows = 0;
+        NodeMessage resp = null;
         try {
             String exchangeable0 = ConversionUtil.toString(req.getField(NodeMessage.FIELD_EXCHANGEABLE));
             String dataInfo0 = ConversionUtil.toString(req.getField(NodeMessage.FIELD_DATA_INFO));
             LocalDate tradingDay = DateUtil.str2localdate(ConversionUtil.toString(req.getField(NodeMessage.FIELD_TRADING_DAY)));
+            LocalDate endTradingDay = DateUtil.str2localdate(ConversionUtil.toString(req.getField(NodeMessage.FIELD_END_TRADING_DAY)));
             ExchangeableData.DataInfo dataInfo = ExchangeableData.DataInfo.parse(dataInfo0);
             Exchangeable exchangeable = Exchangeable.fromString(exchangeable0);
             if ( exchangeable!=null && dataInfo!=null ) {
-                ExchangeableData edata = TraderHomeUtil.getExchangeableData();
-                String data = edata.load(exchangeable, dataInfo, tradingDay);
-                resp.setField(NodeMessage.FIELD_DATA, data);
+                List<LocalDate> tradingDays = new ArrayList<>();
+                if ( endTradingDay==null ) {
+                    tradingDays.add(tradingDay);
+                } else {
+                    for(LocalDate day=tradingDay; day!=null && day.compareTo(endTradingDay)<=0; day=MarketDayUtil.nextMarketDay(exchangeable.exchange(), day)) {
+                        if ( edata.exists(exchangeable, dataInfo, day) ) {
+                            tradingDays.add(day);
+                        }
+                    }
+                }
+                for(LocalDate day:tradingDays) {
+                    try(BufferedReader reader = edata.openReader(exchangeable, dataInfo, day);){
+                        String line = reader.readLine();
+                        if ( header==null ) {
+                            header = line;
+                        }
+                        while( (line=reader.readLine())!=null ) {
+                            if ( line.isEmpty() ) {
+                                continue;
+                            }
+                            rows.add(line);
+                            totalRows++;
+                            if ( rows.size()>=chunkRows ) {
+                                if ( !sendDataChunk(session, req, header, rows, true) ) {
+                                    return;
+                                }
+                                rows.clear();
+                            }
+                        }
+                    }
+                }
             }
         } catch(Throwable t) {
+            logger.error("Session "+session.getId()+" data query "+req+" failed: "+t, t);
+            resp = req.createResponse();
             resp.setErrCode(1);
             resp.setErrMsg(t.toString());
         }
+        if ( resp==null ) {
+            if ( logger.isDebugEnabled() ) {
+                logger.debug("Session "+session.getId()+" data query "+req+" returns "+totalRows+" rows");
+            }
+            sendDataChunk(session, req, header, rows, false);
+        } else {
+            try{
+                session.send(resp);
+            }catch(Throwable t) {
+                closeSession(session);
+            }
+        }
+    }
+
+    private boolean sendDataChunk(NodeSessionImpl session, NodeMessage req, String header, List<String> rows, boolean moreData) {
+        if ( session.getState()!=NodeState.Ready ) {
+            return false;
+        }
+        NodeMessage resp = req.createResponse();
+        if ( header!=null ) {
+            StringBuilder data = new StringBuilder(header.length()+rows.size()*128);
+            data.append(header).append("\n");
+            for(String row:rows) {
+                data.append(row).append("\n");
+            }
+            resp.setField(NodeMessage.FIELD_DATA, data.toString());
+        }
+        resp.setField(NodeMessage.FIELD_MORE_DATA, moreData);
         try{
             session.send(resp);
         }catch(Throwable t) {
+            logger.error("Session "+session.getId()+" send data chunk failed: "+t);
             closeSession(session);
+            return false;
         }
+        return true;
     }
 
     protected void asyncNotifySessionAdded(NodeSession session) {
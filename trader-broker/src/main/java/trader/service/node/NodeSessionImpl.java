@@ -8,7 +8,9 @@ import java.util.Map;
 import java.util.Set;
 
 import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
 
@@ -41,6 +43,10 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
     private long creationTime;
     private volatile long lastRecvTime;
     private volatile long lastSentTime;
+    /**
+     * 消息编码, 发送InitRep之后切换为协商的格式
+     */
+    private volatile NodeMessageCodec codec = new NodeMessageCodec(NodeMessageCodec.CODEC_JSON);
 
     private long totalMessagesSent;
     private long totalMessagesRecv;
@@ -113,7 +119,15 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
     }
 
     public boolean isTopicMatch(String topic) {
-        return topics.contains(topic);
+        if ( topics.contains(topic) ) {
+            return true;
+        }
+        for(String topic0:topics) {
+            if ( TopicTrie.isMatch(topic0, topic) ) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public String getRemoteAddress() {
@@ -128,6 +142,14 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
         return stateTime;
     }
 
+    public NodeMessageCodec getCodec() {
+        return codec;
+    }
+
+    void setCodec(NodeMessageCodec codec) {
+        this.codec = codec;
+    }
+
     public void init(NodeMessage initMessage) {
         consistentId = (String)initMessage.getField(NodeMessage.FIELD_NODE_CONSISTENT_ID);
         type = ConversionUtil.toEnum(NodeType.class, initMessage.getField(NodeMessage.FIELD_NODE_TYPE));
@@ -140,7 +162,11 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
             throw new AppException(ServiceErrorConstants.ERR_NODE_STATE_NOT_READY, "Session "+getConsistentId()+"/"+getId()+" is not ready");
         }
         try{
-            wsSession.sendMessage(new TextMessage(responseMessage.toString()));
+            if ( codec.isBinary() ) {
+                wsSession.sendMessage(new BinaryMessage(codec.encode(responseMessage)));
+            } else {
+                wsSession.sendMessage(new TextMessage(responseMessage.toString()));
+            }
             lastSentTime = System.currentTimeMillis();
             totalMessagesSent++;
         }catch(Throwable e) {
@@ -149,10 +175,20 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
         }
     }
 
-    protected void onMessage(String payload) {
+    protected void onMessage(WebSocketMessage<?> wsMessage) {
         lastRecvTime = System.currentTimeMillis();
         totalMessagesRecv++;
-        nodeService.onSessionMessage(this, payload);
+        nodeService.onSessionMessage(this, wsMessage);
+    }
+
+    /**
+     * 根据WebSocket消息类型解码: TextMessage 是JSON, BinaryMessage 使用二进制格式
+     */
+    NodeMessage decode(WebSocketMessage<?> wsMessage) throws Exception {
+        if ( wsMessage instanceof BinaryMessage ) {
+            return codec.decode(((BinaryMessage)wsMessage).getPayload());
+        }
+        return NodeMessage.fromString(wsMessage.getPayload().toString());
     }
 
     public void close() {
@@ -188,6 +224,7 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
         }
         json.addProperty("type", getType().name());
         json.addProperty("state", getState().name());
+        json.addProperty("codec", codec.getName());
         json.addProperty("stateTime", stateTime);
         if ( attrs!=null ) {
             json.add("attrs", JsonUtil.object2json(attrs));
@@ -1,7 +1,5 @@
 package trader.service.node;
 
-import java.nio.charset.Charset;
-
 import jakarta.annotation.PostConstruct;
 
 import org.slf4j.Logger;
@@ -12,8 +10,6 @@ import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import trader.common.util.StringUtil;
-
 public class NodeSessionWebSocketHandler implements WebSocketHandler, NodeConstants {
     private final static Logger logger = LoggerFactory.getLogger(NodeSessionWebSocketHandler.class);
 
@@ -41,14 +37,7 @@ public class NodeSessionWebSocketHandler implements WebSocketHandler, NodeConsta
         if ( nodeSession==null ){
             nodeSession = nodeMgmtService.onSessionConnected(session);
         }
-        String text = null;
-        Object payload = message.getPayload();
-        if ( payload instanceof byte[] ){
-            text = new String((byte[])payload, 0, message.getPayloadLength(), StringUtil.UTF8);
-        }else{
-            text = payload.toString();
-        }
-        nodeSession.onMessage(text);
+        nodeSession.onMessage(message);
     }
 
     @Override
@@ -0,0 +1,163 @@
+package trader.service.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.ConversionUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+
+/**
+ * 数据查询按行分块返回: 每块包含表头, 不超过chunkRows行, 只有最后一块moreData为false
+ */
+public class NodeServiceDataQueryTest implements NodeConstants {
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static LocalDate day1 = DateUtil.str2localdate("20200803");
+    static LocalDate day2 = DateUtil.str2localdate("20200804");
+    static String HEADER = "col1,col2";
+
+    File dataDir;
+    ExchangeableData data;
+    NodeServiceImpl nodeService;
+    NodeSessionImpl session;
+    List<NodeMessage> sent = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        dataDir = Files.createTempDirectory("nodeDataQuery").toFile();
+        data = new ExchangeableData(dataDir, false);
+        data.save(AP010, ExchangeableData.TICK_CTP, day1, HEADER+"\n"+rows(1, 5));
+        data.save(AP010, ExchangeableData.TICK_CTP, day2, HEADER+"\n"+rows(6, 4));
+
+        nodeService = new NodeServiceImpl();
+        session = new NodeSessionImpl(nodeService, createWsSession());
+        session.changeState(NodeState.Ready);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteDirectory(dataDir);
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        NodeMessage req = createReq(day1, day2, 4);
+        nodeService.performDataQuery(session, req, data);
+
+        assertEquals(3, sent.size());
+        List<String> allRows = new ArrayList<>();
+        for(int i=0;i<sent.size();i++) {
+            NodeMessage resp = sent.get(i);
+            assertEquals(TYPE_DATAQUERY_REP, resp.getType());
+            assertEquals(req.getId(), resp.getReqId());
+            assertEquals(0, resp.getErrCode());
+            assertEquals(i<sent.size()-1, ConversionUtil.toBoolean(resp.getField(NodeMessage.FIELD_MORE_DATA)));
+            List<String> lines = Arrays.asList(ConversionUtil.toString(resp.getField(NodeMessage.FIELD_DATA)).split("\n"));
+            assertEquals(HEADER, lines.get(0));
+            assertTrue(lines.size()-1<=4);
+            allRows.addAll(lines.subList(1, lines.size()));
+        }
+        assertEquals(rows(1, 9), String.join("\n", allRows));
+    }
+
+    @Test
+    public void testSingleDay() throws Exception {
+        NodeMessage req = createReq(day2, null, 0);
+        nodeService.performDataQuery(session, req, data);
+
+        assertEquals(1, sent.size());
+        NodeMessage resp = sent.get(0);
+        assertFalse(ConversionUtil.toBoolean(resp.getField(NodeMessage.FIELD_MORE_DATA)));
+        assertEquals(HEADER+"\n"+rows(6, 4)+"\n", resp.getField(NodeMessage.FIELD_DATA));
+    }
+
+    @Test
+    public void testNoData() throws Exception {
+        NodeMessage req = createReq(day1.minusYears(1), null, 0);
+        nodeService.performDataQuery(session, req, data);
+
+        assertEquals(1, sent.size());
+        NodeMessage resp = sent.get(0);
+        assertEquals(req.getId(), resp.getReqId());
+        assertTrue(resp.getErrCode()!=0);
+        assertNull(resp.getField(NodeMessage.FIELD_DATA));
+    }
+
+    /**
+     * 会话不再是Ready状态时停止读取和发送
+     */
+    @Test
+    public void testSessionClosed() throws Exception {
+        session.changeState(NodeState.Closing);
+        nodeService.performDataQuery(session, createReq(day1, day2, 4), data);
+        assertTrue(sent.isEmpty());
+    }
+
+    private NodeMessage createReq(LocalDate tradingDay, LocalDate endTradingDay, int chunkRows) {
+        NodeMessage req = new NodeMessage(TYPE_DATAQUERY_REQ);
+        req.setField(NodeMessage.FIELD_EXCHANGEABLE, AP010.toString());
+        req.setField(NodeMessage.FIELD_DATA_INFO, ExchangeableData.TICK_CTP.name());
+        req.setField(NodeMessage.FIELD_TRADING_DAY, DateUtil.date2str(tradingDay));
+        if ( endTradingDay!=null ) {
+            req.setField(NodeMessage.FIELD_END_TRADING_DAY, DateUtil.date2str(endTradingDay));
+        }
+        if ( chunkRows>0 ) {
+            req.setField(NodeMessage.FIELD_CHUNK_ROWS, chunkRows);
+        }
+        return req;
+    }
+
+    private static String rows(int begin, int count) {
+        List<String> rows = new ArrayList<>();
+        for(int i=begin;i<begin+count;i++) {
+            rows.add("r"+i+","+i);
+        }
+        return String.join("\n", rows);
+    }
+
+    /**
+     * 只实现NodeSessionImpl用到的方法, 发送的消息解析后记录在sent中
+     */
+    private WebSocketSession createWsSession() {
+        return (WebSocketSession)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {WebSocketSession.class}, (proxy, method, args)->{
+            switch(method.getName()) {
+            case "getId":
+                return "test";
+            case "getRemoteAddress":
+                return new InetSocketAddress("127.0.0.1", 0);
+            case "getHandshakeHeaders":
+                return new HttpHeaders();
+            case "getAttributes":
+                return new HashMap<>();
+            case "sendMessage":
+                sent.add(NodeMessage.fromString(((TextMessage)args[0]).getPayload()));
+                return null;
+            default:
+                return null;
+            }
+        });
+    }
+
+}
@@ -22,6 +22,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.google.gson.JsonArray;
+
 import trader.api.ControllerConstants;
 import trader.common.util.JsonUtil;
 import trader.service.stats.StatsAggregator;
@@ -176,6 +178,40 @@ public class StatsController {
         return JsonUtil.json2str(JsonUtil.object2json(result),pretty);
     }
 
+    /**
+     * 统计项历史数据, 从降采样后的数据返回, 不扫描原始采样
+     *
+     * @param resolution 精度(秒): 0 原始采样, 60 分钟(缺省), 3600 小时
+     * @param begin 开始时间(epoch秒)
+     */
+    @RequestMapping(path=URI_PREFIX+"/history/{item:.+}",
+            method=RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public String getStatsHistory(@PathVariable(value="item") String itemKey, @RequestParam(name="resolution", required=false, defaultValue="60") int resolution, @RequestParam(name="begin", required=false, defaultValue="0") long begin, @RequestParam(name="pretty", required = false)boolean pretty)
+    {
+        if( statsAggregator==null ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        StatsItemAggregation item = statsAggregator.getAggregatedValue(itemKey);
+        if ( item==null ) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        double[][] history = null;
+        try {
+            history = item.getHistory(resolution, begin);
+        }catch(IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        JsonArray result = new JsonArray();
+        for(double[] row:history) {
+            JsonArray r = new JsonArray();
+            r.add((long)row[0]);
+            r.add(row[1]);
+            result.add(r);
+        }
+        return JsonUtil.json2str(result, pretty);
+    }
+
     private static String number2str(Object num) {
         if ( num instanceof Double ) {
             double dv = ((Double)num).doubleValue();
@@ -68,10 +68,19 @@ public abstract class AbsNodeEndpoint implements NodeEndpoint {
         }
     }
 
+    /**
+     * 按返回消息的reqId唤醒等待的请求, 每个请求只匹配一次
+     * <BR>旧版本的对端不返回reqId, 这时按发送顺序匹配最早的请求
+     */
     protected boolean doReplyNotify(NodeMessage msg) {
         boolean found = false;
         if ( msg.getType().endsWith(NodeConstants.TYPE_SUFFIX_REP) ) {
-            ReqItem item = pendingReqs.get(msg.getReqId());
+            ReqItem item = null;
+            if ( msg.getReqId()!=0 ) {
+                item = pendingReqs.remove(msg.getReqId());
+            } else {
+                item = removeOldestPendingReq();
+            }
             if ( item!=null ) {
                 item.responseMsg = msg;
                 synchronized(item) {
@@ -83,4 +92,17 @@ public abstract class AbsNodeEndpoint implements NodeEndpoint {
         return found;
     }
 
+    /**
+     * 请求消息的ID递增分配, 最小的ID就是最早的请求
+     */
+    private synchronized ReqItem removeOldestPendingReq() {
+        int oldestReqId = 0;
+        for(Integer reqId:pendingReqs.keySet()) {
+            if ( oldestReqId==0 || reqId<oldestReqId ) {
+                oldestReqId = reqId;
+            }
+        }
+        return pendingReqs.remove(oldestReqId);
+    }
+
 }
@@ -51,10 +51,12 @@ public class PluginImpl implements Plugin, AutoCloseable {
 
     static class ExposedInterface{
         Class clazz;
+        String interfaceClass;
         Object instance;
 
-        ExposedInterface(Class clazz){
+        ExposedInterface(Class clazz, String interfaceClass){
             this.clazz = clazz;
+            this.interfaceClass = interfaceClass;
         }
 
         public boolean isPluginAware() {
@@ -104,11 +106,28 @@ public class PluginImpl implements Plugin, AutoCloseable {
     private Map<String, List<ExposedInterface>> exposedClasses = new HashMap<>();
 
     private long lastModified;
+    /**
+     * 扫描索引文件目录, 为空不使用索引
+     */
+    private File indexDir;
+    /**
+     * 最近一次加载是否直接使用了索引
+     */
+    private boolean indexed;
 
     public PluginImpl(BeansContainer beansContainer, File pluginDir) throws IOException
+    {
+        this(beansContainer, pluginDir, PluginScanIndex.getDefaultDirectory());
+    }
+
+    /**
+     * @param indexDir 扫描索引文件目录, 为空时每次都扫描全部类
+     */
+    public PluginImpl(BeansContainer beansContainer, File pluginDir, File indexDir) throws IOException
     {
         this.beansContainer = beansContainer;
         this.pluginDir = pluginDir;
+        this.indexDir = indexDir;
         this.lastModified = listUpdateFiles(0, new ArrayList<>());
         props = new Properties();
         try(InputStream is = new FileInputStream(new File(pluginDir, FILE_DESCRIPTOR));){
@@ -311,12 +330,58 @@ public class PluginImpl implements Plugin, AutoCloseable {
         return true;
     }
 
-    @SuppressWarnings("rawtypes")
+    boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * 重新加载实现类. classpath文件内容与索引相同时直接按索引加载, 否则使用ClassGraph扫描并更新索引
+     */
     private void reloadBeans() throws IOException
     {
         destroyBeans();
         initExposedInterfaces();
         final List<URL> urls = initClassLoader();
+        File indexFile = null;
+        PluginScanIndex prevIndex = null, index = null;
+        if ( indexDir!=null ) {
+            indexFile = PluginScanIndex.getIndexFile(indexDir, pluginDir, getId());
+            prevIndex = PluginScanIndex.load(indexFile);
+            index = PluginScanIndex.create(pluginDir, urls, prevIndex);
+        }
+        indexed = prevIndex!=null && prevIndex.getKey().equals(index.getKey());
+        List<String> beanClasses = new ArrayList<>();
+        if ( indexed ) {
+            for(PluginScanIndex.BeanEntry bean:prevIndex.getBeans()) {
+                beanClasses.add(bean.beanClass);
+            }
+        } else {
+            beanClasses = scanBeanClasses(urls);
+        }
+        List<PluginScanIndex.BeanEntry> beans = new ArrayList<>();
+        for(String beanClass:beanClasses) {
+            ExposedInterface i = loadBeanClass(beanClass);
+            if ( i!=null ) {
+                beans.add(new PluginScanIndex.BeanEntry(i.interfaceClass, beanClass, i.getPurpose()));
+            }
+        }
+        if ( index!=null && index.needsSave(prevIndex) ) {
+            index.withBeans(beans).save(indexFile);
+        }
+        if ( logger.isInfoEnabled() ) {
+            String msg = "Plugin "+getId()+" load "+exposedClasses.size()+" exposed interfaces"+(indexed?" from index":"")+": "+exposedClasses.keySet();
+            if ( exposedClasses.size()>0 ) {
+                logger.info(msg);
+            }else {
+                logger.debug(msg);
+            }
+        }
+    }
+
+    /**
+     * 使用ClassGraph扫描classpath, 返回有Discoverable标注的类
+     */
+    private List<String> scanBeanClasses(List<URL> urls) {
         ClasspathElementFilter urlFilter = new ClasspathElementFilter() {
             @Override
             public boolean includeClasspathElement(String classpathElementPathStr) {
@@ -344,57 +409,60 @@ public class PluginImpl implements Plugin, AutoCloseable {
                 classGraph.acceptJars(f.getName());
             }
         }
-        ScanResult scanResult = classGraph.scan();
-        for(ClassInfo classInfo:scanResult.getAllStandardClasses()) {
-            if ( classInfo.getAnnotationInfo(Discoverable.class.getName())==null ) {
-                continue;
-            }
-            Class clazz = null;
-            try{
-                clazz = classInfo.loadClass();
-            }catch(Throwable t) {}
-            if ( null==clazz || clazz.getClassLoader()!=this.getClassLoader()) {
-                continue;
-            }
-            boolean hasDefaultConstructor = false;
-            for(Constructor c: clazz.getConstructors()){
-                if ( c.getParameterCount()==0 ){
-                    hasDefaultConstructor = true;
+        List<String> result = new ArrayList<>();
+        try(ScanResult scanResult = classGraph.scan();){
+            for(ClassInfo classInfo:scanResult.getAllStandardClasses()) {
+                if ( classInfo.getAnnotationInfo(Discoverable.class.getName())!=null ) {
+                    result.add(classInfo.getName());
                 }
             }
-            if ( !hasDefaultConstructor ){
-                continue;
-            }
-            Discoverable d = null;
-            try {
-                d= (Discoverable)clazz.getAnnotation(Discoverable.class);
-            }catch(Throwable t) {}
-            if ( d==null ) {
-                continue;
-            }
-            List<ExposedInterface> list = exposedClasses.get( d.interfaceClass().getName() );
-            if (list==null) {
-                list = new ArrayList<>();
-                exposedClasses.put(d.interfaceClass().getName(), list);
-            }
-            ExposedInterface i = new ExposedInterface(clazz);
-            list.add(i);
-            if ( i.isPluginAware() ) {
-                try {
-                    i.getInstance(beansContainer);
-                }catch(Throwable t) {
-                    logger.error("Plugin "+getId()+" instant plugin aware class "+clazz+" failed", t);
-                }
+        }
+        return result;
+    }
+
+    /**
+     * 加载实现类, 只接受本插件ClassLoader加载, 有缺省构造函数和Discoverable标注的类
+     */
+    @SuppressWarnings("rawtypes")
+    private ExposedInterface loadBeanClass(String className) {
+        Class clazz = null;
+        try{
+            clazz = Class.forName(className, false, getClassLoader());
+        }catch(Throwable t) {}
+        if ( null==clazz || clazz.getClassLoader()!=this.getClassLoader()) {
+            return null;
+        }
+        boolean hasDefaultConstructor = false;
+        for(Constructor c: clazz.getConstructors()){
+            if ( c.getParameterCount()==0 ){
+                hasDefaultConstructor = true;
             }
         }
-        if ( logger.isInfoEnabled() ) {
-            String msg = "Plugin "+getId()+" load "+exposedClasses.size()+" exposed interfaces: "+exposedClasses.keySet();
-            if ( exposedClasses.size()>0 ) {
-                logger.info(msg);
-            }else {
-                logger.debug(msg);
+        if ( !hasDefaultConstructor ){
+            return null;
+        }
+        Discoverable d = null;
+        try {
+            d= (Discoverable)clazz.getAnnotation(Discoverable.class);
+        }catch(Throwable t) {}
+        if ( d==null ) {
+            return null;
+        }
+        List<ExposedInterface> list = exposedClasses.get( d.interfaceClass().getName() );
+        if (list==null) {
+            list = new ArrayList<>();
+            exposedClasses.put(d.interfaceClass().getName(), list);
+        }
+        ExposedInterface i = new ExposedInterface(clazz, d.interfaceClass().getName());
+        list.add(i);
+        if ( i.isPluginAware() ) {
+            try {
+                i.getInstance(beansContainer);
+            }catch(Throwable t) {
+                logger.error("Plugin "+getId()+" instant plugin aware class "+clazz+" failed", t);
             }
         }
+        return i;
     }
 
     /**
@@ -0,0 +1,245 @@
+package trader.service.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.common.util.FileUtil;
+import trader.common.util.JsonUtil;
+import trader.common.util.TraderHomeUtil;
+
+/**
+ * 插件类扫描结果的索引文件.
+ * <BR>记录插件classpath下每个jar/class文件的MD5, 以及扫描出的Discoverable实现类: 接口, 实现类, purpose
+ * <BR>文件大小和修改时间不变时沿用上次的MD5, 所有文件的MD5都没有变化时直接使用索引中的实现类, 不再用ClassGraph扫描
+ */
+class PluginScanIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PluginScanIndex.class);
+
+    private static final int VERSION = 1;
+
+    static class FileEntry {
+        final long size;
+        final long lastModified;
+        final String md5;
+
+        FileEntry(long size, long lastModified, String md5){
+            this.size = size;
+            this.lastModified = lastModified;
+            this.md5 = md5;
+        }
+    }
+
+    static class BeanEntry {
+        final String interfaceClass;
+        final String beanClass;
+        final String purpose;
+
+        BeanEntry(String interfaceClass, String beanClass, String purpose){
+            this.interfaceClass = interfaceClass;
+            this.beanClass = beanClass;
+            this.purpose = purpose;
+        }
+    }
+
+    /**
+     * key: 相对插件目录的路径
+     */
+    private final Map<String, FileEntry> files;
+    private final String key;
+    private final List<BeanEntry> beans;
+
+    private PluginScanIndex(Map<String, FileEntry> files, String key, List<BeanEntry> beans){
+        this.files = files;
+        this.key = key;
+        this.beans = beans;
+    }
+
+    /**
+     * 全部文件MD5的MD5
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public List<BeanEntry> getBeans(){
+        return Collections.unmodifiableList(beans);
+    }
+
+    /**
+     * 使用新的扫描结果创建索引
+     */
+    public PluginScanIndex withBeans(List<BeanEntry> beans) {
+        return new PluginScanIndex(files, key, new ArrayList<>(beans));
+    }
+
+    /**
+     * 文件列表, 大小或修改时间与之前的索引不同时需要保存
+     */
+    public boolean needsSave(PluginScanIndex prev) {
+        if ( prev==null || !key.equals(prev.key) || files.size()!=prev.files.size() ) {
+            return true;
+        }
+        for(Map.Entry<String, FileEntry> entry:files.entrySet()) {
+            FileEntry prevEntry = prev.files.get(entry.getKey());
+            if ( prevEntry==null || prevEntry.size!=entry.getValue().size || prevEntry.lastModified!=entry.getValue().lastModified ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缺省的索引文件目录: data/cache/pluginIndex
+     */
+    public static File getDefaultDirectory() {
+        return new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_CACHE), "pluginIndex");
+    }
+
+    /**
+     * 索引文件名: 插件ID-插件目录CRC32, 区分相同ID的不同插件目录
+     */
+    public static File getIndexFile(File indexDir, File pluginDir, String pluginId) {
+        CRC32 crc = new CRC32();
+        crc.update(pluginDir.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return new File(indexDir, pluginId+"-"+Long.toHexString(crc.getValue())+".json");
+    }
+
+    /**
+     * 计算classpath文件的MD5, prev中大小和修改时间相同的文件不再计算
+     */
+    public static PluginScanIndex create(File pluginDir, List<URL> urls, PluginScanIndex prev) throws IOException
+    {
+        String pluginPath = pluginDir.getAbsolutePath();
+        Map<String, FileEntry> files = new TreeMap<>();
+        for(URL url:urls) {
+            File file = new File(url.getFile());
+            List<File> classpathFiles;
+            if ( file.isDirectory() ) {
+                classpathFiles = FileUtil.listAllFiles(file, (File f)->{
+                    String fname = f.getName();
+                    return fname.endsWith(".class") || fname.endsWith(".jar");
+                });
+            } else {
+                classpathFiles = Collections.singletonList(file);
+            }
+            for(File f:classpathFiles) {
+                String path = f.getAbsolutePath();
+                if ( path.startsWith(pluginPath) ) {
+                    path = path.substring(pluginPath.length()+1);
+                }
+                path = path.replace(File.separatorChar, '/');
+                long size = f.length(), lastModified = f.lastModified();
+                FileEntry entry = null;
+                if ( prev!=null ) {
+                    entry = prev.files.get(path);
+                }
+                if ( entry==null || entry.size!=size || entry.lastModified!=lastModified ) {
+                    try {
+                        entry = new FileEntry(size, lastModified, FileUtil.md5(f));
+                    }catch(Exception e) {
+                        throw new IOException("Calculate MD5 of "+f+" failed", e);
+                    }
+                }
+                files.put(path, entry);
+            }
+        }
+        StringBuilder text = new StringBuilder(files.size()*64);
+        for(Map.Entry<String, FileEntry> entry:files.entrySet()) {
+            text.append(entry.getKey()).append(':').append(entry.getValue().md5).append('\n');
+        }
+        String key;
+        try {
+            key = FileUtil.md5(text.toString().getBytes(StandardCharsets.UTF_8));
+        }catch(Exception e) {
+            throw new IOException(e);
+        }
+        return new PluginScanIndex(files, key, new ArrayList<>());
+    }
+
+    /**
+     * 加载索引文件, 文件不存在或格式不对返回null
+     */
+    public static PluginScanIndex load(File indexFile) {
+        if ( !indexFile.exists() ) {
+            return null;
+        }
+        try {
+            JsonObject json = JsonParser.parseString(FileUtil.read(indexFile)).getAsJsonObject();
+            if ( JsonUtil.getPropertyAsInt(json, "version", 0)!=VERSION ) {
+                return null;
+            }
+            Map<String, FileEntry> files = new TreeMap<>();
+            for(Map.Entry<String, JsonElement> entry:json.getAsJsonObject("files").entrySet()) {
+                JsonObject fileJson = entry.getValue().getAsJsonObject();
+                files.put(entry.getKey(), new FileEntry(fileJson.get("size").getAsLong(), fileJson.get("lastModified").getAsLong(), fileJson.get("md5").getAsString()));
+            }
+            List<BeanEntry> beans = new ArrayList<>();
+            for(JsonElement beanElem:json.getAsJsonArray("beans")) {
+                JsonObject beanJson = beanElem.getAsJsonObject();
+                beans.add(new BeanEntry(beanJson.get("interface").getAsString(), beanJson.get("class").getAsString(), JsonUtil.getProperty(beanJson, "purpose", null)));
+            }
+            return new PluginScanIndex(files, json.get("key").getAsString(), beans);
+        }catch(Throwable t) {
+            logger.warn("Load plugin index "+indexFile+" failed: "+t);
+            return null;
+        }
+    }
+
+    /**
+     * 写入临时文件后改名, 避免并发加载时读到不完整的文件
+     */
+    public void save(File indexFile) {
+        JsonObject json = new JsonObject();
+        json.addProperty("version", VERSION);
+        json.addProperty("key", key);
+        JsonObject filesJson = new JsonObject();
+        for(Map.Entry<String, FileEntry> entry:files.entrySet()) {
+            FileEntry fileEntry = entry.getValue();
+            JsonObject fileJson = new JsonObject();
+            fileJson.addProperty("size", fileEntry.size);
+            fileJson.addProperty("lastModified", fileEntry.lastModified);
+            fileJson.addProperty("md5", fileEntry.md5);
+            filesJson.add(entry.getKey(), fileJson);
+        }
+        json.add("files", filesJson);
+        JsonArray beansJson = new JsonArray();
+        for(BeanEntry bean:beans) {
+            JsonObject beanJson = new JsonObject();
+            beanJson.addProperty("interface", bean.interfaceClass);
+            beanJson.addProperty("class", bean.beanClass);
+            if ( bean.purpose!=null ) {
+                beanJson.addProperty("purpose", bean.purpose);
+            }
+            beansJson.add(beanJson);
+        }
+        json.add("beans", beansJson);
+        try {
+            indexFile.getParentFile().mkdirs();
+            File tmpFile = new File(indexFile.getParentFile(), indexFile.getName()+".tmp");
+            FileUtil.save(tmpFile, JsonUtil.json2str(json, true));
+            if ( !tmpFile.renameTo(indexFile) ) {
+                indexFile.delete();
+                tmpFile.renameTo(indexFile);
+            }
+        }catch(Throwable t) {
+            logger.warn("Save plugin index "+indexFile+" failed: "+t);
+        }
+    }
+
+}
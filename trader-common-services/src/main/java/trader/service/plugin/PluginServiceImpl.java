@@ -14,7 +14,10 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 
 import jakarta.annotation.PostConstruct;
@@ -53,6 +56,10 @@ public class PluginServiceImpl implements PluginService, ServiceErrorConstants {
     private List<PluginListener> listeners = new ArrayList<>();
 
     private List<File> pluginRootDirs = new ArrayList<>();
+    /**
+     * 插件扫描索引文件目录
+     */
+    private File indexDir;
     private ServiceState state = ServiceState.NotInited;
 
     public void setBeansContainer(BeansContainer v) {
@@ -77,6 +84,7 @@ public class PluginServiceImpl implements PluginService, ServiceErrorConstants {
     private PluginService init0() {
         state = ServiceState.Starting;
         pluginRootDirs = initPluginRootDirs();
+        indexDir = PluginScanIndex.getDefaultDirectory();
         logger.info("Plugin root dirs: "+pluginRootDirs);
         rescan();
         String attachedPlugins = ConfigUtil.getString(ITEM_ATTACHED_PLUGINS);
@@ -282,20 +290,41 @@ public class PluginServiceImpl implements PluginService, ServiceErrorConstants {
             lastPlugins.put(p.getPluginDirectory(), p);
         }
 
+        //每个插件的加载/重新加载相互独立, 并行进行
+        Executor executor = executorService;
+        if ( executor==null ) {
+            executor = ForkJoinPool.commonPool();
+        }
+        List<CompletableFuture<PluginImpl>> futures = new ArrayList<>();
         for(File pluginDir:discoverAllPluginDirs(pluginRootDirs)) {
             PluginImpl plugin = lastPlugins.remove(pluginDir);
-            try {
-                if ( plugin==null ) {
-                    plugin = new PluginImpl(beansContainer, pluginDir);
-                    updatedPlugins.add(plugin);
-                } else { //updated, need to reload
-                    if( plugin.reload()) {
-                        updatedPlugins.add(plugin);
+            futures.add(CompletableFuture.supplyAsync(()->{
+                try {
+                    if ( plugin==null ) {
+                        PluginImpl newPlugin = new PluginImpl(beansContainer, pluginDir, indexDir);
+                        synchronized(updatedPlugins) {
+                            updatedPlugins.add(newPlugin);
+                        }
+                        return newPlugin;
+                    } else { //updated, need to reload
+                        if( plugin.reload()) {
+                            synchronized(updatedPlugins) {
+                                updatedPlugins.add(plugin);
+                            }
+                        }
+                        return plugin;
                     }
+                } catch (Throwable e) {
+                    logger.error("Plugin "+pluginDir+" reload failed", e);
+                    return null;
                 }
+            }, executor));
+        }
+        //保持插件目录顺序
+        for(CompletableFuture<PluginImpl> future:futures) {
+            PluginImpl plugin = future.join();
+            if ( plugin!=null ) {
                 allPlugins.add(plugin);
-            } catch (Throwable e) {
-                logger.error("Plugin "+pluginDir+" reload failed", e);
             }
         }
 
@@ -1,5 +1,16 @@
 package trader.service.stats;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +24,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import trader.common.util.TraderHomeUtil;
+
 /**
  * 简单统计指标归并服务
  */
@@ -21,16 +34,37 @@ public class SimpleStatsAggregatorImpl implements StatsAggregator {
 
     private static final Logger logger = LoggerFactory.getLogger(SimpleStatsAggregatorImpl.class);
 
+    /**
+     * 历史数据文件, 保存在work目录下
+     */
+    private static final String FILE_STATS_HISTORY = "statsHistory.dat";
+    private static final int FILE_MAGIC = 0x53544853;
+    private static final int FILE_VERSION = 1;
+    /**
+     * 超过这个时间没有新采样的统计项, 不再保存
+     */
+    private static final long MAX_KEEP_SECONDS = 14*24*3600;
+
     private Map<String, StatsItemAggregationEntry> statsItemEntries = new ConcurrentHashMap<>();
 
+    private File historyFile;
+
     @PostConstruct
     public void init() {
-
+        historyFile = new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_WORK), FILE_STATS_HISTORY);
+        if ( historyFile.exists() ) {
+            try {
+                load(historyFile);
+                logger.info("Load "+statsItemEntries.size()+" stats items history from "+historyFile);
+            }catch(Throwable t) {
+                logger.error("Load stats history from "+historyFile+" failed", t);
+            }
+        }
     }
 
     @PreDestroy
     public void destroy() {
-
+        saveHistory();
     }
 
     @Override
@@ -52,11 +86,91 @@ public class SimpleStatsAggregatorImpl implements StatsAggregator {
         return result;
     }
 
+    @Override
+    public StatsItemAggregation getAggregatedValue(String itemKey) {
+        return statsItemEntries.get(itemKey);
+    }
+
     @Scheduled(cron = "0 * * * * *")
     public void doAggregate() {
 
     }
 
+    /**
+     * 每10分钟保存一次历史数据
+     */
+    @Scheduled(cron = "30 */10 * * * *")
+    public void saveHistory() {
+        if ( historyFile==null || statsItemEntries.isEmpty() ) {
+            return;
+        }
+        try {
+            save(historyFile);
+        }catch(Throwable t) {
+            logger.error("Save stats history to "+historyFile+" failed", t);
+        }
+    }
+
+    /**
+     * 先写入临时文件再改名, 避免保存中途退出损坏文件
+     */
+    void save(File file) throws IOException {
+        long minSampleTime = Instant.now().getEpochSecond()-MAX_KEEP_SECONDS;
+        File tmpFile = new File(file.getParentFile(), file.getName()+".tmp");
+        file.getParentFile().mkdirs();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));){
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            List<StatsItemAggregationEntry> entries = new ArrayList<>();
+            for(StatsItemAggregationEntry entry:statsItemEntries.values()) {
+                if ( entry.getLastSampleTime()>=minSampleTime ) {
+                    entries.add(entry);
+                }
+            }
+            out.writeInt(entries.size());
+            for(StatsItemAggregationEntry entry:entries) {
+                StatsItem item = entry.getItem();
+                writeString(out, item.getNode());
+                writeString(out, item.getApplication());
+                writeString(out, item.getService());
+                writeString(out, item.getComponent());
+                writeString(out, item.getItem());
+                out.writeUTF(item.getType().name());
+                out.writeBoolean(item.isCumulativeOnRestart());
+                entry.write(out);
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void load(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));){
+            if ( in.readInt()!=FILE_MAGIC || in.readInt()!=FILE_VERSION ) {
+                throw new IOException("Unsupported stats history file "+file);
+            }
+            int count = in.readInt();
+            for(int i=0;i<count;i++) {
+                String node = readString(in);
+                StatsItem item = new StatsItem(readString(in), readString(in), readString(in), readString(in));
+                item.setNode(node);
+                item.setType(StatsItemType.valueOf(in.readUTF()));
+                item.setCumulativeOnRestart(in.readBoolean());
+                StatsItemAggregationEntry entry = new StatsItemAggregationEntry(item);
+                entry.read(in);
+                statsItemEntries.put(item.getKey(), entry);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        out.writeUTF(str!=null?str:"");
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        String str = in.readUTF();
+        return str.isEmpty()?null:str;
+    }
+
     private StatsItemAggregationEntry getOrCreateEntry(StatsItem item)
     {
         String key = item.getKey();
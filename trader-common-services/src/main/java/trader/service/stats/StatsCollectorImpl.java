@@ -53,6 +53,11 @@ public class StatsCollectorImpl implements StatsCollector {
      */
     private Map<StatsItem, StatsItemCollectionEntry> dynamicStatsItems = new ConcurrentHashMap<>();
 
+    /**
+     * Histogram items from registerHistogram
+     */
+    private Map<StatsItem, StatsItemHistogramEntry> histogramItems = new ConcurrentHashMap<>();
+
     private List<StatsItemFactory> itemFactories = new ArrayList<>();
 
     private String thisNodeName;
@@ -120,6 +125,18 @@ public class StatsCollectorImpl implements StatsCollector {
         getItem(statsItems, itemInfo).setValueGetter(itemValueGetter);
     }
 
+    @Override
+    public LatencyHistogram registerHistogram(StatsItem itemInfo) {
+        if ( StringUtil.isEmpty(itemInfo.getNode()) ) {
+            itemInfo.setNode(thisNodeName);
+        }
+        if ( StringUtil.isEmpty(itemInfo.getApplication())) {
+            itemInfo.setApplication(thisApplicationName);
+        }
+        itemInfo.setType(StatsItemType.Histogram);
+        return histogramItems.computeIfAbsent(itemInfo, (StatsItem item)->new StatsItemHistogramEntry(item)).getHistogram();
+    }
+
     @Override
     public void registerDynamicStatsItems(StatsItemFactory itemFactory) {
         itemFactories.add(itemFactory);
@@ -189,6 +206,10 @@ public class StatsCollectorImpl implements StatsCollector {
                 result.add(event);
             }
         }
+        //Sample percentiles of histogram items
+        for( StatsItemHistogramEntry histogramEntry:histogramItems.values() ) {
+            histogramEntry.sample(sampleTime, instantSample, result);
+        }
         //Sample all dynamic items
         for(StatsItemFactory itemFactory: itemFactories ){
             for(StatsItem dynamicItem:itemFactory.getStatsItems()){
@@ -0,0 +1,64 @@
+package trader.service.stats;
+
+import java.util.List;
+
+/**
+ * 延迟分布指标的采样: 每个分位数作为一个独立的实时指标发布
+ */
+class StatsItemHistogramEntry {
+
+    private static final String[] SUFFIXES = {"P50", "P99", "P999", "Max", "Count"};
+
+    private StatsItem item;
+
+    private LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * 分位数指标, 顺序同SUFFIXES
+     */
+    private StatsItem[] sampleItems;
+
+    public StatsItemHistogramEntry(StatsItem item) {
+        this.item = item;
+        sampleItems = new StatsItem[SUFFIXES.length];
+        for(int i=0;i<SUFFIXES.length;i++) {
+            StatsItem sampleItem = new StatsItem(item.getApplication(), item.getService(), item.getComponent(), item.getItem()+SUFFIXES[i]);
+            sampleItem.setNode(item.getNode());
+            sampleItem.setType(StatsItemType.Instant);
+            sampleItems[i] = sampleItem;
+        }
+    }
+
+    public StatsItem getItem() {
+        return item;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * 采样数据, 周期采样时清零直方图
+     */
+    public void sample(long sampleTime, boolean instantSample, List<StatsItemPublishEvent> result) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(!instantSample);
+        if ( !instantSample && snapshot.getTotalCount()==0 ) {
+            return;
+        }
+        double[] values = {
+                snapshot.getValueAtPercentile(50)
+                ,snapshot.getValueAtPercentile(99)
+                ,snapshot.getValueAtPercentile(99.9)
+                ,snapshot.getMax()
+                ,snapshot.getTotalCount()
+        };
+        for(int i=0;i<sampleItems.length;i++) {
+            StatsItemPublishEvent event = new StatsItemPublishEvent();
+            event.setItemInfo(sampleItems[i]);
+            event.setSampleTime(sampleTime);
+            event.setSampleValue(values[i]);
+            result.add(event);
+        }
+    }
+
+}
@@ -7,6 +7,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,25 +68,37 @@ public class AbstractConfigService implements ConfigService {
     protected class ConfigListenerEntry {
         private ConfigListener listener;
     	private String[] paths;
+        private String[] pathKeys;
         private Object[] pathValues;
 
         ConfigListenerEntry(String[] paths, ConfigListener listener){
             this.paths = paths;
             this.listener = listener;
+            this.pathKeys = new String[paths.length];
             this.pathValues = new Object[paths.length];
             for (int i = 0; i < paths.length; i++) {
+                pathKeys[i] = ConfigIndex.normalize(paths[i]);
                 pathValues[i] = getConfigValue(paths[i]);
             }
         }
 
-        void notifyListeners() {
+        /**
+         * @param changedKeys 值发生变化的规范路径
+         */
+        void notifyListeners(ConfigIndex prevIndex, Set<String> changedKeys) {
+            ConfigIndex index = configIndex;
             for (int i = 0; i < paths.length; i++) {
                 String path = paths[i];
+                String pathKey = pathKeys[i];
+                //规范路径没有变化时不需要重新查询
+                if ( !changedKeys.contains(pathKey) && (index.containsKey(pathKey) || prevIndex.containsKey(pathKey)) ) {
+                    continue;
+                }
                 Object oldValue = null;
                 if ( pathValues!=null ) {
                     oldValue = pathValues[i];
                 }
-                Object newData = getConfigValue(path);
+                Object newData = index.get(path);
                 if ( oldValue==null && newData==null) {
                     continue;
                 }
@@ -104,6 +117,10 @@ public class AbstractConfigService implements ConfigService {
 
     protected static Map<URI, ConfigProviderEntry> providers = new LinkedHashMap<>();
     protected static List<ConfigItem> globalItems = new ArrayList<>();
+    /**
+     * 与globalItems对应的扁平索引, 重新加载后整体替换
+     */
+    protected static volatile ConfigIndex configIndex = ConfigIndex.EMPTY;
     protected List<ConfigListenerEntry> listeners = new LinkedList<ConfigListenerEntry>();
 
     public AbstractConfigService() {
@@ -128,9 +145,17 @@ public class AbstractConfigService implements ConfigService {
     		logger.error("Reload config failed", t);
     	}
     	if ( changed ) {
+    	    ConfigIndex prevIndex = configIndex;
     		mergeGlobalItems();
-    		for(ConfigListenerEntry listenerEntry:this.listeners) {
-    			listenerEntry.notifyListeners();
+    		ConfigIndex index = configIndex;
+    		Set<String> changedKeys = index.diff(prevIndex);
+    		if ( logger.isDebugEnabled() ) {
+    		    logger.debug("Config reloaded, "+index.size()+" paths, changed: "+changedKeys);
+    		}
+    		synchronized(listeners) {
+        		for(ConfigListenerEntry listenerEntry:this.listeners) {
+        			listenerEntry.notifyListeners(prevIndex, changedKeys);
+        		}
     		}
     	}
     }
@@ -184,6 +209,7 @@ public class AbstractConfigService implements ConfigService {
     		}
     	}
     	globalItems = result;
+    	configIndex = new ConfigIndex(result);
     	return result;
     }
 
@@ -201,7 +227,27 @@ public class AbstractConfigService implements ConfigService {
     	}
     }
 
+    /**
+     * 当前配置的扁平索引
+     */
+    public static ConfigIndex getConfigIndex() {
+        return configIndex;
+    }
+
+    /**
+     * 返回配置路径对应值, rootItems为空时从全局配置的扁平索引中查询
+     */
     public static Object staticGetConfigValue(List<ConfigItem> rootItems, String configPath) {
+        if ( null==rootItems ) {
+            return configIndex.get(configPath);
+        }
+        return resolveValue(rootItems, configPath);
+    }
+
+    /**
+     * 按ConfigItem树逐级查找
+     */
+    static Object resolveValue(List<ConfigItem> rootItems, String configPath) {
     	String[] parts = StringUtil.split(configPath, "/|\\.");
         Object value = null;
         ConfigItem item = null;
@@ -259,6 +305,7 @@ public class AbstractConfigService implements ConfigService {
             } else if ( PARTY_ARRAY_IDX.matcher(part).matches()){
             	//abc[0]格式
             	Matcher m = PARTY_ARRAY_IDX.matcher(part);
+            	m.matches();
             	String part0 = m.group(1);
                 int idx = ConversionUtil.toInt(m.group(2), true);
                 int partIdx=-1;
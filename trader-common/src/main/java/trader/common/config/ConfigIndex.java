@@ -0,0 +1,159 @@
+package trader.common.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import trader.common.util.StringUtil;
+
+/**
+ * 配置参数的扁平索引, 每次加载/重新加载配置时创建, 创建后不再修改.
+ * <BR>规范路径为 / 分隔, 不带开头的 / , 例如 BasisService/web/httpPort
+ * <BR>加载时展开所有节点值和属性的规范路径, 同名节点第一个使用 name, 有id/name属性的使用 name#id
+ * <BR>其它格式的路径(abc[0], abc[] 等)第一次查询时按ConfigItem树解析, 结果在本索引内缓存
+ */
+public class ConfigIndex {
+
+    /**
+     * 缓存的查询结果最大数量, 防止动态拼接的路径无限增长
+     */
+    private static final int MAX_RESOLVED = 16*1024;
+
+    private static final Object NULL = new Object();
+
+    public static final ConfigIndex EMPTY = new ConfigIndex(Collections.emptyList());
+
+    private final List<ConfigItem> items;
+    /**
+     * 规范路径->值
+     */
+    private final Map<String, Object> values;
+    /**
+     * 原始路径->值, 包含NULL
+     */
+    private final ConcurrentHashMap<String, Object> resolved = new ConcurrentHashMap<>();
+
+    public ConfigIndex(List<ConfigItem> items) {
+        if ( null==items ) {
+            items = Collections.emptyList();
+        }
+        this.items = items;
+        Map<String, Object> values = new HashMap<>();
+        for(ConfigItem item:items) {
+            String key = item.getName();
+            if ( !values.containsKey(key) ) {
+                flatten(values, key, item);
+            }
+        }
+        this.values = values;
+    }
+
+    public List<ConfigItem> getItems(){
+        return items;
+    }
+
+    /**
+     * 规范路径数量
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * 查询配置值, 结果与 AbstractConfigService.staticGetConfigValue 相同
+     */
+    public Object get(String path) {
+        if ( null==path ) {
+            return null;
+        }
+        Object value = resolved.get(path);
+        if ( null==value ) {
+            String key = normalize(path);
+            if ( values.containsKey(key) ) {
+                value = values.get(key);
+            } else if ( path.endsWith("[]") ) {
+                //返回的List可以被修改, 不缓存
+                return AbstractConfigService.resolveValue(items, path);
+            } else {
+                value = AbstractConfigService.resolveValue(items, path);
+            }
+            if ( null==value ) {
+                value = NULL;
+            }
+            if ( resolved.size()<MAX_RESOLVED ) {
+                resolved.put(path, value);
+            }
+        }
+        return value==NULL?null:value;
+    }
+
+    /**
+     * 是否包含规范路径
+     */
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * 与之前的索引比较, 返回值发生变化(包括新增和删除)的规范路径
+     */
+    public Set<String> diff(ConfigIndex prev) {
+        Set<String> result = new HashSet<>();
+        for(Map.Entry<String, Object> entry:values.entrySet()) {
+            String key = entry.getKey();
+            if ( !prev.values.containsKey(key) || !Objects.equals(entry.getValue(), prev.values.get(key)) ) {
+                result.add(key);
+            }
+        }
+        for(String key:prev.values.keySet()) {
+            if ( !values.containsKey(key) ) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 转换为规范路径: /BasisService/web.httpPort 转换为 BasisService/web/httpPort
+     */
+    public static String normalize(String path) {
+        return String.join("/", StringUtil.split(path, ConfigItem.PATTERN_KEY_SPLIT));
+    }
+
+    /**
+     * 展开节点: 先属性后子节点, 同名时子节点优先, 与ConfigItem树的查询顺序一致
+     */
+    private static void flatten(Map<String, Object> values, String key, ConfigItem item) {
+        values.put(key, item.getValue());
+        for(Map.Entry<String, String> attr:item.getAttrs().entrySet()) {
+            values.put(key+"/"+attr.getKey(), attr.getValue());
+        }
+        List<ConfigItem> children = item.getChildren();
+        if ( null==children ) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        Set<String> ids = new HashSet<>();
+        for(ConfigItem child:children) {
+            String name = child.getName();
+            if ( names.add(name) ) {
+                flatten(values, key+"/"+name, child);
+            }
+            //与AbstractConfigService的 name#id 查询相同, 匹配id或name属性
+            String id = child.getAttr("id");
+            if ( !StringUtil.isEmpty(id) && ids.add(name+"#"+id) ) {
+                flatten(values, key+"/"+name+"#"+id, child);
+            }
+            String idName = child.getAttr("name");
+            if ( !StringUtil.isEmpty(idName) && ids.add(name+"#"+idName) ) {
+                flatten(values, key+"/"+name+"#"+idName, child);
+            }
+        }
+    }
+
+}
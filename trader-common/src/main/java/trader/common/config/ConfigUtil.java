@@ -1,6 +1,7 @@
 package trader.common.config;
 
 import java.lang.reflect.Method;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,12 +25,7 @@ public class ConfigUtil {
      * @return null if not found
      */
     public static String getString(String configPath) {
-        Object r = getObjectImpl(configPath, stackWalker.getCallerClass());
-        String result = null;
-        if ( r!=null ){
-            result = substituteStr(r.toString());
-        }
-        return result;
+        return toString(getObjectImpl(configPath, stackWalker.getCallerClass()), null);
     }
 
     public static<T extends Enum<T>> T getEnum(Class<T> enumClazz, String configPath, T defaultValue){
@@ -46,54 +42,23 @@ public class ConfigUtil {
      * @return default value if not found
      */
     public static String getString(String configPath, String defaultValue) {
-        Object r = getObjectImpl(configPath, stackWalker.getCallerClass());
-        String result = defaultValue;
-        if ( r!=null ){
-            result = substituteStr(r.toString());
-        }
-        return result;
+        return toString(getObjectImpl(configPath, stackWalker.getCallerClass()), defaultValue);
     }
 
     public static boolean getBoolean(String configPath, boolean defaultValue){
-        Object r = getObjectImpl(configPath, stackWalker.getCallerClass());
-        boolean result = defaultValue;
-        if ( !StringUtil.isEmpty(r) ){
-        	result = ConversionUtil.toBoolean(r, defaultValue);
-        }
-        return result;
+        return toBoolean(getObjectImpl(configPath, stackWalker.getCallerClass()), defaultValue);
     }
 
     public static int getInt(String configPath, int defaultValue){
-        Object r = getObjectImpl(configPath, stackWalker.getCallerClass());
-        int result = defaultValue;
-        try{
-        	if ( !StringUtil.isEmpty(r) ) {
-        		result = ConversionUtil.toInt(r);
-        	}
-        }catch(Throwable t) {}
-        return result;
+        return toInt(getObjectImpl(configPath, stackWalker.getCallerClass()), defaultValue);
     }
 
     public static long getLong(String configPath, long defaultValue){
-        Object r = getObjectImpl(configPath, stackWalker.getCallerClass());
-        long result = defaultValue;
-        try{
-        	if ( !StringUtil.isEmpty(r) ) {
-        		result = ConversionUtil.toLong(r);
-        	}
-        }catch(Throwable t) {}
-        return result;
+        return toLong(getObjectImpl(configPath, stackWalker.getCallerClass()), defaultValue);
     }
 
     public static double getDouble(String configPath, double defaultValue){
-        Object r = getObjectImpl(configPath, stackWalker.getCallerClass());
-        double result = defaultValue;
-        try{
-        	if ( !StringUtil.isEmpty(r) ) {
-        		result = ConversionUtil.toDouble(r);
-        	}
-        }catch(Throwable t) {}
-        return result;
+        return toDouble(getObjectImpl(configPath, stackWalker.getCallerClass()), defaultValue);
     }
 
     /**
@@ -103,11 +68,7 @@ public class ConfigUtil {
      * <BR>5m1s 转换为 301
      */
     public static long getTime(String configPath, int defaultSeconds) {
-        Object r = getObjectImpl(configPath, stackWalker.getCallerClass());
-        if ( StringUtil.isEmpty(r) ) {
-            return defaultSeconds;
-        }
-        return ConversionUtil.str2seconds(StringUtil.trim(ConversionUtil.toString(r)));
+        return toTime(getObjectImpl(configPath, stackWalker.getCallerClass()), defaultSeconds);
     }
 
     public static Object getObject(String configPath){
@@ -115,24 +76,60 @@ public class ConfigUtil {
         return r;
     }
 
+    /**
+     * 创建配置值句柄, 在循环或者每个事件中读取配置时使用, 转换结果与getString相同
+     */
+    public static ConfigValue<String> stringValue(String configPath, String defaultValue){
+        return new ConfigValue<>(configPath, getScopedProvider(stackWalker.getCallerClass()), (Object r)->toString(r, defaultValue));
+    }
+
+    public static ConfigValue<Boolean> booleanValue(String configPath, boolean defaultValue){
+        return new ConfigValue<>(configPath, getScopedProvider(stackWalker.getCallerClass()), (Object r)->toBoolean(r, defaultValue));
+    }
+
+    public static ConfigValue<Integer> intValue(String configPath, int defaultValue){
+        return new ConfigValue<>(configPath, getScopedProvider(stackWalker.getCallerClass()), (Object r)->toInt(r, defaultValue));
+    }
+
+    public static ConfigValue<Long> longValue(String configPath, long defaultValue){
+        return new ConfigValue<>(configPath, getScopedProvider(stackWalker.getCallerClass()), (Object r)->toLong(r, defaultValue));
+    }
+
+    public static ConfigValue<Double> doubleValue(String configPath, double defaultValue){
+        return new ConfigValue<>(configPath, getScopedProvider(stackWalker.getCallerClass()), (Object r)->toDouble(r, defaultValue));
+    }
+
+    /**
+     * 时间(秒), 与getTime相同
+     */
+    public static ConfigValue<Long> timeValue(String configPath, int defaultSeconds){
+        return new ConfigValue<>(configPath, getScopedProvider(stackWalker.getCallerClass()), (Object r)->toTime(r, defaultSeconds));
+    }
+
+    public static <T> ConfigValue<T> value(String configPath, Function<Object, T> converter){
+        return new ConfigValue<>(configPath, getScopedProvider(stackWalker.getCallerClass()), converter);
+    }
+
     private static Object getObjectImpl(String configPath, Class callerClass) {
+        return getObject(configPath, getScopedProvider(callerClass));
+    }
+
+    private static ConfigProvider getScopedProvider(Class callerClass) {
         ConfigProvider scopedConfigProvider = null;
-        {
-            Object scoped = null;
-            ClassLoader callerLoader = null;
-            if ( null!=callerClass)
-                callerLoader = callerClass.getClassLoader();
-            if ( null!=callerLoader && callerLoader instanceof ScopedURLClassLoader ) {
-                scoped = ((ScopedURLClassLoader)callerLoader).getScope();
-            }
-            if ( null!=scoped) {
-                try{
-                    Method getBeanMethod = scoped.getClass().getMethod("getBean", new Class[] {Class.class});
-                    scopedConfigProvider = (ConfigProvider)getBeanMethod.invoke(scoped, new Object[] {ConfigProvider.class});
-                }catch(Throwable t) {}
-            }
+        Object scoped = null;
+        ClassLoader callerLoader = null;
+        if ( null!=callerClass)
+            callerLoader = callerClass.getClassLoader();
+        if ( null!=callerLoader && callerLoader instanceof ScopedURLClassLoader ) {
+            scoped = ((ScopedURLClassLoader)callerLoader).getScope();
+        }
+        if ( null!=scoped) {
+            try{
+                Method getBeanMethod = scoped.getClass().getMethod("getBean", new Class[] {Class.class});
+                scopedConfigProvider = (ConfigProvider)getBeanMethod.invoke(scoped, new Object[] {ConfigProvider.class});
+            }catch(Throwable t) {}
         }
-        return getObject(configPath, scopedConfigProvider);
+        return scopedConfigProvider;
     }
 
     public static Object getObject(String configPath, ConfigProvider scopedConfigProvider) {
@@ -146,6 +143,59 @@ public class ConfigUtil {
         return r;
     }
 
+    private static String toString(Object r, String defaultValue) {
+        String result = defaultValue;
+        if ( r!=null ){
+            result = substituteStr(r.toString());
+        }
+        return result;
+    }
+
+    private static boolean toBoolean(Object r, boolean defaultValue) {
+        boolean result = defaultValue;
+        if ( !StringUtil.isEmpty(r) ){
+            result = ConversionUtil.toBoolean(r, defaultValue);
+        }
+        return result;
+    }
+
+    private static int toInt(Object r, int defaultValue) {
+        int result = defaultValue;
+        try{
+            if ( !StringUtil.isEmpty(r) ) {
+                result = ConversionUtil.toInt(r);
+            }
+        }catch(Throwable t) {}
+        return result;
+    }
+
+    private static long toLong(Object r, long defaultValue) {
+        long result = defaultValue;
+        try{
+            if ( !StringUtil.isEmpty(r) ) {
+                result = ConversionUtil.toLong(r);
+            }
+        }catch(Throwable t) {}
+        return result;
+    }
+
+    private static double toDouble(Object r, double defaultValue) {
+        double result = defaultValue;
+        try{
+            if ( !StringUtil.isEmpty(r) ) {
+                result = ConversionUtil.toDouble(r);
+            }
+        }catch(Throwable t) {}
+        return result;
+    }
+
+    private static long toTime(Object r, int defaultSeconds) {
+        if ( StringUtil.isEmpty(r) ) {
+            return defaultSeconds;
+        }
+        return ConversionUtil.str2seconds(StringUtil.trim(ConversionUtil.toString(r)));
+    }
+
     private static String substituteStr(String str) {
     	if ( StringUtil.isEmpty(str) ) {
     		return str;
@@ -0,0 +1,55 @@
+package trader.common.config;
+
+import java.util.function.Function;
+
+/**
+ * 配置值句柄, 由ConfigUtil.intValue/stringValue等方法创建.
+ * <BR>创建时确定路径和转换方式, 转换结果与当前的ConfigIndex一起缓存, 配置重新加载前get()只比较索引引用
+ * <BR>插件范围的配置(ScopedConfigProvider)不缓存, 每次按路径查询
+ */
+public class ConfigValue<T> {
+
+    private static class Resolved<T> {
+        final ConfigIndex index;
+        final T value;
+
+        Resolved(ConfigIndex index, T value){
+            this.index = index;
+            this.value = value;
+        }
+    }
+
+    private final String path;
+    private final ConfigProvider scopedProvider;
+    private final Function<Object, T> converter;
+    private volatile Resolved<T> resolved;
+
+    ConfigValue(String path, ConfigProvider scopedProvider, Function<Object, T> converter){
+        this.path = path;
+        this.scopedProvider = scopedProvider;
+        this.converter = converter;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public T get() {
+        if ( null!=scopedProvider ) {
+            return converter.apply(ConfigUtil.getObject(path, scopedProvider));
+        }
+        ConfigIndex index = AbstractConfigService.getConfigIndex();
+        Resolved<T> resolved = this.resolved;
+        if ( null==resolved || resolved.index!=index ) {
+            resolved = new Resolved<>(index, converter.apply(index.get(path)));
+            this.resolved = resolved;
+        }
+        return resolved.value;
+    }
+
+    @Override
+    public String toString() {
+        return path+"="+get();
+    }
+
+}
@@ -0,0 +1,564 @@
+package trader.common.exchangeable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+
+/**
+ * CTP TICK数据的二进制列存格式, 每个合约每个交易日一个文件.
+ * <BR>价格为定长long(PriceUtil.price2long), 时间戳和成交量为差值编码的变长整数, 字符串字段为字典索引.
+ * <BR>编码时检查每个价格都可以从long原样还原, 否则不能保存为二进制格式, 继续使用CSV.
+ * <BR>文件通过内存映射只读加载, 直接从映射内存解码为CTP原始数据对象, 不需要解析文本.
+ *
+ * <pre>
+ * 文件头: MAGIC(int) VERSION(short) 列数(short) TICK数(int)
+ * 字符串字典: 个数(short), 每个字符串 长度(short)+UTF8字节
+ * 列目录: 每列 编码(byte) 偏移(int) 长度(int)
+ * 列数据
+ * </pre>
+ */
+public class CtpTickColumnStore {
+    private final static Logger logger = LoggerFactory.getLogger(CtpTickColumnStore.class);
+
+    public static final int MAGIC = 0x43544B42; //"CTKB"
+    public static final short VERSION = 1;
+
+    private static final byte ENC_DICT = 1;
+    private static final byte ENC_INT = 2;
+    private static final byte ENC_LONG = 3;
+    private static final byte ENC_DELTA = 4;
+
+    /**
+     * 字符串字段: TradingDay, InstrumentID, ExchangeID, ExchangeInstID, ActionDay
+     */
+    private static final int COL_TRADING_DAY = 0;
+    private static final int COL_INSTRUMENT_ID = 1;
+    private static final int COL_EXCHANGE_ID = 2;
+    private static final int COL_EXCHANGE_INST_ID = 3;
+    private static final int COL_ACTION_DAY = 4;
+    /**
+     * UpdateTime+UpdateMillisec, 当日毫秒数
+     */
+    private static final int COL_TIME = 5;
+    private static final int COL_VOLUME = 6;
+    /**
+     * 价格类字段, 顺序见 getPrices/setPrices
+     */
+    private static final int COL_PRICE_BEGIN = 7;
+    private static final int PRICE_COUNT = 26;
+    /**
+     * 买卖挂单量 BidVolume1-5, AskVolume1-5
+     */
+    private static final int COL_VOLUME5_BEGIN = COL_PRICE_BEGIN+PRICE_COUNT;
+    private static final int VOLUME5_COUNT = 10;
+    private static final int COLUMN_COUNT = COL_VOLUME5_BEGIN+VOLUME5_COUNT;
+
+    private static final int MAX_STRINGS = 255;
+
+    /**
+     * 在映射内存上顺序解码TICK
+     */
+    private static class TickCursor {
+        private final ByteBuffer buf;
+        private final int size;
+        private final String[] strings;
+        private final int[] offsets;
+        private int index = -1;
+        private int timePos;
+        private int volumePos;
+        private long time;
+        private long volume;
+        /**
+         * 解码每个TICK时复用的临时数组
+         */
+        private final double[] prices = new double[PRICE_COUNT];
+        private final int[] volumes = new int[VOLUME5_COUNT];
+
+        private TickCursor(ByteBuffer buf, int size, String[] strings, int[] offsets) {
+            this.buf = buf;
+            this.size = size;
+            this.strings = strings;
+            this.offsets = offsets;
+            this.timePos = offsets[COL_TIME];
+            this.volumePos = offsets[COL_VOLUME];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean next() {
+            if ( index+1>=size ) {
+                return false;
+            }
+            index++;
+            time += readDelta(true);
+            volume += readDelta(false);
+            return true;
+        }
+
+        /**
+         * 价格字段, 顺序见 getPrices: 0 LastPrice, 15-24 BidPrice1/AskPrice1...BidPrice5/AskPrice5, 25 AveragePrice
+         */
+        private long getPrice(int priceIndex) {
+            return buf.getLong(offsets[COL_PRICE_BEGIN+priceIndex]+index*8);
+        }
+
+        /**
+         * 买卖挂单量: 0-4 BidVolume1-5, 5-9 AskVolume1-5
+         */
+        private int getVolume5(int volumeIndex) {
+            return buf.getInt(offsets[COL_VOLUME5_BEGIN+volumeIndex]+index*4);
+        }
+
+        /**
+         * 转换为CTP原始数据对象
+         */
+        CThostFtdcDepthMarketDataField toField() {
+            CThostFtdcDepthMarketDataField result = new CThostFtdcDepthMarketDataField();
+            result.TradingDay = getString(COL_TRADING_DAY);
+            result.InstrumentID = getString(COL_INSTRUMENT_ID);
+            result.ExchangeID = getString(COL_EXCHANGE_ID);
+            result.ExchangeInstID = getString(COL_EXCHANGE_INST_ID);
+            result.ActionDay = getString(COL_ACTION_DAY);
+            int millisOfDay = (int)time;
+            result.UpdateTime = secondOfDay2str(millisOfDay/1000);
+            result.UpdateMillisec = millisOfDay%1000;
+            result.Volume = (int)volume;
+            for(int i=0;i<PRICE_COUNT;i++) {
+                prices[i] = PriceUtil.long2price(getPrice(i));
+            }
+            setPrices(result, prices);
+            for(int i=0;i<VOLUME5_COUNT;i++) {
+                volumes[i] = getVolume5(i);
+            }
+            setVolume5(result, volumes);
+            return result;
+        }
+
+        private String getString(int column) {
+            return strings[buf.get(offsets[column]+index)&0XFF];
+        }
+
+        private long readDelta(boolean timeColumn) {
+            int pos = timeColumn?timePos:volumePos;
+            long raw = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf.get(pos++);
+                raw |= ((long)(b&0X7F))<<shift;
+                shift += 7;
+            }while( (b&0X80)!=0 );
+            if ( timeColumn ) {
+                timePos = pos;
+            } else {
+                volumePos = pos;
+            }
+            return (raw>>>1)^-(raw&1);
+        }
+    }
+
+    /**
+     * 编码TICK数据为二进制列存格式
+     *
+     * @throws IllegalArgumentException 数据无法无损编码, 例如UpdateTime不是HH:MM:SS格式, 或者价格超出PriceUtil.price2long的精度
+     */
+    public static byte[] encode(List<CThostFtdcDepthMarketDataField> ticks) {
+        int size = ticks.size();
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        byte[][] dictColumns = new byte[COL_TIME][size];
+        int[] times = new int[size];
+        int[] volumes = new int[size];
+        long[][] prices = new long[PRICE_COUNT][size];
+        int[][] volume5s = new int[VOLUME5_COUNT][size];
+        double[] tickPrices = new double[PRICE_COUNT];
+        int[] tickVolumes = new int[VOLUME5_COUNT];
+        for(int i=0;i<size;i++) {
+            CThostFtdcDepthMarketDataField tick = ticks.get(i);
+            dictColumns[COL_TRADING_DAY][i] = stringIndex(stringIndexes, strings, tick.TradingDay);
+            dictColumns[COL_INSTRUMENT_ID][i] = stringIndex(stringIndexes, strings, tick.InstrumentID);
+            dictColumns[COL_EXCHANGE_ID][i] = stringIndex(stringIndexes, strings, tick.ExchangeID);
+            dictColumns[COL_EXCHANGE_INST_ID][i] = stringIndex(stringIndexes, strings, tick.ExchangeInstID);
+            dictColumns[COL_ACTION_DAY][i] = stringIndex(stringIndexes, strings, tick.ActionDay);
+            int secondOfDay = str2secondOfDay(tick.UpdateTime);
+            if ( secondOfDay<0 || tick.UpdateMillisec<0 || tick.UpdateMillisec>=1000 ) {
+                throw new IllegalArgumentException("Unsupported update time: "+tick.UpdateTime+"."+tick.UpdateMillisec);
+            }
+            times[i] = secondOfDay*1000+tick.UpdateMillisec;
+            volumes[i] = tick.Volume;
+            getPrices(tick, tickPrices);
+            for(int j=0;j<PRICE_COUNT;j++) {
+                long price = PriceUtil.price2long(tickPrices[j]);
+                if ( PriceUtil.long2price(price)!=tickPrices[j] ) {
+                    throw new IllegalArgumentException("Unsupported price: "+tickPrices[j]);
+                }
+                prices[j][i] = price;
+            }
+            getVolume5(tick, tickVolumes);
+            for(int j=0;j<VOLUME5_COUNT;j++) {
+                volume5s[j][i] = tickVolumes[j];
+            }
+        }
+        //列数据
+        byte[][] columns = new byte[COLUMN_COUNT][];
+        byte[] encodings = new byte[COLUMN_COUNT];
+        for(int i=0;i<COL_TIME;i++) {
+            columns[i] = dictColumns[i];
+            encodings[i] = ENC_DICT;
+        }
+        columns[COL_TIME] = encodeDeltas(times);
+        encodings[COL_TIME] = ENC_DELTA;
+        columns[COL_VOLUME] = encodeDeltas(volumes);
+        encodings[COL_VOLUME] = ENC_DELTA;
+        for(int j=0;j<PRICE_COUNT;j++) {
+            ByteBuffer col = ByteBuffer.allocate(size*8);
+            for(int i=0;i<size;i++) {
+                col.putLong(prices[j][i]);
+            }
+            columns[COL_PRICE_BEGIN+j] = col.array();
+            encodings[COL_PRICE_BEGIN+j] = ENC_LONG;
+        }
+        for(int j=0;j<VOLUME5_COUNT;j++) {
+            ByteBuffer col = ByteBuffer.allocate(size*4);
+            for(int i=0;i<size;i++) {
+                col.putInt(volume5s[j][i]);
+            }
+            columns[COL_VOLUME5_BEGIN+j] = col.array();
+            encodings[COL_VOLUME5_BEGIN+j] = ENC_INT;
+        }
+        //文件头
+        List<byte[]> stringBytes = new ArrayList<>();
+        int headerSize = 4+2+2+4+2;
+        for(String str:strings) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            stringBytes.add(bytes);
+            headerSize += 2+bytes.length;
+        }
+        headerSize += COLUMN_COUNT*(1+4+4);
+        int totalSize = headerSize;
+        for(byte[] col:columns) {
+            totalSize += col.length;
+        }
+        ByteBuffer result = ByteBuffer.allocate(totalSize);
+        result.putInt(MAGIC);
+        result.putShort(VERSION);
+        result.putShort((short)COLUMN_COUNT);
+        result.putInt(size);
+        result.putShort((short)strings.size());
+        for(byte[] bytes:stringBytes) {
+            result.putShort((short)bytes.length);
+            result.put(bytes);
+        }
+        int offset = headerSize;
+        for(int i=0;i<COLUMN_COUNT;i++) {
+            result.put(encodings[i]);
+            result.putInt(offset);
+            result.putInt(columns[i].length);
+            offset += columns[i].length;
+        }
+        for(byte[] col:columns) {
+            result.put(col);
+        }
+        return result.array();
+    }
+
+    /**
+     * 在二进制数据上打开遍历游标
+     *
+     * @throws IOException 格式不正确
+     */
+    private static TickCursor open(ByteBuffer buf) throws IOException {
+        try {
+            buf = buf.duplicate();
+            int capacity = buf.limit();
+            if ( buf.getInt(0)!=MAGIC ) {
+                throw new IOException("Invalid tick column file magic");
+            }
+            buf.position(4);
+            short version = buf.getShort();
+            int columnCount = buf.getShort();
+            if ( version!=VERSION || columnCount!=COLUMN_COUNT ) {
+                throw new IOException("Unsupported tick column file version "+version+" columns "+columnCount);
+            }
+            int size = buf.getInt();
+            int stringCount = buf.getShort()&0XFFFF;
+            String[] strings = new String[stringCount];
+            for(int i=0;i<stringCount;i++) {
+                byte[] bytes = new byte[buf.getShort()&0XFFFF];
+                buf.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int[] offsets = new int[COLUMN_COUNT];
+            for(int i=0;i<COLUMN_COUNT;i++) {
+                byte encoding = buf.get();
+                int offset = buf.getInt();
+                int length = buf.getInt();
+                int expectedLength = -1;
+                switch(encoding) {
+                case ENC_DICT:
+                    expectedLength = size;
+                    break;
+                case ENC_INT:
+                    expectedLength = size*4;
+                    break;
+                case ENC_LONG:
+                    expectedLength = size*8;
+                    break;
+                case ENC_DELTA:
+                    expectedLength = length;
+                    break;
+                }
+                if ( length!=expectedLength || offset<0 || offset+length>capacity ) {
+                    throw new IOException("Invalid tick column "+i);
+                }
+                offsets[i] = offset;
+            }
+            return new TickCursor(buf, size, strings, offsets);
+        }catch(RuntimeException e) {
+            throw new IOException("Invalid tick column file: "+e, e);
+        }
+    }
+
+    /**
+     * 解码全部TICK数据
+     */
+    public static List<CThostFtdcDepthMarketDataField> decode(ByteBuffer buf) throws IOException {
+        TickCursor cursor = open(buf);
+        List<CThostFtdcDepthMarketDataField> result = new ArrayList<>(cursor.size());
+        try {
+            while(cursor.next()) {
+                result.add(cursor.toField());
+            }
+        }catch(RuntimeException e) {
+            throw new IOException("Invalid tick column file: "+e, e);
+        }
+        return result;
+    }
+
+    /**
+     * 加载CTP TICK数据: 优先从内存映射的二进制列存文件加载, 文件不存在或损坏时从CSV加载
+     */
+    public static List<CThostFtdcDepthMarketDataField> load(ExchangeableData data, Exchangeable instrument, LocalDate tradingDay) throws IOException
+    {
+        ByteBuffer buf = data.loadBinary(instrument, ExchangeableData.TICK_CTP_BIN, tradingDay);
+        if ( buf!=null ) {
+            try {
+                return decode(buf);
+            }catch(IOException ioe) {
+                logger.warn("Load "+data.getBinaryFile(instrument, ExchangeableData.TICK_CTP_BIN, tradingDay)+" failed, fallback to CSV: "+ioe);
+            }
+        }
+        return loadCSV(data, instrument, tradingDay);
+    }
+
+    /**
+     * 从CSV格式加载CTP TICK数据
+     */
+    public static List<CThostFtdcDepthMarketDataField> loadCSV(ExchangeableData data, Exchangeable instrument, LocalDate tradingDay) throws IOException
+    {
+        CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+        CSVDataSet csvDataSet = CSVUtil.parse(data.load(instrument, ExchangeableData.TICK_CTP, tradingDay));
+        List<CThostFtdcDepthMarketDataField> result = new ArrayList<>();
+        while(csvDataSet.next()) {
+            result.add(csvMarshallHelper.unmarshall(csvDataSet.getRow()));
+        }
+        return result;
+    }
+
+    /**
+     * 将已有的CSV格式TICK数据转换为二进制列存格式
+     *
+     * @return true 转换成功, false CSV数据无法无损转换
+     */
+    public static boolean convert(ExchangeableData data, Exchangeable instrument, LocalDate tradingDay) throws IOException
+    {
+        return save(data, instrument, tradingDay, loadCSV(data, instrument, tradingDay));
+    }
+
+    /**
+     * 保存为二进制列存格式
+     *
+     * @return true 保存成功, false 数据无法无损编码, 这时只能使用CSV格式
+     */
+    public static boolean save(ExchangeableData data, Exchangeable instrument, LocalDate tradingDay, List<CThostFtdcDepthMarketDataField> ticks) throws IOException
+    {
+        byte[] content = null;
+        try {
+            content = encode(ticks);
+        }catch(IllegalArgumentException e) {
+            return false;
+        }
+        data.saveBinary(instrument, ExchangeableData.TICK_CTP_BIN, tradingDay, content);
+        return true;
+    }
+
+    /**
+     * 差值的ZigZag变长编码
+     */
+    private static byte[] encodeDeltas(int[] values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length*10);
+        long last = 0;
+        for(int i=0;i<values.length;i++) {
+            long value = values[i];
+            long delta = value-last;
+            long raw = (delta<<1)^(delta>>63);
+            while( (raw&~0X7FL)!=0 ) {
+                buf.put((byte)((raw&0X7F)|0X80));
+                raw >>>= 7;
+            }
+            buf.put((byte)raw);
+            last = value;
+        }
+        byte[] result = new byte[buf.position()];
+        System.arraycopy(buf.array(), 0, result, 0, result.length);
+        return result;
+    }
+
+    private static byte stringIndex(Map<String, Integer> stringIndexes, List<String> strings, String str) {
+        if ( str==null ) {
+            str = "";
+        }
+        Integer index = stringIndexes.get(str);
+        if ( index==null ) {
+            if ( strings.size()>=MAX_STRINGS ) {
+                throw new IllegalArgumentException("Too many distinct string values");
+            }
+            index = strings.size();
+            strings.add(str);
+            stringIndexes.put(str, index);
+        }
+        return (byte)index.intValue();
+    }
+
+    /**
+     * 只接受 HH:MM:SS 格式, 保证可以无损还原
+     */
+    private static int str2secondOfDay(String time) {
+        if ( time==null || time.length()!=8 || time.charAt(2)!=':' || time.charAt(5)!=':' ) {
+            return -1;
+        }
+        int result = 0;
+        for(int i=0;i<8;i+=3) {
+            char c0 = time.charAt(i), c1 = time.charAt(i+1);
+            if ( c0<'0' || c0>'9' || c1<'0' || c1>'9' ) {
+                return -1;
+            }
+            result = result*60+(c0-'0')*10+(c1-'0');
+        }
+        return result;
+    }
+
+    private static String secondOfDay2str(int secondOfDay) {
+        int hour = secondOfDay/3600, minute = (secondOfDay/60)%60, second = secondOfDay%60;
+        char[] chars = new char[] {
+                (char)('0'+hour/10), (char)('0'+hour%10), ':',
+                (char)('0'+minute/10), (char)('0'+minute%10), ':',
+                (char)('0'+second/10), (char)('0'+second%10)};
+        return new String(chars);
+    }
+
+    private static void getPrices(CThostFtdcDepthMarketDataField tick, double[] prices) {
+        int i=0;
+        prices[i++] = tick.LastPrice;
+        prices[i++] = tick.PreSettlementPrice;
+        prices[i++] = tick.PreClosePrice;
+        prices[i++] = tick.PreOpenInterest;
+        prices[i++] = tick.OpenPrice;
+        prices[i++] = tick.HighestPrice;
+        prices[i++] = tick.LowestPrice;
+        prices[i++] = tick.Turnover;
+        prices[i++] = tick.OpenInterest;
+        prices[i++] = tick.ClosePrice;
+        prices[i++] = tick.SettlementPrice;
+        prices[i++] = tick.UpperLimitPrice;
+        prices[i++] = tick.LowerLimitPrice;
+        prices[i++] = tick.PreDelta;
+        prices[i++] = tick.CurrDelta;
+        prices[i++] = tick.BidPrice1;
+        prices[i++] = tick.AskPrice1;
+        prices[i++] = tick.BidPrice2;
+        prices[i++] = tick.AskPrice2;
+        prices[i++] = tick.BidPrice3;
+        prices[i++] = tick.AskPrice3;
+        prices[i++] = tick.BidPrice4;
+        prices[i++] = tick.AskPrice4;
+        prices[i++] = tick.BidPrice5;
+        prices[i++] = tick.AskPrice5;
+        prices[i++] = tick.AveragePrice;
+    }
+
+    private static void setPrices(CThostFtdcDepthMarketDataField tick, double[] prices) {
+        int i=0;
+        tick.LastPrice = prices[i++];
+        tick.PreSettlementPrice = prices[i++];
+        tick.PreClosePrice = prices[i++];
+        tick.PreOpenInterest = prices[i++];
+        tick.OpenPrice = prices[i++];
+        tick.HighestPrice = prices[i++];
+        tick.LowestPrice = prices[i++];
+        tick.Turnover = prices[i++];
+        tick.OpenInterest = prices[i++];
+        tick.ClosePrice = prices[i++];
+        tick.SettlementPrice = prices[i++];
+        tick.UpperLimitPrice = prices[i++];
+        tick.LowerLimitPrice = prices[i++];
+        tick.PreDelta = prices[i++];
+        tick.CurrDelta = prices[i++];
+        tick.BidPrice1 = prices[i++];
+        tick.AskPrice1 = prices[i++];
+        tick.BidPrice2 = prices[i++];
+        tick.AskPrice2 = prices[i++];
+        tick.BidPrice3 = prices[i++];
+        tick.AskPrice3 = prices[i++];
+        tick.BidPrice4 = prices[i++];
+        tick.AskPrice4 = prices[i++];
+        tick.BidPrice5 = prices[i++];
+        tick.AskPrice5 = prices[i++];
+        tick.AveragePrice = prices[i++];
+    }
+
+    private static void getVolume5(CThostFtdcDepthMarketDataField tick, int[] volumes) {
+        int i=0;
+        volumes[i++] = tick.BidVolume1;
+        volumes[i++] = tick.BidVolume2;
+        volumes[i++] = tick.BidVolume3;
+        volumes[i++] = tick.BidVolume4;
+        volumes[i++] = tick.BidVolume5;
+        volumes[i++] = tick.AskVolume1;
+        volumes[i++] = tick.AskVolume2;
+        volumes[i++] = tick.AskVolume3;
+        volumes[i++] = tick.AskVolume4;
+        volumes[i++] = tick.AskVolume5;
+    }
+
+    private static void setVolume5(CThostFtdcDepthMarketDataField tick, int[] volumes) {
+        int i=0;
+        tick.BidVolume1 = volumes[i++];
+        tick.BidVolume2 = volumes[i++];
+        tick.BidVolume3 = volumes[i++];
+        tick.BidVolume4 = volumes[i++];
+        tick.BidVolume5 = volumes[i++];
+        tick.AskVolume1 = volumes[i++];
+        tick.AskVolume2 = volumes[i++];
+        tick.AskVolume3 = volumes[i++];
+        tick.AskVolume4 = volumes[i++];
+        tick.AskVolume5 = volumes[i++];
+    }
+
+}
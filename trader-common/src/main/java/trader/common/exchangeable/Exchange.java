@@ -11,7 +11,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import trader.common.exchangeable.ExchangeContract.MarketTimeRecord;
 import trader.common.exchangeable.ExchangeContract.MarketTimeSegment;
@@ -28,6 +30,20 @@ public class Exchange implements Comparable<Exchange>{
     private boolean future;
     private Map<String, ExchangeContract> contracts;
     private LocalTime[] marketTimes;
+    /**
+     * 交易时间缓存, 按合约规则和交易日缓存, 不同合约共享同一个规则时返回的数据也共享
+     * <BR>交易时间依赖交易日历, 交易日历重新加载后整体替换
+     */
+    private volatile TradingTimesCache tradingTimesCache = new TradingTimesCache(-1);
+
+    private static class TradingTimesCache {
+        final int generation;
+        final Map<ExchangeContract, Map<LocalDate, Optional<ExchangeableTradingTimes>>> contractTimes = new ConcurrentHashMap<>();
+
+        TradingTimesCache(int generation){
+            this.generation = generation;
+        }
+    }
 
     public String name() {
         return name;
@@ -168,13 +184,41 @@ public class Exchange implements Comparable<Exchange>{
     }
 
     private ExchangeableTradingTimes getTradingTimes(String instrumentId, Exchangeable instrument, LocalDate tradingDay) {
-        if ( !MarketDayUtil.isMarketDay(this, tradingDay)) {
-            return null;
-        }
         ExchangeContract contract = matchContract(instrumentId);
         if( contract==null ) {
             return null;
         }
+        TradingTimesCache cache = tradingTimesCache;
+        int generation = MarketDayUtil.getGeneration();
+        if ( cache.generation!=generation ) {
+            cache = new TradingTimesCache(generation);
+            tradingTimesCache = cache;
+        }
+        Map<LocalDate, Optional<ExchangeableTradingTimes>> contractTimes = cache.contractTimes.computeIfAbsent(contract, (c)->new ConcurrentHashMap<>());
+        Optional<ExchangeableTradingTimes> cached = contractTimes.get(tradingDay);
+        if ( cached==null ) {
+            if ( contractTimes.size()>=MAX_CACHED_DAYS ) {
+                contractTimes.clear();
+            }
+            if ( null==instrument ) {
+                instrument = Exchangeable.fromString(name(), instrumentId);
+            }
+            cached = Optional.ofNullable(createTradingTimes(contract, instrument, tradingDay));
+            contractTimes.put(tradingDay, cached);
+        }
+        if ( cached.isEmpty() ) {
+            return null;
+        }
+        if ( null==instrument ) {
+            instrument = Exchangeable.fromString(name(), instrumentId);
+        }
+        return cached.get().withInstrument(instrument);
+    }
+
+    private ExchangeableTradingTimes createTradingTimes(ExchangeContract contract, Exchangeable instrument, LocalDate tradingDay) {
+        if ( !MarketDayUtil.isMarketDay(this, tradingDay)) {
+            return null;
+        }
         LinkedList<LocalDateTime> marketTimes = new LinkedList<>();
         List<MarketTimeSegmentInfo> segmentInfos = new ArrayList<>();
         SpecialTimeFrame specialTimeFrame = contract.matchSpecialTimeFrame(tradingDay);
@@ -216,10 +260,7 @@ public class Exchange implements Comparable<Exchange>{
                 segmentInfos.add(new MarketTimeSegmentInfo(segment, segTimes.toArray(new LocalDateTime[segTimes.size()])));
             }
         }
-        if ( null==instrument) {
-            instrument = Exchangeable.fromString(name(), instrumentId);
-        }
-        return new ExchangeableTradingTimes(instrument, tradingDay ,marketTimes.toArray(new LocalDateTime[marketTimes.size()]) , segmentInfos );
+        return new ExchangeableTradingTimes(instrument, tradingDay ,marketTimes.toArray(new LocalDateTime[marketTimes.size()]) , segmentInfos, zoneOffset);
     }
 
     public ExchangeContract matchContract(String instrument) {
@@ -282,6 +323,11 @@ public class Exchange implements Comparable<Exchange>{
         return name;
     }
 
+    /**
+     * 每个合约规则最多缓存的交易日数量
+     */
+    private static final int MAX_CACHED_DAYS = 2048;
+
     private static final ZoneId ZONEID_BEIJING = ZoneId.of("Asia/Shanghai");
     private static LocalTime[] DAY_TIME_STOCK = new LocalTime[]{LocalTime.of(9, 30), LocalTime.of(15, 0)};
     private static LocalTime[] DAY_TIME_CFFEX = new LocalTime[]{LocalTime.of(9, 15), LocalTime.of(15, 15)};
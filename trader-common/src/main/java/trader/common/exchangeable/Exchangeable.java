@@ -1,9 +1,6 @@
 package trader.common.exchangeable;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
@@ -21,7 +18,7 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
     protected String name;
 
     /**
-     * 只在当前JVM有效的唯一递增INT值
+     * 只在当前JVM有效的唯一递增INT值, 由ExchangeableRegistry分配, 可以作为数组下标
      */
     protected transient int uniqueIntId;
 
@@ -38,7 +35,7 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
         }
         this.type = detectType();
         uniqueId = id+"."+exchange.name();
-        uniqueIntId = genUniqueIntId(uniqueId);
+        uniqueIntId = ExchangeableRegistry.idOf(uniqueId);
     }
 
     /**
@@ -189,19 +186,20 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
         return create(exchange, instrumentId, null);
     }
 
+    /**
+     * 创建并返回注册表中的规范实例
+     */
     public static Exchangeable create(Exchange exchange, String instrumentId, String name){
         if ( exchange==Exchange.SSE || exchange==Exchange.SZSE ){
-            return new Security(exchange, instrumentId, name);
+            return ExchangeableRegistry.intern(new Security(exchange, instrumentId, name));
         }else if ( exchange==Exchange.CFFEX|| exchange==Exchange.DCE || exchange==Exchange.CZCE || exchange==Exchange.SHFE || exchange==Exchange.INE ){
-            return new Future(exchange, instrumentId, name);
+            return ExchangeableRegistry.intern(new Future(exchange, instrumentId, name));
         }else if ( exchange==null ){
             return Future.fromString(instrumentId);
         }
         throw new RuntimeException("Unknown exchange: "+exchange);
     }
 
-    private static Map<String, Exchangeable> cachedExchangeables = new HashMap<>();
-
     /**
      * Load exchangeable from cache
      */
@@ -232,6 +230,7 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
 
     /**
      * Load exchangeable from cache
+     * <BR>多线程并发调用时返回同一个规范实例
      */
     public static Exchangeable fromString(String exchangeStr, String instrumentStr, String instrumentName){
         String uniqueStr = null;
@@ -241,7 +240,7 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
             uniqueStr = instrumentStr;
         }
 
-        Exchangeable result = cachedExchangeables.get(uniqueStr);
+        Exchangeable result = ExchangeableRegistry.get(uniqueStr);
         if ( result!=null ) {
             return result;
         }
@@ -270,11 +269,13 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
                 throw new RuntimeException("Unknown exchangeable string: "+uniqueStr);
             }
         }
-        cachedExchangeables.put(uniqueStr, result);
+        result = ExchangeableRegistry.intern(uniqueStr, result);
         switch(result.getType()){
         case FUTURE:
         case FUTURE_COMBO:
-            cachedExchangeables.put(instrumentStr, result);
+            ExchangeableRegistry.intern(instrumentStr, result);
+            break;
+        default:
             break;
         }
         return result;
@@ -282,7 +283,6 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
 
     /**
      * Update cache with pre-created entries.
-     * <BR>出于多线程冲突原因, 必须在初始化时调用
      */
     public static void populateCache(Collection<Exchangeable> instruments)
     {
@@ -290,7 +290,7 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
             return;
         }
         for(Exchangeable e:instruments){
-            cachedExchangeables.put(e.toString(), e);
+            ExchangeableRegistry.intern(e.toString(), e);
         }
     }
 
@@ -327,20 +327,6 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
         return this.id().compareTo(o.id());
     }
 
-    private static AtomicInteger nextExchangeableId = new AtomicInteger();
-    private static Map<String, Integer> exchangeableIds = new HashMap<>();
-    static int genUniqueIntId(String uniqueId){
-        Integer id = null;
-        synchronized(exchangeableIds){
-            id = exchangeableIds.get(uniqueId);
-            if ( id==null ){
-                id = nextExchangeableId.getAndIncrement();
-                exchangeableIds.put(uniqueId, id);
-            }
-        }
-        return id;
-    }
-
     /**
      * 港股通
      */
@@ -0,0 +1,84 @@
+package trader.common.exchangeable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * 以Exchangeable.uniqueIntId()为下标的并发数组, 用于代替Map&lt;Exchangeable, V&gt;.
+ * <BR>按块分配, 读取无锁无分配; 写入用CAS, 同一个下标只有第一次putIfAbsent生效
+ */
+public class ExchangeableArray<V> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1<<CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE-1;
+    private static final int MAX_CHUNKS = 4096;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<V>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    public V get(Exchangeable e) {
+        return get(e.uniqueIntId());
+    }
+
+    public V get(int id) {
+        AtomicReferenceArray<V> chunk = chunks.get(id>>>CHUNK_BITS);
+        if ( chunk==null ) {
+            return null;
+        }
+        return chunk.get(id&CHUNK_MASK);
+    }
+
+    /**
+     * @return 已有的值, 或者null代表value被加入
+     */
+    public V putIfAbsent(Exchangeable e, V value) {
+        return putIfAbsent(e.uniqueIntId(), value);
+    }
+
+    public V putIfAbsent(int id, V value) {
+        AtomicReferenceArray<V> chunk = getOrCreateChunk(id);
+        int idx = id&CHUNK_MASK;
+        while(true) {
+            V curr = chunk.get(idx);
+            if ( curr!=null ) {
+                return curr;
+            }
+            if ( chunk.compareAndSet(idx, null, value) ) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 不存在时调用mappingFunction创建, 并发时可能调用多次但只有一个结果生效
+     */
+    public V computeIfAbsent(Exchangeable e, Function<Exchangeable, V> mappingFunction) {
+        V result = get(e);
+        if ( result==null ) {
+            V value = mappingFunction.apply(e);
+            result = putIfAbsent(e, value);
+            if ( result==null ) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    public void set(Exchangeable e, V value) {
+        int id = e.uniqueIntId();
+        getOrCreateChunk(id).set(id&CHUNK_MASK, value);
+    }
+
+    private AtomicReferenceArray<V> getOrCreateChunk(int id) {
+        int chunkIdx = id>>>CHUNK_BITS;
+        if ( chunkIdx>=MAX_CHUNKS ) {
+            throw new IndexOutOfBoundsException("Exchangeable id "+id+" exceeds capacity "+(MAX_CHUNKS*CHUNK_SIZE));
+        }
+        AtomicReferenceArray<V> chunk = chunks.get(chunkIdx);
+        if ( chunk==null ) {
+            chunks.compareAndSet(chunkIdx, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(chunkIdx);
+        }
+        return chunk;
+    }
+
+}
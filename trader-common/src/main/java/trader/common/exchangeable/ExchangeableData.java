@@ -1,9 +1,17 @@
 package trader.common.exchangeable;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -19,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -56,13 +65,19 @@ public class ExchangeableData {
         private String[] columns;
         private PriceLevel priceLevel;
         private String provider;
+        private String extName;
 
         public DataInfo(String name, boolean perYear, PriceLevel priceLevel, String[] columns, String provider){
+            this(name, perYear, priceLevel, columns, provider, EXT_NAME);
+        }
+
+        public DataInfo(String name, boolean perYear, PriceLevel priceLevel, String[] columns, String provider, String extName){
             this.name = name.toLowerCase().replaceAll("_", "-");
             this.perYear = perYear;
             this.priceLevel = priceLevel;
             this.columns = columns;
             this.provider = provider;
+            this.extName = extName;
             register(this);
         }
 
@@ -90,6 +105,20 @@ public class ExchangeableData {
 			return columns;
 		};
 
+		/**
+		 * 文件扩展名, 缺省为 .csv
+		 */
+		public String extName() {
+		    return extName;
+		}
+
+		/**
+		 * 二进制数据, 只能通过 loadBinary/saveBinary 访问
+		 */
+		public boolean isBinary() {
+		    return !EXT_NAME.equals(extName);
+		}
+
         @Override
         public String toString(){ return name; }
 
@@ -103,7 +132,7 @@ public class ExchangeableData {
         private static List<DataInfo> getByLevel(PriceLevel level){
         	List<DataInfo> r = new ArrayList<>();
         	for(DataInfo c:instances.values()){
-        		if ( c.getLevel()==level){
+        		if ( c.getLevel()==level && !c.isBinary() ){
         			r.add(c);
         		}
         	}
@@ -250,6 +279,10 @@ public class ExchangeableData {
      * 期货CTP的TICK数据
      */
     public static final DataInfo TICK_CTP = new DataInfo("TICK_CTP", true, PriceLevel.TICKET, null, "ctp");
+    /**
+     * 期货CTP的TICK数据, 二进制列存格式, 参见 CtpTickColumnStore
+     */
+    public static final DataInfo TICK_CTP_BIN = new DataInfo("TICK_CTP_BIN", true, PriceLevel.TICKET, null, "ctp", ".bin");
 
     public static final DataInfo MIN1 = new DataInfo("MIN1", true, PriceLevel.MIN1, FUTURE_MIN_COLUMNS, null);
 
@@ -281,6 +314,11 @@ public class ExchangeableData {
 
         public String read(File instrumentDir, String file) throws IOException;
 
+        /**
+         * 以流方式读取, 不存在返回null
+         */
+        public BufferedReader openReader(File instrumentDir, String file) throws IOException;
+
         public void save(File instrumentDir, String file, String content) throws IOException;
 
         public boolean delete(File instrumentDir, String file) throws IOException;
@@ -302,7 +340,7 @@ public class ExchangeableData {
             if ( instrumentDir.exists() && instrumentDir.isDirectory() ) {
                 for(File f:instrumentDir.listFiles()) {
                     String fname = f.getName();
-                    if ( fname.indexOf(filter)>=0 && fname.endsWith(".csv")) {
+                    if ( fname.indexOf(filter)>=0 && (fname.endsWith(EXT_NAME) || fname.endsWith(EXT_NAME_BIN)) ) {
                         result.add(fname);
                     }
                 }
@@ -319,6 +357,14 @@ public class ExchangeableData {
             return FileUtil.load(new File(instrumentDir, file));
         }
         @Override
+        public BufferedReader openReader(File instrumentDir, String file) throws IOException {
+            File f = new File(instrumentDir, file);
+            if ( !f.exists() ) {
+                return null;
+            }
+            return IOUtil.createBufferedReader(f, StringUtil.UTF8);
+        }
+        @Override
         public void save(File instrumentDir, String file, String content) throws IOException{
             instrumentDir.mkdirs();
             FileUtil.save(new File(instrumentDir, file), content);
@@ -411,6 +457,20 @@ public class ExchangeableData {
             return ZipFileUtil.archiveRead(zip, file);
         }
 
+        @Override
+        public BufferedReader openReader(File instrumentDir, String file) throws IOException
+        {
+            File zip = new File(instrumentDir, getZipFileName(file));
+            if ( !zip.exists() ) {
+                return null;
+            }
+            InputStream is = ZipFileUtil.archiveOpen(zip, file);
+            if ( is==null ) {
+                return null;
+            }
+            return IOUtil.createBufferedReader(is);
+        }
+
         @Override
         public void save(File instrumentDir, String file, String content) throws IOException
         {
@@ -513,6 +573,11 @@ public class ExchangeableData {
             return null;
         }
 
+        @Override
+        public BufferedReader openReader(File instrumentDir, String file) throws IOException {
+            return null;
+        }
+
         @Override
         public void save(File instrumentDir, String file, String content) throws IOException {
             String instrumentId = instrumentDir.getName();
@@ -540,6 +605,7 @@ public class ExchangeableData {
     }
 
     private static final String EXT_NAME = ".csv";
+    private static final String EXT_NAME_BIN = ".bin";
     private static final String CHARSET = "UTF-8";
 
     private boolean readOnly;
@@ -557,7 +623,7 @@ public class ExchangeableData {
     private DataProvider fsProvider;
     private DataProvider zipProvider;
     private SqlDataProvide sqlProvier = null;
-    private static Map<String, SoftReference<String>> cachedDatas = new HashMap<>();
+    private static Map<String, SoftReference<String>> cachedDatas = new ConcurrentHashMap<>();
 
     public ExchangeableData(File dataDir){
         this(dataDir, true);
@@ -788,6 +854,7 @@ public class ExchangeableData {
     public synchronized String load(String subDir, DataInfo dataInfo, LocalDate tradingDay)
             throws IOException
     {
+        checkTextData(dataInfo);
         File edir = new File(dataDir, subDir);
         String[] dataFiles = getDataFileName(dataInfo, tradingDay);
         return load0(edir, dataFiles);
@@ -796,6 +863,7 @@ public class ExchangeableData {
     public String load(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
             throws IOException
     {
+        checkTextData(dataInfo);
         try(FileLocker fileLocker = getFileLock(instrument);
                 LockWrapper lockWrapper = getInternalLock(instrument); )
         {
@@ -805,24 +873,107 @@ public class ExchangeableData {
         }
     }
 
+    /**
+     * 以流方式读取文本数据, 不会整体加载到内存, 也不加入缓存. 调用方负责关闭
+     */
+    public BufferedReader openReader(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        checkTextData(dataInfo);
+        try(FileLocker fileLocker = getFileLock(instrument);
+                LockWrapper lockWrapper = getInternalLock(instrument); )
+        {
+            File edir = getInstrumentDir(instrument);
+            String[] dataFiles = getDataFileName(dataInfo, tradingDay);
+            for(String dataFile: dataFiles){
+                SoftReference<String> dataRef = cachedDatas.get(edir+"/"+dataFile);
+                String cachedData = dataRef!=null?dataRef.get():null;
+                if ( cachedData!=null ) {
+                    return new BufferedReader(new StringReader(cachedData));
+                }
+                BufferedReader reader = fsProvider.openReader(edir, dataFile);
+                if ( reader==null ) {
+                    reader = zipProvider.openReader(edir, dataFile);
+                }
+                if ( reader!=null ) {
+                    return reader;
+                }
+            }
+            throw new IOException("Data not exists: "+edir+"/"+dataFiles[0]);
+        }
+    }
+
     public List<LocalDate> list(Exchangeable instrument, DataInfo dataInfo) throws IOException
     {
         File edir = getInstrumentDir(instrument);
         TreeSet<LocalDate> result = new TreeSet<>();
-
+        //tick-ctp 也会匹配 tick-ctp-bin, 需要检查完整的后缀
+        String suffix = "."+dataInfo.name()+dataInfo.extName();
         List<String> fnames = fsProvider.list(edir, dataInfo.name());
         for(String fname:fnames) {
+            if ( !fname.endsWith(suffix) ) {
+                continue;
+            }
             String[] fnameParts = StringUtil.split(fname, "\\.");
             result.add(DateUtil.str2localdate(fnameParts[0]));
         }
         fnames = zipProvider.list(edir, dataInfo.name());
         for(String fname:fnames) {
+            if ( !fname.endsWith(suffix) ) {
+                continue;
+            }
             String[] fnameParts = StringUtil.split(fname, "\\.");
             result.add(DateUtil.str2localdate(fnameParts[0]));
         }
         return new ArrayList<>(result);
     }
 
+    /**
+     * 二进制数据文件的路径
+     */
+    public File getBinaryFile(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay) {
+        return new File(getInstrumentDir(instrument), getDataFileName(dataInfo, tradingDay)[0]);
+    }
+
+    /**
+     * 以内存映射方式只读打开二进制数据文件, 文件不存在时返回null.
+     * <BR>二进制数据只保存在文件系统中, 不会被存档到zip文件
+     */
+    public ByteBuffer loadBinary(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        try(FileLocker fileLocker = getFileLock(instrument);
+                LockWrapper lockWrapper = getInternalLock(instrument); )
+        {
+            File file = getBinaryFile(instrument, dataInfo, tradingDay);
+            if ( !file.exists() ) {
+                return null;
+            }
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);){
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+    }
+
+    /**
+     * 保存二进制数据文件, 先写入临时文件再改名, 避免已映射的读取方看到不完整数据
+     */
+    public void saveBinary(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay, byte[] content)
+            throws IOException
+    {
+        checkReadOnly();
+        try(FileLocker fileLocker = getFileLock(instrument);
+                LockWrapper lockWrapper = getInternalLock(instrument); )
+        {
+            File edir = getInstrumentDir(instrument);
+            edir.mkdirs();
+            File file = new File(edir, getDataFileName(dataInfo, tradingDay)[0]);
+            File tmpFile = new File(edir, file.getName()+".tmp");
+            Files.write(tmpFile.toPath(), content);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
     protected final Map<String, String> cachedDayStats = new HashMap<>();
 
     public List<Exchangeable> getPrimaryInstrument(Exchange exchange, String contract, LocalDate tradingDay){
@@ -1100,10 +1251,17 @@ public class ExchangeableData {
     	if ( level!=PriceLevel.DAY && tradingDay!=null ){
             pathPrefix = DateUtil.date2str(tradingDay)+".";
     	}
-        result[0] = pathPrefix+dataInfo.name()+EXT_NAME;
+        result[0] = pathPrefix+dataInfo.name()+dataInfo.extName();
         return result;
     }
 
+    private void checkTextData(DataInfo dataInfo) throws IOException
+    {
+        if ( dataInfo.isBinary() ) {
+            throw new IOException("Data "+dataInfo+" is binary, use loadBinary instead");
+        }
+    }
+
     private void checkReadOnly() throws IOException
     {
         if ( readOnly ){
@@ -0,0 +1,75 @@
+package trader.common.exchangeable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 全局的Exchangeable注册表, 多线程安全.
+ * <BR>每个uniqueId分配一个从0开始的递增INT ID, 并且只保留一个规范实例(第一个注册的实例).
+ * <BR>按INT ID, uniqueId或者别名(期货的合约ID, CTP的InstrumentID)查找都不需要加锁, 也不分配对象
+ */
+public class ExchangeableRegistry {
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final Map<String, Integer> idsByUniqueId = new ConcurrentHashMap<>();
+    private static final ExchangeableArray<Exchangeable> instancesById = new ExchangeableArray<>();
+    private static final Map<String, Exchangeable> instancesByStr = new ConcurrentHashMap<>();
+
+    /**
+     * 分配或返回已分配的INT ID
+     */
+    static int idOf(String uniqueId) {
+        Integer id = idsByUniqueId.get(uniqueId);
+        if ( id==null ) {
+            id = idsByUniqueId.computeIfAbsent(uniqueId, (k)->nextId.getAndIncrement());
+        }
+        return id;
+    }
+
+    /**
+     * 返回规范实例, 如果之前没有注册过, 参数e成为规范实例
+     */
+    public static Exchangeable intern(Exchangeable e) {
+        Exchangeable result = instancesById.putIfAbsent(e.uniqueIntId(), e);
+        if ( result==null ) {
+            result = e;
+            instancesByStr.putIfAbsent(e.uniqueId(), e);
+        }
+        return result;
+    }
+
+    /**
+     * 将别名指向规范实例, 返回规范实例
+     */
+    public static Exchangeable intern(String alias, Exchangeable e) {
+        Exchangeable result = intern(e);
+        Exchangeable prev = instancesByStr.putIfAbsent(alias, result);
+        if ( prev!=null && prev.uniqueIntId()==result.uniqueIntId() ) {
+            result = prev;
+        }
+        return result;
+    }
+
+    /**
+     * 按INT ID查找
+     */
+    public static Exchangeable get(int id) {
+        return instancesById.get(id);
+    }
+
+    /**
+     * 按uniqueId或别名查找
+     */
+    public static Exchangeable get(String str) {
+        return instancesByStr.get(str);
+    }
+
+    /**
+     * 已分配的INT ID数量, 所有ID都小于这个值
+     */
+    public static int size() {
+        return nextId.get();
+    }
+
+}
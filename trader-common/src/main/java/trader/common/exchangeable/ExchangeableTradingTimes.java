@@ -3,6 +3,8 @@ package trader.common.exchangeable;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.List;
 
 import trader.common.exchangeable.ExchangeContract.MarketTimeSegment;
@@ -42,23 +44,74 @@ public class ExchangeableTradingTimes {
      */
     private List<MarketTimeSegmentInfo> segmentInfos;
     private int[] marketTimeMillis;
+    private ZoneOffset zoneOffset;
+    /**
+     * 每个交易时间小段的开始/结束时间(epoch millis), 用于二分查找
+     */
+    private long[] frameBeginMillis;
+    private long[] frameEndMillis;
+    /**
+     * 每个交易时间小段开始之前的累计交易时长(毫秒)
+     */
+    private int[] frameTradingMillis;
+    /**
+     * 交易时间小段是否是日市/夜市的开始
+     */
+    private boolean[] frameSegmentBegins;
 
-    ExchangeableTradingTimes(Exchangeable instrument, LocalDate tradingDay, LocalDateTime[] marketTimes, List<MarketTimeSegmentInfo> segmentInfos){
+    ExchangeableTradingTimes(Exchangeable instrument, LocalDate tradingDay, LocalDateTime[] marketTimes, List<MarketTimeSegmentInfo> segmentInfos, ZoneOffset zoneOffset){
         this.instrument = instrument;
         this.tradingDay = tradingDay;
         this.segmentInfos = segmentInfos;
         this.marketTimes = marketTimes;
-        this.marketTimeMillis = new int[marketTimes.length/2];
+        this.zoneOffset = zoneOffset;
+        int frameCount = marketTimes.length/2;
+        this.marketTimeMillis = new int[frameCount];
+        this.frameBeginMillis = new long[frameCount];
+        this.frameEndMillis = new long[frameCount];
+        this.frameTradingMillis = new int[frameCount];
+        this.frameSegmentBegins = new boolean[frameCount];
         totalTradingMillis = 0;
         for(int i=0;i<marketTimes.length;i+=2) {
             LocalDateTime marketTimeStageBegin = marketTimes[i];
             LocalDateTime marketTimeStageEnd = marketTimes[i+1];
             Duration d = DateUtil.between(marketTimeStageBegin, marketTimeStageEnd);
             marketTimeMillis[i/2] = (int)d.getSeconds()*1000;
+            frameBeginMillis[i/2] = toEpochMillis(marketTimeStageBegin);
+            frameEndMillis[i/2] = toEpochMillis(marketTimeStageEnd);
+            frameTradingMillis[i/2] = totalTradingMillis;
+            frameSegmentBegins[i/2] = isSegmentBeginTime(marketTimeStageBegin);
             totalTradingMillis += (int)d.getSeconds()*1000;
         }
     }
 
+    /**
+     * 共享交易时间数据, 只替换合约
+     */
+    private ExchangeableTradingTimes(ExchangeableTradingTimes times, Exchangeable instrument) {
+        this.instrument = instrument;
+        this.tradingDay = times.tradingDay;
+        this.segmentInfos = times.segmentInfos;
+        this.marketTimes = times.marketTimes;
+        this.zoneOffset = times.zoneOffset;
+        this.marketTimeMillis = times.marketTimeMillis;
+        this.frameBeginMillis = times.frameBeginMillis;
+        this.frameEndMillis = times.frameEndMillis;
+        this.frameTradingMillis = times.frameTradingMillis;
+        this.frameSegmentBegins = times.frameSegmentBegins;
+        this.totalTradingMillis = times.totalTradingMillis;
+    }
+
+    /**
+     * 返回指定合约的交易时间, 缓存的交易时间数据可以被同一交易规则的多个合约共享
+     */
+    ExchangeableTradingTimes withInstrument(Exchangeable instrument) {
+        if ( this.instrument.equals(instrument) ) {
+            return this;
+        }
+        return new ExchangeableTradingTimes(this, instrument);
+    }
+
     public Exchangeable getInstrument() {
         return instrument;
     }
@@ -121,30 +174,33 @@ public class ExchangeableTradingTimes {
      * 返回开市以来的时间(毫秒)
      */
     public int getTradingTime(LocalDateTime marketTime) {
-        if ( marketTime.isBefore(marketTimes[0]) || compareTimeNoNanos(marketTime,marketTimes[marketTimes.length-1])>0) {
+        return getTradingTime(toEpochMillis(marketTime));
+    }
+
+    /**
+     * 返回开市以来的时间(毫秒), 参数为epoch millis
+     * <BR>与交易时间小段的结束时间比较时忽略毫秒
+     */
+    public int getTradingTime(long marketTimeMillis) {
+        long marketTimeSeconds = marketTimeMillis-Math.floorMod(marketTimeMillis, 1000);
+        int frameCount = frameBeginMillis.length;
+        if ( frameCount==0 || marketTimeMillis<frameBeginMillis[0] || marketTimeSeconds>frameEndMillis[frameCount-1] ) {
             return -1;
         }
-        int result = 0;
-        for(int i=0;i<marketTimes.length;i+=2) {
-            LocalDateTime marketTimeStageBegin = marketTimes[i];
-            LocalDateTime marketTimeStageEnd = marketTimes[i+1];
-            if ( compareTimeNoNanos(marketTime, marketTimeStageBegin)<=0 ) {
-                break;
-            }
-            Duration d = null;
-            int compareResult = compareTimeNoNanos(marketTime, marketTimeStageEnd);
-            if ( compareResult<0 ) {
-                d = DateUtil.between(marketTimeStageBegin, marketTime);
-            }else {
-                d = DateUtil.between(marketTimeStageBegin, marketTimeStageEnd);
-            }
-            long millis = d.getSeconds()*1000+d.getNano()/1000000;
-            result += millis;
-            if ( compareResult<=0 ) {
-                break;
-            }
+        //最后一个开始时间早于当前时间的小段
+        int frameIdx = Arrays.binarySearch(frameBeginMillis, marketTimeSeconds);
+        if ( frameIdx>=0 ) {
+            frameIdx--;
+        } else {
+            frameIdx = -frameIdx-2;
         }
-        return result;
+        if ( frameIdx<0 ) {
+            return 0;
+        }
+        if ( marketTimeSeconds>=frameEndMillis[frameIdx] ) {
+            return frameTradingMillis[frameIdx]+this.marketTimeMillis[frameIdx];
+        }
+        return frameTradingMillis[frameIdx]+(int)(marketTimeMillis-frameBeginMillis[frameIdx]);
     }
 
     /**
@@ -198,34 +254,37 @@ public class ExchangeableTradingTimes {
      * 市场时间段
      */
     public MarketTimeStage getTimeStage(LocalDateTime time) {
-        for(int i=0;i<marketTimes.length;i+=2 ) {
-            LocalDateTime frameBegin = marketTimes[i];
-            LocalDateTime frameEnd = marketTimes[i+1];
-            if ( isSegmentBeginTime(frameBegin) ) {
-                LocalDateTime auctionTime = frameBegin.minusMinutes(15);
-                LocalDateTime marketBeforeOpenTime = auctionTime.minusMinutes(55);
-
-                if ( time.isBefore(marketBeforeOpenTime) ){
-                    return MarketTimeStage.MarketClose;
-                } else {
-                    if ( time.isBefore(auctionTime) ) {
-                        return MarketTimeStage.BeforeMarketOpen;
-                    } else {
-                        if ( time.isBefore(frameBegin)){
-                            return MarketTimeStage.AggregateAuction;
-                        }
-                    }
-                }
-            } else {
-                if ( time.isBefore(frameBegin) ) {
-                    return MarketTimeStage.MarketBreak;
-                }
-            }
-            if ( compareTimeNoNanos(time, frameBegin)>=0 && compareTimeNoNanos(time,frameEnd)<=0 ) {
-                return MarketTimeStage.MarketOpen;
-            }
+        return getTimeStage(toEpochMillis(time));
+    }
+
+    /**
+     * 市场时间段, 参数为epoch millis
+     */
+    public MarketTimeStage getTimeStage(long timeMillis) {
+        long timeSeconds = timeMillis-Math.floorMod(timeMillis, 1000);
+        //第一个结束时间不早于当前时间的小段
+        int frameIdx = Arrays.binarySearch(frameEndMillis, timeSeconds);
+        if ( frameIdx<0 ) {
+            frameIdx = -frameIdx-1;
+        }
+        if ( frameIdx>=frameEndMillis.length ) {
+            return MarketTimeStage.MarketClose;
+        }
+        long frameBegin = frameBeginMillis[frameIdx];
+        if ( timeMillis>=frameBegin ) {
+            return MarketTimeStage.MarketOpen;
+        }
+        if ( !frameSegmentBegins[frameIdx] ) {
+            return MarketTimeStage.MarketBreak;
+        }
+        long auctionTime = frameBegin-15*60*1000;
+        long marketBeforeOpenTime = auctionTime-55*60*1000;
+        if ( timeMillis<marketBeforeOpenTime ) {
+            return MarketTimeStage.MarketClose;
+        } else if ( timeMillis<auctionTime ) {
+            return MarketTimeStage.BeforeMarketOpen;
         }
-        return MarketTimeStage.MarketClose;
+        return MarketTimeStage.AggregateAuction;
     }
 
     private boolean isSegmentBeginTime(LocalDateTime time) {
@@ -237,8 +296,8 @@ public class ExchangeableTradingTimes {
         return false;
     }
 
-    private static int compareTimeNoNanos(LocalDateTime time1, LocalDateTime time2) {
-        return time1.withNano(0).compareTo(time2.withNano(0));
+    private long toEpochMillis(LocalDateTime time) {
+        return time.toEpochSecond(zoneOffset)*1000+time.getNano()/1000000;
     }
 
 }
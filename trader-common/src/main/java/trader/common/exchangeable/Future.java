@@ -89,7 +89,7 @@ public class Future extends Exchangeable {
                     this.name = this.id;
                 }
                 uniqueId = contract+canonicalDeliveryDate+"."+exchange.name();
-                uniqueIntId = genUniqueIntId(uniqueId);
+                uniqueIntId = ExchangeableRegistry.idOf(uniqueId);
             }
         }
 
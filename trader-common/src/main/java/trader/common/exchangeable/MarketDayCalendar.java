@@ -0,0 +1,154 @@
+package trader.common.exchangeable;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 单个交易所的预计算交易日历.
+ * <BR>在[FIRST_DAY, LAST_DAY]范围内按天保存交易日位图, 每64天一个累计计数, 以及所有交易日的顺序数组.
+ * <BR>是否交易日, 前后第N个交易日, 区间交易日数量都是O(1)且不分配对象; 范围外按周末和休市日逐天计算
+ */
+class MarketDayCalendar {
+    static final LocalDate FIRST_DAY = LocalDate.of(1990, 1, 1);
+    static final LocalDate LAST_DAY = LocalDate.of(2099, 12, 31);
+
+    private static final long FIRST_EPOCH_DAY = FIRST_DAY.toEpochDay();
+    private static final long LAST_EPOCH_DAY = LAST_DAY.toEpochDay();
+
+    /**
+     * 按天的交易日位图
+     */
+    private final long[] bits;
+    /**
+     * bits[i]之前的交易日数量
+     */
+    private final int[] wordRanks;
+    /**
+     * 第N个交易日的epochDay
+     */
+    private final int[] marketDays;
+    /**
+     * 范围外的休市日
+     */
+    private final Set<LocalDate> closeDays;
+
+    MarketDayCalendar(Collection<LocalDate> closeDays){
+        this.closeDays = new HashSet<>(closeDays);
+        int dayCount = (int)(LAST_EPOCH_DAY-FIRST_EPOCH_DAY+1);
+        bits = new long[(dayCount+63)>>>6];
+        wordRanks = new int[bits.length];
+        int[] days = new int[dayCount];
+        int count = 0;
+        LocalDate day = FIRST_DAY;
+        for(int i=0;i<dayCount;i++, day=day.plusDays(1)) {
+            if ( (i&63)==0 ) {
+                wordRanks[i>>>6] = count;
+            }
+            if ( isWeekday(day) && !this.closeDays.contains(day) ) {
+                bits[i>>>6] |= 1L<<i;
+                days[count++] = (int)day.toEpochDay();
+            }
+        }
+        marketDays = new int[count];
+        System.arraycopy(days, 0, marketDays, 0, count);
+    }
+
+    public boolean isMarketDay(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        if ( epochDay<FIRST_EPOCH_DAY || epochDay>LAST_EPOCH_DAY ) {
+            return isWeekday(day) && !closeDays.contains(day);
+        }
+        int i = (int)(epochDay-FIRST_EPOCH_DAY);
+        return (bits[i>>>6] & (1L<<i))!=0;
+    }
+
+    /**
+     * 往后(count>0)或者往前(count<0)第count个交易日, count==0返回day
+     */
+    public LocalDate addMarketDays(LocalDate day, int count) {
+        if ( count==0 ) {
+            return day;
+        }
+        long epochDay = day.toEpochDay();
+        if ( epochDay>=FIRST_EPOCH_DAY && epochDay<=LAST_EPOCH_DAY ) {
+            int index;
+            if ( count>0 ) {
+                index = rankOf(epochDay, true)+count-1;
+            } else {
+                index = rankOf(epochDay, false)+count;
+            }
+            if ( index>=0 && index<marketDays.length ) {
+                return LocalDate.ofEpochDay(marketDays[index]);
+            }
+        }
+        int step = count>0?1:-1;
+        for(int i=Math.abs(count); i>0; i--) {
+            do {
+                day = day.plusDays(step);
+            } while(!isMarketDay(day));
+        }
+        return day;
+    }
+
+    /**
+     * [begin, end]之间的交易日数量
+     */
+    public int marketDaysBetween(LocalDate begin, LocalDate end) {
+        if ( begin.isAfter(end) ) {
+            return 0;
+        }
+        long beginEpochDay = begin.toEpochDay(), endEpochDay = end.toEpochDay();
+        if ( beginEpochDay>=FIRST_EPOCH_DAY && endEpochDay<=LAST_EPOCH_DAY ) {
+            return rankOf(endEpochDay, true) - rankOf(beginEpochDay, false);
+        }
+        int result = 0;
+        for(LocalDate day=begin; !day.isAfter(end); day=day.plusDays(1)) {
+            if ( isMarketDay(day) ) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * [begin, end]之间的所有交易日
+     */
+    public LocalDate[] getMarketDays(LocalDate begin, LocalDate end) {
+        LocalDate[] result = new LocalDate[marketDaysBetween(begin, end)];
+        LocalDate day = begin;
+        if ( result.length>0 && !isMarketDay(day) ) {
+            day = addMarketDays(day, 1);
+        }
+        for(int i=0;i<result.length;i++) {
+            result[i] = day;
+            if ( i+1<result.length ) {
+                day = addMarketDays(day, 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 范围内epochDay之前(inclusive=true时包含当天)的交易日数量
+     */
+    private int rankOf(long epochDay, boolean inclusive) {
+        int i = (int)(epochDay-FIRST_EPOCH_DAY);
+        if ( inclusive ) {
+            i++;
+        }
+        int word = i>>>6, bit = i&63;
+        if ( word>=bits.length ) {
+            return marketDays.length;
+        }
+        return wordRanks[word] + Long.bitCount(bits[word] & ((1L<<bit)-1));
+    }
+
+    private static boolean isWeekday(LocalDate day) {
+        DayOfWeek dayOfWeek = day.getDayOfWeek();
+        return dayOfWeek!=DayOfWeek.SATURDAY && dayOfWeek!=DayOfWeek.SUNDAY;
+    }
+
+}
@@ -1,11 +1,13 @@
 package trader.common.exchangeable;
 
 import java.io.BufferedReader;
+import java.io.InputStream;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -13,15 +15,66 @@ import java.util.Map;
 import trader.common.util.DateUtil;
 import trader.common.util.IOUtil;
 
+/**
+ * 交易日计算.
+ * <BR>每个交易所的休市日预先计算为MarketDayCalendar, 重新加载休市日后整体替换
+ * <BR>依赖交易日计算结果的缓存(交易时间, CTP日期基准)需要比较 getGeneration(), 版本变化后重新计算
+ */
 public class MarketDayUtil {
 
-    private static final Map<String,List<LocalDate>> closeDayMap = new HashMap<>();
+    private static final MarketDayCalendar weekdayCalendar = new MarketDayCalendar(new LinkedList<>());
+    private static volatile Map<String,MarketDayCalendar> calendars = new HashMap<>();
+    /**
+     * 交易日历版本, 每次重新加载后增加
+     */
+    private static volatile int generation;
     static{
-        loadCloseDayMap();
+        reload();
+    }
+
+    /**
+     * 从缺省的marketCloseDays.txt重新加载休市日
+     */
+    public static void reload() {
+        reload(MarketDayUtil.class.getResourceAsStream("marketCloseDays.txt"));
+    }
+
+    /**
+     * 从指定格式的休市日文件重新加载, 重建所有交易所的交易日历
+     */
+    public static synchronized void reload(InputStream is) {
+        Map<String,List<LocalDate>> closeDayMap = loadCloseDayMap(is);
+        Map<String,MarketDayCalendar> calendars = new HashMap<>();
+        Map<List<LocalDate>, MarketDayCalendar> calendarsByCloseDays = new IdentityHashMap<>();
+        for(Map.Entry<String, List<LocalDate>> entry:closeDayMap.entrySet()) {
+            MarketDayCalendar calendar = calendarsByCloseDays.computeIfAbsent(entry.getValue(), (closeDays)->new MarketDayCalendar(closeDays));
+            calendars.put(entry.getKey(), calendar);
+        }
+        MarketDayUtil.calendars = calendars;
+        generation++;
+    }
+
+    /**
+     * 交易日历版本, 先替换日历再增加版本, 看到新版本时一定能看到新的日历
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
+    private static MarketDayCalendar getCalendar(Exchange exchange) {
+        if ( exchange==null ) {
+            exchange = Exchange.SSE;
+        }
+        MarketDayCalendar result = calendars.get(exchange.name());
+        if ( result==null ) {
+            result = weekdayCalendar;
+        }
+        return result;
     }
 
-    private static void loadCloseDayMap(){
-        try(BufferedReader reader = IOUtil.createBufferedReader(MarketDayUtil.class.getResourceAsStream("marketCloseDays.txt"));)
+    private static Map<String,List<LocalDate>> loadCloseDayMap(InputStream is){
+        Map<String,List<LocalDate>> closeDayMap = new HashMap<>();
+        try(BufferedReader reader = IOUtil.createBufferedReader(is);)
         {
             String line = null;
             List<LocalDate> closeDays = null;
@@ -51,10 +104,10 @@ public class MarketDayUtil {
                     closeDayMap.put(exchanges[i], closeDays);
                 }
             }
-            reader.close();
         }catch(Throwable ioe){
             throw new RuntimeException(ioe);
         }
+        return closeDayMap;
     }
 
     private static LocalDate nextWorkingDay(LocalDate tradingDay, boolean nextOrPrev) {
@@ -70,47 +123,21 @@ public class MarketDayUtil {
     }
 
     public static LocalDate[] getMarketDays(Exchange exchange, LocalDate beginDay, LocalDate endDay){
-        List<LocalDate> result = new LinkedList<>();
-        if ( exchange==null ) {
-            exchange = Exchange.SSE;
-        }
         if ( endDay==null ) {
             endDay = lastMarketDay(exchange, false);
         }
-        List<LocalDate> closeDays = closeDayMap.get(exchange.name());
-        LocalDate currTradingDay = beginDay;
+        return getCalendar(exchange).getMarketDays(beginDay, endDay);
+    }
 
-        while(true){
-            if ( currTradingDay.isAfter(endDay)) {
-                break;
-            }
-            DayOfWeek dayOfWeek = currTradingDay.getDayOfWeek();
-            if ( dayOfWeek.getValue() >= DayOfWeek.MONDAY.getValue() && dayOfWeek.getValue()<=DayOfWeek.FRIDAY.getValue() ){
-                if ( closeDays!=null && !closeDays.contains(currTradingDay) ) {
-                    result.add(currTradingDay);
-                }
-            }
-            currTradingDay = currTradingDay.plusDays(1);
-        }
-        return result.toArray(new LocalDate[result.size()]);
+    /**
+     * [beginDay, endDay]之间的交易日数量
+     */
+    public static int marketDaysBetween(Exchange exchange, LocalDate beginDay, LocalDate endDay) {
+        return getCalendar(exchange).marketDaysBetween(beginDay, endDay);
     }
 
     public static LocalDate computeMarketDay(Exchange exchange, LocalDate day, int toAdd){
-        if (toAdd==0) {
-            return day;
-        }
-        if (toAdd>0){
-            for(int i=0;i<toAdd;i++){
-                day = nextMarketDay(exchange, day );
-            }
-            return day;
-        }else if ( toAdd<0 ){
-            for(int i=0;i<Math.abs(toAdd);i++){
-                day = prevMarketDay(exchange, day );
-            }
-            return day;
-        }
-        return null;
+        return getCalendar(exchange).addMarketDays(day, toAdd);
     }
 
     /**
@@ -119,58 +146,30 @@ public class MarketDayUtil {
      * @param count >0 后面的交易日, <0 前交易日 ==0 不变
      */
     public static LocalDate nextMarketDays(Exchange exchange, LocalDate tradingDay, int count) {
-        LocalDate result = tradingDay;
-        if ( count==0 ) {
-            return tradingDay;
-        }else if ( count>0 ) {
-            for(int i=0;i<count;i++) {
-                result = nextMarketDay(exchange, tradingDay);
-            }
-        }else if ( count<0 ) {
-            count = Math.abs(count);
-            for(int i=0;i<count;i++) {
-                result = prevMarketDay(exchange, tradingDay, false);
-            }
-
-        }
-        return result;
+        return getCalendar(exchange).addMarketDays(tradingDay, count);
     }
 
     /**
      * 上一个交易日
      */
     public static LocalDate prevMarketDay(Exchange exchange, LocalDate tradingDay){
-        return prevMarketDay(exchange, tradingDay, false);
+        return getCalendar(exchange).addMarketDays(tradingDay, -1);
     }
 
     /**
      * 上一个交易日
      */
     public static LocalDate prevMarketDay(Exchange exchange, LocalDate tradingDay, boolean stopOnHolidy){
-        if ( exchange==null ) {
-            exchange = Exchange.SSE;
+        if ( !stopOnHolidy ) {
+            return prevMarketDay(exchange, tradingDay);
         }
-        List<LocalDate> closeDays = closeDayMap.get(exchange.name());
-
-        while(true){
-            tradingDay = tradingDay.plusDays(-1);
-            DayOfWeek dayOfWeek = tradingDay.getDayOfWeek();
-            if ( dayOfWeek == DayOfWeek.SUNDAY || dayOfWeek==DayOfWeek.SATURDAY) {
-                continue;
-            }
-            if ( closeDays!=null && closeDays.contains(tradingDay) ) {
-                if ( !stopOnHolidy ) {
-                    continue;
-                }
-                tradingDay = null;
-                break;
-            }
-            break;
+        tradingDay = nextWorkingDay(tradingDay, false);
+        if ( !getCalendar(exchange).isMarketDay(tradingDay) ) {
+            tradingDay = null;
         }
         return tradingDay;
     }
 
-
     /**
      * 上一个交易日
      *
@@ -182,7 +181,7 @@ public class MarketDayUtil {
         if ( exchange==null ) {
             exchange = Exchange.SSE;
         }
-        List<LocalDate> closeDays = closeDayMap.get(exchange.name());
+        MarketDayCalendar calendar = getCalendar(exchange);
         LocalDateTime tradingDateTime = DateUtil.getCurrentTime();
         DayOfWeek dayOfWeek = tradingDateTime.getDayOfWeek();
         if ( !exchange.isFuture() ) {
@@ -193,18 +192,11 @@ public class MarketDayUtil {
                     tradingDateTime = tradingDateTime.plusDays(-1);
                 }
             }
-            while(true){
-                dayOfWeek = tradingDateTime.getDayOfWeek();
-                if ( dayOfWeek == DayOfWeek.SUNDAY || dayOfWeek==DayOfWeek.SATURDAY){
-                    tradingDateTime = tradingDateTime.plusDays(-1);
-                    continue;
-                }
-                if ( closeDays!=null && closeDays.contains(tradingDateTime.toLocalDate()) ){
-                    tradingDateTime = tradingDateTime.plusDays(-1);
-                    continue;
-                }
-                return tradingDateTime.toLocalDate();
+            LocalDate tradingDay = tradingDateTime.toLocalDate();
+            if ( calendar.isMarketDay(tradingDay) ) {
+                return tradingDay;
             }
+            return calendar.addMarketDays(tradingDay, -1);
         }else { //期货有夜市, 夜市的交易日是下一日
             if ( completed && (dayOfWeek==DayOfWeek.MONDAY
                     ||dayOfWeek==DayOfWeek.TUESDAY
@@ -215,52 +207,20 @@ public class MarketDayUtil {
                     tradingDateTime = tradingDateTime.plusDays(1);
                 }
             }
-            while(true){
-                dayOfWeek = tradingDateTime.getDayOfWeek();
-                if ( dayOfWeek == DayOfWeek.SUNDAY || dayOfWeek==DayOfWeek.SATURDAY){
-                    tradingDateTime = tradingDateTime.plusDays(-1);
-                    continue;
-                }
-                if ( closeDays!=null && closeDays.contains(tradingDateTime.toLocalDate()) ){
-                    tradingDateTime = tradingDateTime.plusDays(-1);
-                    continue;
-                }
-                return tradingDateTime.toLocalDate();
+            LocalDate tradingDay = tradingDateTime.toLocalDate();
+            if ( calendar.isMarketDay(tradingDay) ) {
+                return tradingDay;
             }
+            return calendar.addMarketDays(tradingDay, -1);
         }
     }
 
     public static boolean isMarketDay(Exchange exchange, LocalDate tradingDay){
-        if ( exchange==null ) {
-            exchange = Exchange.SSE;
-        }
-        List<LocalDate> closeDays = closeDayMap.get(exchange.name());
-        DayOfWeek dayOfWeek = tradingDay.getDayOfWeek();
-        if ( dayOfWeek == DayOfWeek.SUNDAY || dayOfWeek==DayOfWeek.SATURDAY){
-            return false;
-        }
-        if ( closeDays!=null && closeDays.contains(tradingDay) ) {
-            return false;
-        }
-        return true;
+        return getCalendar(exchange).isMarketDay(tradingDay);
     }
 
     public static LocalDate nextMarketDay(Exchange exchange, LocalDate tradingDay){
-        if ( exchange==null ) {
-            exchange = Exchange.SSE;
-        }
-        List<LocalDate> closeDays = closeDayMap.get(exchange.name());
-        while(true){
-            tradingDay = tradingDay.plusDays(1);
-            DayOfWeek dayOfWeek = tradingDay.getDayOfWeek();
-            if ( dayOfWeek == DayOfWeek.SUNDAY || dayOfWeek==DayOfWeek.SATURDAY) {
-                continue;
-            }
-            if ( closeDays!=null && closeDays.contains(tradingDay) ) {
-                continue;
-            }
-            return tradingDay;
-        }
+        return getCalendar(exchange).addMarketDays(tradingDay, 1);
     }
 
     public static LocalDate thisOrNextMarketDay(Exchange exchange, LocalDate tradingDay, boolean thisCompleted){
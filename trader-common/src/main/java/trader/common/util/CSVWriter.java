@@ -69,19 +69,19 @@ public class CSVWriter<T> {
         this.delimiter = c;
     }
 
-    public CSVWriter next()
+    public CSVWriter<T> next()
     {
         row = new String[columnHeader.length];
         rows.add(row);
         return this;
     }
 
-    public CSVWriter fromDataSet(CSVDataSet csvDS) {
+    public CSVWriter<T> fromDataSet(CSVDataSet csvDS) {
         setRow(csvDS.getRow());
         return this;
     }
 
-    public CSVWriter fromDataSetAll(CSVDataSet csvDS) {
+    public CSVWriter<T> fromDataSetAll(CSVDataSet csvDS) {
         while(csvDS.next()) {
             next().setRow(csvDS.getRow());
         }
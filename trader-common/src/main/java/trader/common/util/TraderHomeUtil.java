@@ -55,6 +55,10 @@ public class TraderHomeUtil {
      * 工作目录, 程序关闭后可放心删除
      */
     public static final String DIR_WORK = "data/work";
+    /**
+     * 跨交易日保留的缓存数据目录, 例如费率缓存. 删除后会重新查询
+     */
+    public static final String DIR_CACHE = "data/cache";
 
     public static final String DIR_ETC = "etc";
 
@@ -116,6 +120,8 @@ public class TraderHomeUtil {
             return new File(getTraderHome(), "data/trash");
         case DIR_MARKETDATA:
             return new File(getTraderHome(), "data/marketData");
+        case DIR_CACHE:
+            return new File(getTraderHome(), "data/cache");
         case DIR_WORK:
             String traderConfigName = System.getProperty(PROP_TRADER_CONFIG_NAME);
             File result = new File(getTraderHome(), "data/work/"+traderConfigName);
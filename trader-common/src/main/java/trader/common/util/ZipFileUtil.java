@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
@@ -145,6 +146,21 @@ public class ZipFileUtil {
         return result;
     }
 
+    /**
+     * 打开压缩文件中的文件, 不存在返回null. 关闭返回的流时同时关闭压缩文件
+     */
+    public static InputStream archiveOpen(File zip, String pathInZip)
+            throws IOException
+    {
+        net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
+        FileHeader fileHeader = zipFile.getFileHeader(pathInZip);
+        if ( fileHeader==null ) {
+            zipFile.close();
+            return null;
+        }
+        return zipFile.getInputStream(fileHeader);
+    }
+
     /**
      * returns a list of file name and content(in UTF-8) format.
      */
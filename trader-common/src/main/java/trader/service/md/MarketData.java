@@ -149,6 +149,26 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
      */
     public int mktTime;
 
+    /**
+     * 收到行情的System.nanoTime(), 只在TickLatencyTracker启用时设置
+     */
+    public long recvNanos;
+
+    /**
+     * MarketDataService从disruptor取出行情的System.nanoTime(), 只在TickLatencyTracker启用时设置
+     */
+    public long dispatchNanos;
+
+    /**
+     * 是否为池化对象: 由RingBuffer预分配并循环复用, 只在listener回调期间有效
+     */
+    protected boolean pooled;
+
+    /**
+     * 池化对象本次填充后的独立复制, 由detach()创建并在全部listener之间共享, 重新填充时清除
+     */
+    protected MarketData detached;
+
     public abstract String getCsvHead();
 
     public abstract void toCsvRow(StringBuilder rowBuf);
@@ -205,6 +225,155 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
     @Override
     public abstract MarketData clone();
 
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * 创建一个同类型的空对象, 用于copy()
+     */
+    protected abstract MarketData newInstance();
+
+    /**
+     * 原地复制全部字段, 盘口数组在长度相同时复用, 不会引用源对象的数组.
+     */
+    public MarketData copyFrom(MarketData src) {
+        producerId = src.producerId;
+        tradingDay = src.tradingDay;
+        instrument = src.instrument;
+        volume = src.volume;
+        turnover = src.turnover;
+        openInterest = src.openInterest;
+        lastPrice = src.lastPrice;
+        updateTime = src.updateTime;
+        updateTimestamp = src.updateTimestamp;
+        preSettlementPrice = src.preSettlementPrice;
+        preClosePrice = src.preClosePrice;
+        openPrice = src.openPrice;
+        highestPrice = src.highestPrice;
+        lowestPrice = src.lowestPrice;
+        averagePrice = src.averagePrice;
+        upperLimitPrice = src.upperLimitPrice;
+        lowerLimitPrice = src.lowerLimitPrice;
+        depth = src.depth;
+        bidPrices = copyArray(bidPrices, src.bidPrices);
+        bidVolumes = copyArray(bidVolumes, src.bidVolumes);
+        bidCounts = copyArray(bidCounts, src.bidCounts);
+        askPrices = copyArray(askPrices, src.askPrices);
+        askVolumes = copyArray(askVolumes, src.askVolumes);
+        askCounts = copyArray(askCounts, src.askCounts);
+        mktTimes = src.mktTimes;
+        mktStage = src.mktStage;
+        mktTime = src.mktTime;
+        recvNanos = src.recvNanos;
+        dispatchNanos = src.dispatchNanos;
+        detached = null;
+        return this;
+    }
+
+    /**
+     * 复制一个独立的非池化对象. 池化模式下, 需要在回调之外保留TICK的listener必须调用这个函数.
+     */
+    public MarketData copy() {
+        return newInstance().copyFrom(this);
+    }
+
+    /**
+     * 池化对象返回一个独立的复制, 否则返回自身.
+     * <BR>同一次填充只复制一次, 多个需要保留TICK的listener共享同一个复制, 所以调用前必须已经完成对TICK的修改
+     */
+    public MarketData detach() {
+        if ( pooled ) {
+            MarketData result = detached;
+            if ( result==null ) {
+                result = copy();
+                detached = result;
+            }
+            return result;
+        }
+        return this;
+    }
+
+    /**
+     * 估算TICK对象占用的内存字节数(64位JVM, 压缩指针), 包含盘口数组和字符串, 用于按内存大小限制TICK缓存
+     * <BR>合约, 交易时间等多个TICK共享的对象不计入
+     */
+    public long estimateBytes() {
+        long result = OBJECT_BYTES;
+        result += estimateBytes(producerId);
+        result += estimateBytes(tradingDay);
+        if ( updateTime!=null ) {
+            result += LOCALDATETIME_BYTES;
+        }
+        result += estimateBytes(bidPrices);
+        result += estimateBytes(bidVolumes);
+        result += estimateBytes(bidCounts);
+        result += estimateBytes(askPrices);
+        result += estimateBytes(askVolumes);
+        result += estimateBytes(askCounts);
+        return result;
+    }
+
+    /**
+     * 对象头12字节, 17个long, 2个int, 13个引用, 1个boolean, 按8字节对齐
+     */
+    private static final long OBJECT_BYTES = align(12+17*8+2*4+13*4+1);
+
+    /**
+     * LocalDateTime/LocalDate/LocalTime 三个对象
+     */
+    private static final long LOCALDATETIME_BYTES = 3*24;
+
+    /**
+     * String对象24字节, 加上Latin1编码的byte[]
+     */
+    protected static long estimateBytes(String str) {
+        if ( str==null ) {
+            return 0;
+        }
+        return 24+align(16+str.length());
+    }
+
+    protected static long estimateBytes(long[] array) {
+        if ( array==null ) {
+            return 0;
+        }
+        return align(16+8L*array.length);
+    }
+
+    protected static long estimateBytes(int[] array) {
+        if ( array==null ) {
+            return 0;
+        }
+        return align(16+4L*array.length);
+    }
+
+    protected static long align(long bytes) {
+        return (bytes+7)&~7L;
+    }
+
+    private static long[] copyArray(long[] dest, long[] src) {
+        if ( src==null ) {
+            return null;
+        }
+        if ( dest==null || dest.length!=src.length ) {
+            dest = new long[src.length];
+        }
+        System.arraycopy(src, 0, dest, 0, src.length);
+        return dest;
+    }
+
+    private static int[] copyArray(int[] dest, int[] src) {
+        if ( src==null ) {
+            return null;
+        }
+        if ( dest==null || dest.length!=src.length ) {
+            dest = new int[src.length];
+        }
+        System.arraycopy(src, 0, dest, 0, src.length);
+        return dest;
+    }
+
     @Override
     public JsonElement toJson() {
         JsonObject json = new JsonObject();
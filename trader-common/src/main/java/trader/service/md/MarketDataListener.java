@@ -1,10 +1,20 @@
 package trader.service.md;
 
 /**
- * MarketData 回调函数
+ * MarketData 回调函数.
+ * <BR>回调的TICK是只读的: 回测时缓存的TICK被并行的多个回测共享, 池化模式下TICK会被复用. 需要修改时先调用 MarketData.copy()
  */
 public interface MarketDataListener {
 
     public void onMarketData(MarketData marketData);
 
+    /**
+     * 是否可以在行情分片线程中被调用.
+     * <BR>分片模式下不同合约的行情会在多个线程中并发回调, 同一合约的行情仍然保持顺序.
+     * 缺省返回false, 这时行情会被转发到MD主线程按原有方式回调.
+     */
+    public default boolean isShardSafe() {
+        return false;
+    }
+
 }
@@ -0,0 +1,302 @@
+package trader.service.md;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData.DataInfo;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.JsonEnabled;
+
+/**
+ * 解码后的TICK行情缓存, 按 (合约, 交易日, 数据类型) 缓存, 线程安全.
+ * <BR>按MarketData.estimateBytes()估算的内存字节数限制总大小, 超出时按LRU淘汰; 同一数据多个线程同时请求时只加载一次.
+ * <BR>缓存的行情数据已经完成清理和postProcess, 使用者不能修改.
+ * <BR>调用者可以要求在后台线程预加载下一交易日的数据, 但不超过指定的结束交易日, 缓存本身没有全局的预加载开关
+ */
+public class MarketDataTickCache implements JsonEnabled {
+    private final static Logger logger = LoggerFactory.getLogger(MarketDataTickCache.class);
+
+    /**
+     * 加载一个交易日的TICK数据
+     */
+    public static interface TicksLoader {
+        public List<MarketData> load(Exchangeable instrument, LocalDate tradingDay, DataInfo dataInfo) throws Exception;
+    }
+
+    private static class CacheEntry {
+        final String key;
+        final FutureTask<List<MarketData>> task;
+        /**
+         * 加载完成后才计入总大小
+         */
+        long bytes;
+
+        CacheEntry(String key, FutureTask<List<MarketData>> task){
+            this.key = key;
+            this.task = task;
+        }
+    }
+
+    private static MarketDataTickCache defaultInstance;
+
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private ExecutorService prefetchExecutor;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+    private AtomicLong prefetches = new AtomicLong();
+
+    public MarketDataTickCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 缺省的进程内共享实例, 最大使用1/4的堆内存
+     */
+    public static synchronized MarketDataTickCache getDefault() {
+        if ( defaultInstance==null ) {
+            defaultInstance = new MarketDataTickCache(Runtime.getRuntime().maxMemory()/4);
+        }
+        return defaultInstance;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getTotalBytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回缓存的TICK数据, 不存在时调用loader加载
+     */
+    public List<MarketData> getTicks(Exchangeable instrument, LocalDate tradingDay, DataInfo dataInfo, TicksLoader loader) throws Exception
+    {
+        return getTicks(instrument, tradingDay, dataInfo, loader, null);
+    }
+
+    /**
+     * 返回缓存的TICK数据, 不存在时调用loader加载
+     *
+     * @param prefetchEndDay 在后台线程预加载下一交易日的数据, 用于逐日回测; 下一交易日晚于这个日期时不预加载, null表示不预加载
+     */
+    public List<MarketData> getTicks(Exchangeable instrument, LocalDate tradingDay, DataInfo dataInfo, TicksLoader loader, LocalDate prefetchEndDay) throws Exception
+    {
+        List<MarketData> result = getTicks0(instrument, tradingDay, dataInfo, loader, true);
+        if ( prefetchEndDay!=null ) {
+            LocalDate nextDay = MarketDayUtil.nextMarketDay(instrument.exchange(), tradingDay);
+            if ( nextDay!=null && !nextDay.isAfter(prefetchEndDay) && !contains(instrument, nextDay, dataInfo) ) {
+                getPrefetchExecutor().execute(()->{
+                    try {
+                        getTicks0(instrument, nextDay, dataInfo, loader, false);
+                        prefetches.incrementAndGet();
+                    }catch(Throwable t) {
+                        logger.debug("Prefetch "+instrument+" "+nextDay+" failed: "+t);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    public boolean contains(Exchangeable instrument, LocalDate tradingDay, DataInfo dataInfo) {
+        String key = key(instrument, tradingDay, dataInfo);
+        lock.lock();
+        try {
+            return entries.containsKey(key);
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            totalBytes = 0;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 估算一个交易日TICK数据占用的内存字节数
+     */
+    public static long estimateBytes(List<MarketData> ticks) {
+        //ArrayList对象和数组
+        long result = 24+16+4L*ticks.size();
+        for(MarketData tick:ticks) {
+            result += tick.estimateBytes();
+        }
+        return result;
+    }
+
+    @Override
+    public JsonElement toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("maxBytes", maxBytes);
+        json.addProperty("totalBytes", getTotalBytes());
+        json.addProperty("size", size());
+        json.addProperty("hits", hits.get());
+        json.addProperty("misses", misses.get());
+        json.addProperty("evictions", evictions.get());
+        json.addProperty("prefetches", prefetches.get());
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+
+    private synchronized ExecutorService getPrefetchExecutor() {
+        if ( prefetchExecutor==null ) {
+            prefetchExecutor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (Runnable r)->{
+                Thread thread = new Thread(r, "TickCachePrefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetchExecutor;
+    }
+
+    private List<MarketData> getTicks0(Exchangeable instrument, LocalDate tradingDay, DataInfo dataInfo, TicksLoader loader, boolean countStats) throws Exception
+    {
+        String key = key(instrument, tradingDay, dataInfo);
+        CacheEntry entry = null;
+        boolean load = false;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if ( entry==null ) {
+                entry = new CacheEntry(key, new FutureTask<>(()->{
+                    return loader.load(instrument, tradingDay, dataInfo);
+                }));
+                entries.put(key, entry);
+                load = true;
+            }
+        }finally {
+            lock.unlock();
+        }
+        if ( countStats ) {
+            if ( load ) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+        }
+        if ( load ) {
+            entry.task.run();
+        }
+        List<MarketData> result = null;
+        try {
+            result = entry.task.get();
+        }catch(ExecutionException ee) {
+            //加载失败不缓存
+            remove(entry);
+            Throwable cause = ee.getCause();
+            if ( cause instanceof Exception ) {
+                throw (Exception)cause;
+            }
+            throw ee;
+        }
+        if ( load ) {
+            onLoaded(entry, result);
+        }
+        return result;
+    }
+
+    /**
+     * 加载完成后计入大小, 超出限制时淘汰最久未使用的数据
+     */
+    private void onLoaded(CacheEntry entry, List<MarketData> ticks) {
+        int evicted = 0;
+        lock.lock();
+        try {
+            if ( entries.get(entry.key)!=entry ) {
+                return;
+            }
+            entry.bytes = estimateBytes(ticks);
+            totalBytes += entry.bytes;
+            for(Iterator<Map.Entry<String, CacheEntry>> it=entries.entrySet().iterator(); it.hasNext() && totalBytes>maxBytes;) {
+                CacheEntry entry0 = it.next().getValue();
+                if ( entry0==entry || !entry0.task.isDone() ) {
+                    continue;
+                }
+                it.remove();
+                totalBytes -= entry0.bytes;
+                evicted++;
+            }
+        }finally {
+            lock.unlock();
+        }
+        evictions.addAndGet(evicted);
+    }
+
+    private void remove(CacheEntry entry) {
+        lock.lock();
+        try {
+            if ( entries.get(entry.key)==entry ) {
+                entries.remove(entry.key);
+                totalBytes -= entry.bytes;
+            }
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    private static String key(Exchangeable instrument, LocalDate tradingDay, DataInfo dataInfo) {
+        return instrument.uniqueId()+"-"+DateUtil.date2str(tradingDay)+"-"+dataInfo.name();
+    }
+
+}
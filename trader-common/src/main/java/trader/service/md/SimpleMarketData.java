@@ -14,6 +14,11 @@ public class SimpleMarketData extends MarketData {
         return cloneImpl(new SimpleMarketData());
     }
 
+    @Override
+    protected MarketData newInstance() {
+        return new SimpleMarketData();
+    }
+
     @Override
     public String getCsvHead() {
         return null;
@@ -0,0 +1,111 @@
+package trader.service.md;
+
+import trader.service.stats.LatencyHistogram;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
+
+/**
+ * TICK处理链路的延迟统计, 从收到行情开始计时:
+ * <BR>mdDispatch: MarketDataService从disruptor取出
+ * <BR>barUpdate: KBar更新完成
+ * <BR>tradletOnTick: 交易策略组线程开始处理
+ * <BR>orderSend: 策略在onTick中报单, 报单发送完成
+ * <BR>未启用时每个阶段只有一次volatile静态变量读取
+ */
+public class TickLatencyTracker {
+    public static final String SERVICE = "TickLatency";
+
+    public static final String ITEM_MD_DISPATCH = "mdDispatch";
+    public static final String ITEM_BAR_UPDATE = "barUpdate";
+    public static final String ITEM_TRADLET_ON_TICK = "tradletOnTick";
+    public static final String ITEM_ORDER_SEND = "orderSend";
+
+    /**
+     * 在各个行情/策略线程中读取. 启用时先初始化分布指标再设置, 读到true的线程也能看到初始化后的指标
+     */
+    private static volatile boolean enabled;
+
+    private static LatencyHistogram mdDispatch;
+    private static LatencyHistogram barUpdate;
+    private static LatencyHistogram tradletOnTick;
+    private static LatencyHistogram orderSend;
+
+    /**
+     * 策略组线程当前正在处理的TICK的recvNanos
+     */
+    private static final ThreadLocal<long[]> currTickRecvNanos = ThreadLocal.withInitial(()->new long[1]);
+
+    /**
+     * 注册延迟分布指标并启用统计, 需要在行情开始前调用
+     */
+    public static synchronized void enable(StatsCollector statsCollector) {
+        if ( enabled ) {
+            return;
+        }
+        mdDispatch = statsCollector.registerHistogram(new StatsItem(SERVICE, ITEM_MD_DISPATCH));
+        barUpdate = statsCollector.registerHistogram(new StatsItem(SERVICE, ITEM_BAR_UPDATE));
+        tradletOnTick = statsCollector.registerHistogram(new StatsItem(SERVICE, ITEM_TRADLET_ON_TICK));
+        orderSend = statsCollector.registerHistogram(new StatsItem(SERVICE, ITEM_ORDER_SEND));
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 行情源收到行情
+     */
+    public static void onReceived(MarketData md) {
+        md.recvNanos = enabled?System.nanoTime():0;
+    }
+
+    /**
+     * MarketDataService开始处理行情
+     */
+    public static void onDispatch(MarketData md) {
+        if ( enabled && md.recvNanos!=0 ) {
+            long now = System.nanoTime();
+            md.dispatchNanos = now;
+            mdDispatch.record(now-md.recvNanos);
+        }
+    }
+
+    /**
+     * KBar更新完成
+     */
+    public static void onBarUpdated(MarketData md) {
+        if ( enabled && md.recvNanos!=0 ) {
+            barUpdate.record(System.nanoTime()-md.recvNanos);
+        }
+    }
+
+    /**
+     * 策略组线程开始处理TICK, 之后到 endTradletTick 之前的报单都关联到这个TICK
+     */
+    public static void beginTradletTick(MarketData md) {
+        if ( enabled && md.recvNanos!=0 ) {
+            tradletOnTick.record(System.nanoTime()-md.recvNanos);
+            currTickRecvNanos.get()[0] = md.recvNanos;
+        }
+    }
+
+    public static void endTradletTick() {
+        if ( enabled ) {
+            currTickRecvNanos.get()[0] = 0;
+        }
+    }
+
+    /**
+     * 报单已发送, 只记录策略组线程处理TICK时发出的报单
+     */
+    public static void onOrderSent() {
+        if ( enabled ) {
+            long recvNanos = currTickRecvNanos.get()[0];
+            if ( recvNanos!=0 ) {
+                orderSend.record(System.nanoTime()-recvNanos);
+            }
+        }
+    }
+
+}
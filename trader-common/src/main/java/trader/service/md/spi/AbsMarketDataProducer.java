@@ -1,5 +1,6 @@
 package trader.service.md.spi;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -23,6 +24,8 @@ import trader.common.util.StringUtil;
 import trader.service.ServiceConstants.ConnState;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataProducer;
+import trader.service.md.TickLatencyTracker;
+import trader.service.trade.MarketTimeService;
 
 public abstract class AbsMarketDataProducer<T> implements AutoCloseable, MarketDataProducer<T> {
     private final static Logger logger = LoggerFactory.getLogger(AbsMarketDataProducer.class);
@@ -36,6 +39,10 @@ public abstract class AbsMarketDataProducer<T> implements AutoCloseable, MarketD
     protected AtomicLong tickCount = new AtomicLong();
     protected int connectCount;
     protected List<String> subscriptions = new ArrayList<>();
+    /**
+     * 池化TICK模式: 在RingBuffer持有的MarketData槽位上原地填充
+     */
+    protected volatile boolean pooled;
 
     public AbsMarketDataProducer(BeansContainer beansContainer, Map configMap) {
         id = "unknown";
@@ -89,6 +96,47 @@ public abstract class AbsMarketDataProducer<T> implements AutoCloseable, MarketD
         return stateTime;
     }
 
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * 设置池化TICK模式, 只有支持 fillPooledMarketData 的Producer才会生效
+     */
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled && supportsPooled();
+    }
+
+    /**
+     * 是否支持池化TICK模式
+     */
+    public boolean supportsPooled() {
+        return false;
+    }
+
+    /**
+     * 在池化的MarketData槽位上原地填充原始行情数据.
+     * <BR>缺省实现用 createMarketData 创建对象, 再复制到类型相同的池化槽位; 没有可用槽位时返回新创建的非池化对象
+     *
+     * @param slot 已有的槽位对象, 可能为null或者类型不符
+     * @return 填充后的槽位, 如果slot不可用, 返回新创建的对象
+     */
+    public MarketData fillPooledMarketData(MarketData slot, T rawMarketData, Exchangeable instrument) {
+        LocalDate tradingDay = null;
+        MarketTimeService mtService = null;
+        if ( null!=beansContainer ) {
+            mtService = beansContainer.getBean(MarketTimeService.class);
+        }
+        if ( null!=mtService ) {
+            tradingDay = mtService.getTradingDay();
+        }
+        MarketData md = createMarketData(rawMarketData, tradingDay);
+        if ( null!=slot && slot.isPooled() && slot.getClass()==md.getClass() ) {
+            return slot.copyFrom(md);
+        }
+        return md;
+    }
+
     public long getTickCount() {
         return tickCount.get();
     }
@@ -137,9 +185,18 @@ public abstract class AbsMarketDataProducer<T> implements AutoCloseable, MarketD
 
     protected void notifyData(MarketData md) {
         tickCount.incrementAndGet();
+        TickLatencyTracker.onReceived(md);
         listener.onMarketData(md);
     }
 
+    /**
+     * 池化模式下通知原始行情数据, 由listener在RingBuffer槽位上调用 fillPooledMarketData 填充
+     */
+    protected void notifyPooledData(T rawMarketData, Exchangeable instrument) {
+        tickCount.incrementAndGet();
+        listener.onPooledMarketData(this, rawMarketData, instrument);
+    }
+
     protected static String decrypt(String str) {
         String result = str;
         if ( EncryptionUtil.isEncryptedData(str) ) {
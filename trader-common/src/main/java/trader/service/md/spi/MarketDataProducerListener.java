@@ -1,5 +1,6 @@
 package trader.service.md.spi;
 
+import trader.common.exchangeable.Exchangeable;
 import trader.service.ServiceConstants.ConnState;
 import trader.service.md.MarketData;
 
@@ -8,4 +9,9 @@ public interface MarketDataProducerListener {
     public void onStateChanged(AbsMarketDataProducer producer, ConnState lastStatus);
 
     public void onMarketData(MarketData md);
+
+    /**
+     * 池化模式的原始行情数据, 需要调用 producer.fillPooledMarketData 填充
+     */
+    public <T> void onPooledMarketData(AbsMarketDataProducer<T> producer, T rawMarketData, Exchangeable instrument);
 }
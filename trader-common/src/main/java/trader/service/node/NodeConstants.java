@@ -44,7 +44,7 @@ public interface NodeConstants {
 
     /**
      * Client->Broker, 订阅某个Topic. 消息字段:
-     * <LI>topics: string array, topic名称列表
+     * <LI>topics: string array, 全部订阅的topic名称列表, 支持 * 和 ** 通配符, 参见 TopicTrie
      */
     public static final String TYPE_TOPICSUB_REQ = "TopicSubReq";
     public static final String TYPE_TOPICSUB_REP = "TopicSubRep";
@@ -69,11 +69,14 @@ public interface NodeConstants {
      * <LI>exchangeable: string, 合约名
      * <LI>dataInfo: string, dataInfo名称
      * <LI>tradingDay: string, 交易日
+     * <LI>endTradingDay: string, 可选, 结束交易日
+     * <LI>chunkRows: int, 可选, 每个返回消息的最大行数
      */
     public static final String TYPE_DATAQUERY_REQ = "DataQueryReq";
     /**
-     * Broker->Client, 查询结果:消息字段:
-     * <LI>data: string, CSV格式查询结果
+     * Broker->Client, 查询结果, 按行分块返回多个消息, reqId都是请求消息的id. 消息字段:
+     * <LI>data: string, CSV格式查询结果, 每块都包含表头
+     * <LI>moreData: boolean, 是否还有后续消息
      */
     public static final String TYPE_DATAQUERY_REP = "DataQueryRep";
 
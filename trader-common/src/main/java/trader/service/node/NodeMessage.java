@@ -85,6 +85,14 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
      * 交易日
      */
     public static final String FIELD_TRADING_DAY = "tradingDay";
+    /**
+     * 结束交易日, 与tradingDay一起查询多个交易日的数据
+     */
+    public static final String FIELD_END_TRADING_DAY = "endTradingDay";
+    /**
+     * 分块返回时每块的最大行数
+     */
+    public static final String FIELD_CHUNK_ROWS = "chunkRows";
     /**
      * DataInfo
      */
@@ -98,6 +106,15 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
      */
     public static final String FIELD_PATH = "path";
     public static final String FIELD_RESULT = "result";
+    /**
+     * Client支持的消息编码格式列表, 按优先级排列. InitReq设置
+     * @see NodeMessageCodec
+     */
+    public static final String FIELD_CODECS = "codecs";
+    /**
+     * Broker选择的消息编码格式, 在InitRep中返回, 之后双方使用这个格式发送消息
+     */
+    public static final String FIELD_CODEC = "codec";
 
     private String type;
     private int id;
@@ -114,7 +131,7 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
         this(type, nextId.incrementAndGet(), 0, 0, null);
     }
 
-    private NodeMessage(String type, int id, int reqId, int corrId, Map<String,Object> fields) {
+    NodeMessage(String type, int id, int reqId, int corrId, Map<String,Object> fields) {
         this.type = type;
         this.id = id;
         this.reqId = reqId;
@@ -126,7 +143,7 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
     }
 
     /**
-     * 创建返回消息, Message Type 改为返回消息Type, InitReq->InitResp, reqId 保持不变.
+     * 创建返回消息, Message Type 改为返回消息Type, InitReq->InitResp, reqId 为请求消息的ID.
      */
     public NodeMessage createResponse() {
         String responseType = null;
@@ -212,6 +229,9 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
         JsonObject json = new JsonObject();
         json.addProperty(FIELD_TYPE, type);
         json.addProperty(FIELD_ID, id);
+        if ( reqId!=0 ) {
+            json.addProperty(FIELD_REQID, reqId);
+        }
         json.addProperty(FIELD_CORRID, corrId);
         json.addProperty(FIELD_ERROR_CODE, errCode);
         if ( errCode!=0 ) {
@@ -0,0 +1,628 @@
+package trader.service.node;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import trader.common.util.JsonUtil;
+
+/**
+ * NodeMessage 的二进制编解码, 每个WebSocket连接一个实例, 在InitReq/InitRep中协商:
+ * <LI>json: TextMessage 传输JSON文本, 便于调试
+ * <LI>binary: BinaryMessage 传输二进制格式, 消息类型和字段名使用字符串表编码, 重复的字段名和短字符串只传输下标
+ * <LI>binary+deflate: 在binary基础上, 超过COMPRESS_MIN_SIZE字节的消息使用Deflate压缩
+ * <BR>解码时根据内容判断格式, 总是可以解码JSON文本. 静态字符串表是协议的一部分, 只能在末尾增加
+ */
+public class NodeMessageCodec {
+
+    public static final String CODEC_JSON = "json";
+    public static final String CODEC_BINARY = "binary";
+    public static final String CODEC_BINARY_DEFLATE = "binary+deflate";
+
+    /**
+     * 按优先级排列的编码格式
+     */
+    private static final List<String> CODECS = Collections.unmodifiableList(Arrays.asList(CODEC_BINARY_DEFLATE, CODEC_BINARY, CODEC_JSON));
+
+    /**
+     * 小于这个长度的消息不压缩
+     */
+    public static final int COMPRESS_MIN_SIZE = 256;
+
+    /**
+     * 二进制消息第一个字节: 高4位固定, 最低位表示是否压缩. 与JSON文本的 '{' 不冲突
+     */
+    private static final int MAGIC = 0xB0;
+    private static final int FLAG_DEFLATE = 0x01;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_DOUBLE = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_STRING_REF = 6;
+    private static final int TAG_ARRAY = 7;
+    private static final int TAG_OBJECT = 8;
+
+    /**
+     * 可以加入字符串表的最大字符串长度
+     */
+    private static final int MAX_REF_STRING_LENGTH = 64;
+    /**
+     * 单个消息中字符串表的最大长度
+     */
+    private static final int MAX_STRING_TABLE_SIZE = 4096;
+
+    /**
+     * 静态字符串表: 消息类型, 消息字段和推送数据中的常用字段
+     */
+    private static final String[] DICTIONARY = {
+        NodeConstants.TYPE_INIT_REQ, NodeConstants.TYPE_INIT_REP, NodeConstants.TYPE_PING_REQ, NodeConstants.TYPE_PING_REP,
+        NodeConstants.TYPE_CLOSE_REQ, NodeConstants.TYPE_CLOSE_REP, NodeConstants.TYPE_NODEINFO_REQ, NodeConstants.TYPE_NODEINFO_REP,
+        NodeConstants.TYPE_TOPICSUB_REQ, NodeConstants.TYPE_TOPICSUB_REP, NodeConstants.TYPE_TOPICPUB_REQ, NodeConstants.TYPE_TOPICPUB_REP,
+        NodeConstants.TYPE_TOPIC_PUSH, NodeConstants.TYPE_DATAQUERY_REQ, NodeConstants.TYPE_DATAQUERY_REP,
+        NodeMessage.FIELD_TOPIC, NodeMessage.FIELD_TOPICS, NodeMessage.FIELD_TOPIC_PUBLISHER, NodeMessage.FIELD_NODE_TYPE,
+        NodeMessage.FIELD_NODE_ID, NodeMessage.FIELD_NODE_CONSISTENT_ID, NodeMessage.FIELD_NODE_ATTRS, NodeMessage.FIELD_DATA,
+        NodeMessage.FIELD_DATA_INFO, NodeMessage.FIELD_EXCHANGEABLE, NodeMessage.FIELD_TRADING_DAY, NodeMessage.FIELD_PATH,
+        NodeMessage.FIELD_RESULT, NodeMessage.FIELD_MORE_DATA,
+        NodeConstants.TOPIC_TRADE_ACCOUNT_MONEY, NodeConstants.TOPIC_TRADE_ACCOUNT_INFO, NodeConstants.TOPIC_TRADE_ORDER,
+        NodeConstants.TOPIC_TRADE_TXN, NodeConstants.TOPIC_TRADLET_PLAYBOOK,
+        "accounts", "accountId", "order", "orderId", "txn", "groupId", "pb",
+        "id", "state", "money", "orders", "transactions", "positions", "instrument", "direction", "offsetFlag",
+        "limitPrice", "priceType", "volumeCondition", "volumes", "volume", "price", "time", "ref", "attrs",
+        "stateTuples", "transactionIds", "details", "activeOrders", "timestamp"
+    };
+
+    private static final Map<String, Integer> DICTIONARY_INDEX;
+    static {
+        Map<String, Integer> index = new HashMap<>();
+        for(int i=0;i<DICTIONARY.length;i++) {
+            index.put(DICTIONARY[i], i);
+        }
+        DICTIONARY_INDEX = index;
+    }
+
+    private final String name;
+    private final boolean binary;
+    private final boolean deflate;
+    private Deflater deflater;
+    private Inflater inflater;
+
+    private byte[] buf = new byte[1024];
+    private int pos;
+    private byte[] deflateBuf;
+    private byte[] inflateBuf;
+    private Map<String, Integer> encodeStrings = new HashMap<>();
+    private List<String> decodeStrings = new ArrayList<>();
+
+    public NodeMessageCodec(String name) {
+        switch(name) {
+        case CODEC_BINARY_DEFLATE:
+            deflate = true;
+            binary = true;
+            break;
+        case CODEC_BINARY:
+            deflate = false;
+            binary = true;
+            break;
+        case CODEC_JSON:
+            deflate = false;
+            binary = false;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown node message codec: "+name);
+        }
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 是否使用BinaryMessage发送
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Client在InitReq中发送的编码格式列表, 从指定格式开始降级
+     */
+    public static List<String> getCodecs(String preferred) {
+        int idx = CODECS.indexOf(preferred);
+        if ( idx<0 ) {
+            idx = CODECS.size()-1;
+        }
+        return CODECS.subList(idx, CODECS.size());
+    }
+
+    /**
+     * Broker根据InitReq选择编码格式, 没有可用格式返回null
+     */
+    public static String negotiate(Object clientCodecs) {
+        if ( clientCodecs instanceof Collection ) {
+            for(Object codec:(Collection<?>)clientCodecs) {
+                if ( CODECS.contains(codec) ) {
+                    return (String)codec;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 编码为二进制格式
+     */
+    public synchronized byte[] encode(NodeMessage msg) {
+        pos = 0;
+        encodeStrings.clear();
+        writeByte(MAGIC);
+        writeKey(msg.getType());
+        writeVarint(msg.getId());
+        writeVarint(msg.getReqId());
+        writeVarint(zigzag(msg.getCorrId()));
+        writeVarint(zigzag(msg.getErrCode()));
+        if ( msg.getErrCode()!=0 ) {
+            writeString(msg.getErrMsg());
+        }
+        Map<String, Object> fields = msg.getFields();
+        writeVarint(fields.size());
+        for(Map.Entry<String, Object> entry:fields.entrySet()) {
+            writeKey(entry.getKey());
+            writeObject(entry.getValue());
+        }
+        if ( deflate && pos>=COMPRESS_MIN_SIZE ) {
+            return compress();
+        }
+        return Arrays.copyOf(buf, pos);
+    }
+
+    public NodeMessage decode(ByteBuffer data) throws Exception {
+        if ( data.hasArray() ) {
+            return decode(data.array(), data.arrayOffset()+data.position(), data.remaining());
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 解码二进制格式, 也可以是UTF-8编码的JSON文本
+     */
+    public synchronized NodeMessage decode(byte[] data, int offset, int length) throws Exception {
+        if ( length==0 ) {
+            throw new IllegalArgumentException("Empty node message");
+        }
+        int magic = data[offset]&0xFF;
+        if ( (magic&0xF0)!=MAGIC ) {
+            return NodeMessage.fromString(new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+        DecodeInput in = new DecodeInput(data, offset+1, offset+length);
+        if ( (magic&FLAG_DEFLATE)!=0 ) {
+            in = decompress(in);
+        }
+        decodeStrings.clear();
+        String type = readKey(in);
+        int id = in.readVarint();
+        int reqId = in.readVarint();
+        int corrId = unzigzag(in.readVarint());
+        int errCode = unzigzag(in.readVarint());
+        String errMsg = null;
+        if ( errCode!=0 ) {
+            errMsg = (String)readValue(in);
+        }
+        int fieldCount = in.readVarint();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for(int i=0;i<fieldCount;i++) {
+            String key = readKey(in);
+            fields.put(key, readValue(in));
+        }
+        NodeMessage result = new NodeMessage(type, id, reqId, corrId, fields);
+        result.setErrCode(errCode);
+        result.setErrMsg(errMsg);
+        return result;
+    }
+
+    //----------------------- encode ------------------------
+
+    private byte[] compress() {
+        if ( deflater==null ) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            deflateBuf = new byte[buf.length];
+        }
+        //头部: MAGIC|FLAG_DEFLATE, 原始长度
+        int rawLength = pos-1;
+        deflater.setInput(buf, 1, rawLength);
+        deflater.finish();
+        int headerLength = 1+varintSize(rawLength);
+        int outLength = headerLength;
+        while(!deflater.finished()) {
+            if ( outLength==deflateBuf.length ) {
+                deflateBuf = Arrays.copyOf(deflateBuf, deflateBuf.length*2);
+            }
+            outLength += deflater.deflate(deflateBuf, outLength, deflateBuf.length-outLength);
+        }
+        deflater.reset();
+        byte[] result = new byte[outLength];
+        result[0] = (byte)(MAGIC|FLAG_DEFLATE);
+        int p = 1;
+        int v = rawLength;
+        while( (v&~0x7F)!=0 ) {
+            result[p++] = (byte)((v&0x7F)|0x80);
+            v >>>= 7;
+        }
+        result[p++] = (byte)v;
+        System.arraycopy(deflateBuf, headerLength, result, headerLength, outLength-headerLength);
+        return result;
+    }
+
+    /**
+     * 常见类型直接编码, 其它类型与toJson()一样先转换为JSON
+     */
+    private void writeObject(Object value) {
+        if ( value==null ) {
+            writeByte(TAG_NULL);
+        } else if ( value instanceof String ) {
+            writeString((String)value);
+        } else if ( value instanceof Number ) {
+            writeNumber(((Number)value).doubleValue());
+        } else if ( value instanceof Boolean ) {
+            writeByte(((Boolean)value)?TAG_TRUE:TAG_FALSE);
+        } else if ( value instanceof JsonElement ) {
+            writeValue((JsonElement)value);
+        } else if ( value instanceof Map ) {
+            Map<?,?> map = (Map<?,?>)value;
+            writeByte(TAG_OBJECT);
+            writeVarint(map.size());
+            for(Map.Entry<?,?> entry:map.entrySet()) {
+                writeKey(entry.getKey().toString());
+                writeObject(entry.getValue());
+            }
+        } else if ( value instanceof Collection ) {
+            Collection<?> c = (Collection<?>)value;
+            writeByte(TAG_ARRAY);
+            writeVarint(c.size());
+            for(Object v:c) {
+                writeObject(v);
+            }
+        } else {
+            writeValue(JsonUtil.object2json(value));
+        }
+    }
+
+    private void writeValue(JsonElement json) {
+        if ( json==null || json.isJsonNull() ) {
+            writeByte(TAG_NULL);
+        } else if ( json.isJsonObject() ) {
+            JsonObject obj = json.getAsJsonObject();
+            writeByte(TAG_OBJECT);
+            writeVarint(obj.size());
+            for(Map.Entry<String, JsonElement> entry:obj.entrySet()) {
+                writeKey(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        } else if ( json.isJsonArray() ) {
+            JsonArray arr = json.getAsJsonArray();
+            writeByte(TAG_ARRAY);
+            writeVarint(arr.size());
+            for(int i=0;i<arr.size();i++) {
+                writeValue(arr.get(i));
+            }
+        } else {
+            JsonPrimitive p = json.getAsJsonPrimitive();
+            if ( p.isBoolean() ) {
+                writeByte(p.getAsBoolean()?TAG_TRUE:TAG_FALSE);
+            } else if ( p.isNumber() ) {
+                writeNumber(p.getAsDouble());
+            } else {
+                writeString(p.getAsString());
+            }
+        }
+    }
+
+    /**
+     * 解码后与JSON一样转换为Double, 整数值使用变长编码
+     */
+    private void writeNumber(double d) {
+        long l = (long)d;
+        if ( l==d && Math.abs(l)<(1L<<53) && (l!=0 || Double.doubleToRawLongBits(d)==0) ) {
+            writeByte(TAG_LONG);
+            writeVarlong(zigzag(l));
+        } else {
+            writeByte(TAG_DOUBLE);
+            long bits = Double.doubleToRawLongBits(d);
+            for(int i=0;i<8;i++) {
+                writeByte((int)(bits>>>(i*8)));
+            }
+        }
+    }
+
+    private void writeString(String str) {
+        if ( str==null ) {
+            writeByte(TAG_NULL);
+            return;
+        }
+        int idx = stringIndex(str);
+        if ( idx>=0 ) {
+            writeByte(TAG_STRING_REF);
+            writeVarint(idx);
+        } else {
+            writeByte(TAG_STRING);
+            writeUtf8(str);
+            addEncodeString(str);
+        }
+    }
+
+    /**
+     * 字段名: 0表示新字符串, 否则是字符串表下标+1
+     */
+    private void writeKey(String key) {
+        int idx = stringIndex(key);
+        if ( idx>=0 ) {
+            writeVarint(idx+1);
+        } else {
+            writeVarint(0);
+            writeUtf8(key);
+            addEncodeString(key);
+        }
+    }
+
+    private int stringIndex(String str) {
+        Integer idx = DICTIONARY_INDEX.get(str);
+        if ( idx==null ) {
+            idx = encodeStrings.get(str);
+        }
+        return idx!=null?idx:-1;
+    }
+
+    private void addEncodeString(String str) {
+        if ( str.length()<=MAX_REF_STRING_LENGTH && encodeStrings.size()<MAX_STRING_TABLE_SIZE ) {
+            encodeStrings.put(str, DICTIONARY.length+encodeStrings.size());
+        }
+    }
+
+    private void writeUtf8(String str) {
+        int len = str.length();
+        //ASCII字符串直接写入
+        boolean ascii = true;
+        for(int i=0;i<len;i++) {
+            if ( str.charAt(i)>=0x80 ) {
+                ascii = false;
+                break;
+            }
+        }
+        if ( ascii ) {
+            writeVarint(len);
+            ensureCapacity(len);
+            for(int i=0;i<len;i++) {
+                buf[pos++] = (byte)str.charAt(i);
+            }
+        } else {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buf[pos++] = (byte)b;
+    }
+
+    private void writeVarint(int v) {
+        ensureCapacity(5);
+        while( (v&~0x7F)!=0 ) {
+            buf[pos++] = (byte)((v&0x7F)|0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte)v;
+    }
+
+    private void writeVarlong(long v) {
+        ensureCapacity(10);
+        while( (v&~0x7FL)!=0 ) {
+            buf[pos++] = (byte)((v&0x7F)|0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte)v;
+    }
+
+    private void ensureCapacity(int size) {
+        if ( pos+size>buf.length ) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length*2, pos+size));
+        }
+    }
+
+    private static int varintSize(int v) {
+        int size = 1;
+        while( (v&~0x7F)!=0 ) {
+            size++;
+            v >>>= 7;
+        }
+        return size;
+    }
+
+    private static int zigzag(int v) {
+        return (v<<1)^(v>>31);
+    }
+
+    private static long zigzag(long v) {
+        return (v<<1)^(v>>63);
+    }
+
+    private static int unzigzag(int v) {
+        return (v>>>1)^-(v&1);
+    }
+
+    private static long unzigzag(long v) {
+        return (v>>>1)^-(v&1);
+    }
+
+    //----------------------- decode ------------------------
+
+    private DecodeInput decompress(DecodeInput in) throws DataFormatException {
+        if ( inflater==null ) {
+            inflater = new Inflater();
+        }
+        int rawLength = in.readVarint();
+        if ( inflateBuf==null || inflateBuf.length<rawLength ) {
+            inflateBuf = new byte[Math.max(rawLength, 1024)];
+        }
+        inflater.setInput(in.data, in.pos, in.end-in.pos);
+        int length = 0;
+        try {
+            while(length<rawLength && !inflater.finished()) {
+                int n = inflater.inflate(inflateBuf, length, rawLength-length);
+                if ( n==0 && (inflater.needsInput()||inflater.needsDictionary()) ) {
+                    break;
+                }
+                length += n;
+            }
+        } finally {
+            inflater.reset();
+        }
+        if ( length!=rawLength ) {
+            throw new DataFormatException("Inflated length "+length+" mismatch: "+rawLength);
+        }
+        return new DecodeInput(inflateBuf, 0, rawLength);
+    }
+
+    private Object readValue(DecodeInput in) {
+        int tag = in.readByte();
+        switch(tag) {
+        case TAG_NULL:
+            return null;
+        case TAG_FALSE:
+            return Boolean.FALSE;
+        case TAG_TRUE:
+            return Boolean.TRUE;
+        case TAG_LONG:
+            return Double.valueOf(unzigzag(in.readVarlong()));
+        case TAG_DOUBLE:
+            long bits = 0;
+            for(int i=0;i<8;i++) {
+                bits |= ((long)in.readByte())<<(i*8);
+            }
+            return Double.longBitsToDouble(bits);
+        case TAG_STRING:
+            String str = in.readUtf8();
+            addDecodeString(str);
+            return str;
+        case TAG_STRING_REF:
+            return decodeString(in.readVarint());
+        case TAG_ARRAY:
+            int size = in.readVarint();
+            ArrayList<Object> list = new ArrayList<>(size);
+            for(int i=0;i<size;i++) {
+                list.add(readValue(in));
+            }
+            return list;
+        case TAG_OBJECT:
+            int count = in.readVarint();
+            LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+            for(int i=0;i<count;i++) {
+                String key = readKey(in);
+                map.put(key, readValue(in));
+            }
+            return map;
+        default:
+            throw new IllegalArgumentException("Unknown value tag "+tag+" at "+in.pos);
+        }
+    }
+
+    private String readKey(DecodeInput in) {
+        int idx = in.readVarint();
+        if ( idx==0 ) {
+            String key = in.readUtf8();
+            addDecodeString(key);
+            return key;
+        }
+        return decodeString(idx-1);
+    }
+
+    private String decodeString(int idx) {
+        if ( idx<DICTIONARY.length ) {
+            return DICTIONARY[idx];
+        }
+        return decodeStrings.get(idx-DICTIONARY.length);
+    }
+
+    private void addDecodeString(String str) {
+        if ( str.length()<=MAX_REF_STRING_LENGTH && decodeStrings.size()<MAX_STRING_TABLE_SIZE ) {
+            decodeStrings.add(str);
+        }
+    }
+
+    private static class DecodeInput {
+        final byte[] data;
+        final int end;
+        int pos;
+
+        DecodeInput(byte[] data, int pos, int end){
+            this.data = data;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        int readByte() {
+            if ( pos>=end ) {
+                throw new IllegalArgumentException("Unexpected end of node message");
+            }
+            return data[pos++]&0xFF;
+        }
+
+        int readVarint() {
+            int result = 0;
+            for(int shift=0; shift<32; shift+=7) {
+                int b = readByte();
+                result |= (b&0x7F)<<shift;
+                if ( (b&0x80)==0 ) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at "+pos);
+        }
+
+        long readVarlong() {
+            long result = 0;
+            for(int shift=0; shift<64; shift+=7) {
+                int b = readByte();
+                result |= ((long)(b&0x7F))<<shift;
+                if ( (b&0x80)==0 ) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varlong at "+pos);
+        }
+
+        String readUtf8() {
+            int len = readVarint();
+            if ( len<0 || pos+len>end ) {
+                throw new IllegalArgumentException("Invalid string length "+len+" at "+pos);
+            }
+            String result = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package trader.service.node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按主题路径分段的订阅索引, 主题格式为 /seg1/seg2/...
+ * <LI>* 匹配一段, 例如 /trade/&#42;/money
+ * <LI>** 只能出现在最后, 匹配一段或多段, 例如 /trade/**
+ * <BR>订阅/取消订阅加锁修改, 每个节点的订阅者数组写时复制; 查询不加锁, 并按主题缓存匹配结果, 订阅变化后缓存失效
+ */
+public class TopicTrie<T> {
+
+    public static final String WILDCARD_SEGMENT = "*";
+    public static final String WILDCARD_TAIL = "**";
+
+    /**
+     * 匹配结果缓存的最大主题数, 超过后清空
+     */
+    private static final int MAX_CACHE_SIZE = 64*1024;
+
+    private static class Node {
+        final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+        volatile Object[] subscribers = EMPTY;
+
+        boolean isEmpty() {
+            return subscribers.length==0 && children.isEmpty();
+        }
+    }
+
+    private static class CacheEntry<T> {
+        final long version;
+        final Collection<T> subscribers;
+
+        CacheEntry(long version, Collection<T> subscribers){
+            this.version = version;
+            this.subscribers = subscribers;
+        }
+    }
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final Node root = new Node();
+    /**
+     * 每个订阅者的订阅主题, 只在加锁时访问
+     */
+    private final Map<T, Set<String>> subscriptions = new HashMap<>();
+    private final ConcurrentHashMap<String, CacheEntry<T>> matchCache = new ConcurrentHashMap<>();
+    private volatile long version;
+
+    /**
+     * 订阅主题
+     */
+    public synchronized void subscribe(String topic, T subscriber) {
+        Set<String> topics = subscriptions.get(subscriber);
+        if ( topics==null ) {
+            topics = new HashSet<>();
+            subscriptions.put(subscriber, topics);
+        }
+        if ( topics.add(topic) ) {
+            add(topic, subscriber);
+            version++;
+        }
+    }
+
+    /**
+     * 取消订阅主题
+     */
+    public synchronized void unsubscribe(String topic, T subscriber) {
+        Set<String> topics = subscriptions.get(subscriber);
+        if ( topics!=null && topics.remove(topic) ) {
+            if ( topics.isEmpty() ) {
+                subscriptions.remove(subscriber);
+            }
+            remove(topic, subscriber);
+            version++;
+        }
+    }
+
+    /**
+     * 设置订阅者的全部主题: 订阅新增的, 取消不再需要的
+     */
+    public synchronized void setSubscriptions(T subscriber, Collection<String> topics) {
+        Set<String> newTopics = topics==null?Collections.emptySet():new HashSet<>(topics);
+        Set<String> oldTopics = subscriptions.getOrDefault(subscriber, Collections.emptySet());
+        for(String topic:new ArrayList<>(oldTopics)) {
+            if ( !newTopics.contains(topic) ) {
+                unsubscribe(topic, subscriber);
+            }
+        }
+        for(String topic:newTopics) {
+            subscribe(topic, subscriber);
+        }
+    }
+
+    /**
+     * 取消订阅者的全部主题, 在连接断开时调用
+     */
+    public synchronized void unsubscribeAll(T subscriber) {
+        setSubscriptions(subscriber, null);
+    }
+
+    public synchronized Collection<String> getSubscriptions(T subscriber){
+        Set<String> topics = subscriptions.get(subscriber);
+        if ( topics==null ) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(topics);
+    }
+
+    /**
+     * 订阅者数量
+     */
+    public synchronized int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 返回订阅了主题的订阅者, 不加锁
+     */
+    public Collection<T> match(String topic){
+        long version0 = version;
+        CacheEntry<T> entry = matchCache.get(topic);
+        if ( entry!=null && entry.version==version0 ) {
+            return entry.subscribers;
+        }
+        List<Object[]> matches = new ArrayList<>(2);
+        match(root, split(topic), 0, matches);
+        Collection<T> result = merge(matches);
+        if ( matchCache.size()>=MAX_CACHE_SIZE ) {
+            matchCache.clear();
+        }
+        matchCache.put(topic, new CacheEntry<>(version0, result));
+        return result;
+    }
+
+    /**
+     * 主题是否匹配订阅主题
+     */
+    public static boolean isMatch(String subscribedTopic, String topic) {
+        String[] patterns = split(subscribedTopic);
+        String[] segments = split(topic);
+        for(int i=0;i<patterns.length;i++) {
+            if ( WILDCARD_TAIL.equals(patterns[i]) ) {
+                return segments.length>i;
+            }
+            if ( i>=segments.length || (!WILDCARD_SEGMENT.equals(patterns[i]) && !patterns[i].equals(segments[i])) ) {
+                return false;
+            }
+        }
+        return patterns.length==segments.length;
+    }
+
+    private void add(String topic, T subscriber) {
+        Node node = root;
+        for(String segment:split(topic)) {
+            node = node.children.computeIfAbsent(segment, k->new Node());
+            if ( WILDCARD_TAIL.equals(segment) ) {
+                break;
+            }
+        }
+        Object[] subscribers = node.subscribers;
+        Object[] newSubscribers = Arrays.copyOf(subscribers, subscribers.length+1);
+        newSubscribers[subscribers.length] = subscriber;
+        node.subscribers = newSubscribers;
+    }
+
+    private void remove(String topic, T subscriber) {
+        String[] segments = split(topic);
+        List<Node> path = new ArrayList<>(segments.length+1);
+        Node node = root;
+        path.add(node);
+        int depth = 0;
+        for(String segment:segments) {
+            node = node.children.get(segment);
+            if ( node==null ) {
+                return;
+            }
+            path.add(node);
+            depth++;
+            if ( WILDCARD_TAIL.equals(segment) ) {
+                break;
+            }
+        }
+        Object[] subscribers = node.subscribers;
+        int idx = -1;
+        for(int i=0;i<subscribers.length;i++) {
+            if ( subscribers[i].equals(subscriber) ) {
+                idx = i;
+                break;
+            }
+        }
+        if ( idx<0 ) {
+            return;
+        }
+        Object[] newSubscribers = EMPTY;
+        if ( subscribers.length>1 ) {
+            newSubscribers = new Object[subscribers.length-1];
+            System.arraycopy(subscribers, 0, newSubscribers, 0, idx);
+            System.arraycopy(subscribers, idx+1, newSubscribers, idx, subscribers.length-idx-1);
+        }
+        node.subscribers = newSubscribers;
+        //删除空节点
+        for(int i=depth;i>0 && path.get(i).isEmpty();i--) {
+            path.get(i-1).children.remove(segments[i-1]);
+        }
+    }
+
+    private static void match(Node node, String[] segments, int idx, List<Object[]> matches) {
+        if ( idx==segments.length ) {
+            if ( node.subscribers.length>0 ) {
+                matches.add(node.subscribers);
+            }
+            return;
+        }
+        Node child = node.children.get(WILDCARD_TAIL);
+        if ( child!=null && child.subscribers.length>0 ) {
+            matches.add(child.subscribers);
+        }
+        child = node.children.get(segments[idx]);
+        if ( child!=null ) {
+            match(child, segments, idx+1, matches);
+        }
+        child = node.children.get(WILDCARD_SEGMENT);
+        if ( child!=null ) {
+            match(child, segments, idx+1, matches);
+        }
+    }
+
+    /**
+     * 只有一个节点匹配时直接使用订阅者数组, 多个节点匹配时去重
+     */
+    private static <T> Collection<T> merge(List<Object[]> matches){
+        switch(matches.size()) {
+        case 0:
+            return Collections.emptyList();
+        case 1:
+            return (List<T>)Collections.unmodifiableList(Arrays.asList(matches.get(0)));
+        default:
+            Set<T> result = new LinkedHashSet<>();
+            for(Object[] subscribers:matches) {
+                for(Object subscriber:subscribers) {
+                    result.add((T)subscriber);
+                }
+            }
+            return Collections.unmodifiableSet(result);
+        }
+    }
+
+    /**
+     * 按 / 分段, 忽略开头和连续的 /
+     */
+    private static String[] split(String topic) {
+        List<String> segments = new ArrayList<>();
+        int begin = 0, len = topic.length();
+        for(int i=0;i<=len;i++) {
+            if ( i==len || topic.charAt(i)=='/' ) {
+                if ( i>begin ) {
+                    segments.add(topic.substring(begin, i));
+                }
+                begin = i+1;
+            }
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+}
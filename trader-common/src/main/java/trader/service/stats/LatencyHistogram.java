@@ -0,0 +1,122 @@
+package trader.service.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存的延迟分布直方图(纳秒), 与HdrHistogram相同的对数-线性分桶.
+ * <BR>[0, 128)每个值一个桶, 之后每个2的幂区间64个桶, 相对误差小于1/64; 超过2^41ns(约36分钟)的值计入最后一个桶.
+ * <BR>record 只有一次原子加和一次max的CAS, 无锁, 可多线程并发调用
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1<<SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT/2;
+    private static final int MAX_EXPONENT = 41;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT-SUB_BUCKET_BITS)*SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if ( nanos<0 ) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketIndex(nanos));
+        long currMax = max.get();
+        while( nanos>currMax && !max.compareAndSet(currMax, nanos) ) {
+            currMax = max.get();
+        }
+    }
+
+    /**
+     * 当前分布的快照
+     *
+     * @param reset 是否同时清零, 用于按采样周期统计. 并发记录的值会计入本次或下一次快照
+     */
+    public Snapshot snapshot(boolean reset) {
+        long[] result = new long[BUCKET_COUNT];
+        long totalCount = 0;
+        for(int i=0;i<BUCKET_COUNT;i++) {
+            long count = reset?counts.getAndSet(i, 0):counts.get(i);
+            result[i] = count;
+            totalCount += count;
+        }
+        long maxValue = reset?max.getAndSet(0):max.get();
+        return new Snapshot(result, totalCount, maxValue);
+    }
+
+    static int bucketIndex(long value) {
+        if ( value<SUB_BUCKET_COUNT ) {
+            return (int)value;
+        }
+        int exponent = 63-Long.numberOfLeadingZeros(value);
+        if ( exponent>=MAX_EXPONENT ) {
+            return BUCKET_COUNT-1;
+        }
+        int shift = exponent-(SUB_BUCKET_BITS-1);
+        int subBucket = (int)(value>>>shift);
+        return SUB_BUCKET_COUNT + (exponent-SUB_BUCKET_BITS)*SUB_BUCKET_HALF_COUNT + (subBucket-SUB_BUCKET_HALF_COUNT);
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long bucketHighestValue(int index) {
+        if ( index<SUB_BUCKET_COUNT ) {
+            return index;
+        }
+        int i = index-SUB_BUCKET_COUNT;
+        int exponent = SUB_BUCKET_BITS + i/SUB_BUCKET_HALF_COUNT;
+        int shift = exponent-(SUB_BUCKET_BITS-1);
+        long subBucket = SUB_BUCKET_HALF_COUNT + i%SUB_BUCKET_HALF_COUNT;
+        return ((subBucket+1)<<shift)-1;
+    }
+
+    /**
+     * 直方图快照, 只读
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long totalCount;
+        private final long max;
+
+        Snapshot(long[] counts, long totalCount, long max){
+            this.counts = counts;
+            this.totalCount = totalCount;
+            this.max = max;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * 分位数对应的值, 返回所在桶的最大值且不超过max
+         *
+         * @param percentile 0-100, 例如99.9
+         */
+        public long getValueAtPercentile(double percentile) {
+            if ( totalCount==0 ) {
+                return 0;
+            }
+            long countAtPercentile = (long)Math.ceil(Math.min(percentile, 100.0)/100.0*totalCount);
+            if ( countAtPercentile<1 ) {
+                countAtPercentile = 1;
+            }
+            long count = 0;
+            for(int i=0;i<counts.length;i++) {
+                count += counts[i];
+                if ( count>=countAtPercentile ) {
+                    return Math.min(bucketHighestValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+}
@@ -18,4 +18,9 @@ public interface StatsAggregator {
 	 */
 	public List<StatsItemAggregation> getAggregatedValues(String filter);
 
+	/**
+	 * 返回统计项的合并数据, 不存在返回null
+	 */
+	public StatsItemAggregation getAggregatedValue(String itemKey);
+
 }
@@ -26,6 +26,12 @@ public interface StatsCollector {
      */
     public void registerStatsItem(StatsItem item, StatsItemValueGetter itemValueGetter);
 
+    /**
+     * 注册延迟分布指标, 由调用方直接在返回的直方图上记录.
+     * <BR>每分钟发布一次上个周期的分位数, 指标名为 item+P50/P99/P999/Max/Count, 单位纳秒
+     */
+    public LatencyHistogram registerHistogram(StatsItem item);
+
     /**
      * 注册动态统计指标Factory
      */
@@ -42,4 +42,12 @@ public interface StatsItemAggregation{
 
     public Map<String, Object> getAggregatedValues();
 
+    /**
+     * 历史数据, 每行为 [采样时间(秒), 值]
+     *
+     * @param resolution 精度(秒): 0 原始采样, 60 分钟, 3600 小时
+     * @param beginTime 开始时间(秒)
+     */
+    public double[][] getHistory(int resolution, long beginTime);
+
 }
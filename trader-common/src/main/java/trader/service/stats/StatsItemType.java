@@ -11,4 +11,9 @@ public enum StatsItemType {
      * 累积指标, 例如处理事件数量
      */
     ,Cumulative
+
+    /**
+     * 延迟分布指标, 按分位数发布: P50/P99/P999/Max/Count
+     */
+    ,Histogram
 }
@@ -0,0 +1,308 @@
+package trader.service.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 统计项的时间序列, 全部使用固定容量的long[]/double[]环形缓冲区.
+ * <BR>原始采样: 维护5/15/60分钟滑动窗口的起始位置和累计值, 追加时O(1)更新, 不需要重新扫描
+ * <BR>降采样: 按分钟/小时保存, 即时值取均值, 累积值取最后值; 用于历史查询和持久化
+ * <BR>非线程安全, 由调用方加锁
+ */
+public class StatsTimeSeries {
+
+    public static final int RESOLUTION_SAMPLE = 0;
+    public static final int RESOLUTION_MINUTE = 60;
+    public static final int RESOLUTION_HOUR = 3600;
+
+    /**
+     * 滑动窗口: 5/15/60分钟
+     */
+    public static final int[] WINDOW_MINUTES = {5, 15, 60};
+
+    /**
+     * 原始采样容量, 每分钟一次采样可保存4小时
+     */
+    static final int SAMPLE_CAPACITY = 256;
+    /**
+     * 分钟数据容量: 6小时
+     */
+    static final int MINUTE_CAPACITY = 6*60;
+    /**
+     * 小时数据容量: 14天
+     */
+    static final int HOUR_CAPACITY = 14*24;
+
+    /**
+     * 固定容量的环形缓冲区, 按序号访问, 序号从0开始连续递增
+     */
+    static class Ring {
+        final int resolution;
+        final long[] times;
+        final double[] values;
+        final int[] counts;
+        /**
+         * 已追加的总数, 最早的序号为 appended-size
+         */
+        long appended;
+        int size;
+
+        Ring(int resolution, int capacity){
+            this.resolution = resolution;
+            times = new long[capacity];
+            values = new double[capacity];
+            counts = new int[capacity];
+        }
+
+        int capacity() {
+            return times.length;
+        }
+
+        long firstSeq() {
+            return appended-size;
+        }
+
+        int index(long seq) {
+            return (int)(seq%times.length);
+        }
+
+        long time(long seq) {
+            return times[index(seq)];
+        }
+
+        double value(long seq) {
+            return values[index(seq)];
+        }
+
+        void append(long time, double value) {
+            int idx = index(appended);
+            times[idx] = time;
+            values[idx] = value;
+            counts[idx] = 1;
+            appended++;
+            if ( size<times.length ) {
+                size++;
+            }
+        }
+
+        /**
+         * 降采样: 同一时间段内的即时值取均值, 累积值取最后值
+         */
+        void downsample(long sampleTime, double value, boolean average) {
+            long time = sampleTime-sampleTime%resolution;
+            if ( size>0 ) {
+                int last = index(appended-1);
+                if ( times[last]==time ) {
+                    int count = ++counts[last];
+                    if ( average ) {
+                        values[last] += (value-values[last])/count;
+                    } else {
+                        values[last] = value;
+                    }
+                    return;
+                }
+                if ( times[last]>time ) {
+                    return;
+                }
+            }
+            append(time, value);
+        }
+
+        double[][] toArray(long beginTime){
+            List<double[]> result = new ArrayList<>(size);
+            for(long seq=firstSeq(); seq<appended; seq++) {
+                long time = time(seq);
+                if ( time>=beginTime ) {
+                    result.add(new double[] {time, value(seq)});
+                }
+            }
+            return result.toArray(new double[result.size()][]);
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(size);
+            long lastTime = 0;
+            for(long seq=firstSeq(); seq<appended; seq++) {
+                int idx = index(seq);
+                //时间按差值保存
+                out.writeLong(times[idx]-lastTime);
+                out.writeDouble(values[idx]);
+                out.writeInt(counts[idx]);
+                lastTime = times[idx];
+            }
+        }
+
+        void read(DataInput in) throws IOException {
+            int count = in.readInt();
+            long lastTime = 0;
+            appended = 0;
+            size = 0;
+            for(int i=0;i<count;i++) {
+                long time = lastTime+in.readLong();
+                double value = in.readDouble();
+                int valueCount = in.readInt();
+                append(time, value);
+                counts[index(appended-1)] = valueCount;
+                lastTime = time;
+            }
+        }
+    }
+
+    private final boolean cumulative;
+    private final Ring samples;
+    private final Ring minutes;
+    private final Ring hours;
+    /**
+     * 每个滑动窗口的起始序号和窗口内采样值之和
+     */
+    private final long[] windowStarts = new long[WINDOW_MINUTES.length];
+    private final double[] windowSums = new double[WINDOW_MINUTES.length];
+
+    public StatsTimeSeries(boolean cumulative) {
+        this(cumulative, SAMPLE_CAPACITY, MINUTE_CAPACITY, HOUR_CAPACITY);
+    }
+
+    StatsTimeSeries(boolean cumulative, int sampleCapacity, int minuteCapacity, int hourCapacity) {
+        this.cumulative = cumulative;
+        samples = new Ring(RESOLUTION_SAMPLE, sampleCapacity);
+        minutes = new Ring(RESOLUTION_MINUTE, minuteCapacity);
+        hours = new Ring(RESOLUTION_HOUR, hourCapacity);
+    }
+
+    public boolean isEmpty() {
+        return samples.size==0;
+    }
+
+    /**
+     * 最后采样时间, 没有数据返回0
+     */
+    public long getLastTime() {
+        if ( samples.size==0 ) {
+            return 0;
+        }
+        return samples.time(samples.appended-1);
+    }
+
+    /**
+     * 最后采样值, 没有数据返回NaN
+     */
+    public double getLastValue() {
+        if ( samples.size==0 ) {
+            return Double.NaN;
+        }
+        return samples.value(samples.appended-1);
+    }
+
+    /**
+     * 追加采样值, 采样时间单位为秒, 应当单调递增
+     */
+    public void add(long sampleTime, double value) {
+        addSample(sampleTime, value);
+        minutes.downsample(sampleTime, value, !cumulative);
+        hours.downsample(sampleTime, value, !cumulative);
+    }
+
+    private void addSample(long sampleTime, double value) {
+        //缓冲区满时覆盖最早的采样, 窗口起始位置同步后移
+        if ( samples.size==samples.capacity() ) {
+            long firstSeq = samples.firstSeq();
+            for(int i=0;i<windowStarts.length;i++) {
+                if ( windowStarts[i]==firstSeq ) {
+                    windowSums[i] -= samples.value(firstSeq);
+                    windowStarts[i]++;
+                }
+            }
+        }
+        samples.append(sampleTime, value);
+        for(int i=0;i<windowStarts.length;i++) {
+            windowSums[i] += value;
+            long windowSeconds = WINDOW_MINUTES[i]*60L;
+            while( (sampleTime-samples.time(windowStarts[i]))>windowSeconds ) {
+                windowSums[i] -= samples.value(windowStarts[i]);
+                windowStarts[i]++;
+            }
+            //只剩一个值时重置, 避免浮点误差累积
+            if ( windowStarts[i]==samples.appended-1 ) {
+                windowSums[i] = value;
+            }
+        }
+    }
+
+    /**
+     * 滑动窗口的聚合值.
+     * <BR>即时值: 窗口内采样值的平均数
+     * <BR>累积值: 窗口内首尾两个采样值的差, 按分钟平均
+     *
+     * @param windowIndex WINDOW_MINUTES 下标
+     */
+    public double getWindowValue(int windowIndex) {
+        if ( samples.size==0 ) {
+            return Double.NaN;
+        }
+        long lastSeq = samples.appended-1;
+        long startSeq = windowStarts[windowIndex];
+        if ( !cumulative ) {
+            return round(windowSums[windowIndex]/(lastSeq-startSeq+1));
+        }
+        long minutes = ((samples.time(lastSeq)-samples.time(startSeq))+30)/60;
+        if ( minutes<=0 ) {
+            minutes = 1;
+        }
+        return round((samples.value(lastSeq)-samples.value(startSeq))/minutes);
+    }
+
+    /**
+     * 返回指定精度的历史数据, 每行为 [时间, 值]
+     *
+     * @param resolution RESOLUTION_SAMPLE/RESOLUTION_MINUTE/RESOLUTION_HOUR
+     * @param beginTime 开始时间(秒), 包含
+     */
+    public double[][] getHistory(int resolution, long beginTime){
+        switch(resolution) {
+        case RESOLUTION_SAMPLE:
+            return samples.toArray(beginTime);
+        case RESOLUTION_MINUTE:
+            return minutes.toArray(beginTime);
+        case RESOLUTION_HOUR:
+            return hours.toArray(beginTime);
+        default:
+            throw new IllegalArgumentException("Unsupported resolution: "+resolution);
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        samples.write(out);
+        minutes.write(out);
+        hours.write(out);
+    }
+
+    /**
+     * 从文件恢复, 原始采样重新追加以恢复滑动窗口
+     */
+    public void read(DataInput in) throws IOException {
+        Ring saved = new Ring(RESOLUTION_SAMPLE, samples.capacity());
+        saved.read(in);
+        samples.appended = 0;
+        samples.size = 0;
+        for(int i=0;i<windowStarts.length;i++) {
+            windowStarts[i] = 0;
+            windowSums[i] = 0;
+        }
+        for(long seq=saved.firstSeq(); seq<saved.appended; seq++) {
+            addSample(saved.time(seq), saved.value(seq));
+        }
+        minutes.read(in);
+        hours.read(in);
+    }
+
+    /**
+     * 保留2位小数
+     */
+    private static double round(double v) {
+        return Math.round(v*100)/100.0;
+    }
+
+}
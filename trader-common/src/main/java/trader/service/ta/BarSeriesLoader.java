@@ -23,6 +23,7 @@ import org.ta4j.core.Bar;
 
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.CtpTickColumnStore;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableData.DataInfo;
@@ -40,6 +41,7 @@ import trader.service.md.MarketData;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
+import trader.service.md.MarketDataTickCache;
 
 /**
  * 行情数据加载和转换为分钟级别数据
@@ -159,29 +161,66 @@ public class BarSeriesLoader {
     }
 
     /**
-     * 直接加载行情切片原始数据
+     * 直接加载行情切片原始数据, 通过共享的TICK缓存加载
      */
     public List<MarketData> loadMarketDataTicks(Exchangeable instrument, LocalDate tradingDay, LocalDateTime endTime, DataInfo tickDataInfo) throws IOException
     {
-        if (!data.exists(instrument, tickDataInfo, tradingDay)) {
+        if (!existsTicks(data, instrument, tradingDay, tickDataInfo)) {
             return Collections.emptyList();
         }
-        List<MarketData> result = new ArrayList<>();
         MarketDataService mdService = this.beansContainer.getBean(MarketDataService.class);
-        MarketDataProducerFactory ctpFactory = mdService.getProducerFactories().get(tickDataInfo.provider());
-        MarketDataProducer mdProducer = ctpFactory.create(beansContainer, null);
-        CSVMarshallHelper csvMarshallHelper = ctpFactory.createCSVMarshallHelper();
-        String csv = data.load(instrument, tickDataInfo, tradingDay);
-        CSVDataSet csvDataSet = CSVUtil.parse(csv);
+        MarketDataProducerFactory factory = mdService.getProducerFactories().get(tickDataInfo.provider());
+        List<MarketData> ticks = null;
+        try {
+            ticks = getTickCache(beansContainer).getTicks(instrument, tradingDay, tickDataInfo, (Exchangeable e, LocalDate day, DataInfo dataInfo)->{
+                return loadTicks(beansContainer, data, factory, e, day, dataInfo);
+            });
+        }catch(IOException ioe) {
+            throw ioe;
+        }catch(Exception e) {
+            throw new IOException(e);
+        }
+        List<MarketData> result = new ArrayList<>(ticks.size());
+        for(int i=0;i<ticks.size();i++) {
+            MarketData tick = ticks.get(i);
+            if (endTime != null && endTime.isBefore(tick.updateTime)) {
+                continue;
+            }
+            result.add(tick);
+        }
+        return result;
+    }
+
+    /**
+     * 返回容器中的TICK缓存, 不存在返回缺省的共享实例
+     */
+    public static MarketDataTickCache getTickCache(BeansContainer beansContainer) {
+        MarketDataTickCache result = null;
+        if ( null!=beansContainer ) {
+            result = beansContainer.getBean(MarketDataTickCache.class);
+        }
+        if ( null==result ) {
+            result = MarketDataTickCache.getDefault();
+        }
+        return result;
+    }
+
+    /**
+     * 加载并清理一个交易日的TICK数据: 同一时间戳的TICK顺延200MS, 完成postProcess.
+     * <BR>返回的数据会放入共享的TICK缓存, 只读
+     */
+    public static List<MarketData> loadTicks(BeansContainer beansContainer, ExchangeableData data, MarketDataProducerFactory factory, Exchangeable instrument, LocalDate tradingDay, DataInfo tickDataInfo) throws IOException
+    {
+        MarketDataProducer mdProducer = factory.create(beansContainer, Collections.emptyMap());
+        CSVMarshallHelper csvMarshallHelper = factory.createCSVMarshallHelper();
+        List rawTicks = loadRawTicks(data, instrument, tradingDay, tickDataInfo, csvMarshallHelper);
         ExchangeableTradingTimes tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
 
         // 修在updateTime/updateTimstamp数据, 对于匪所, 同一秒的TICK序言耗时增加200MS
+        List<MarketData> result = new ArrayList<>(rawTicks.size());
         long lastTimestamp = 0;
-        while (csvDataSet.next()) {
-            MarketData tick = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
-            if (endTime != null && endTime.isBefore(tick.updateTime)) {
-                continue;
-            }
+        for (Object rawTick : rawTicks) {
+            MarketData tick = mdProducer.createMarketData(rawTick, tradingDay);
             if (lastTimestamp >= tick.updateTimestamp) {
                 tick.updateTimestamp = lastTimestamp + 200;
                 tick.updateTime = Instant.ofEpochMilli(tick.updateTimestamp)
@@ -191,6 +230,33 @@ public class BarSeriesLoader {
             lastTimestamp = tick.updateTimestamp;
             result.add(tick);
         }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * TICK数据是否存在, CTP TICK同时检查二进制列存文件
+     */
+    public static boolean existsTicks(ExchangeableData data, Exchangeable instrument, LocalDate tradingDay, DataInfo tickDataInfo) throws IOException
+    {
+        if ( data.exists(instrument, tickDataInfo, tradingDay) ) {
+            return true;
+        }
+        return tickDataInfo==ExchangeableData.TICK_CTP && data.exists(instrument, ExchangeableData.TICK_CTP_BIN, tradingDay);
+    }
+
+    /**
+     * 加载TICK原始数据. CTP TICK优先使用二进制列存文件, 不存在时回退到CSV
+     */
+    public static List loadRawTicks(ExchangeableData data, Exchangeable instrument, LocalDate tradingDay, DataInfo tickDataInfo, CSVMarshallHelper csvMarshallHelper) throws IOException
+    {
+        if ( tickDataInfo==ExchangeableData.TICK_CTP ) {
+            return CtpTickColumnStore.load(data, instrument, tradingDay);
+        }
+        List result = new ArrayList<>();
+        CSVDataSet csvDataSet = CSVUtil.parse(data.load(instrument, tickDataInfo, tradingDay));
+        while (csvDataSet.next()) {
+            result.add(csvMarshallHelper.unmarshall(csvDataSet.getRow()));
+        }
         return result;
     }
 
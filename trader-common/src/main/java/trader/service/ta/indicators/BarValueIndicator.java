@@ -0,0 +1,40 @@
+package trader.service.ta.indicators;
+
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.num.Num;
+
+import trader.service.ta.FutureBar;
+import trader.service.ta.indicators.SimpleIndicator.BarValueGetter;
+
+/**
+ * 直接从Bar取值的序列变量, 如OHLC.
+ * <BR>与SimpleIndicator.createFromSeries不同, 不复制数据, 序列增长后自动包含新的Bar
+ */
+public class BarValueIndicator implements Indicator<Num> {
+
+    private BarSeries barSeries;
+
+    private BarValueGetter valueGetter;
+
+    public BarValueIndicator(BarSeries barSeries, BarValueGetter valueGetter) {
+        this.barSeries = barSeries;
+        this.valueGetter = valueGetter;
+    }
+
+    @Override
+    public Num getValue(int index) {
+        return valueGetter.getValue((FutureBar)barSeries.getBar(index));
+    }
+
+    @Override
+    public BarSeries getBarSeries() {
+        return barSeries;
+    }
+
+    @Override
+    public Num numOf(Number number) {
+        return barSeries.numOf(number);
+    }
+
+}
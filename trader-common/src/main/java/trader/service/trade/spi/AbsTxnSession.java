@@ -83,6 +83,23 @@ public abstract class AbsTxnSession implements TxnSession {
      */
     public abstract String syncLoadFeeEvaluator(Collection<Exchangeable> subscriptions) throws Exception;
 
+    /**
+     * 增量加载费率: cachedFeeInfos中已有保证金率和手续费率的合约直接使用, 不再查询
+     * <BR>缺省实现忽略缓存, 全部重新加载
+     *
+     * @param cachedFeeInfos 缓存的费率数据, 格式同syncLoadFeeEvaluator返回值的feeInfos
+     */
+    public String syncLoadFeeEvaluator(Collection<Exchangeable> subscriptions, JsonObject cachedFeeInfos) throws Exception {
+        return syncLoadFeeEvaluator(subscriptions);
+    }
+
+    /**
+     * 费率缓存的Key, 例如 期货公司-资金账户. 返回null表示不缓存费率
+     */
+    public String getFeeRateCacheKey() {
+        return null;
+    }
+
     /**
      * 同步确认结算单
      */
@@ -8,4 +8,12 @@ public interface TradletScriptFunction {
 
     public Object invoke(Object[] args) throws Exception;
 
+    /**
+     * 相同参数的调用结果是否可以在后续Bar中继续使用.
+     * <BR>返回true要求结果只依赖参数, 并且序列增长后自动计算新值(例如基于ta4j CachedIndicator), 不能是当前数据的复制
+     */
+    public default boolean isCacheable(Object[] args) {
+        return false;
+    }
+
 }
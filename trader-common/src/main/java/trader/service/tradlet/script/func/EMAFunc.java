@@ -20,4 +20,9 @@ public class EMAFunc implements TradletScriptFunction {
         return new GroovyIndicatorValue(new EMAIndicator(indicator, barCount));
     }
 
+    @Override
+    public boolean isCacheable(Object[] args) {
+        return true;
+    }
+
 }
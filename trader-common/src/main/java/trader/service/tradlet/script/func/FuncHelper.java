@@ -57,6 +57,60 @@ public class FuncHelper {
         return values;
     }
 
+    /**
+     * 从后向前对齐的两个序列运算, 与forEach相同, 但是不复制数据: 访问时才计算, 序列增长后自动计算新值
+     */
+    public static Indicator<Num> combine(Indicator<Num> i1, Indicator<Num> i2, IndicatorIterator ii) {
+        return new CombinedIndicator(i1, i2, null, ii);
+    }
+
+    /**
+     * 序列与数值运算, 访问时才计算
+     */
+    public static Indicator<Num> combine(Indicator<Num> i1, Num num2, IndicatorIterator ii) {
+        return new CombinedIndicator(i1, null, num2, ii);
+    }
+
+    private static class CombinedIndicator implements Indicator<Num> {
+        private Indicator<Num> i1;
+        private Indicator<Num> i2;
+        private Num num2;
+        private IndicatorIterator ii;
+
+        CombinedIndicator(Indicator<Num> i1, Indicator<Num> i2, Num num2, IndicatorIterator ii){
+            this.i1 = i1;
+            this.i2 = i2;
+            this.num2 = num2;
+            this.ii = ii;
+        }
+
+        @Override
+        public Num getValue(int index) {
+            Num num = i1.getValue(index);
+            if ( i2==null ) {
+                return ii.apply(num, num2);
+            }
+            BarSeries s1 = i1.getBarSeries();
+            BarSeries s2 = i2.getBarSeries();
+            int index2 = index+(s2.getEndIndex()-s1.getEndIndex());
+            Num n2 = null;
+            if ( index2>=s2.getBeginIndex() && index2<=s2.getEndIndex() ) {
+                n2 = i2.getValue(index2);
+            }
+            return ii.apply(num, n2);
+        }
+
+        @Override
+        public BarSeries getBarSeries() {
+            return i1.getBarSeries();
+        }
+
+        @Override
+        public Num numOf(Number number) {
+            return i1.numOf(number);
+        }
+    }
+
     @FunctionalInterface
     public static interface IndicatorIterator {
         Num apply(Num n1, Num n2);
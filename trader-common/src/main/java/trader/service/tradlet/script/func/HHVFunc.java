@@ -42,4 +42,12 @@ public class HHVFunc implements TradletScriptFunction {
         }
     }
 
+    /**
+     * n<=0时返回的是全局值的复制, 不能缓存
+     */
+    @Override
+    public boolean isCacheable(Object[] args) {
+        return FuncHelper.obj2number(args[1]).intValue()>0;
+    }
+
 }
@@ -1,15 +1,11 @@
 package trader.service.tradlet.script.func;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.ta4j.core.BarSeries;
 import org.ta4j.core.Indicator;
 import org.ta4j.core.num.Num;
 
 import trader.common.beans.Discoverable;
 import trader.service.ta.LongNum;
-import trader.service.ta.indicators.SimpleIndicator;
 import trader.service.tradlet.script.GroovyIndicatorValue;
 import trader.service.tradlet.script.TradletScriptFunction;
 
@@ -22,20 +18,12 @@ public class REFFunc implements TradletScriptFunction {
         Indicator<Num> indicator = groovyIndicator.getIndicator();
         int n = FuncHelper.obj2number(args[1]).intValue();;
 
-        BarSeries series = indicator.getBarSeries();
-        List<Num> values = new ArrayList<>(series.getBarCount());
-        int barCount = series.getBarCount();
-        n = Math.min(n, barCount);
-        for(int i=0;i<n;i++) {
-            values.add(LongNum.ZERO);
-        }
-        if ( n<barCount ) {
-            for(int i=0; i<barCount-n; i++) {
-                values.add(indicator.getValue(series.getBeginIndex()+i));
-            }
-        }
+        return new GroovyIndicatorValue(new RefIndicator(indicator, n));
+    }
 
-        return new GroovyIndicatorValue(new SimpleIndicator(series, values));
+    @Override
+    public boolean isCacheable(Object[] args) {
+        return true;
     }
 
     public static Num call(Indicator<Num> indicator, int nCycleBefore) {
@@ -48,4 +36,36 @@ public class REFFunc implements TradletScriptFunction {
         }
     }
 
+    /**
+     * N个周期前的值, 之前没有数据时为0. 不复制数据, 序列增长后自动计算新值
+     */
+    private static class RefIndicator implements Indicator<Num> {
+        private Indicator<Num> indicator;
+        private int n;
+
+        RefIndicator(Indicator<Num> indicator, int n){
+            this.indicator = indicator;
+            this.n = n;
+        }
+
+        @Override
+        public Num getValue(int index) {
+            BarSeries series = indicator.getBarSeries();
+            if ( index-n>=series.getBeginIndex() ) {
+                return indicator.getValue(index-n);
+            }
+            return LongNum.ZERO;
+        }
+
+        @Override
+        public BarSeries getBarSeries() {
+            return indicator.getBarSeries();
+        }
+
+        @Override
+        public Num numOf(Number number) {
+            return indicator.numOf(number);
+        }
+    }
+
 }
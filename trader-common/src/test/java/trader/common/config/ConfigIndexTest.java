@@ -0,0 +1,166 @@
+package trader.common.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class ConfigIndexTest {
+
+    private static class TestConfigProvider implements ConfigProvider {
+        private List<ConfigItem> items;
+        private boolean changed;
+
+        TestConfigProvider(List<ConfigItem> items){
+            this.items = items;
+        }
+
+        void setItems(List<ConfigItem> items) {
+            this.items = items;
+            changed = true;
+        }
+
+        @Override
+        public List<ConfigItem> getItems() {
+            return items;
+        }
+
+        @Override
+        public void saveItems(Map<String, String> pathValues) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public URI getURI() throws Exception {
+            return new URI("test:ConfigIndexTest");
+        }
+
+        @Override
+        public boolean reload() throws Exception {
+            boolean result = changed;
+            changed = false;
+            return result;
+        }
+    }
+
+    @Test
+    public void testGet() {
+        List<ConfigItem> items = createItems("4096", "100");
+        ConfigIndex index = new ConfigIndex(items);
+        String[] paths = {
+            "/ConfigIndexTest/web.httpPort",
+            "ConfigIndexTest/web/httpPort",
+            "/ConfigIndexTest/web",
+            "/ConfigIndexTest/web/addr",
+            "/ConfigIndexTest/group#g1/ringBufferSize",
+            "/ConfigIndexTest/group#g2/ringBufferSize",
+            "/ConfigIndexTest/group#g3/ringBufferSize",
+            "/ConfigIndexTest/group/ringBufferSize",
+            "/ConfigIndexTest/group[1]/ringBufferSize",
+            "/ConfigIndexTest/group[1]/id",
+            "/ConfigIndexTest/group[5]/id",
+            "/ConfigIndexTest/group/id",
+            "/ConfigIndexTest/group#g2",
+            "/ConfigIndexTest/dup",
+            "/ConfigIndexTest/missing/value",
+            "/NotExists",
+            "",
+        };
+        for(String path:paths) {
+            Object expected = AbstractConfigService.resolveValue(items, path);
+            assertEquals(path, expected, index.get(path));
+            //第二次从缓存返回
+            assertEquals(path, expected, index.get(path));
+        }
+        assertEquals("4096", index.get("ConfigIndexTest.web.httpPort"));
+        assertEquals("200", index.get("/ConfigIndexTest/group#g2/ringBufferSize"));
+        //子节点优先于同名属性
+        assertEquals("child", index.get("/ConfigIndexTest/dup"));
+        assertNull(index.get(null));
+
+        Object groups = index.get("/ConfigIndexTest/group[]");
+        assertEquals(AbstractConfigService.resolveValue(items, "/ConfigIndexTest/group[]"), groups);
+        assertEquals(2, ((List)groups).size());
+    }
+
+    @Test
+    public void testDiff() {
+        ConfigIndex index = new ConfigIndex(createItems("4096", "100"));
+        ConfigIndex index2 = new ConfigIndex(createItems("8192", "100"));
+        assertTrue(index.diff(new ConfigIndex(createItems("4096", "100"))).isEmpty());
+        Set<String> changed = index2.diff(index);
+        assertEquals(1, changed.size());
+        assertTrue(changed.contains("ConfigIndexTest/web/httpPort"));
+        assertEquals(index.size(), index.diff(ConfigIndex.EMPTY).size());
+    }
+
+    @Test
+    public void testValueAndListener() {
+        TestConfigProvider provider = new TestConfigProvider(createItems("4096", "100"));
+        AbstractConfigService.staticRegisterProvider("ConfigIndexTest", provider);
+        AbstractConfigService configService = new AbstractConfigService();
+
+        ConfigValue<Integer> port = ConfigUtil.intValue("/ConfigIndexTest/web.httpPort", 80);
+        ConfigValue<Integer> missing = ConfigUtil.intValue("/ConfigIndexTest/web.missing", 80);
+        ConfigValue<Long> ringBufferSize = ConfigUtil.longValue("/ConfigIndexTest/group#g1/ringBufferSize", 0);
+        assertEquals(4096, port.get().intValue());
+        assertEquals(80, missing.get().intValue());
+        assertEquals(100, ringBufferSize.get().longValue());
+        assertEquals(ConfigUtil.getInt("/ConfigIndexTest/web.httpPort", 80), port.get().intValue());
+
+        List<String> changedPaths = new ArrayList<>();
+        configService.addListener(new String[] {"/ConfigIndexTest/web.httpPort", "/ConfigIndexTest/group#g1/ringBufferSize", "/ConfigIndexTest/group[1]/ringBufferSize"}, (path, newValue)->{
+            changedPaths.add(path+"="+newValue);
+        });
+
+        provider.setItems(createItems("8192", "100"));
+        configService.reload("ConfigIndexTest");
+        assertEquals(8192, port.get().intValue());
+        assertEquals(100, ringBufferSize.get().longValue());
+        assertEquals(List.of("/ConfigIndexTest/web.httpPort=8192"), changedPaths);
+
+        changedPaths.clear();
+        provider.setItems(createItems("8192", "300"));
+        configService.reload("ConfigIndexTest");
+        assertEquals(300, ringBufferSize.get().longValue());
+        assertEquals(List.of("/ConfigIndexTest/group#g1/ringBufferSize=300"), changedPaths);
+    }
+
+    /**
+     * ConfigIndexTest
+     * <BR>- web: httpPort, addr
+     * <BR>- group id=g1 ringBufferSize
+     * <BR>- group id=g2 ringBufferSize=200
+     * <BR>- dup: 同名属性和子节点
+     */
+    private static List<ConfigItem> createItems(String httpPort, String ringBufferSize) {
+        Map<String, String> attrs = new TreeMap<>();
+        attrs.put("dup", "attr");
+        ConfigItem root = new ConfigItem("ConfigIndexTest", "", attrs);
+        attrs.clear();
+        attrs.put("httpPort", httpPort);
+        ConfigItem web = new ConfigItem("web", "", attrs);
+        web.addChild(new ConfigItem("addr", "127.0.0.1", null));
+        root.addChild(web);
+        for(int i=1;i<=2;i++) {
+            attrs.clear();
+            attrs.put("id", "g"+i);
+            ConfigItem group = new ConfigItem("group", "", attrs);
+            group.addChild(new ConfigItem("ringBufferSize", i==1?ringBufferSize:"200", null));
+            root.addChild(group);
+        }
+        root.addChild(new ConfigItem("dup", "child", null));
+        List<ConfigItem> result = new ArrayList<>();
+        result.add(root);
+        return result;
+    }
+
+}
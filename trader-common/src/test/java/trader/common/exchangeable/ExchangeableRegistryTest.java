@@ -0,0 +1,128 @@
+package trader.common.exchangeable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * 多线程并发创建/查找时, 每个uniqueId只能有一个规范实例和一个INT ID
+ */
+public class ExchangeableRegistryTest {
+
+    private static final int THREADS = 8;
+    private static final String[] COMMODITIES = {"ru", "zn", "cu", "al"};
+    private static final int INSTRUMENTS = COMMODITIES.length*10*12;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void testConcurrentFromString() throws Exception {
+        String[] instruments = new String[INSTRUMENTS];
+        for(int i=0;i<INSTRUMENTS;i++) {
+            //使用远期年份的合约, 保证之前没有被创建过
+            int year = 40+(i/12)%10, month = 1+i%12;
+            instruments[i] = "SHFE."+COMMODITIES[i/120]+year+(month<10?"0":"")+month;
+        }
+        Exchangeable[][] results = new Exchangeable[THREADS][INSTRUMENTS];
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0;t<THREADS;t++) {
+            final int threadIdx = t;
+            Thread thread = new Thread(()->{
+                try {
+                    start.await();
+                    for(int r=0;r<ROUNDS;r++) {
+                        //不同线程按不同顺序访问, 增加冲突
+                        for(int i=0;i<INSTRUMENTS;i++) {
+                            int idx = (threadIdx%2)==0?i:INSTRUMENTS-1-i;
+                            Exchangeable e = Exchangeable.fromString(instruments[idx]);
+                            Exchangeable prev = results[threadIdx][idx];
+                            if ( prev!=null && prev!=e ) {
+                                throw new IllegalStateException("Instance changed for "+instruments[idx]);
+                            }
+                            results[threadIdx][idx] = e;
+                        }
+                    }
+                }catch(Throwable ex) {
+                    error.compareAndSet(null, ex);
+                }
+            }, "registry-test-"+t);
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for(Thread thread:threads) {
+            thread.join();
+        }
+        if ( error.get()!=null ) {
+            throw new AssertionError(error.get());
+        }
+
+        for(int i=0;i<INSTRUMENTS;i++) {
+            Exchangeable e = results[0][i];
+            for(int t=1;t<THREADS;t++) {
+                assertSame(e, results[t][i]);
+            }
+            assertTrue(e.uniqueIntId()<ExchangeableRegistry.size());
+            assertSame(e, ExchangeableRegistry.get(e.uniqueIntId()));
+            assertSame(e, ExchangeableRegistry.get(e.uniqueId()));
+            assertSame(e, Exchangeable.fromString(e.id()));
+        }
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        //每个线程各自new实例, intern后必须得到同一个
+        String uniqueId = "ru3901.shfe";
+        Exchangeable[] results = new Exchangeable[THREADS];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0;t<THREADS;t++) {
+            final int threadIdx = t;
+            Thread thread = new Thread(()->{
+                try {
+                    start.await();
+                } catch (InterruptedException e) {}
+                Exchangeable e = Exchangeable.create(Exchange.SHFE, "ru3901");
+                results[threadIdx] = ExchangeableRegistry.intern("RU3901-alias", e);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for(Thread thread:threads) {
+            thread.join();
+        }
+        for(int t=1;t<THREADS;t++) {
+            assertSame(results[0], results[t]);
+        }
+        assertEquals(uniqueId, results[0].uniqueId());
+        assertSame(results[0], ExchangeableRegistry.get("RU3901-alias"));
+        assertSame(results[0], ExchangeableRegistry.get(uniqueId));
+    }
+
+    @Test
+    public void testArray() {
+        ExchangeableArray<String> array = new ExchangeableArray<>();
+        Exchangeable e = Exchangeable.fromString("zn2001");
+        assertNull(array.get(e));
+        assertNull(array.putIfAbsent(e, "a"));
+        assertEquals("a", array.putIfAbsent(e, "b"));
+        assertEquals("a", array.computeIfAbsent(e, (k)->"c"));
+        array.set(e, "d");
+        assertEquals("d", array.get(e.uniqueIntId()));
+        //跨块的下标
+        assertNull(array.putIfAbsent(5000, "x"));
+        assertEquals("x", array.get(5000));
+        assertNull(array.get(5001));
+    }
+
+}
@@ -1,7 +1,11 @@
 package trader.common.exchangeable;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import org.junit.Test;
@@ -79,5 +83,85 @@ public class TestExchange {
         t = System.currentTimeMillis();
     }
 
+    /**
+     * 同一交易规则的交易时间只计算一次, 二分查找结果与逐段计算相同
+     */
+    @Test
+    public void testTradingTimesCache() {
+        Exchangeable au1906 = Exchangeable.fromString("au1906");
+        Exchangeable au1912 = Exchangeable.fromString("au1912");
+        LocalDate tradingDay = LocalDate.of(2018, 12, 28);
+        ExchangeableTradingTimes times = au1906.exchange().getTradingTimes(au1906, tradingDay);
+        assertSame(times, au1906.exchange().getTradingTimes(au1906, tradingDay));
+        ExchangeableTradingTimes times2 = au1912.exchange().getTradingTimes(au1912, tradingDay);
+        assertEquals(au1912, times2.getInstrument());
+        assertSame(times.getMarketTimes(), times2.getMarketTimes());
+        assertTrue(au1906.exchange().getTradingTimes(au1906, LocalDate.of(2018, 12, 29))==null);
+
+        LocalDateTime[] marketTimes = times.getMarketTimes();
+        LocalDateTime time = marketTimes[0].minusHours(2);
+        LocalDateTime end = marketTimes[marketTimes.length-1].plusMinutes(10);
+        while(time.isBefore(end)) {
+            assertEquals(time.toString(), getTradingTime0(marketTimes, time), times.getTradingTime(time));
+            assertEquals(time.toString(), getTimeStage0(times, time), times.getTimeStage(time));
+            time = time.plusNanos(250*1000*1000);
+        }
+    }
+
+    /**
+     * 原有的逐段计算方式
+     */
+    private static int getTradingTime0(LocalDateTime[] marketTimes, LocalDateTime marketTime) {
+        if ( marketTime.isBefore(marketTimes[0]) || compareTimeNoNanos(marketTime,marketTimes[marketTimes.length-1])>0) {
+            return -1;
+        }
+        int result = 0;
+        for(int i=0;i<marketTimes.length;i+=2) {
+            if ( compareTimeNoNanos(marketTime, marketTimes[i])<=0 ) {
+                break;
+            }
+            int compareResult = compareTimeNoNanos(marketTime, marketTimes[i+1]);
+            Duration d = DateUtil.between(marketTimes[i], compareResult<0?marketTime:marketTimes[i+1]);
+            result += d.getSeconds()*1000+d.getNano()/1000000;
+            if ( compareResult<=0 ) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static MarketTimeStage getTimeStage0(ExchangeableTradingTimes times, LocalDateTime time) {
+        LocalDateTime[] marketTimes = times.getMarketTimes();
+        for(int i=0;i<marketTimes.length;i+=2 ) {
+            LocalDateTime frameBegin = marketTimes[i];
+            boolean segmentBegin = false;
+            for(MarketType marketType:MarketType.values()) {
+                LocalDateTime[] segTimes = times.getMarketTimes(marketType);
+                if ( segTimes!=null && segTimes[0].equals(frameBegin) ) {
+                    segmentBegin = true;
+                }
+            }
+            if ( segmentBegin ) {
+                LocalDateTime auctionTime = frameBegin.minusMinutes(15);
+                if ( time.isBefore(auctionTime.minusMinutes(55)) ){
+                    return MarketTimeStage.MarketClose;
+                } else if ( time.isBefore(auctionTime) ) {
+                    return MarketTimeStage.BeforeMarketOpen;
+                } else if ( time.isBefore(frameBegin)){
+                    return MarketTimeStage.AggregateAuction;
+                }
+            } else if ( time.isBefore(frameBegin) ) {
+                return MarketTimeStage.MarketBreak;
+            }
+            if ( compareTimeNoNanos(time, frameBegin)>=0 && compareTimeNoNanos(time,marketTimes[i+1])<=0 ) {
+                return MarketTimeStage.MarketOpen;
+            }
+        }
+        return MarketTimeStage.MarketClose;
+    }
+
+    private static int compareTimeNoNanos(LocalDateTime time1, LocalDateTime time2) {
+        return time1.withNano(0).compareTo(time2.withNano(0));
+    }
 
 }
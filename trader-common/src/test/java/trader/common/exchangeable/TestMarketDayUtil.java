@@ -0,0 +1,90 @@
+package trader.common.exchangeable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+public class TestMarketDayUtil {
+
+    private static LocalDate walk(Exchange exchange, LocalDate day, int count) {
+        int step = count>0?1:-1;
+        for(int i=Math.abs(count);i>0;i--) {
+            do {
+                day = day.plusDays(step);
+            }while(!MarketDayUtil.isMarketDay(exchange, day));
+        }
+        return day;
+    }
+
+    @Test
+    public void testHoliday() {
+        //2019国庆
+        assertTrue(!MarketDayUtil.isMarketDay(Exchange.SHFE, LocalDate.of(2019, 10, 1)));
+        assertTrue(!MarketDayUtil.isMarketDay(Exchange.SHFE, LocalDate.of(2019, 10, 5)));
+        assertTrue(MarketDayUtil.isMarketDay(Exchange.SHFE, LocalDate.of(2019, 10, 8)));
+        assertEquals(LocalDate.of(2019, 10, 8), MarketDayUtil.nextMarketDay(Exchange.SHFE, LocalDate.of(2019, 9, 30)));
+        assertEquals(LocalDate.of(2019, 9, 30), MarketDayUtil.prevMarketDay(Exchange.SHFE, LocalDate.of(2019, 10, 8)));
+        assertTrue(MarketDayUtil.prevMarketDay(Exchange.SHFE, LocalDate.of(2019, 10, 8), true)==null);
+        assertEquals(LocalDate.of(2019, 10, 9), MarketDayUtil.nextMarketDays(Exchange.SHFE, LocalDate.of(2019, 9, 29), 3));
+        assertEquals(2, MarketDayUtil.marketDaysBetween(Exchange.SHFE, LocalDate.of(2019, 9, 30), LocalDate.of(2019, 10, 8)));
+        LocalDate[] days = MarketDayUtil.getMarketDays(Exchange.SHFE, LocalDate.of(2019, 9, 28), LocalDate.of(2019, 10, 9));
+        assertEquals(3, days.length);
+        assertEquals(LocalDate.of(2019, 10, 9), days[2]);
+    }
+
+    /**
+     * 重新加载交易日历后, 缓存的交易时间也要重新计算
+     */
+    @Test
+    public void testReload() {
+        Exchangeable ru2001 = Exchangeable.fromString("ru2001");
+        LocalDate day = LocalDate.of(2019, 10, 8);
+        //国庆后第一天没有夜市
+        assertEquals(LocalDateTime.of(2019, 10, 8, 9, 0), Exchange.SHFE.getTradingTimes(ru2001, day).getMarketOpenTime());
+        int generation = MarketDayUtil.getGeneration();
+        try {
+            MarketDayUtil.reload(new ByteArrayInputStream("shfe\n20190101\n".getBytes(StandardCharsets.UTF_8)));
+            assertTrue(MarketDayUtil.getGeneration()!=generation);
+            assertEquals(LocalDate.of(2019, 10, 1), MarketDayUtil.nextMarketDay(Exchange.SHFE, LocalDate.of(2019, 9, 30)));
+            assertEquals(LocalDateTime.of(2019, 10, 7, 21, 0), Exchange.SHFE.getTradingTimes(ru2001, day).getMarketOpenTime());
+        } finally {
+            MarketDayUtil.reload();
+        }
+        assertEquals(LocalDateTime.of(2019, 10, 8, 9, 0), Exchange.SHFE.getTradingTimes(ru2001, day).getMarketOpenTime());
+    }
+
+    /**
+     * 预计算结果必须和逐天计算一致, 包括日历范围之外
+     */
+    @Test
+    public void testAgainstWalk() {
+        LocalDate[] begins = {LocalDate.of(2012, 1, 1), LocalDate.of(1989, 12, 1), LocalDate.of(2099, 11, 20)};
+        for(LocalDate begin:begins) {
+            for(int i=0;i<60;i++) {
+                LocalDate day = begin.plusDays(i);
+                for(int count:new int[] {-30, -5, -1, 0, 1, 5, 30}) {
+                    LocalDate expected = count==0?day:walk(Exchange.DCE, day, count);
+                    assertEquals(expected, MarketDayUtil.computeMarketDay(Exchange.DCE, day, count));
+                }
+                LocalDate end = day.plusDays(40);
+                int count = 0;
+                for(LocalDate d=day;!d.isAfter(end);d=d.plusDays(1)) {
+                    DayOfWeek dayOfWeek = d.getDayOfWeek();
+                    if ( MarketDayUtil.isMarketDay(Exchange.DCE, d) ) {
+                        assertTrue(dayOfWeek!=DayOfWeek.SATURDAY && dayOfWeek!=DayOfWeek.SUNDAY);
+                        count++;
+                    }
+                }
+                assertEquals(count, MarketDayUtil.marketDaysBetween(Exchange.DCE, day, end));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.DateUtil;
+
+public class MarketDataTickCacheTest {
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static LocalDate day1 = DateUtil.str2localdate("20200803");
+    static LocalDate day2 = DateUtil.str2localdate("20200804");
+    static LocalDate day3 = DateUtil.str2localdate("20200805");
+
+    private AtomicInteger loads = new AtomicInteger();
+
+    private List<MarketData> load(Exchangeable instrument, LocalDate tradingDay, ExchangeableData.DataInfo dataInfo) {
+        loads.incrementAndGet();
+        List<MarketData> result = new ArrayList<>();
+        for(int i=0;i<10;i++) {
+            result.add(new SimpleMarketData());
+        }
+        return result;
+    }
+
+    @Test
+    public void testLRU() throws Exception {
+        long dayBytes = MarketDataTickCache.estimateBytes(load(AP010, day1, ExchangeableData.TICK_CTP));
+        loads.set(0);
+        assertTrue(dayBytes>10*(new SimpleMarketData()).estimateBytes());
+        //只能容纳2个交易日
+        MarketDataTickCache cache = new MarketDataTickCache(dayBytes*5/2);
+        List<MarketData> ticks1 = cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, this::load);
+        assertSame(ticks1, cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, this::load));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.getTicks(AP010, day2, ExchangeableData.TICK_CTP, this::load);
+        //访问day1, day2成为最久未使用
+        cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, this::load);
+        cache.getTicks(AP010, day3, ExchangeableData.TICK_CTP, this::load);
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.contains(AP010, day1, ExchangeableData.TICK_CTP));
+        assertFalse(cache.contains(AP010, day2, ExchangeableData.TICK_CTP));
+        assertTrue(cache.contains(AP010, day3, ExchangeableData.TICK_CTP));
+        assertEquals(2*dayBytes, cache.getTotalBytes());
+        //不同数据类型分别缓存
+        assertFalse(cache.contains(AP010, day1, ExchangeableData.TICK_CTP_BIN));
+    }
+
+    /**
+     * 只有调用时要求才预加载下一交易日
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        MarketDataTickCache cache = new MarketDataTickCache(1024*1024);
+        cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, this::load);
+        assertFalse(cache.contains(AP010, day2, ExchangeableData.TICK_CTP));
+
+        cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, this::load, day3);
+        for(int i=0;i<100 && loads.get()<2;i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(cache.contains(AP010, day2, ExchangeableData.TICK_CTP));
+        assertEquals(2, loads.get());
+        //预加载不计入命中统计
+        assertEquals(1, cache.getMisses());
+
+        //已经是结束交易日, 不预加载下一交易日
+        cache.getTicks(AP010, day3, ExchangeableData.TICK_CTP, this::load, day3);
+        Thread.sleep(200);
+        assertEquals(3, loads.get());
+        assertFalse(cache.contains(AP010, day3.plusDays(1), ExchangeableData.TICK_CTP));
+    }
+
+    @Test
+    public void testLoadFailed() throws Exception {
+        MarketDataTickCache cache = new MarketDataTickCache(1024*1024);
+        try {
+            cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, (e, day, dataInfo)->{
+                throw new IOException("Data not exists");
+            });
+            assertTrue(false);
+        }catch(IOException e) {}
+        assertEquals(0, cache.size());
+        cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, this::load);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testConcurrentLoadOnce() throws Exception {
+        MarketDataTickCache cache = new MarketDataTickCache(1024*1024);
+        List<Thread> threads = new ArrayList<>();
+        for(int i=0;i<8;i++) {
+            Thread thread = new Thread(()->{
+                try {
+                    cache.getTicks(AP010, day1, ExchangeableData.TICK_CTP, (e, day, dataInfo)->{
+                        Thread.sleep(50);
+                        return load(e, day, dataInfo);
+                    });
+                }catch(Exception e) {}
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for(Thread thread:threads) {
+            thread.join();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(7, cache.getHits());
+    }
+
+}
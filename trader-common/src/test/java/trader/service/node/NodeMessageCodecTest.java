@@ -0,0 +1,155 @@
+package trader.service.node;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import trader.common.util.JsonUtil;
+
+public class NodeMessageCodecTest implements NodeConstants {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for(String codecName:NodeMessageCodec.getCodecs(NodeMessageCodec.CODEC_BINARY_DEFLATE)) {
+            NodeMessageCodec codec = new NodeMessageCodec(codecName);
+            for(NodeMessage msg:new NodeMessage[] {createOrderPub(1), createAccountsPub(20), createErrorResp()}) {
+                NodeMessage decoded = codec.decode(ByteBuffer.wrap(codec.encode(msg)));
+                //与JSON格式解码结果一致
+                assertEquals(NodeMessage.fromString(msg.toString()).toString(), decoded.toString());
+                assertEquals(msg.getType(), decoded.getType());
+                assertEquals(msg.getId(), decoded.getId());
+                assertEquals(msg.getReqId(), decoded.getReqId());
+                assertEquals(msg.getCorrId(), decoded.getCorrId());
+                assertEquals(msg.getErrCode(), decoded.getErrCode());
+                assertEquals(msg.getErrMsg(), decoded.getErrMsg());
+            }
+        }
+    }
+
+    /**
+     * 分块返回的多个消息都带有请求消息的id
+     */
+    @Test
+    public void testResponseReqId() throws Exception {
+        NodeMessage req = new NodeMessage(TYPE_DATAQUERY_REQ);
+        for(String codecName:NodeMessageCodec.getCodecs(NodeMessageCodec.CODEC_BINARY_DEFLATE)) {
+            NodeMessageCodec codec = new NodeMessageCodec(codecName);
+            for(int i=0;i<3;i++) {
+                NodeMessage resp = req.createResponse();
+                resp.setField(NodeMessage.FIELD_MORE_DATA, i<2);
+                assertEquals(req.getId(), codec.decode(ByteBuffer.wrap(codec.encode(resp))).getReqId());
+                assertEquals(req.getId(), NodeMessage.fromString(resp.toString()).getReqId());
+            }
+        }
+        assertEquals(0, NodeMessage.fromString(req.toString()).getReqId());
+    }
+
+    @Test
+    public void testSize() throws Exception {
+        NodeMessage msg = createAccountsPub(50);
+        int jsonSize = msg.toString().getBytes(StandardCharsets.UTF_8).length;
+        int binarySize = new NodeMessageCodec(NodeMessageCodec.CODEC_BINARY).encode(msg).length;
+        int deflateSize = new NodeMessageCodec(NodeMessageCodec.CODEC_BINARY_DEFLATE).encode(msg).length;
+        assertTrue(binarySize<jsonSize/2);
+        assertTrue(deflateSize<binarySize);
+
+        //小消息不压缩
+        NodeMessage ping = new NodeMessage(TYPE_PING_REQ);
+        assertArrayEquals(new NodeMessageCodec(NodeMessageCodec.CODEC_BINARY).encode(ping), new NodeMessageCodec(NodeMessageCodec.CODEC_BINARY_DEFLATE).encode(ping));
+    }
+
+    @Test
+    public void testJsonPayload() throws Exception {
+        //旧版本通过BinaryMessage发送的JSON文本
+        NodeMessage msg = createOrderPub(2);
+        byte[] data = msg.toString().getBytes(StandardCharsets.UTF_8);
+        NodeMessage decoded = new NodeMessageCodec(NodeMessageCodec.CODEC_BINARY).decode(data, 0, data.length);
+        assertEquals(NodeMessage.fromString(msg.toString()).toString(), decoded.toString());
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertEquals(Arrays.asList("binary+deflate", "binary", "json"), NodeMessageCodec.getCodecs(NodeMessageCodec.CODEC_BINARY_DEFLATE));
+        assertEquals(Arrays.asList("json"), NodeMessageCodec.getCodecs(NodeMessageCodec.CODEC_JSON));
+        assertEquals("binary", NodeMessageCodec.negotiate(Arrays.asList("lz4", "binary", "json")));
+        assertEquals("json", NodeMessageCodec.negotiate(NodeMessageCodec.getCodecs("json")));
+        assertNull(NodeMessageCodec.negotiate(null));
+    }
+
+    private static NodeMessage createOrderPub(int idx) {
+        NodeMessage msg = new NodeMessage(TYPE_TOPICPUB_REQ);
+        msg.setField(NodeMessage.FIELD_TOPIC, TOPIC_TRADE_ORDER);
+        msg.setField("accountId", "sim-account1");
+        msg.setField("order", createOrder(idx));
+        return msg;
+    }
+
+    private static NodeMessage createAccountsPub(int orderCount) {
+        NodeMessage msg = new NodeMessage(TYPE_TOPICPUB_REQ);
+        msg.setField(NodeMessage.FIELD_TOPIC, TOPIC_TRADE_ACCOUNT_INFO);
+        JsonObject account = new JsonObject();
+        account.addProperty("id", "sim-account1");
+        account.addProperty("state", "Ready");
+        account.add("money", createMoney());
+        JsonArray orders = new JsonArray();
+        for(int i=0;i<orderCount;i++) {
+            orders.add(createOrder(i));
+        }
+        account.add("orders", orders);
+        JsonArray accounts = new JsonArray();
+        accounts.add(account);
+        msg.setField("accounts", accounts);
+        return msg;
+    }
+
+    private static NodeMessage createErrorResp() {
+        NodeMessage msg = new NodeMessage(TYPE_DATAQUERY_REQ).createResponse();
+        msg.setCorrId(-3);
+        msg.setErrCode(1);
+        msg.setErrMsg("数据不存在");
+        return msg;
+    }
+
+    private static JsonObject createOrder(int idx) {
+        JsonObject order = new JsonObject();
+        order.addProperty("id", "ODR_"+(100000+idx));
+        order.addProperty("ref", String.format("%06d", idx));
+        order.addProperty("instrument", "ru2101");
+        order.addProperty("direction", idx%2==0?"Buy":"Sell");
+        order.addProperty("offsetFlag", "OPEN");
+        order.addProperty("limitPrice", "14385.0");
+        order.addProperty("state", "Complete");
+        order.addProperty("time", 1602466200000L+idx*500);
+        order.add("money", createMoney());
+        JsonArray volumes = new JsonArray();
+        volumes.add(1); volumes.add(idx%2); volumes.add(0);
+        order.add("volumes", volumes);
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put("playbookId", "PBK_"+idx);
+        attrs.put("ratio", 0.125*idx);
+        order.add("attrs", JsonUtil.object2json(attrs));
+        return order;
+    }
+
+    private static JsonObject createMoney() {
+        JsonObject money = new JsonObject();
+        money.addProperty("balance", 1000000.25);
+        money.addProperty("available", 850000.5);
+        money.addProperty("frozenMargin", 0);
+        money.addProperty("currMargin", -0.0);
+        return money;
+    }
+
+}
@@ -0,0 +1,96 @@
+package trader.service.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class TopicTrieTest {
+
+    @Test
+    public void testMatch() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.subscribe("/trade/account/money", "s1");
+        trie.subscribe("/trade/*/money", "s2");
+        trie.subscribe("/trade/**", "s3");
+        trie.subscribe("/trade/account/money", "s3");
+        trie.subscribe("/tradlet/playbook", "s4");
+
+        assertEquals(new HashSet<>(Arrays.asList("s1", "s2", "s3")), new HashSet<>(trie.match("/trade/account/money")));
+        //去重
+        assertEquals(3, trie.match("/trade/account/money").size());
+        assertEquals(Arrays.asList("s3"), new ArrayList<>(trie.match("/trade/order")));
+        assertEquals(0, trie.match("/trade").size());
+        assertEquals(Arrays.asList("s4"), new ArrayList<>(trie.match("/tradlet/playbook")));
+        assertEquals(0, trie.match("/tradlet/playbook/1").size());
+
+        assertTrue(TopicTrie.isMatch("/trade/**", "/trade/account/money"));
+        assertTrue(TopicTrie.isMatch("/trade/*/money", "/trade/account/money"));
+        assertFalse(TopicTrie.isMatch("/trade/*", "/trade/account/money"));
+        assertFalse(TopicTrie.isMatch("/trade/**", "/trade"));
+    }
+
+    @Test
+    public void testUpdate() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.setSubscriptions("s1", Arrays.asList("/trade/order", "/trade/txn"));
+        trie.setSubscriptions("s2", Arrays.asList("/trade/order"));
+        assertEquals(2, trie.match("/trade/order").size());
+
+        //重新设置订阅列表, 取消不再订阅的主题
+        trie.setSubscriptions("s1", Arrays.asList("/trade/txn", "/trade/**"));
+        assertEquals(new HashSet<>(Arrays.asList("s1", "s2")), new HashSet<>(trie.match("/trade/order")));
+        trie.unsubscribe("/trade/**", "s1");
+        assertEquals(Arrays.asList("s2"), new ArrayList<>(trie.match("/trade/order")));
+        assertEquals(Arrays.asList("s1"), new ArrayList<>(trie.match("/trade/txn")));
+
+        //断开连接
+        trie.unsubscribeAll("s1");
+        assertEquals(0, trie.match("/trade/txn").size());
+        assertEquals(1, trie.getSubscriberCount());
+        trie.unsubscribeAll("s2");
+        assertEquals(0, trie.getSubscriberCount());
+        assertEquals(0, trie.match("/trade/order").size());
+    }
+
+    @Test
+    public void testConcurrentMatch() throws Exception {
+        TopicTrie<Integer> trie = new TopicTrie<>();
+        trie.subscribe("/md/shfe/ru2101", 0);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0;t<4;t++) {
+            Thread thread = new Thread(()->{
+                while(!stop.get()) {
+                    //订阅者0始终存在
+                    if ( !trie.match("/md/shfe/ru2101").contains(0) ) {
+                        failed.set(true);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(int i=1;i<=2000;i++) {
+            trie.subscribe(i%2==0?"/md/shfe/ru2101":"/md/*/ru2101", i);
+            if ( i>10 ) {
+                trie.unsubscribeAll(i-10);
+            }
+        }
+        stop.set(true);
+        for(Thread thread:threads) {
+            thread.join();
+        }
+        assertFalse(failed.get());
+        assertEquals(11, trie.match("/md/shfe/ru2101").size());
+    }
+
+}
@@ -0,0 +1,77 @@
+package trader.service.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        //桶下标连续, 桶内最大值单调递增
+        long lastHighest = -1;
+        for(int i=0;i<LatencyHistogram.BUCKET_COUNT;i++) {
+            long highest = LatencyHistogram.bucketHighestValue(i);
+            assertTrue(highest>lastHighest);
+            assertEquals(i, LatencyHistogram.bucketIndex(highest));
+            assertEquals(i, LatencyHistogram.bucketIndex(lastHighest+1));
+            lastHighest = highest;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT-1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long v=1;v<=100000;v++) {
+            histogram.record(v*1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(true);
+        assertEquals(100000, snapshot.getTotalCount());
+        assertEquals(100000L*1000, snapshot.getMax());
+        assertWithin(50000L*1000, snapshot.getValueAtPercentile(50));
+        assertWithin(99000L*1000, snapshot.getValueAtPercentile(99));
+        assertWithin(99900L*1000, snapshot.getValueAtPercentile(99.9));
+        assertEquals(100000L*1000, snapshot.getValueAtPercentile(100));
+
+        //周期采样后清零
+        snapshot = histogram.snapshot(false);
+        assertEquals(0, snapshot.getTotalCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 4, count = 100000;
+        List<Thread> threadList = new ArrayList<>();
+        for(int t=0;t<threads;t++) {
+            final int base = t;
+            Thread thread = new Thread(()->{
+                for(int i=0;i<count;i++) {
+                    histogram.record(base*1000+i%1000);
+                }
+            });
+            threadList.add(thread);
+            thread.start();
+        }
+        for(Thread thread:threadList) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(threads*count, snapshot.getTotalCount());
+        assertEquals((threads-1)*1000+999, snapshot.getMax());
+    }
+
+    /**
+     * 相对误差小于1/64
+     */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected "+expected+" actual "+actual, Math.abs(actual-expected)<=expected/64);
+    }
+
+}
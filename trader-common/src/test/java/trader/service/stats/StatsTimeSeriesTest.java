@@ -0,0 +1,121 @@
+package trader.service.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StatsTimeSeriesTest {
+
+    static final long BEGIN_TIME = 1602460800L;
+
+    @Test
+    public void testInstantWindows() {
+        StatsTimeSeries series = new StatsTimeSeries(false, 32, 16, 4);
+        List<double[]> samples = new ArrayList<>();
+        //每20秒一个采样, 超过环形缓冲区容量
+        for(int i=0;i<300;i++) {
+            long time = BEGIN_TIME+i*20;
+            double value = (i*37)%101;
+            series.add(time, value);
+            samples.add(new double[] {time, value});
+            for(int w=0;w<StatsTimeSeries.WINDOW_MINUTES.length;w++) {
+                double expected = scanInstantAvg(samples, StatsTimeSeries.WINDOW_MINUTES[w], 32);
+                assertEquals(expected, series.getWindowValue(w), 0.01);
+            }
+        }
+        assertEquals(BEGIN_TIME+299*20, series.getLastTime());
+        assertEquals(32, series.getHistory(StatsTimeSeries.RESOLUTION_SAMPLE, 0).length);
+
+        //分钟数据取均值
+        double[][] minutes = series.getHistory(StatsTimeSeries.RESOLUTION_MINUTE, 0);
+        assertEquals(16, minutes.length);
+        double[] lastMinute = minutes[minutes.length-1];
+        long minuteTime = (long)lastMinute[0];
+        assertEquals(0, minuteTime%60);
+        double sum = 0; int count = 0;
+        for(double[] sample:samples) {
+            if ( sample[0]>=minuteTime && sample[0]<minuteTime+60 ) {
+                sum += sample[1]; count++;
+            }
+        }
+        assertEquals(sum/count, lastMinute[1], 0.0001);
+        assertEquals(2, series.getHistory(StatsTimeSeries.RESOLUTION_HOUR, 0).length);
+        assertEquals(1, series.getHistory(StatsTimeSeries.RESOLUTION_MINUTE, minuteTime).length);
+    }
+
+    @Test
+    public void testCumulativeWindows() {
+        StatsTimeSeries series = new StatsTimeSeries(true);
+        for(int i=0;i<=120;i++) {
+            series.add(BEGIN_TIME+i*60, i*100);
+        }
+        assertEquals(100, series.getWindowValue(0), 0.001);
+        assertEquals(100, series.getWindowValue(1), 0.001);
+        assertEquals(100, series.getWindowValue(2), 0.001);
+        assertEquals(12000, series.getLastValue(), 0.001);
+
+        //累积值的小时数据取最后值
+        double[][] hours = series.getHistory(StatsTimeSeries.RESOLUTION_HOUR, 0);
+        assertEquals(3, hours.length);
+        assertEquals(5900, hours[0][1], 0.001);
+        assertEquals(11900, hours[1][1], 0.001);
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        StatsTimeSeries series = new StatsTimeSeries(false, 64, 16, 4);
+        for(int i=0;i<200;i++) {
+            series.add(BEGIN_TIME+i*30, i%7);
+        }
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        series.write(new DataOutputStream(os));
+
+        StatsTimeSeries series2 = new StatsTimeSeries(false, 64, 16, 4);
+        series2.read(new DataInputStream(new ByteArrayInputStream(os.toByteArray())));
+        assertEquals(series.getLastTime(), series2.getLastTime());
+        for(int w=0;w<StatsTimeSeries.WINDOW_MINUTES.length;w++) {
+            assertEquals(series.getWindowValue(w), series2.getWindowValue(w), 0.0001);
+        }
+        for(int resolution:new int[] {StatsTimeSeries.RESOLUTION_SAMPLE, StatsTimeSeries.RESOLUTION_MINUTE, StatsTimeSeries.RESOLUTION_HOUR}) {
+            double[][] h = series.getHistory(resolution, 0), h2 = series2.getHistory(resolution, 0);
+            assertEquals(h.length, h2.length);
+            for(int i=0;i<h.length;i++) {
+                assertEquals(h[i][0], h2[i][0], 0);
+                assertEquals(h[i][1], h2[i][1], 0);
+            }
+        }
+        //恢复后继续追加, 分钟均值按原有的采样数计算
+        series.add(BEGIN_TIME+199*30+20, 100);
+        series2.add(BEGIN_TIME+199*30+20, 100);
+        double[][] m = series.getHistory(StatsTimeSeries.RESOLUTION_MINUTE, 0), m2 = series2.getHistory(StatsTimeSeries.RESOLUTION_MINUTE, 0);
+        assertEquals(m[m.length-1][1], m2[m2.length-1][1], 0);
+        assertTrue(series.getWindowValue(0)>0);
+    }
+
+    /**
+     * 原有实现: 从后向前扫描窗口内的采样, 只考虑缓冲区内保留的采样
+     */
+    private static double scanInstantAvg(List<double[]> samples, int minutes, int capacity) {
+        double[] last = samples.get(samples.size()-1);
+        double sum = 0;
+        int count = 0;
+        for(int i=samples.size()-1;i>=Math.max(0, samples.size()-capacity);i--) {
+            double[] sample = samples.get(i);
+            if ( (last[0]-sample[0])>minutes*60 ) {
+                break;
+            }
+            sum += sample[1];
+            count++;
+        }
+        return Math.round(sum/count*100)/100.0;
+    }
+
+}
@@ -1,28 +1,45 @@
 package trader.api.ta;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.ta4j.core.BarSeries;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 
 import trader.api.ControllerConstants;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.tick.PriceLevel;
 import trader.common.util.JsonUtil;
+import trader.common.util.StringUtil;
 import trader.service.ta.BarAccess;
 import trader.service.ta.BarService;
+import trader.service.ta.LeveledBarSeries;
 
 @RestController
 public class TAController {
     private static final String URL_PREFIX = ControllerConstants.URL_PREFIX+"/ta";
+    private static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+    private static final String FORMAT_NDJSON = "ndjson";
+    /**
+     * 将JsonElement写入JsonWriter, 保留JsonWriter的缩进设置
+     */
+    private static final TypeAdapter<JsonElement> JSON_ELEMENT_ADAPTER = new Gson().getAdapter(JsonElement.class);
 
     @Autowired
     private BarService technicalAnalysisService;
@@ -40,23 +57,61 @@ public class TAController {
         return (JsonUtil.json2str(access.toJson(), pretty));
     }
 
+    /**
+     * 流式返回K线数据, 逐个Bar编码写出, 不在内存中构造完整的JSON
+     * <LI>format=ndjson: 每行一个Bar的JSON
+     * <LI>缺省: {"instrument","level","name","bars":[...]}, 与BaseLeveledBarSeries.toJson()一致
+     */
     @RequestMapping(path=URL_PREFIX+"/{instrument}/{level:.+}",
     method=RequestMethod.GET,
-    produces = MediaType.APPLICATION_JSON_VALUE)
-    public String getLevelBars(@PathVariable(value="instrument") String instrumentStr, @PathVariable(value="level") String level, @RequestParam(name="pretty", required=false) boolean pretty){
+    produces = {MediaType.APPLICATION_JSON_VALUE, MEDIA_TYPE_NDJSON})
+    public ResponseEntity<StreamingResponseBody> getLevelBars(@PathVariable(value="instrument") String instrumentStr, @PathVariable(value="level") String level, @RequestParam(name="pretty", required=false) boolean pretty, @RequestParam(name="format", required=false) String format){
         Exchangeable instrument = Exchangeable.fromString(instrumentStr);
         BarAccess access = technicalAnalysisService.forInstrument(instrument);
         if ( access==null ) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
-        JsonElement json = null;
         PriceLevel l = PriceLevel.valueOf(level);
         BarSeries series = access.getSeries(l);
         if ( series==null ) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
-        json = JsonUtil.object2json(series);
-        return (JsonUtil.json2str(json, pretty));
+        //Bar数量在开始时确定, 写出过程中新增的Bar不返回
+        int barCount = series.getBarCount();
+        if ( FORMAT_NDJSON.equalsIgnoreCase(format) ) {
+            return ResponseEntity.ok().contentType(MediaType.parseMediaType(MEDIA_TYPE_NDJSON)).body((out)->{
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StringUtil.UTF8));
+                for(int i=0;i<barCount;i++) {
+                    writer.write(JsonUtil.object2json(series.getBar(i)).toString());
+                    writer.write('\n');
+                }
+                writer.flush();
+            });
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body((out)->{
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StringUtil.UTF8));
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            if ( pretty ) {
+                jsonWriter.setIndent("  ");
+            }
+            jsonWriter.setLenient(true);
+            if ( series instanceof LeveledBarSeries ) {
+                LeveledBarSeries leveledSeries = (LeveledBarSeries)series;
+                jsonWriter.beginObject();
+                jsonWriter.name("instrument").value(leveledSeries.getInstrument().uniqueId());
+                jsonWriter.name("level").value(leveledSeries.getLevel().toString());
+                jsonWriter.name("name").value(leveledSeries.getName());
+                jsonWriter.name("bars").beginArray();
+                for(int i=0;i<barCount;i++) {
+                    JSON_ELEMENT_ADAPTER.write(jsonWriter, JsonUtil.object2json(series.getBar(i)));
+                }
+                jsonWriter.endArray();
+                jsonWriter.endObject();
+            } else {
+                JSON_ELEMENT_ADAPTER.write(jsonWriter, JsonUtil.object2json(series));
+            }
+            jsonWriter.flush();
+        });
     }
 
 }
@@ -1,5 +1,7 @@
 package trader.service.event;
 
+import trader.service.md.MarketData;
+
 /**
  * 异步处理事件, 为RingBuffer服务
  */
@@ -32,6 +34,16 @@ public class AsyncEvent {
 
 	public Object data2;
 
+	/**
+	 * 池化行情槽位, 由RingBuffer持有并循环复用
+	 */
+	MarketData mdSlot;
+
+	/**
+	 * 分片行情的发布时间(System.nanoTime), 用于统计分片处理延时
+	 */
+	long publishNanos;
+
     public void setData(int eventType, AsyncEventProcessor processor, Object data, Object data2) {
         this.eventType = eventType;
         this.processor = processor;
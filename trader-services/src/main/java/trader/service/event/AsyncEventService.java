@@ -5,6 +5,9 @@ import java.util.List;
 import java.util.Set;
 
 import trader.common.beans.ServiceStateAware;
+import trader.common.exchangeable.Exchangeable;
+import trader.service.md.MarketData;
+import trader.service.md.spi.AbsMarketDataProducer;
 
 public interface AsyncEventService extends ServiceStateAware {
 
@@ -18,6 +21,11 @@ public interface AsyncEventService extends ServiceStateAware {
      */
     public static final String FILTER_CHAIN_TRADE = "Trade";
 
+    /**
+     * 分片行情事件处理线程. 只有在配置了 mdShards 后才有效, 同一合约的行情总是由同一个分片线程按顺序处理
+     */
+    public static final String FILTER_CHAIN_MD_SHARD = "MDShard";
+
     public static final List<String> FILTER_CHAINS = Arrays.asList(new String[] {FILTER_CHAIN_MD,FILTER_CHAIN_TRADE});
 
     /**
@@ -29,7 +37,24 @@ public interface AsyncEventService extends ServiceStateAware {
      */
     public boolean addFilter(String filterChainId, AsyncEventFilter filter, int eventMask);
 
+    /**
+     * 行情分片数量, 0 表示未启用分片
+     */
+    public int getMarketDataShards();
+
     public long publishEvent(int eventType, AsyncEventProcessor processor, Object data, Object data2);
 
+    /**
+     * 池化行情: 在RingBuffer槽位预分配的MarketData上原地填充后发布, 事件类型为 EVENT_TYPE_MARKETDATA.
+     * <BR>槽位会在RingBuffer转完一圈后被复用, listener需要保留TICK时必须调用 MarketData.detach(), 同一个TICK的多个listener共享一个复制
+     * <BR>启用分片时发布到合约对应的分片RingBuffer
+     */
+    public <T> long publishPooledMarketData(AbsMarketDataProducer<T> producer, T rawMarketData, Exchangeable instrument);
+
+    /**
+     * 发布行情事件: 启用分片时按合约HASH路由到分片线程, 否则发布到主线程
+     */
+    public long publishMarketData(MarketData md);
+
     public void publishProcessorEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2);
 }
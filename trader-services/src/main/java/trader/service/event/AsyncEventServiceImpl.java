@@ -8,10 +8,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -27,15 +30,25 @@ import trader.common.beans.ServiceEvent;
 import trader.common.beans.ServiceEventHub;
 import trader.common.beans.ServiceState;
 import trader.common.config.ConfigUtil;
+import trader.common.exchangeable.Exchangeable;
 import trader.common.util.ConversionUtil;
 import trader.service.md.MarketData;
+import trader.service.md.TickLatencyTracker;
+import trader.service.md.spi.AbsMarketDataProducer;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
 import trader.service.util.ConcurrentUtil;
 
 @Service
 public class AsyncEventServiceImpl implements AsyncEventService {
+    private final static Logger logger = LoggerFactory.getLogger(AsyncEventServiceImpl.class);
 
     public static final String ITEM_DISRUPTOR_WAIT_STRATEGY = "disruptor.waitStrategy";
     public static final String ITEM_DISRUPTOR_RINGBUFFER_SIZE = "disruptor.ringBufferSize";
+    /**
+     * 行情分片数量, 缺省为0不分片
+     */
+    public static final String ITEM_MD_SHARDS = "mdShards";
 
     private static class AsyncEventHandler implements EventHandler<AsyncEvent>{
         private int eventType;
@@ -77,9 +90,77 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
     }
 
+    /**
+     * 行情分片: 独立的RingBuffer和处理线程, 并统计队列深度和处理延时
+     */
+    private static class MarketDataShard implements EventHandler<AsyncEvent>{
+        private final int index;
+        private final AsyncEventHandler handler;
+        private Disruptor<AsyncEvent> disruptor;
+        private RingBuffer<AsyncEvent> ringBuffer;
+        /**
+         * 只由分片线程写入
+         */
+        private volatile long totalEvents;
+        private volatile long totalLatencyNanos;
+        /**
+         * 分片线程写入, 统计线程读取后清零
+         */
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        /**
+         * 上一次统计时的值, 只由统计线程访问
+         */
+        private long lastEvents;
+        private long lastLatencyNanos;
+
+        MarketDataShard(int index, AsyncEventHandler handler){
+            this.index = index;
+            this.handler = handler;
+        }
+
+        @Override
+        public void onEvent(AsyncEvent event, long sequence, boolean endOfBatch) throws Exception {
+            handler.onEvent(event, sequence, endOfBatch);
+            long latency = System.nanoTime()-event.publishNanos;
+            totalLatencyNanos += latency;
+            totalEvents++;
+            if ( latency>maxLatencyNanos.get() ) {
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            }
+        }
+
+        long getQueueDepth() {
+            return ringBuffer.getBufferSize()-ringBuffer.remainingCapacity();
+        }
+
+        /**
+         * 上次统计以来的平均延时(微秒)
+         */
+        synchronized long sampleAvgLatencyMicros() {
+            long events = totalEvents, latencyNanos = totalLatencyNanos;
+            long result = 0;
+            if ( events>lastEvents ) {
+                result = (latencyNanos-lastLatencyNanos)/(events-lastEvents)/1000;
+            }
+            lastEvents = events;
+            lastLatencyNanos = latencyNanos;
+            return result;
+        }
+
+        /**
+         * 上次统计以来的最大延时(微秒)
+         */
+        long sampleMaxLatencyMicros() {
+            return maxLatencyNanos.getAndSet(0)/1000;
+        }
+    }
+
     @Autowired
     private BeansContainer beansContainer;
 
+    @Autowired
+    private StatsCollector statsCollector;
+
     @Autowired
     private ExecutorService executorService;
 
@@ -87,6 +168,11 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     private RingBuffer<AsyncEvent> ringBuffer;
 
     private Map<String, AsyncEventHandler> handlersById = new HashMap<>();
+    /**
+     * 所有行情分片共享的过滤器链
+     */
+    private AsyncEventHandler shardHandler = new AsyncEventHandler();
+    private MarketDataShard[] shards = new MarketDataShard[0];
     private ServiceState state = ServiceState.NotInited;
 
     public ServiceState getState() {
@@ -102,15 +188,24 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     }
 
     private AsyncEventService init0() {
-        state = ServiceState.Starting;
         String configPrefix = AsyncEventService.class.getSimpleName()+".";
-        //启动disruptor
+        start(ConfigUtil.getInt(configPrefix+ITEM_DISRUPTOR_RINGBUFFER_SIZE, 4096)
+                , ConfigUtil.getString(configPrefix+ITEM_DISRUPTOR_WAIT_STRATEGY)
+                , ConfigUtil.getInt(configPrefix+ITEM_MD_SHARDS, 0));
+        return this;
+    }
+
+    /**
+     * 启动disruptor和行情分片
+     */
+    private void start(int ringBufferSize, String waitStrategy, int shardCount) {
+        state = ServiceState.Starting;
         disruptor = new Disruptor<AsyncEvent>(()->{
                 return new AsyncEvent();
-            }, ConfigUtil.getInt(configPrefix+ITEM_DISRUPTOR_RINGBUFFER_SIZE, 4096)
+            }, ringBufferSize
             , executorService
             , ProducerType.MULTI
-            , ConcurrentUtil.createDisruptorWaitStrategy(ConfigUtil.getString(configPrefix+ITEM_DISRUPTOR_WAIT_STRATEGY))
+            , ConcurrentUtil.createDisruptorWaitStrategy(waitStrategy)
             );
         List<AsyncEventHandler> allFilters = new ArrayList<>();
         for(String chainId:FILTER_CHAINS) {
@@ -121,16 +216,71 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         AsyncEventHandler[] handlers = allFilters.toArray(new AsyncEventHandler[allFilters.size()]);
         disruptor.handleEventsWith(handlers);
         ringBuffer= disruptor.start();
+        startMarketDataShards(ringBufferSize, waitStrategy, shardCount);
         state = ServiceState.Ready;
-        return this;
+    }
+
+    /**
+     * 启动行情分片, 每个分片是一个独立的Disruptor
+     */
+    private void startMarketDataShards(int ringBufferSize, String waitStrategy, int shardCount) {
+        if ( shardCount<=0 ) {
+            return;
+        }
+        MarketDataShard[] shards = new MarketDataShard[shardCount];
+        for(int i=0;i<shardCount;i++) {
+            MarketDataShard shard = new MarketDataShard(i, shardHandler);
+            shard.disruptor = new Disruptor<AsyncEvent>(()->{
+                    return new AsyncEvent();
+                }, ringBufferSize
+                , executorService
+                , ProducerType.MULTI
+                , ConcurrentUtil.createDisruptorWaitStrategy(waitStrategy)
+                );
+            shard.disruptor.handleEventsWith(shard);
+            shard.ringBuffer = shard.disruptor.start();
+            shards[i] = shard;
+            registerShardStatsItems(shard);
+        }
+        this.shards = shards;
+        logger.info("Market data dispatch is sharded to "+shardCount+" threads");
+    }
+
+    private void registerShardStatsItems(MarketDataShard shard) {
+        String service = AsyncEventService.class.getSimpleName();
+        String component = "mdShard"+shard.index;
+        statsCollector.registerStatsItem(new StatsItem(service, component, "currQueueDepth"),  (StatsItem itemInfo) -> {
+            return shard.getQueueDepth();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, component, "currAvgLatencyMicros"),  (StatsItem itemInfo) -> {
+            return shard.sampleAvgLatencyMicros();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, component, "currMaxLatencyMicros"),  (StatsItem itemInfo) -> {
+            return shard.sampleMaxLatencyMicros();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, component, "totalEvents"),  (StatsItem itemInfo) -> {
+            return shard.totalEvents;
+        });
     }
 
     @PreDestroy
     public void destroy() {
     }
 
+    @Override
+    public int getMarketDataShards() {
+        return shards.length;
+    }
+
     @Override
     public boolean addFilter(String filterChainId, AsyncEventFilter filter, int eventMask) {
+        if ( FILTER_CHAIN_MD_SHARD.equals(filterChainId) ) {
+            if ( shards.length==0 ) {
+                return false;
+            }
+            shardHandler.addFilter(filter, eventMask);
+            return true;
+        }
         AsyncEventHandler handler = handlersById.get(filterChainId);
         boolean result=false;
         if ( null!=handler) {
@@ -152,6 +302,56 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         return seq;
     }
 
+    @Override
+    public long publishMarketData(MarketData md) {
+        if ( shards.length==0 ) {
+            return publishEvent(AsyncEvent.EVENT_TYPE_MARKETDATA, null, md, null);
+        }
+        RingBuffer<AsyncEvent> ringBuffer = shardOf(md.instrument).ringBuffer;
+        long seq = ringBuffer.next();
+        try {
+            AsyncEvent event = ringBuffer.get(seq);
+            event.setData(AsyncEvent.EVENT_TYPE_MARKETDATA, null, md, null);
+            event.publishNanos = System.nanoTime();
+        }finally {
+            ringBuffer.publish(seq);
+        }
+        return seq;
+    }
+
+    @Override
+    public <T> long publishPooledMarketData(AbsMarketDataProducer<T> producer, T rawMarketData, Exchangeable instrument)
+    {
+        RingBuffer<AsyncEvent> ringBuffer = this.ringBuffer;
+        if ( shards.length>0 ) {
+            ringBuffer = shardOf(instrument).ringBuffer;
+        }
+        long seq = ringBuffer.next();
+        try {
+            AsyncEvent event = ringBuffer.get(seq);
+            event.setData(AsyncEvent.EVENT_TYPE_MARKETDATA, null, null, null);
+            MarketData md = producer.fillPooledMarketData(event.mdSlot, rawMarketData, instrument);
+            TickLatencyTracker.onReceived(md);
+            //Producer不支持池化时返回的是普通对象, 不能作为槽位复用
+            if ( md.isPooled() ) {
+                event.mdSlot = md;
+            }
+            event.data = md;
+            event.publishNanos = System.nanoTime();
+        }finally {
+            ringBuffer.publish(seq);
+        }
+        return seq;
+    }
+
+    /**
+     * 按合约HASH计算分片, 保证同一合约的行情总是在同一个分片中顺序处理
+     */
+    private MarketDataShard shardOf(Exchangeable instrument) {
+        MarketDataShard[] shards = this.shards;
+        return shards[ (instrument.hashCode()&Integer.MAX_VALUE)%shards.length ];
+    }
+
     @Override
     public void publishProcessorEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2) {
         long seq = ringBuffer.next();
@@ -163,7 +363,17 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         }
     }
 
+    /**
+     * 先停止行情分片, 分片线程转发到主RingBuffer的事件处理完后再停止主disruptor
+     */
     private void destroy0() {
+        for(MarketDataShard shard:shards) {
+            try {
+                shard.disruptor.shutdown(5, TimeUnit.SECONDS);
+            } catch (Throwable t) {
+                shard.disruptor.halt();
+            }
+        }
         if (ringBuffer != null) {
             try {
                 disruptor.shutdown(5, TimeUnit.SECONDS);
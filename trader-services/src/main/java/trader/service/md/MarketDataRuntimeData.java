@@ -4,7 +4,6 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 import trader.common.exchangeable.Exchange;
@@ -16,16 +15,38 @@ public class MarketDataRuntimeData {
     private Exchangeable instrument;
     private ExchangeableTradingTimes tradingTimes;
     /**
-     * 逆序TICK数据
+     * 最近TICK数据的环形数组, recentIndex指向最新数据, 只在checkTick中用于比较
      */
-    private LinkedList<MarketData> recentDatas = new LinkedList<>();
+    private MarketData[] recentDatas = new MarketData[RECENT_DATA_DEPTH];
+    private int recentIndex = -1;
+    private int recentCount;
+    /**
+     * 池化TICK模式下, recentDatas的每个元素都是自有的复制对象, 原地更新, 不对外发布
+     */
+    private final boolean pooled;
     private long lastVolume;
     private long lastTimestamp;
-    private MarketData lastData;
+    /**
+     * 最新行情, 由postProcess设置, 设置后不再修改. 池化TICK模式下为detach()的复制
+     */
+    private volatile MarketData lastData;
     private List<MarketDataListener> listeners = new ArrayList<>();
+    /**
+     * 分片模式下需要在分片线程回调的listener
+     */
+    private List<MarketDataListener> shardSafeListeners = new ArrayList<>();
+    /**
+     * 分片模式下需要转发到MD主线程回调的listener
+     */
+    private List<MarketDataListener> shardUnsafeListeners = new ArrayList<>();
 
     MarketDataRuntimeData(Exchangeable e, LocalDate tradingDay){
+        this(e, tradingDay, false);
+    }
+
+    MarketDataRuntimeData(Exchangeable e, LocalDate tradingDay, boolean pooled){
         this.instrument = e;
+        this.pooled = pooled;
         tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
     }
 
@@ -42,6 +63,15 @@ public class MarketDataRuntimeData {
             List<MarketDataListener> newListeners = new ArrayList<>(listeners);
             newListeners.add(listener);
             listeners = newListeners;
+            if ( listener.isShardSafe() ) {
+                List<MarketDataListener> newShardSafeListeners = new ArrayList<>(shardSafeListeners);
+                newShardSafeListeners.add(listener);
+                shardSafeListeners = newShardSafeListeners;
+            } else {
+                List<MarketDataListener> newShardUnsafeListeners = new ArrayList<>(shardUnsafeListeners);
+                newShardUnsafeListeners.add(listener);
+                shardUnsafeListeners = newShardUnsafeListeners;
+            }
         }
     }
 
@@ -49,10 +79,30 @@ public class MarketDataRuntimeData {
         return listeners;
     }
 
+    public List<MarketDataListener> getShardSafeListeners(){
+        return shardSafeListeners;
+    }
+
+    public List<MarketDataListener> getShardUnsafeListeners(){
+        return shardUnsafeListeners;
+    }
+
+    /**
+     * 最新行情, 可以在其它线程读取和保留
+     */
     public MarketData getLastData() {
         return lastData;
     }
 
+    /**
+     * 计算TICK的市场时间/阶段, 之后发布为最新行情.
+     * <BR>池化TICK模式下发布detach()的复制, 与保留TICK的listener共享同一个对象
+     */
+    public void postProcess(MarketData tick) {
+        tick.postProcess(tradingTimes);
+        lastData = tick.detach();
+    }
+
     /**
      * 检查切片时间戳, 只有比上次新的数据才允许.
      * <BR>CZCE的数据可能存在每秒多个TICK, 但是UpdateTime均为0的情况
@@ -74,7 +124,8 @@ public class MarketDataRuntimeData {
         {
             //CZCE一秒以内的时间戳会相等, 这时候检查volume/ask/bidvol
             result = true;
-            for(MarketData rTick:recentDatas) {
+            for(int i=0;i<recentCount;i++) {
+                MarketData rTick = recentDatas[(recentIndex-i+RECENT_DATA_DEPTH)%RECENT_DATA_DEPTH];
                 if ( MarketData.equals(rTick, tick)) {
                     result = false;
                     break;
@@ -90,10 +141,20 @@ public class MarketDataRuntimeData {
             }
             lastVolume = tickVolume;
             lastTimestamp = tick.updateTimestamp;
-            this.lastData = tick;
-            this.recentDatas.offerFirst(tick);
-            while(recentDatas.size()>RECENT_DATA_DEPTH) {
-                recentDatas.pollLast();
+            int index = (recentIndex+1)%RECENT_DATA_DEPTH;
+            MarketData recentData = tick;
+            if ( pooled ) {
+                recentData = recentDatas[index];
+                if ( recentData==null || recentData.getClass()!=tick.getClass() ) {
+                    recentData = tick.copy();
+                } else {
+                    recentData.copyFrom(tick);
+                }
+            }
+            recentDatas[index] = recentData;
+            recentIndex = index;
+            if ( recentCount<RECENT_DATA_DEPTH ) {
+                recentCount++;
             }
             result = true;
         }
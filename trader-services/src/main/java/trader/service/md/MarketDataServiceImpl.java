@@ -40,6 +40,7 @@ import trader.common.config.ConfigUtil;
 import trader.common.exception.AppException;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableArray;
 import trader.common.exchangeable.ExchangeableType;
 import trader.common.exchangeable.ExchangeableUtil;
 import trader.common.exchangeable.Future;
@@ -81,6 +82,14 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
      * 是否保存合并后的行情数据
      */
     public static final String ITEM_SAVE_MERGED = "saveMerged";
+    /**
+     * 是否使用池化TICK: 由RingBuffer持有预分配的MarketData对象, 原地填充, 避免每个TICK创建新对象
+     */
+    public static final String ITEM_POOLED_TICKS = "pooledTicks";
+    /**
+     * 是否统计TICK处理链路的延迟分布, 见 TickLatencyTracker
+     */
+    public static final String ITEM_LATENCY_STATS = "latencyStats";
     /**
      * 行情数据源定义
      */
@@ -133,6 +142,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
 
     private boolean saveData;
     private boolean saveMerged;
+    private boolean pooledTicks;
 
     private Map<String, MarketDataProducerFactory> producerFactories;
 
@@ -146,6 +156,12 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
     private Map<String, AbsMarketDataProducer> producers = new HashMap<>();
 
     private List<MarketDataListener> genericListeners = new ArrayList<>();
+    private List<MarketDataListener> shardSafeGenericListeners = new ArrayList<>();
+    private List<MarketDataListener> shardUnsafeGenericListeners = new ArrayList<>();
+    /**
+     * 行情分片数量, 0表示不分片
+     */
+    private int mdShards;
     /**
      * 配置文件指定要接受数据的行情
      */
@@ -154,6 +170,10 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
      * 使用Copy-On-Write维护的行情读写锁
      */
     private Map<Exchangeable, MarketDataRuntimeData> instrumentRuntimes = new ConcurrentHashMap<>();
+    /**
+     * 与instrumentRuntimes内容相同, 按Exchangeable INT ID索引, 用于行情处理时的快速查找
+     */
+    private ExchangeableArray<MarketDataRuntimeData> instrumentRuntimesById = new ExchangeableArray<>();
     private ReentrantLock instrumentRuntimesLock = new ReentrantLock();
     private AtomicLong totalTicksRecv = new AtomicLong();
 
@@ -173,19 +193,21 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         producerFactories = discoverProducerProviders(beansContainer);
         queryOrLoadPrimaryInstruments();
         String configPrefix = MarketDataService.class.getSimpleName()+".";
+        pooledTicks = ConfigUtil.getBoolean(configPrefix+ITEM_POOLED_TICKS, false);
         subscriptions = reloadSubscriptions(configPrefix, Collections.emptyList(), null);
         logger.info("Subscrible instruments: "+subscriptions);
         saveData = ConfigUtil.getBoolean(configPrefix+ITEM_SAVE_DATA, true);
         saveMerged = ConfigUtil.getBoolean(configPrefix+ITEM_SAVE_MERGED, true);
+        if ( ConfigUtil.getBoolean(configPrefix+ITEM_LATENCY_STATS, false) ) {
+            TickLatencyTracker.enable(statsCollector);
+            logger.info("MarketDataService tick latency stats is enabled");
+        }
         if ( saveData ) {
             dataSaver = new MarketDataSaver(beansContainer);
         } else {
             logger.info("MarketDataServie save data is disabled.");
         }
-        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MD, (AsyncEvent event)->{
-            onAsyncEvent(event);
-            return true;
-        }, AsyncEvent.EVENT_TYPE_MARKETDATA_MASK);
+        registerEventFilters();
 
         reloadProducers(configPrefix);
         TradeService tradeService = beansContainer.getBean(TradeService.class);
@@ -214,6 +236,24 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         return this;
     }
 
+    /**
+     * 在MD主线程和行情分片线程上注册行情事件的处理函数
+     */
+    private void registerEventFilters() {
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MD, (AsyncEvent event)->{
+            onAsyncEvent(event);
+            return true;
+        }, AsyncEvent.EVENT_TYPE_MARKETDATA_MASK);
+        mdShards = asyncEventService.getMarketDataShards();
+        if ( mdShards>0 ) {
+            asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MD_SHARD, (AsyncEvent event)->{
+                onShardAsyncEvent(event);
+                return true;
+            }, AsyncEvent.EVENT_TYPE_MARKETDATA_MASK);
+            logger.info("MarketDataService process market data in "+mdShards+" shards");
+        }
+    }
+
     /**
      * 启动后, 连接行情数据源
      */
@@ -293,7 +333,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
 
     @Override
     public MarketData getLastData(Exchangeable e) {
-        MarketDataRuntimeData holder = instrumentRuntimes.get(e);
+        MarketDataRuntimeData holder = instrumentRuntimesById.get(e);
         if ( holder!=null ) {
             return holder.getLastData();
         }
@@ -324,7 +364,12 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
     public void addListener(MarketDataListener listener, Exchangeable... instruments) {
         List<Exchangeable> subscribes = new ArrayList<>();
         if ( instruments==null || instruments.length==0 || (instruments.length==1&&instruments[0]==null) ){
-            genericListeners.add(listener);
+            genericListeners = copyAndAdd(genericListeners, listener);
+            if ( listener.isShardSafe() ) {
+                shardSafeGenericListeners = copyAndAdd(shardSafeGenericListeners, listener);
+            } else {
+                shardUnsafeGenericListeners = copyAndAdd(shardUnsafeGenericListeners, listener);
+            }
         } else {
             for(Exchangeable exchangeable:instruments) {
                 MarketDataRuntimeData holder = getOrCreateListenerHolder(exchangeable, true, subscribes);
@@ -339,6 +384,12 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         }
     }
 
+    private static List<MarketDataListener> copyAndAdd(List<MarketDataListener> listeners, MarketDataListener listener){
+        List<MarketDataListener> result = new ArrayList<>(listeners);
+        result.add(listener);
+        return result;
+    }
+
     /**
      * 响应状态改变, 订阅行情
      */
@@ -367,21 +418,59 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
     }
 
     /**
-     * 排队行情事件到disruptor的事件句柄, 再由 onAsyncEvent 处理
+     * 排队行情事件到disruptor的事件句柄, 再由 onAsyncEvent 或 onShardAsyncEvent 处理
      */
     private void onProducerMarketData(MarketData md) {
-        asyncEventService.publishEvent(AsyncEvent.EVENT_TYPE_MARKETDATA, null, md,  null);
+        asyncEventService.publishMarketData(md);
         if ( saveData ) {
             dataSaver.asyncSave(md);
         }
     }
 
     /**
-     * 处理MarketData事件
+     * 池化行情事件, 在disruptor的槽位上原地填充后由 onAsyncEvent 或 onShardAsyncEvent 处理
+     */
+    private <T> void onProducerPooledMarketData(AbsMarketDataProducer<T> producer, T rawMarketData, Exchangeable instrument) {
+        asyncEventService.publishPooledMarketData(producer, rawMarketData, instrument);
+    }
+
+    /**
+     * 处理MarketData事件.
+     * <BR>分片模式下只处理从分片线程转发过来的TICK, 回调非分片安全的listener
      */
     private void onAsyncEvent(AsyncEvent event)
     {
         MarketData tick = (MarketData)event.data;
+        if ( tick==null ) {
+            return;
+        }
+        if ( event.data2==SHARD_FORWARDED ) {
+            MarketDataRuntimeData holder = instrumentRuntimesById.get(tick.instrument);
+            notifyListeners(tick, shardUnsafeGenericListeners, holder.getShardUnsafeListeners());
+            return;
+        }
+        processTick(tick, false);
+    }
+
+    /**
+     * 在行情分片线程中处理MarketData事件
+     */
+    private void onShardAsyncEvent(AsyncEvent event)
+    {
+        MarketData tick = (MarketData)event.data;
+        if ( tick==null ) {
+            return;
+        }
+        processTick(tick, true);
+    }
+
+    /**
+     * 分片线程转发到MD主线程的TICK标记
+     */
+    private static final Object SHARD_FORWARDED = new Object();
+
+    private void processTick(MarketData tick, boolean sharded) {
+        TickLatencyTracker.onDispatch(tick);
         //如果行情时间和系统时间差距超过2小时, 忽略.
         if ( Math.abs(mtService.currentTimeMillis()-tick.updateTimestamp)>= 2*3600*1000 ) {
             if ( logger.isDebugEnabled()) {
@@ -391,31 +480,47 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         totalTicksRecv.incrementAndGet();
         MarketDataRuntimeData holder= getOrCreateListenerHolder(tick.instrument, true, null);
         if ( null!=holder && holder.checkTick(tick) ) {
-            tick.postProcess(holder.getTradingTimes());
-            //通用Listener
-            for(int i=0;i<genericListeners.size();i++) {
-                try{
-                    genericListeners.get(i).onMarketData(tick);
-                }catch(Throwable t) {
-                    logger.error("Marketdata listener "+genericListeners.get(i)+" process failed: "+tick,t);
-                }
-            }
-            //特有的listeners
-            List<MarketDataListener> listeners = holder.getListeners();
-            for(int i=0;i<listeners.size();i++) {
-                try {
-                    listeners.get(i).onMarketData(tick);
-                }catch(Throwable t) {
-                    logger.error("Marketdata listener "+listeners.get(i)+" process failed: "+tick,t);
+            holder.postProcess(tick);
+            if ( !sharded ) {
+                notifyListeners(tick, genericListeners, holder.getListeners());
+            } else {
+                //分片安全的listener按注册顺序在分片线程中回调: BarService先于TradletService, 交易小程序收到TICK时KBar已经更新
+                notifyListeners(tick, shardSafeGenericListeners, holder.getShardSafeListeners());
+                //非分片安全的listener转发到MD主线程, 同一合约的TICK仍然是顺序的. 池化TICK转发的是与其它listener共享的复制
+                if ( !shardUnsafeGenericListeners.isEmpty() || !holder.getShardUnsafeListeners().isEmpty() ) {
+                    asyncEventService.publishEvent(AsyncEvent.EVENT_TYPE_MARKETDATA, null, tick.detach(), SHARD_FORWARDED);
                 }
             }
             //保存合并后的MarketData
             if ( saveMerged && saveData ) {
-                MarketData tick0 = tick.clone();
+                MarketData tick0 = tick.copy();
                 tick0.producerId = "merged";
                 dataSaver.asyncSave(tick0);
             }
         }
+        //池化TICK会被复用, 异步保存需要复制. 在处理结束后保存, 与listener共享同一个复制
+        if ( tick.isPooled() && saveData ) {
+            dataSaver.asyncSave(tick.detach());
+        }
+    }
+
+    private void notifyListeners(MarketData tick, List<MarketDataListener> genericListeners, List<MarketDataListener> listeners) {
+        //通用Listener
+        for(int i=0;i<genericListeners.size();i++) {
+            try{
+                genericListeners.get(i).onMarketData(tick);
+            }catch(Throwable t) {
+                logger.error("Marketdata listener "+genericListeners.get(i)+" process failed: "+tick,t);
+            }
+        }
+        //特有的listeners
+        for(int i=0;i<listeners.size();i++) {
+            try {
+                listeners.get(i).onMarketData(tick);
+            }catch(Throwable t) {
+                logger.error("Marketdata listener "+listeners.get(i)+" process failed: "+tick,t);
+            }
+        }
     }
 
     static class FutureInfo{
@@ -669,6 +774,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         }
         if ( producerFactories.containsKey(provider) ){
             result = (AbsMarketDataProducer)producerFactories.get(provider).create(beansContainer, producerConfig);
+            result.setPooled(pooledTicks);
             result.setListener(new MarketDataProducerListener() {
                 public void onStateChanged(AbsMarketDataProducer producer, ConnState lastStatus) {
                     onProducerStateChanged(producer);
@@ -676,6 +782,9 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
                 public void onMarketData(MarketData md) {
                     onProducerMarketData(md);
                 }
+                public <T> void onPooledMarketData(AbsMarketDataProducer<T> producer, T rawMarketData, Exchangeable instrument) {
+                    onProducerPooledMarketData(producer, rawMarketData, instrument);
+                }
             });
         }
         if ( null==result ) {
@@ -692,14 +801,15 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
      * @return
      */
     private MarketDataRuntimeData getOrCreateListenerHolder(Exchangeable exchangeable, boolean autoCreate, List<Exchangeable> newSubscribes) {
-        MarketDataRuntimeData holder = instrumentRuntimes.get(exchangeable);
+        MarketDataRuntimeData holder = instrumentRuntimesById.get(exchangeable);
         if (null == holder && autoCreate) {
             while(!instrumentRuntimesLock.tryLock());
             try {
                 holder = instrumentRuntimes.get(exchangeable);
                 if ( null==holder ) {
-                    holder = new MarketDataRuntimeData(exchangeable, mtService.getTradingDay());
+                    holder = new MarketDataRuntimeData(exchangeable, mtService.getTradingDay(), pooledTicks);
                     instrumentRuntimes.put(exchangeable, holder);
+                    instrumentRuntimesById.set(exchangeable, holder);
                     if (newSubscribes != null) {
                         newSubscribes.add(exchangeable);
                     }
@@ -0,0 +1,202 @@
+package trader.service.md.ctp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.DateUtil;
+
+/**
+ * 按天缓存的CTP日期/时间基准.
+ * <BR>ActionDay/TradingDay字符串只在第一次出现时解析, 之后的TICK时间戳通过 当日零点毫秒数+时分秒 直接计算,
+ * 避免每个TICK都调用 DateUtil.str2localdatetime 解析字符串.
+ * <BR>DCE/CZCE需要的前后交易日也一并缓存, 交易日历重新加载后(MarketDayUtil.getGeneration()变化)重新计算.
+ */
+public class CtpDayTimeBase {
+    private static final ZoneId CFFEX_ZONE_ID = Exchange.CFFEX.getZoneId();
+
+    private static final ConcurrentHashMap<String, CtpDayTimeBase> dayBases = new ConcurrentHashMap<>();
+
+    private final String dayStr;
+    private final LocalDate day;
+    /**
+     * 当日零点的EpochMillis
+     */
+    private final long dayBeginMillis;
+
+    private volatile MarketDays marketDays = new MarketDays(-1);
+    private volatile CtpDayTimeBase calendarNextDay;
+
+    /**
+     * 按交易日历版本缓存的前后交易日
+     */
+    private static class MarketDays {
+        final int generation;
+        final ConcurrentHashMap<Exchange, CtpDayTimeBase> prevMarketDays = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Exchange, CtpDayTimeBase> nextMarketDays = new ConcurrentHashMap<>();
+
+        MarketDays(int generation){
+            this.generation = generation;
+        }
+    }
+
+    private CtpDayTimeBase(LocalDate day) {
+        this.day = day;
+        this.dayStr = DateUtil.date2str(day);
+        this.dayBeginMillis = DateUtil.localdatetime2long(CFFEX_ZONE_ID, day.atStartOfDay());
+    }
+
+    public String getDayStr() {
+        return dayStr;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public long getDayBeginMillis() {
+        return dayBeginMillis;
+    }
+
+    /**
+     * 前一个交易日
+     */
+    public CtpDayTimeBase prevMarketDay(Exchange exchange) {
+        ConcurrentHashMap<Exchange, CtpDayTimeBase> prevMarketDays = getMarketDays().prevMarketDays;
+        CtpDayTimeBase result = prevMarketDays.get(exchange);
+        if ( result==null ) {
+            result = of(MarketDayUtil.prevMarketDay(exchange, day));
+            prevMarketDays.put(exchange, result);
+        }
+        return result;
+    }
+
+    /**
+     * 下一个交易日
+     */
+    public CtpDayTimeBase nextMarketDay(Exchange exchange) {
+        ConcurrentHashMap<Exchange, CtpDayTimeBase> nextMarketDays = getMarketDays().nextMarketDays;
+        CtpDayTimeBase result = nextMarketDays.get(exchange);
+        if ( result==null ) {
+            result = of(MarketDayUtil.nextMarketDay(exchange, day));
+            nextMarketDays.put(exchange, result);
+        }
+        return result;
+    }
+
+    private MarketDays getMarketDays() {
+        MarketDays result = marketDays;
+        int generation = MarketDayUtil.getGeneration();
+        if ( result.generation!=generation ) {
+            result = new MarketDays(generation);
+            marketDays = result;
+        }
+        return result;
+    }
+
+    /**
+     * 下一个自然日
+     */
+    public CtpDayTimeBase plusOneDay() {
+        CtpDayTimeBase result = calendarNextDay;
+        if ( result==null ) {
+            result = of(day.plusDays(1));
+            calendarNextDay = result;
+        }
+        return result;
+    }
+
+    /**
+     * 计算EpochMillis, 不分配对象
+     */
+    public long toEpochMillis(int secondOfDay, int millisec) {
+        return dayBeginMillis+secondOfDay*1000L+millisec;
+    }
+
+    public LocalDateTime toLocalDateTime(int secondOfDay, int millisec) {
+        return day.atTime(secondOfDay/3600, (secondOfDay/60)%60, secondOfDay%60, millisec*1000000);
+    }
+
+    /**
+     * 从yyyyMMdd格式字符串返回日期基准, 空字符串返回null
+     */
+    public static CtpDayTimeBase of(String dayStr) {
+        if ( dayStr==null || dayStr.length()==0 ) {
+            return null;
+        }
+        CtpDayTimeBase result = dayBases.get(dayStr);
+        if ( result==null ) {
+            LocalDate day = DateUtil.str2localdate(dayStr);
+            if ( day==null ) {
+                return null;
+            }
+            result = of(day);
+            dayBases.putIfAbsent(dayStr, result);
+        }
+        return result;
+    }
+
+    public static CtpDayTimeBase of(LocalDate day) {
+        String dayStr = DateUtil.date2str(day);
+        CtpDayTimeBase result = dayBases.get(dayStr);
+        if ( result==null ) {
+            result = new CtpDayTimeBase(day);
+            CtpDayTimeBase result0 = dayBases.putIfAbsent(dayStr, result);
+            if ( result0!=null ) {
+                result = result0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析 HH:MM:SS / H:MM:SS / HHMMSS 格式时间为当日秒数, 不分配对象.
+     *
+     * @return 当日秒数, 空字符串返回0, 无法识别的格式返回-1
+     */
+    public static int secondOfDay(String time) {
+        int len = time.length();
+        switch(len) {
+        case 0:
+            return 0;
+        case 8: //HH:MM:SS
+            return digits2(time, 0)*3600+digits2(time, 3)*60+digits2(time, 6);
+        case 7: //H:MM:SS
+            return digit(time, 0)*3600+digits2(time, 2)*60+digits2(time, 5);
+        case 6: //HHMMSS
+            return digits2(time, 0)*3600+digits2(time, 2)*60+digits2(time, 4);
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * 当日秒数转换为 HHMMSS 格式的整数, 与 DateUtil.time2int 相同
+     */
+    public static int secondOfDay2int(int secondOfDay) {
+        return (secondOfDay/3600)*10000+((secondOfDay/60)%60)*100+secondOfDay%60;
+    }
+
+    /**
+     * 与 DateUtil.time2int 相同, 常见格式不分配对象
+     */
+    public static int time2int(String time) {
+        int secondOfDay = secondOfDay(time);
+        if ( secondOfDay>=0 ) {
+            return secondOfDay2int(secondOfDay);
+        }
+        return DateUtil.time2int(time);
+    }
+
+    private static int digit(String str, int index) {
+        return str.charAt(index)-'0';
+    }
+
+    private static int digits2(String str, int index) {
+        return (str.charAt(index)-'0')*10+(str.charAt(index+1)-'0');
+    }
+
+}
@@ -7,7 +7,6 @@ import net.jctp.CThostFtdcDepthMarketDataField;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableType;
-import trader.common.exchangeable.MarketDayUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.PriceUtil;
 import trader.common.util.StringUtil;
@@ -18,9 +17,28 @@ public class CtpMarketData extends MarketData {
     private static final CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
     private static final ZoneId CFFEX_ZONE_ID = Exchange.CFFEX.getZoneId();
 
-    public final CThostFtdcDepthMarketDataField field;
+    public CThostFtdcDepthMarketDataField field;
+
+    private CtpMarketData(boolean pooled) {
+        this.pooled = pooled;
+    }
 
     public CtpMarketData(String producerId, Exchangeable instrument, CThostFtdcDepthMarketDataField data, LocalDate tradingDay) {
+        update(producerId, instrument, data, CtpDayTimeBase.of(tradingDay));
+    }
+
+    /**
+     * 创建预分配的池化对象, 后续通过 update() 原地填充
+     */
+    public static CtpMarketData createPooled() {
+        return new CtpMarketData(true);
+    }
+
+    /**
+     * 原地填充行情数据, 盘口数组在深度不变时复用, 时间戳基于缓存的日期基准计算
+     */
+    public CtpMarketData update(String producerId, Exchangeable instrument, CThostFtdcDepthMarketDataField data, CtpDayTimeBase tradingDayBase) {
+        this.detached = null;
         this.producerId = producerId;
         this.field = data;
         this.instrument = instrument;
@@ -29,7 +47,9 @@ public class CtpMarketData extends MarketData {
         this.lastPrice = PriceUtil.price2long(data.LastPrice);
         String actionDayStr = data.ActionDay;
         String tradingDayStr = data.TradingDay;
-        int timeInt = DateUtil.time2int(data.UpdateTime);
+        CtpDayTimeBase actionDayBase = null;
+        int secondOfDay = CtpDayTimeBase.secondOfDay(data.UpdateTime);
+        int timeInt = CtpDayTimeBase.time2int(data.UpdateTime);
         //周五夜市DCE的ActionDay提前3天, CZCE的TradingDay晚了3天, SHFE正常
         //2015-01-30 21:03:00 DCE ActionDay 20150202, TraingDay 20150202
         //2015-02-30 21:03:00 DCE ActionDay 20150130, TradingDay ""
@@ -45,16 +65,20 @@ public class CtpMarketData extends MarketData {
                 if (StringUtil.equals(actionDayStr, tradingDayStr)) {
                     //2015-01-30 21:03:00 DCE ActionDay 20150202, TraingDay 20150202
                     // 夜市 tradingDay-1 = actionDay
-                    LocalDate actionDay = MarketDayUtil.prevMarketDay(Exchange.DCE, DateUtil.str2localdate(tradingDayStr));
-                    // 夜市的00:0002:30, 夜市后半场
-                    if (timeInt < 30000) {
-                        actionDay = actionDay.plusDays(1);
+                    CtpDayTimeBase tradingDay0 = CtpDayTimeBase.of(tradingDayStr);
+                    if ( tradingDay0!=null ) {
+                        actionDayBase = tradingDay0.prevMarketDay(Exchange.DCE);
+                        // 夜市的00:0002:30, 夜市后半场
+                        if (timeInt < 30000) {
+                            actionDayBase = actionDayBase.plusOneDay();
+                        }
                     }
-                    actionDayStr = DateUtil.date2str(actionDay);
                 } else if (StringUtil.isEmpty(tradingDayStr)) {
                     //2015-02-30 21:03:00 DCE ActionDay 20150130, TradingDay ""
-                    LocalDate tradingDay0 = MarketDayUtil.nextMarketDay(Exchange.DCE, DateUtil.str2localdate(actionDayStr));
-                    tradingDayStr = DateUtil.date2str(tradingDay0);
+                    CtpDayTimeBase actionDay0 = CtpDayTimeBase.of(actionDayStr);
+                    if ( actionDay0!=null ) {
+                        tradingDayStr = actionDay0.nextMarketDay(Exchange.DCE).getDayStr();
+                    }
                 } else {
                     //2020-06-23 21:03:00 DCE ActionDay 20200623, TradingDay 20200624
                     //不做修改
@@ -64,26 +88,37 @@ public class CtpMarketData extends MarketData {
             //组合行情的actionDay为空
             if ( instrument.getType()==ExchangeableType.FUTURE_COMBO && StringUtil.isEmpty(actionDayStr) ) {
                 if ( timeInt>= 150000 ) {
-                    LocalDate actionDay0 = MarketDayUtil.prevMarketDay(Exchange.CZCE, DateUtil.str2localdate(tradingDayStr));
-                    actionDayStr = DateUtil.date2str(actionDay0);
+                    CtpDayTimeBase tradingDay0 = CtpDayTimeBase.of(tradingDayStr);
+                    if ( tradingDay0!=null ) {
+                        actionDayBase = tradingDay0.prevMarketDay(Exchange.CZCE);
+                    }
                 } else {
                     actionDayStr = tradingDayStr;
                 }
             }
             //CZCE的tradingDay是actionDay, 需要判断后加以识别
-            tradingDayStr = DateUtil.date2str(tradingDay);
+            tradingDayStr = tradingDayBase.getDayStr();
             //CZCE 每天早上推送一条昨晚夜市收盘的价格, 但是ActionDay/TradingDay 都是当天白天日市数据
             if ( PriceUtil.isValidPrice(data.ClosePrice) && data.UpdateTime.compareTo("15")>0 ) { //日市会将夜市的ClosePrice记录下来
-                LocalDate actionDay0 = MarketDayUtil.prevMarketDay(Exchange.CZCE, tradingDay);
-                actionDayStr = DateUtil.date2str(actionDay0);
+                actionDayBase = tradingDayBase.prevMarketDay(Exchange.CZCE);
             }
         }
         if ( StringUtil.isEmpty(tradingDayStr)) {
-            tradingDayStr = DateUtil.date2str(tradingDay);
+            tradingDayStr = tradingDayBase.getDayStr();
+        }
+        if ( actionDayBase==null ) {
+            actionDayBase = CtpDayTimeBase.of(actionDayStr);
+            if ( actionDayBase==null ) {
+                actionDayBase = tradingDayBase;
+            }
+        }
+        if ( secondOfDay>=0 ) {
+            this.updateTime = actionDayBase.toLocalDateTime(secondOfDay, data.UpdateMillisec);
+            this.updateTimestamp = actionDayBase.toEpochMillis(secondOfDay, data.UpdateMillisec);
+        } else {
+            this.updateTime = DateUtil.str2localdatetime(actionDayBase.getDay(), data.UpdateTime, data.UpdateMillisec);
+            this.updateTimestamp = DateUtil.localdatetime2long(CFFEX_ZONE_ID, updateTime);
         }
-
-        this.updateTime = DateUtil.str2localdatetime(actionDayStr, data.UpdateTime, data.UpdateMillisec);
-        this.updateTimestamp = DateUtil.localdatetime2long(CFFEX_ZONE_ID, updateTime);
         this.preSettlementPrice = PriceUtil.price2long(data.PreSettlementPrice);
         this.preClosePrice = PriceUtil.price2long(data.PreClosePrice);
         this.openPrice = PriceUtil.price2long(data.OpenPrice);
@@ -101,16 +136,27 @@ public class CtpMarketData extends MarketData {
         this.tradingDay = tradingDayStr;
         this.upperLimitPrice = PriceUtil.price2long(data.UpperLimitPrice);
         this.lowerLimitPrice = PriceUtil.price2long(data.LowerLimitPrice);
+        this.mktTimes = null;
+        this.mktStage = null;
+        this.mktTime = 0;
         long bidPrice2 = PriceUtil.price2long(data.BidPrice2);
         if (bidPrice2 == Long.MAX_VALUE || bidPrice2==0) {
             this.depth = 1;
-            bidPrices = new long[] { PriceUtil.price2long(data.BidPrice1) };
-            bidVolumes = new int[] { data.BidVolume1 };
-            askPrices = new long[] { PriceUtil.price2long(data.AskPrice1) };
-            askVolumes = new int[] { data.AskVolume1 };
+            long[] bidPrices = ensureLength(this.bidPrices, 1);
+            bidPrices[0] = PriceUtil.price2long(data.BidPrice1);
+            this.bidPrices = bidPrices;
+            int[] bidVolumes = ensureLength(this.bidVolumes, 1);
+            bidVolumes[0] = data.BidVolume1;
+            this.bidVolumes = bidVolumes;
+            long[] askPrices = ensureLength(this.askPrices, 1);
+            askPrices[0] = PriceUtil.price2long(data.AskPrice1);
+            this.askPrices = askPrices;
+            int[] askVolumes = ensureLength(this.askVolumes, 1);
+            askVolumes[0] = data.AskVolume1;
+            this.askVolumes = askVolumes;
         } else {
             this.depth = 5;
-            long[] bidPrices = new long[5];
+            long[] bidPrices = ensureLength(this.bidPrices, 5);
             bidPrices[0] = PriceUtil.price2long(data.BidPrice1);
             bidPrices[1] = bidPrice2;
             bidPrices[2] = PriceUtil.price2long(data.BidPrice3);
@@ -118,7 +164,7 @@ public class CtpMarketData extends MarketData {
             bidPrices[4] = PriceUtil.price2long(data.BidPrice5);
             this.bidPrices = bidPrices;
 
-            int[] bidVolumes = new int[5];
+            int[] bidVolumes = ensureLength(this.bidVolumes, 5);
             bidVolumes[0] = data.BidVolume1;
             bidVolumes[1] = data.BidVolume2;
             bidVolumes[2] = data.BidVolume3;
@@ -126,7 +172,7 @@ public class CtpMarketData extends MarketData {
             bidVolumes[4] = data.BidVolume5;
             this.bidVolumes = bidVolumes;
 
-            long[] askPrices = new long[5];
+            long[] askPrices = ensureLength(this.askPrices, 5);
             askPrices[0] = PriceUtil.price2long(data.AskPrice1);
             askPrices[1] = PriceUtil.price2long(data.AskPrice2);
             askPrices[2] = PriceUtil.price2long(data.AskPrice3);
@@ -134,7 +180,7 @@ public class CtpMarketData extends MarketData {
             askPrices[4] = PriceUtil.price2long(data.AskPrice5);
             this.askPrices = askPrices;
 
-            int[] askVolumes = new int[5];
+            int[] askVolumes = ensureLength(this.askVolumes, 5);
             askVolumes[0] = data.AskVolume1;
             askVolumes[1] = data.AskVolume2;
             askVolumes[2] = data.AskVolume3;
@@ -142,6 +188,21 @@ public class CtpMarketData extends MarketData {
             askVolumes[4] = data.AskVolume5;
             this.askVolumes = askVolumes;
         }
+        return this;
+    }
+
+    private static long[] ensureLength(long[] array, int length) {
+        if ( array==null || array.length!=length ) {
+            array = new long[length];
+        }
+        return array;
+    }
+
+    private static int[] ensureLength(int[] array, int length) {
+        if ( array==null || array.length!=length ) {
+            array = new int[length];
+        }
+        return array;
     }
 
     @Override
@@ -169,9 +230,44 @@ public class CtpMarketData extends MarketData {
 
     @Override
     public MarketData clone() {
-        CtpMarketData obj = new CtpMarketData(producerId, instrument, field, DateUtil.str2localdate(tradingDay));
-        cloneImpl(obj);
-        return obj;
+        return copy();
+    }
+
+    @Override
+    protected MarketData newInstance() {
+        return new CtpMarketData(false);
+    }
+
+    /**
+     * 原始行情对象: 26个double, 12个int, 6个String
+     */
+    private static final long FIELD_BYTES = align(12+26*8+12*4+6*4);
+
+    /**
+     * 加上原始CTP行情对象的大小, copy()出来的对象与源对象共享原始行情, 也会重复计入
+     */
+    @Override
+    public long estimateBytes() {
+        long result = super.estimateBytes();
+        if ( field!=null ) {
+            result += FIELD_BYTES;
+            result += estimateBytes(field.TradingDay);
+            result += estimateBytes(field.ExchangeID);
+            result += estimateBytes(field.UpdateTime);
+            result += estimateBytes(field.ActionDay);
+            result += estimateBytes(field.InstrumentID);
+            result += estimateBytes(field.ExchangeInstID);
+        }
+        return result;
+    }
+
+    @Override
+    public MarketData copyFrom(MarketData src) {
+        super.copyFrom(src);
+        if ( src instanceof CtpMarketData ) {
+            this.field = ((CtpMarketData)src).field;
+        }
+        return this;
     }
 
 }
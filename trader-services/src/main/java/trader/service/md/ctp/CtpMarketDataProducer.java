@@ -30,7 +30,6 @@ import trader.common.beans.Discoverable;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableType;
-import trader.common.exchangeable.MarketDayUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.StringUtil;
 import trader.service.ServiceConstants.ConnState;
@@ -51,6 +50,8 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
 
     private String tradingDayStr;
 
+    private volatile CtpDayTimeBase tradingDayBase;
+
     /**
      * 每秒更新一次
      */
@@ -89,6 +90,7 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
 
         tradingDay = mtService.getTradingDay();
         tradingDayStr = DateUtil.date2str(tradingDay);
+        tradingDayBase = CtpDayTimeBase.of(tradingDay);
         changeStatus(ConnState.Connecting);
         String url = connectionProps.getProperty("frontUrl");
         String brokerId = connectionProps.getProperty("brokerId");
@@ -196,6 +198,7 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
         if ( pRspInfo.ErrorID==0 ) {
             changeStatus(ConnState.Connected);
             tradingDay = DateUtil.str2localdate(pRspUserLogin.TradingDay);
+            tradingDayBase = CtpDayTimeBase.of(tradingDay);
         }else {
             changeStatus(ConnState.ConnectFailed);
         }
@@ -259,8 +262,28 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
     public void OnRtnDepthMarketData(CThostFtdcDepthMarketDataField pDepthMarketData) {
         Exchangeable instrument = CtpUtil.ctp2instrument(pDepthMarketData.ExchangeID, pDepthMarketData.InstrumentID);
         adjustMarketData(pDepthMarketData, instrument);
-        MarketData md = createMarketData(pDepthMarketData, instrument, tradingDay);
-        notifyData(md);
+        if ( pooled ) {
+            notifyPooledData(pDepthMarketData, instrument);
+        } else {
+            MarketData md = createMarketData(pDepthMarketData, instrument, tradingDay);
+            notifyData(md);
+        }
+    }
+
+    @Override
+    public boolean supportsPooled() {
+        return true;
+    }
+
+    @Override
+    public MarketData fillPooledMarketData(MarketData slot, CThostFtdcDepthMarketDataField ctpMarketData, Exchangeable instrument) {
+        CtpMarketData md = null;
+        if ( slot instanceof CtpMarketData && slot.isPooled() ) {
+            md = (CtpMarketData)slot;
+        } else {
+            md = CtpMarketData.createPooled();
+        }
+        return md.update(getId(), instrument, ctpMarketData, tradingDayBase);
     }
 
     @Override
@@ -294,27 +317,26 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
         Exchange exchange = instrument.exchange();
         if ( exchange==Exchange.DCE ) {
             tick.ActionDay = actionDayStr;
-            int timeInt = DateUtil.time2int(tick.UpdateTime);
+            int timeInt = CtpDayTimeBase.time2int(tick.UpdateTime);
             if ( actionTime.getHour()<=9 && timeInt>= 150000 ) {
                 lastActionDay = true;
             }
         }else if ( exchange==Exchange.CZCE ) {
-            int timeInt = DateUtil.time2int(tick.UpdateTime);
+            int timeInt = CtpDayTimeBase.time2int(tick.UpdateTime);
             tick.TradingDay = tradingDayStr;
             //日市会将夜市的ClosePrice记录下来
             if ( actionTime.getHour()<=9 && timeInt>150000 ) {
                 lastActionDay = true;
             }
         }else if ( exchange==Exchange.SHFE) {
-            int timeInt = DateUtil.time2int(tick.UpdateTime);
+            int timeInt = CtpDayTimeBase.time2int(tick.UpdateTime);
             if ( actionTime.getHour()<=9 && timeInt>150000 ) {
                 lastActionDay = true;
             }
         }
 
         if (lastActionDay) {
-            LocalDate actionDay0 = MarketDayUtil.prevMarketDay(exchange, tradingDay);
-            tick.ActionDay = DateUtil.date2str(actionDay0);
+            tick.ActionDay = tradingDayBase.prevMarketDay(exchange).getDayStr();
         }
     }
 
@@ -14,7 +14,10 @@ public class WebMarketData extends MarketData {
     private static final CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
     private static final ZoneId CFFEX_ZONE_ID = Exchange.CFFEX.getZoneId();
 
-    public final CThostFtdcDepthMarketDataField field;
+    public CThostFtdcDepthMarketDataField field;
+
+    private WebMarketData() {
+    }
 
     public WebMarketData(String producerId, Exchangeable exchangeable, CThostFtdcDepthMarketDataField data) {
         this.producerId = producerId;
@@ -111,4 +114,18 @@ public class WebMarketData extends MarketData {
         return new WebMarketData(producerId, instrument, field);
     }
 
+    @Override
+    protected MarketData newInstance() {
+        return new WebMarketData();
+    }
+
+    @Override
+    public MarketData copyFrom(MarketData src) {
+        super.copyFrom(src);
+        if ( src instanceof WebMarketData ) {
+            this.field = ((WebMarketData)src).field;
+        }
+        return this;
+    }
+
 }
@@ -0,0 +1,306 @@
+package trader.service.md.web;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+
+/**
+ * 异步抓取WEB行情.
+ * <BR>使用JDK HttpClient非阻塞发送请求, HTTP/1.1 keep-alive连接由HttpClient复用
+ * <BR>合约按itemsPerRequest分组, 每组的请求和解析器在合约列表不变时重复使用; 响应体以字节流直接交给WebQuoteParser解析
+ * <BR>每轮最多maxConcurrentRequests个请求同时进行, 上一轮没有结束时不开始新一轮
+ * <BR>自适应间隔: 出错时间隔加倍, 最长MAX_INTERVAL; 正常时逐步恢复到fetchInterval, 且不小于一轮的耗时
+ */
+public class WebQuoteFetcher {
+    private static final Logger logger = LoggerFactory.getLogger(WebQuoteFetcher.class);
+
+    /**
+     * 出错后的最大抓取间隔
+     */
+    public static final long MAX_INTERVAL = 30*1000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    public static interface QuoteListener {
+        public void onQuote(String item, CThostFtdcDepthMarketDataField field);
+    }
+
+    /**
+     * 一组合约, 同一时间最多只有一个请求
+     */
+    private class Chunk implements WebQuoteParser.QuoteListener {
+        final HttpRequest request;
+        final WebQuoteParser parser;
+
+        Chunk(List<String> items){
+            StringBuilder url = new StringBuilder(baseUrl.length()+items.size()*9);
+            url.append(baseUrl);
+            for(int i=0;i<items.size();i++) {
+                if ( i>0 ) {
+                    url.append(",");
+                }
+                url.append(items.get(i));
+            }
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url.toString())).timeout(REQUEST_TIMEOUT).GET();
+            for(Map.Entry<String, String> header:format.getHeaders().entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+            request = builder.build();
+            parser = new WebQuoteParser(format, items, this);
+        }
+
+        @Override
+        public void onQuote(int itemIndex, CThostFtdcDepthMarketDataField field) {
+            listener.onQuote(parser.getItems()[itemIndex], field);
+        }
+    }
+
+    /**
+     * 把响应体交给解析器, 每次只请求一个数据块
+     */
+    private static class QuoteBodySubscriber implements BodySubscriber<Integer> {
+        private final WebQuoteParser parser;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        QuoteBodySubscriber(WebQuoteParser parser){
+            this.parser = parser;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            parser.reset();
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> bufs) {
+            try {
+                for(ByteBuffer buf:bufs) {
+                    parser.feed(buf);
+                }
+            }catch(Throwable t) {
+                subscription.cancel();
+                result.completeExceptionally(t);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            result.completeExceptionally(t);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(parser.finish());
+        }
+
+        @Override
+        public CompletionStage<Integer> getBody() {
+            return result;
+        }
+    }
+
+    /**
+     * 一轮抓取
+     */
+    private class Round {
+        final List<Chunk> chunks;
+        final long beginTime = System.currentTimeMillis();
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final AtomicInteger pendingChunks;
+        final AtomicInteger quoteCount = new AtomicInteger();
+        final AtomicInteger errorCount = new AtomicInteger();
+
+        Round(List<Chunk> chunks){
+            this.chunks = chunks;
+            pendingChunks = new AtomicInteger(chunks.size());
+        }
+    }
+
+    private final WebQuoteFormat format;
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final QuoteListener listener;
+    private int itemsPerRequest = 150;
+    private int maxConcurrentRequests = 4;
+    private long fetchInterval = 1000;
+    private volatile long currInterval = fetchInterval;
+    private volatile List<Chunk> chunks = new ArrayList<>();
+    private volatile Round currRound;
+
+    /**
+     * @param baseUrl 行情URL, 为空使用WebQuoteFormat的缺省URL
+     * @param executor HttpClient回调和解析使用的线程池, 为空使用HttpClient缺省线程池
+     */
+    public WebQuoteFetcher(WebQuoteFormat format, String baseUrl, Executor executor, QuoteListener listener) {
+        this.format = format;
+        this.baseUrl = baseUrl!=null?baseUrl:format.getUrl();
+        this.listener = listener;
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT);
+        if ( executor!=null ) {
+            builder.executor(executor);
+        }
+        httpClient = builder.build();
+    }
+
+    public WebQuoteFormat getFormat() {
+        return format;
+    }
+
+    public void setItemsPerRequest(int itemsPerRequest) {
+        if ( itemsPerRequest>0 ) {
+            this.itemsPerRequest = itemsPerRequest;
+        }
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if ( maxConcurrentRequests>0 ) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+    }
+
+    public void setFetchInterval(long fetchInterval) {
+        this.fetchInterval = fetchInterval;
+        this.currInterval = fetchInterval;
+    }
+
+    /**
+     * 当前的抓取间隔, 毫秒
+     */
+    public long getInterval() {
+        return currInterval;
+    }
+
+    /**
+     * 设置合约列表, 重新分组. 已有合约的最后行情时间保留
+     */
+    public synchronized void setSubscriptions(List<String> items) {
+        Map<String, Long> lastTimes = new HashMap<>();
+        for(Chunk chunk:chunks) {
+            String[] chunkItems = chunk.parser.getItems();
+            for(int i=0;i<chunkItems.length;i++) {
+                lastTimes.put(chunkItems[i], chunk.parser.getLastTime(i));
+            }
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        for(List<String> chunkItems:Lists.partition(items, itemsPerRequest)) {
+            Chunk chunk = new Chunk(chunkItems);
+            for(int i=0;i<chunkItems.size();i++) {
+                Long lastTime = lastTimes.get(chunkItems.get(i));
+                if ( lastTime!=null ) {
+                    chunk.parser.setLastTime(i, lastTime);
+                }
+            }
+            chunks.add(chunk);
+        }
+        this.chunks = chunks;
+    }
+
+    /**
+     * 开始新一轮抓取, 不等待结果.
+     *
+     * @return 本轮解析的行情数, 上一轮没有结束时返回null
+     */
+    public synchronized CompletableFuture<Integer> fetch() {
+        Round round = currRound;
+        if ( round!=null && !round.future.isDone() ) {
+            return null;
+        }
+        //合约列表变化后, 等待旧的请求结束才能使用新的分组
+        round = new Round(chunks);
+        currRound = round;
+        if ( round.chunks.isEmpty() ) {
+            round.future.complete(0);
+            return round.future;
+        }
+        for(int i=0;i<maxConcurrentRequests;i++) {
+            sendNext(round);
+        }
+        return round.future;
+    }
+
+    private void sendNext(Round round) {
+        int idx = round.nextChunk.getAndIncrement();
+        if ( idx>=round.chunks.size() ) {
+            return;
+        }
+        Chunk chunk = round.chunks.get(idx);
+        try {
+            httpClient.sendAsync(chunk.request, (ResponseInfo info)->{
+                if ( info.statusCode()!=200 ) {
+                    return BodySubscribers.replacing(-info.statusCode());
+                }
+                return new QuoteBodySubscriber(chunk.parser);
+            }).whenComplete((HttpResponse<Integer> response, Throwable t)->{
+                onChunkFinished(round, chunk, response, t);
+            });
+        }catch(Throwable t) {
+            onChunkFinished(round, chunk, null, t);
+        }
+    }
+
+    private void onChunkFinished(Round round, Chunk chunk, HttpResponse<Integer> response, Throwable t) {
+        if ( t!=null ) {
+            round.errorCount.incrementAndGet();
+            logger.error(format+" 行情抓取失败: "+t);
+        } else if ( response.body()<0 ) {
+            round.errorCount.incrementAndGet();
+            logger.error(format+" 行情抓取失败, HTTP状态: "+response.statusCode());
+        } else {
+            int quoteCount = response.body();
+            round.quoteCount.addAndGet(quoteCount);
+            if ( quoteCount!=chunk.parser.getItems().length ) {
+                logger.info(format+" 行情数据获取丢失: "+chunk.request.uri()+" 请求 "+chunk.parser.getItems().length+" 返回 "+quoteCount);
+            }
+        }
+        if ( round.pendingChunks.decrementAndGet()==0 ) {
+            onRoundFinished(round);
+        } else {
+            sendNext(round);
+        }
+    }
+
+    private void onRoundFinished(Round round) {
+        long duration = System.currentTimeMillis()-round.beginTime;
+        long interval = currInterval;
+        if ( round.errorCount.get()>0 ) {
+            interval = Math.min(Math.max(interval, fetchInterval)*2, MAX_INTERVAL);
+        } else {
+            interval = Math.max(fetchInterval, Math.max(duration, interval*3/4));
+        }
+        currInterval = interval;
+        if ( logger.isDebugEnabled() ) {
+            logger.debug(format+" 行情抓取请求: "+round.chunks.size()+" 行情数: "+round.quoteCount.get()+" 错误: "+round.errorCount.get()+" 耗时 "+duration+" ms, 下次间隔 "+interval+" ms");
+        }
+        round.future.complete(round.quoteCount.get());
+    }
+
+}
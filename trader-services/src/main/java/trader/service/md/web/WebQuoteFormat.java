@@ -0,0 +1,163 @@
+package trader.service.md.web;
+
+import java.util.Collections;
+import java.util.Map;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+
+/**
+ * 行情网站的返回格式, 每行一个合约, 双引号内为分隔符分隔的字段.
+ * <BR>字段下标从0开始, 为双引号内第几个字段
+ */
+public enum WebQuoteFormat {
+    /**
+     * var hq_str_sh601398="工商银行,5.660,5.680,...,2019-07-05,14:19:34,00";
+     */
+    Sina("http://hq.sinajs.cn/list=", "hq_str_", ',', 32, new int[] {30, 31}, WebMarketDataProducer.SINA_WEB_REFER) {
+        @Override
+        void fill(CThostFtdcDepthMarketDataField result, WebQuoteParser p) {
+            result.PreClosePrice = p.getDouble(2);
+            result.OpenPrice = p.getDouble(1);
+            result.LastPrice = p.getDouble(3);
+            result.HighestPrice = p.getDouble(4);
+            result.LowestPrice = p.getDouble(5);
+            result.OpenInterest = p.getLong(8); //Volume超范围
+            result.Volume = (int)result.OpenInterest;
+            result.Turnover = p.getDouble(9);
+
+            result.AskPrice1 = p.getDouble(21);
+            result.AskVolume1 = p.getInt(20);
+            result.AskPrice2 = p.getDouble(23);
+            result.AskVolume2 = p.getInt(22);
+            result.AskPrice3 = p.getDouble(25);
+            result.AskVolume3 = p.getInt(24);
+            result.AskPrice4 = p.getDouble(27);
+            result.AskVolume4 = p.getInt(26);
+            result.AskPrice5 = p.getDouble(29);
+            result.AskVolume5 = p.getInt(28);
+
+            result.BidPrice1 = p.getDouble(11);
+            result.BidVolume1 = p.getInt(10);
+            result.BidPrice2 = p.getDouble(13);
+            result.BidVolume2 = p.getInt(12);
+            result.BidPrice3 = p.getDouble(15);
+            result.BidVolume3 = p.getInt(14);
+            result.BidPrice4 = p.getDouble(17);
+            result.BidVolume4 = p.getInt(16);
+            result.BidPrice5 = p.getDouble(19);
+            result.BidVolume5 = p.getInt(18);
+
+            //将交易日 2019-01-01 格式改为 20190101
+            String day = p.getDigits(30);
+            if ( day.length()!=8 ) {
+                day = p.getString(30);
+            }
+            result.ActionDay = day;
+            result.TradingDay = day;
+            result.UpdateTime = p.getString(31);
+        }
+    },
+    /**
+     * v_sh601398="1~工商银行~601398~5.66~5.68~...~20190705141934~...";
+     */
+    Tencent("http://qt.gtimg.cn/q=", "v_", '~', 38, new int[] {30}, Collections.emptyMap()) {
+        @Override
+        void fill(CThostFtdcDepthMarketDataField result, WebQuoteParser p) {
+            result.LastPrice = p.getDouble(3);
+            result.PreClosePrice = p.getDouble(4);
+            result.OpenPrice = p.getDouble(5);
+            result.HighestPrice = p.getDouble(33);
+            result.LowestPrice = p.getDouble(34);
+            result.OpenInterest = p.getLong(36)*100; //手
+            result.Volume = (int)result.OpenInterest;
+            result.Turnover = p.getDouble(37)*10000; //万元
+
+            result.BidPrice1 = p.getDouble(9);
+            result.BidVolume1 = p.getInt(10)*100;
+            result.BidPrice2 = p.getDouble(11);
+            result.BidVolume2 = p.getInt(12)*100;
+            result.BidPrice3 = p.getDouble(13);
+            result.BidVolume3 = p.getInt(14)*100;
+            result.BidPrice4 = p.getDouble(15);
+            result.BidVolume4 = p.getInt(16)*100;
+            result.BidPrice5 = p.getDouble(17);
+            result.BidVolume5 = p.getInt(18)*100;
+
+            result.AskPrice1 = p.getDouble(19);
+            result.AskVolume1 = p.getInt(20)*100;
+            result.AskPrice2 = p.getDouble(21);
+            result.AskVolume2 = p.getInt(22)*100;
+            result.AskPrice3 = p.getDouble(23);
+            result.AskVolume3 = p.getInt(24)*100;
+            result.AskPrice4 = p.getDouble(25);
+            result.AskVolume4 = p.getInt(26)*100;
+            result.AskPrice5 = p.getDouble(27);
+            result.AskVolume5 = p.getInt(28)*100;
+
+            String dayhhmmss = p.getString(30);
+            String day = dayhhmmss.substring(0, 8);
+            result.ActionDay = day;
+            result.TradingDay = day;
+            result.UpdateTime = dayhhmmss.substring(8);
+        }
+    };
+
+    private final String url;
+    private final byte[] idPrefix;
+    private final byte separator;
+    private final int minFieldCount;
+    private final int[] timeFields;
+    private final Map<String, String> headers;
+
+    private WebQuoteFormat(String url, String idPrefix, char separator, int minFieldCount, int[] timeFields, Map<String, String> headers) {
+        this.url = url;
+        this.idPrefix = idPrefix.getBytes();
+        this.separator = (byte)separator;
+        this.minFieldCount = minFieldCount;
+        this.timeFields = timeFields;
+        this.headers = headers;
+    }
+
+    /**
+     * 缺省的行情URL, 后面直接拼接逗号分隔的合约列表
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    byte[] getIdPrefix() {
+        return idPrefix;
+    }
+
+    byte getSeparator() {
+        return separator;
+    }
+
+    int getMinFieldCount() {
+        return minFieldCount;
+    }
+
+    /**
+     * 行情时间所在的字段, 只取其中的数字组成 yyyyMMddHHmmss, 用于判断行情是否更新
+     */
+    int[] getTimeFields() {
+        return timeFields;
+    }
+
+    /**
+     * 从解析好的字段填充行情
+     */
+    abstract void fill(CThostFtdcDepthMarketDataField result, WebQuoteParser parser);
+
+    public static WebQuoteFormat fromApi(String api) {
+        if ( WebMarketDataProducer.API_TENCENT.equalsIgnoreCase(api) ) {
+            return Tencent;
+        }
+        return Sina;
+    }
+
+}
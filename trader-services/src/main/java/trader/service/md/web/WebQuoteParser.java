@@ -0,0 +1,356 @@
+package trader.service.md.web;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.util.StringUtil;
+
+/**
+ * 直接从GBK编码的HTTP响应字节流解析行情, 不创建整个响应或每一行的String.
+ * <BR>按行切分, 行内按分隔符切分字段, GBK双字节字符的第二个字节可能与分隔符相同, 需要跳过
+ * <BR>每个合约记录最后的行情时间, 时间没有变化时不创建CThostFtdcDepthMarketDataField
+ * <BR>每个实例对应一组固定的合约, 同一时间只能解析一个响应
+ */
+public class WebQuoteParser {
+    private static final Logger logger = LoggerFactory.getLogger(WebQuoteParser.class);
+
+    private static final int ID_LENGTH = 8;
+    private static final int MAX_FIELDS = 64;
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    public static interface QuoteListener {
+        /**
+         * 行情时间有变化的合约
+         *
+         * @param itemIndex 合约在列表中的下标
+         */
+        public void onQuote(int itemIndex, CThostFtdcDepthMarketDataField field);
+    }
+
+    private final WebQuoteFormat format;
+    private final String[] items;
+    private final byte[][] itemBytes;
+    /**
+     * 每个合约最后的行情时间 yyyyMMddHHmmss
+     */
+    private final long[] lastTimes;
+    private final QuoteListener listener;
+
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private boolean trailByte;
+    private int fieldCount;
+    private final int[] fieldBegins = new int[MAX_FIELDS];
+    private final int[] fieldEnds = new int[MAX_FIELDS];
+    /**
+     * 响应中的合约顺序通常与请求相同, 从上一个合约之后开始查找
+     */
+    private int itemCursor;
+    private int quoteCount;
+    private int changedCount;
+
+    public WebQuoteParser(WebQuoteFormat format, List<String> items, QuoteListener listener) {
+        this.format = format;
+        this.items = items.toArray(new String[items.size()]);
+        this.listener = listener;
+        itemBytes = new byte[this.items.length][];
+        for(int i=0;i<this.items.length;i++) {
+            itemBytes[i] = this.items[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        lastTimes = new long[this.items.length];
+    }
+
+    public String[] getItems() {
+        return items;
+    }
+
+    /**
+     * 合约最后的行情时间, 用于重建合约列表时保留
+     */
+    public long getLastTime(int itemIndex) {
+        return lastTimes[itemIndex];
+    }
+
+    public void setLastTime(int itemIndex, long time) {
+        lastTimes[itemIndex] = time;
+    }
+
+    /**
+     * 开始解析新的响应
+     */
+    public void reset() {
+        lineLength = 0;
+        trailByte = false;
+        itemCursor = 0;
+        quoteCount = 0;
+        changedCount = 0;
+    }
+
+    /**
+     * 本次响应解析的行情数
+     */
+    public int getQuoteCount() {
+        return quoteCount;
+    }
+
+    /**
+     * 本次响应中行情时间有变化的行情数
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    public void feed(ByteBuffer buf) {
+        byte[] line = this.line;
+        int lineLength = this.lineLength;
+        boolean trailByte = this.trailByte;
+        while(buf.hasRemaining()) {
+            byte b = buf.get();
+            if ( trailByte ) {
+                trailByte = false;
+            } else if ( b=='\n' ) {
+                this.lineLength = lineLength;
+                processLine();
+                lineLength = 0;
+                line = this.line;
+                continue;
+            } else if ( (b&0xFF)>=0x81 && b!=(byte)0xFF ) {
+                trailByte = true;
+            }
+            if ( lineLength==line.length ) {
+                line = this.line = Arrays.copyOf(line, line.length*2);
+            }
+            line[lineLength++] = b;
+        }
+        this.lineLength = lineLength;
+        this.trailByte = trailByte;
+    }
+
+    /**
+     * 响应结束, 处理最后一行
+     */
+    public int finish() {
+        if ( lineLength>0 ) {
+            processLine();
+            lineLength = 0;
+        }
+        return quoteCount;
+    }
+
+    private void processLine() {
+        int length = lineLength;
+        if ( length>0 && line[length-1]=='\r' ) {
+            length--;
+        }
+        int idIdx = indexOf(format.getIdPrefix(), length);
+        if ( idIdx<0 || idIdx+ID_LENGTH>length ) {
+            return;
+        }
+        if ( !splitFields(length) ) {
+            return;
+        }
+        quoteCount++;
+        int itemIndex = findItem(idIdx);
+        if ( itemIndex<0 ) {
+            return;
+        }
+        try {
+            if ( fieldCount<format.getMinFieldCount() ) {
+                throw new IllegalArgumentException("Fields count "+fieldCount);
+            }
+            long time = getTime();
+            if ( time<=lastTimes[itemIndex] ) {
+                return;
+            }
+            CThostFtdcDepthMarketDataField field = new CThostFtdcDepthMarketDataField();
+            String item = items[itemIndex];
+            if ( item.startsWith("sh") ) {
+                field.ExchangeID = "sse";
+            } else if ( item.startsWith("sz") ) {
+                field.ExchangeID = "szse";
+            }
+            field.InstrumentID = item;
+            field.ExchangeInstID = "";
+            format.fill(field, this);
+            lastTimes[itemIndex] = time;
+            changedCount++;
+            listener.onQuote(itemIndex, field);
+        }catch(Throwable t) {
+            logger.error(format+" 行情解析异常: "+new String(line, 0, length, StringUtil.GBK), t);
+        }
+    }
+
+    /**
+     * 查找双引号之间的字段, 双引号不存在或者之间为空返回false
+     */
+    private boolean splitFields(int length) {
+        int q1 = -1, q2 = -1;
+        for(int i=0;i<length;i++) {
+            byte b = line[i];
+            if ( (b&0xFF)>=0x81 && b!=(byte)0xFF ) {
+                i++;
+            } else if ( b=='"' ) {
+                if ( q1<0 ) {
+                    q1 = i;
+                }
+                q2 = i;
+            }
+        }
+        if ( q1<0 || q1==q2 ) {
+            return false;
+        }
+        byte separator = format.getSeparator();
+        fieldCount = 0;
+        int begin = q1+1;
+        for(int i=begin;i<=q2;i++) {
+            byte b = line[i];
+            if ( (b&0xFF)>=0x81 && b!=(byte)0xFF ) {
+                i++;
+            } else if ( b==separator || i==q2 ) {
+                if ( fieldCount<MAX_FIELDS ) {
+                    fieldBegins[fieldCount] = begin;
+                    fieldEnds[fieldCount] = i;
+                    fieldCount++;
+                }
+                begin = i+1;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte[] prefix, int length) {
+        for(int i=0;i+prefix.length<=length;i++) {
+            int j=0;
+            while(j<prefix.length && line[i+j]==prefix[j]) {
+                j++;
+            }
+            if ( j==prefix.length ) {
+                return i+prefix.length;
+            }
+        }
+        return -1;
+    }
+
+    private int findItem(int idIdx) {
+        for(int n=0;n<items.length;n++) {
+            int i = (itemCursor+n)%items.length;
+            byte[] b = itemBytes[i];
+            if ( b.length==ID_LENGTH && Arrays.equals(b, 0, ID_LENGTH, line, idIdx, idIdx+ID_LENGTH) ) {
+                itemCursor = i+1;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long getTime() {
+        long result = 0;
+        for(int f:format.getTimeFields()) {
+            for(int i=fieldBegins[f];i<fieldEnds[f];i++) {
+                byte b = line[i];
+                if ( b>='0' && b<='9' ) {
+                    result = result*10+(b-'0');
+                }
+            }
+        }
+        return result;
+    }
+
+    String getString(int fieldIdx) {
+        return new String(line, fieldBegins[fieldIdx], fieldEnds[fieldIdx]-fieldBegins[fieldIdx], StringUtil.GBK);
+    }
+
+    /**
+     * 字段中的数字, 例如 2019-07-05 返回 20190705
+     */
+    String getDigits(int fieldIdx) {
+        StringBuilder result = new StringBuilder(16);
+        for(int i=fieldBegins[fieldIdx];i<fieldEnds[fieldIdx];i++) {
+            byte b = line[i];
+            if ( b>='0' && b<='9' ) {
+                result.append((char)b);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 与 ConversionUtil.toDouble 结果相同: 空字段为0, 简单小数直接计算, 其它格式使用Double.parseDouble
+     */
+    double getDouble(int fieldIdx) {
+        int begin = fieldBegins[fieldIdx], end = fieldEnds[fieldIdx];
+        if ( begin==end ) {
+            return 0;
+        }
+        int i = begin;
+        boolean negative = false;
+        if ( line[i]=='-' || line[i]=='+' ) {
+            negative = line[i]=='-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, fractionDigits = -1;
+        for(;i<end;i++) {
+            byte b = line[i];
+            if ( b>='0' && b<='9' ) {
+                mantissa = mantissa*10+(b-'0');
+                digits++;
+                if ( fractionDigits>=0 ) {
+                    fractionDigits++;
+                }
+            } else if ( b=='.' && fractionDigits<0 ) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        //不超过15位有效数字时, 一次除法的结果与Double.parseDouble相同
+        if ( i==end && digits>0 && digits<=15 ) {
+            double result = fractionDigits>0?mantissa/POW10[fractionDigits]:mantissa;
+            return negative?-result:result;
+        }
+        return Double.parseDouble(new String(line, begin, end-begin, StandardCharsets.US_ASCII).trim());
+    }
+
+    /**
+     * 与 ConversionUtil.toLong 结果相同: 空字段为0, 带小数点的截断
+     */
+    long getLong(int fieldIdx) {
+        int begin = fieldBegins[fieldIdx], end = fieldEnds[fieldIdx];
+        if ( begin==end ) {
+            return 0;
+        }
+        int i = begin;
+        boolean negative = false;
+        if ( line[i]=='-' || line[i]=='+' ) {
+            negative = line[i]=='-';
+            i++;
+        }
+        long result = 0;
+        int digits = 0;
+        for(;i<end;i++) {
+            byte b = line[i];
+            if ( b>='0' && b<='9' && digits<18 ) {
+                result = result*10+(b-'0');
+                digits++;
+            } else {
+                break;
+            }
+        }
+        if ( i==end && digits>0 ) {
+            return negative?-result:result;
+        }
+        return (long)getDouble(fieldIdx);
+    }
+
+    int getInt(int fieldIdx) {
+        return (int)getLong(fieldIdx);
+    }
+
+}
@@ -19,6 +19,7 @@ import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketHandler;
@@ -30,6 +31,7 @@ import com.google.gson.JsonObject;
 
 import trader.common.beans.BeansContainer;
 import trader.common.config.ConfigUtil;
+import trader.common.config.ConfigValue;
 import trader.common.exception.AppException;
 import trader.common.util.ConversionUtil;
 import trader.common.util.EncryptionUtil;
@@ -56,6 +58,11 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
 
     private static final String ITEM_MGMT_CREDENTIAL = "/BasisService/mgmt.credential";
 
+    /**
+     * 消息编码格式: binary+deflate(缺省), binary, json. 调试时可以设置为json
+     */
+    private static final String ITEM_MGMT_CODEC = "/BasisService/mgmt.codec";
+
     private static final int RECONNECT_INTERVAL = 60*1000;
 
     @Autowired
@@ -75,6 +82,7 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
     private String consistentId;
     private String localId;
     private String wsUrl;
+    private final ConfigValue<String> mgmtUrl = ConfigUtil.stringValue(ITEM_MGMT_URL, null);
     private volatile NodeState state = NodeState.NotConfigured;
     private volatile long stateTime = 0;
     private WebSocketConnectionManager wsConnManager;
@@ -82,6 +90,10 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
     private volatile long lastRecvTime=0;
     private volatile long lastSentTime=0;
     private volatile Throwable wsLastException;
+    /**
+     * 当前连接的消息编码, InitRep之后切换为协商的格式
+     */
+    private volatile NodeMessageCodec codec = new NodeMessageCodec(NodeMessageCodec.CODEC_JSON);
     private AtomicLong totalMsgsSent = new AtomicLong();
     private AtomicLong totalMsgsRecv = new AtomicLong();
     private List<NodeClientListener> listeners = new ArrayList<>();
@@ -144,16 +156,20 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> wsMessage) throws Exception {
         lastRecvTime = System.currentTimeMillis();
         totalMsgsRecv.incrementAndGet();
-        if ( logger.isDebugEnabled() ){
-            logger.debug("Message: "+wsMessage.getPayload().toString());
-        }
         NodeMessage req = null, respMessage = null;
         try{
-            req = NodeMessage.fromString(wsMessage.getPayload().toString());
+            if ( wsMessage instanceof BinaryMessage ) {
+                req = codec.decode(((BinaryMessage)wsMessage).getPayload());
+            } else {
+                req = NodeMessage.fromString(wsMessage.getPayload().toString());
+            }
         }catch(Exception e){
             logger.error("Message parse failed: ", e);
             return;
         }
+        if ( logger.isDebugEnabled() ){
+            logger.debug("Message: "+req);
+        }
         switch(req.getType()) {
         case TYPE_PING_REQ:
             respMessage = req.createResponse();
@@ -164,8 +180,13 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
                 asyncCloseWsSession(session);
             } else {
                 this.localId = ConversionUtil.toString(req.getField(NodeMessage.FIELD_NODE_ID));
+                //旧版本Broker不返回codec, 继续使用JSON
+                String codecName = ConversionUtil.toString(req.getField(NodeMessage.FIELD_CODEC));
+                if ( !StringUtil.isEmpty(codecName) ) {
+                    codec = new NodeMessageCodec(codecName);
+                }
                 changeState(NodeState.Ready);
-                logger.info("Node "+consistentId+"/"+localId+" to "+wsUrl+" is initialized");
+                logger.info("Node "+consistentId+"/"+localId+" to "+wsUrl+" is initialized, codec: "+codec.getName());
             }
             break;
         case TYPE_CLOSE_REP:
@@ -302,7 +323,12 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
             if ( logger.isDebugEnabled() ) {
                 logger.debug("Send message: "+message.toString());
             }
-            wsSession.sendMessage(new TextMessage(message.toString()));
+            NodeMessageCodec codec0 = codec;
+            if ( codec0.isBinary() ) {
+                wsSession.sendMessage(new BinaryMessage(codec0.encode(message)));
+            } else {
+                wsSession.sendMessage(new TextMessage(message.toString()));
+            }
             lastSentTime = System.currentTimeMillis();
             totalMsgsSent.incrementAndGet();
         } catch (Throwable e) {
@@ -318,7 +344,8 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
     protected NodeMessage doSendAndWait(NodeMessage req, int timeout) throws AppException
     {
         ReqItem reqItem = new ReqItem();
-        int reqId = req.getReqId();
+        //返回消息的reqId是请求消息的id, 旧版本Broker不返回reqId, 由doReplyNotify按发送顺序匹配
+        int reqId = req.getId();
         if ( timeout<=0 ) {
             timeout = defaultTimeout;
         }
@@ -349,6 +376,11 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
         }
         initReq.setField(NodeMessage.FIELD_USER, user);
         initReq.setField(NodeMessage.FIELD_CREDENTIAL, credential);
+        String codecName = ConfigUtil.getString(ITEM_MGMT_CODEC);
+        if ( StringUtil.isEmpty(codecName) ) {
+            codecName = NodeMessageCodec.CODEC_BINARY_DEFLATE;
+        }
+        initReq.setField(NodeMessage.FIELD_CODECS, NodeMessageCodec.getCodecs(codecName));
         fillNodeProps(initReq);
         doSend(initReq);
     }
@@ -411,7 +443,7 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
      * 是否已配置服务端地址
      */
     private boolean isConfigured() {
-        return !StringUtil.isEmpty(ConfigUtil.getString(ITEM_MGMT_URL));
+        return !StringUtil.isEmpty(mgmtUrl.get());
     }
 
     /**
@@ -466,7 +498,7 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
     }
 
     private WebSocketConnectionManager createWsConnectionManager(){
-        wsUrl = ConfigUtil.getString(ITEM_MGMT_URL);
+        wsUrl = mgmtUrl.get();
 //        HttpClientTransportOverHTTP httpClientTransport = new HttpClientTransportOverHTTP(1);
 //        SslContextFactory sslContextFactory = new SslContextFactory(true);
 //        HttpClient httpClient = new HttpClient(httpClientTransport, sslContextFactory);
@@ -517,6 +549,7 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
             wsConnManager = null;
         }
         wsSession = null;
+        codec = new NodeMessageCodec(NodeMessageCodec.CODEC_JSON);
         lastRecvTime = 0;
         lastSentTime = 0;
         changeState(NodeState.Closed);
@@ -0,0 +1,231 @@
+package trader.service.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.google.gson.JsonElement;
+
+/**
+ * 异步保存的写后队列(write-behind).
+ * <BR>相同(entityType, id)的待保存数据会合并, 只保留最新的值;
+ * 由单个写线程按批次取出, 攒够batchSize或等待超过flushInterval后在一个事务中写入
+ */
+public class WriteBehindQueue implements BORepositoryConstants {
+
+    public static class PendingSave {
+        private final BOEntityType entityType;
+        private final String id;
+        private JsonElement value;
+        private long seq;
+
+        PendingSave(BOEntityType entityType, String id, JsonElement value, long seq) {
+            this.entityType = entityType;
+            this.id = id;
+            this.value = value;
+            this.seq = seq;
+        }
+
+        public BOEntityType getEntityType() {
+            return entityType;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public JsonElement getValue() {
+            return value;
+        }
+    }
+
+    private final int batchSize;
+    private final long flushInterval;
+    private final LinkedHashMap<String, PendingSave> pending = new LinkedHashMap<>();
+    /**
+     * 当前最早一个待保存数据的加入时间
+     */
+    private long firstPendingTime;
+    /**
+     * 写线程已启动或在排队
+     */
+    private boolean writerScheduled;
+    /**
+     * 有flush()调用在等待, 写线程不再攒批
+     */
+    private int flushWaiters;
+    /**
+     * 写线程正在写入的批次中最大的序号, 0代表没有在写入
+     */
+    private long writingSeq;
+    private long putSeq;
+
+    private volatile long totalSaves;
+    private volatile long totalCoalesced;
+    private volatile long totalBatches;
+    private volatile long totalCommitNanos;
+    private volatile long maxCommitNanos;
+    private long lastBatches;
+    private long lastCommitNanos;
+
+    public WriteBehindQueue(int batchSize, long flushInterval) {
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * 加入待保存数据
+     *
+     * @return true 如果需要启动写线程
+     */
+    public synchronized boolean put(BOEntityType entityType, String id, JsonElement value) {
+        totalSaves++;
+        putSeq++;
+        String key = entityType.ordinal()+":"+id;
+        PendingSave save = pending.get(key);
+        if ( save!=null ) {
+            save.value = value;
+            save.seq = putSeq;
+            totalCoalesced++;
+        } else {
+            if ( pending.isEmpty() ) {
+                firstPendingTime = System.currentTimeMillis();
+            }
+            pending.put(key, new PendingSave(entityType, id, value, putSeq));
+        }
+        if ( pending.size()>=batchSize ) {
+            notifyAll();
+        }
+        boolean result = !writerScheduled;
+        writerScheduled = true;
+        return result;
+    }
+
+    /**
+     * 写线程调用, 取出一批待保存数据, 取出的数据写入完成后需要调用batchDone.
+     * <BR>返回空代表队列已空, 写线程应该退出
+     *
+     * @param waitBatch 是否等待攒够一批或超时
+     */
+    public synchronized List<PendingSave> take(boolean waitBatch) {
+        while( waitBatch && flushWaiters==0 && !pending.isEmpty() && pending.size()<batchSize ) {
+            long waitTime = firstPendingTime+flushInterval-System.currentTimeMillis();
+            if ( waitTime<=0 ) {
+                break;
+            }
+            try {
+                wait(waitTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if ( pending.isEmpty() ) {
+            writerScheduled = false;
+            return Collections.emptyList();
+        }
+        List<PendingSave> result = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<PendingSave> it = pending.values().iterator();
+        while( it.hasNext() && result.size()<batchSize ) {
+            PendingSave save = it.next();
+            it.remove();
+            result.add(save);
+            writingSeq = Math.max(writingSeq, save.seq);
+        }
+        return result;
+    }
+
+    /**
+     * 写线程调用, 一批数据写入完成(无论成功失败)
+     */
+    public synchronized void batchDone(long commitNanos) {
+        writingSeq = 0;
+        totalBatches++;
+        totalCommitNanos += commitNanos;
+        if ( commitNanos>maxCommitNanos ) {
+            maxCommitNanos = commitNanos;
+        }
+        notifyAll();
+    }
+
+    /**
+     * 等待调用前加入的所有数据写入完成
+     *
+     * @return false 如果超时
+     */
+    public synchronized boolean awaitFlushed(long timeout) throws InterruptedException {
+        long target = putSeq;
+        long deadline = System.currentTimeMillis()+timeout;
+        flushWaiters++;
+        try {
+            notifyAll();
+            while( hasPendingBefore(target) ) {
+                long waitTime = deadline-System.currentTimeMillis();
+                if ( waitTime<=0 ) {
+                    return false;
+                }
+                wait(waitTime);
+            }
+        } finally {
+            flushWaiters--;
+        }
+        return true;
+    }
+
+    private boolean hasPendingBefore(long target) {
+        if ( writingSeq!=0 ) {
+            return true;
+        }
+        for(PendingSave save:pending.values()) {
+            if ( save.seq<=target ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public long getTotalSaves() {
+        return totalSaves;
+    }
+
+    /**
+     * 被合并掉(未写入数据库)的保存次数
+     */
+    public long getTotalCoalesced() {
+        return totalCoalesced;
+    }
+
+    public long getTotalBatches() {
+        return totalBatches;
+    }
+
+    /**
+     * 自上次采样以来的平均事务提交时间
+     */
+    public synchronized long sampleAvgCommitMicros() {
+        long batches = totalBatches, commitNanos = totalCommitNanos;
+        long result = 0;
+        if ( batches!=lastBatches ) {
+            result = (commitNanos-lastCommitNanos)/(batches-lastBatches)/1000;
+        }
+        lastBatches = batches;
+        lastCommitNanos = commitNanos;
+        return result;
+    }
+
+    /**
+     * 自上次采样以来的最大事务提交时间
+     */
+    public synchronized long sampleMaxCommitMicros() {
+        long result = maxCommitNanos/1000;
+        maxCommitNanos = 0;
+        return result;
+    }
+
+}
@@ -19,6 +19,7 @@ import org.springframework.transaction.support.DefaultTransactionDefinition;
 import com.google.gson.JsonElement;
 
 import trader.common.beans.BeansContainer;
+import trader.common.config.ConfigUtil;
 import trader.common.util.JsonUtil;
 import trader.common.util.StringUtil;
 import trader.common.util.concurrent.DelegateExecutor;
@@ -26,6 +27,11 @@ import trader.service.repository.AbsBOEntity;
 import trader.service.repository.AbsBORepository;
 import trader.service.repository.BOEntity;
 import trader.service.repository.BOEntityIterator;
+import trader.service.repository.BORepository;
+import trader.service.repository.WriteBehindQueue;
+import trader.service.repository.WriteBehindQueue.PendingSave;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
 
 /**
  * SpringJPA Repository
@@ -34,6 +40,15 @@ import trader.service.repository.BOEntityIterator;
 public class JPABORepository extends AbsBORepository {
     private static final Logger logger = LoggerFactory.getLogger(JPABORepository.class);
 
+    /**
+     * 异步保存每个事务最多写入的数量
+     */
+    public static final String ITEM_WRITE_BATCH_SIZE = "writeBehind.batchSize";
+    /**
+     * 异步保存最长攒批时间(毫秒)
+     */
+    public static final String ITEM_WRITE_FLUSH_INTERVAL = "writeBehind.flushInterval";
+
     @Autowired
     private BeansContainer beansContainer;
 
@@ -43,20 +58,45 @@ public class JPABORepository extends AbsBORepository {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private StatsCollector statsCollector;
+
     private ThreadLocal<TransactionStatus> currTxnStatus = new ThreadLocal<>();
 
     private JPABOEntity[] entities = null;
 
+    private WriteBehindQueue writeBehindQueue;
+
     @PostConstruct
     public void init() {
         super.init(beansContainer);
         asyncExecutor = new DelegateExecutor(executorService, 1);
+        String configPrefix = BORepository.class.getSimpleName()+".";
+        writeBehindQueue = new WriteBehindQueue(ConfigUtil.getInt(configPrefix+ITEM_WRITE_BATCH_SIZE, 200), ConfigUtil.getInt(configPrefix+ITEM_WRITE_FLUSH_INTERVAL, 100));
         initEntities();
+        registerStatsItems();
     }
 
     @PreDestroy
     public void destroy() {
+        if ( !flush(30*1000) ) {
+            logger.error("Flush pending saves timed out, "+writeBehindQueue.getQueueDepth()+" saves left");
+        }
+        asyncExecutor.close();
+    }
 
+    /**
+     * 等待调用前所有的异步保存写入数据库
+     *
+     * @return false 如果超时
+     */
+    public boolean flush(long timeout) {
+        try {
+            return writeBehindQueue.awaitFlushed(timeout);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
     @Override
@@ -98,6 +138,8 @@ public class JPABORepository extends AbsBORepository {
 
     public void asyncUpdate(Runnable cmd) {
         asyncExecutor.execute(()->{
+            //先写入之前的异步保存, 保持顺序
+            writePendingSaves(false);
             beginTransaction(false);
             try{
                 cmd.run();
@@ -109,18 +151,58 @@ public class JPABORepository extends AbsBORepository {
         });
     }
 
+    /**
+     * 在调用线程转换JSON, 保存调用时的数据; 同一实体未写入的旧数据会被合并
+     */
     @Override
     public void asynSave(BOEntityType entityType, String id, Object value) {
-        asyncExecutor.execute(()->{
-            beginTransaction(false);
-            try{
-                save(entityType, id, JsonUtil.object2json(value));
-                endTransaction(true);
-            }catch(Throwable t) {
-                logger.error("asyncSave failed", t);
-                endTransaction(false);
+        if ( writeBehindQueue.put(entityType, id, JsonUtil.object2json(value)) ) {
+            asyncExecutor.execute(()->{
+                writePendingSaves(true);
+            });
+        }
+    }
+
+    /**
+     * 写线程: 按批次取出待保存数据, 每批一个事务, 直到队列为空
+     */
+    private void writePendingSaves(boolean waitBatch) {
+        while(true) {
+            List<PendingSave> batch = writeBehindQueue.take(waitBatch);
+            if ( batch.isEmpty() ) {
+                break;
             }
-        });
+            long t0 = System.nanoTime();
+            try {
+                if ( !saveBatch(batch) ) {
+                    //整批失败时逐个保存, 避免一个错误丢失整批数据
+                    for(PendingSave save:batch) {
+                        saveBatch(List.of(save));
+                    }
+                }
+            } finally {
+                writeBehindQueue.batchDone(System.nanoTime()-t0);
+            }
+        }
+    }
+
+    private boolean saveBatch(List<PendingSave> batch) {
+        beginTransaction(false);
+        try{
+            for(PendingSave save:batch) {
+                save(save.getEntityType(), save.getId(), save.getValue());
+            }
+            endTransaction(true);
+            return true;
+        }catch(Throwable t) {
+            logger.error("asyncSave "+batch.size()+" entities failed", t);
+            if ( inTransaction() ) {
+                try{
+                    endTransaction(false);
+                }catch(Throwable t2) {}
+            }
+            return false;
+        }
     }
 
     @Transactional
@@ -183,6 +265,28 @@ public class JPABORepository extends AbsBORepository {
         return currTxnStatus.get()!=null;
     }
 
+    private void registerStatsItems() {
+        String service = BORepository.class.getSimpleName();
+        statsCollector.registerStatsItem(new StatsItem(service, "currQueueDepth"),  (StatsItem itemInfo) -> {
+            return writeBehindQueue.getQueueDepth();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "currAvgCommitMicros"),  (StatsItem itemInfo) -> {
+            return writeBehindQueue.sampleAvgCommitMicros();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "currMaxCommitMicros"),  (StatsItem itemInfo) -> {
+            return writeBehindQueue.sampleMaxCommitMicros();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "totalSaves"),  (StatsItem itemInfo) -> {
+            return writeBehindQueue.getTotalSaves();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "totalCoalescedSaves"),  (StatsItem itemInfo) -> {
+            return writeBehindQueue.getTotalCoalesced();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "totalBatches"),  (StatsItem itemInfo) -> {
+            return writeBehindQueue.getTotalBatches();
+        });
+    }
+
     private void initEntities() {
         entities = new JPABOEntity[BOEntityType.values().length];
         entities[BOEntityType.Default.ordinal()] = new JPABOEntity(BOEntityType.Default);
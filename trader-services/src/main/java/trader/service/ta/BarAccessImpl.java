@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +51,10 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
     private PriceLevel voldailyLevel;
     private BarSeriesLoader seriesLoader;
     private Map<String, Object> options = new HashMap<>();
-    List<BarListener> listeners = new ArrayList<>();
+    /**
+     * 在行情(分片)线程中回调, 交易组线程注册
+     */
+    List<BarListener> listeners = new CopyOnWriteArrayList<>();
 
     public BarAccessImpl(BeansContainer beansContainer, ExchangeableData data, Exchangeable instrument, InstrumentDef instrumentDef) {
         this.beansContainer = beansContainer;
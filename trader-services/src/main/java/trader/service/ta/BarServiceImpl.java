@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -26,10 +27,12 @@ import trader.common.util.TraderHomeUtil;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataListener;
 import trader.service.md.MarketDataService;
+import trader.service.md.TickLatencyTracker;
 
 /**
  * 技术分析/KBar实现类.
- * <BR>单线程调用, 不支持多线程
+ * <BR>行情分片模式下在分片线程中更新KBar: 同一合约总是在同一个线程中顺序处理, 不同合约可能并发.
+ * <BR>套利合约的KBar由两条腿的TICK共同更新, 两条腿可能在不同分片中, 需要加锁
  */
 @Service
 public class BarServiceImpl implements BarService, MarketDataListener {
@@ -51,7 +54,7 @@ public class BarServiceImpl implements BarService, MarketDataListener {
 
     private Map<String, InstrumentDef> instrumentDefs = new HashMap<>();
 
-    private Map<Exchangeable, BarAccessImpl> accessors = new HashMap<>();
+    private Map<Exchangeable, BarAccessImpl> accessors = new ConcurrentHashMap<>();
 
     public ServiceState getState() {
         return state;
@@ -126,11 +129,28 @@ public class BarServiceImpl implements BarService, MarketDataListener {
         if ( state==ServiceState.Ready ) {
             BarAccessImpl accessor = accessors.get(tick.instrument);
             if ( accessor!=null ) {
-                accessor.onMarketData(tick);
+                //KBar会保留TICK, 池化TICK使用与其它listener共享的复制
+                if ( accessor.getInstrument()==tick.instrument ) {
+                    accessor.onMarketData(tick.detach());
+                } else {
+                    synchronized(accessor) {
+                        accessor.onMarketData(tick.detach());
+                    }
+                }
+                TickLatencyTracker.onBarUpdated(tick);
             }
         }
     }
 
+    /**
+     * 在行情分片线程中更新KBar, 保证交易小程序收到TICK之前KBar已经更新.
+     * <BR>TradletService依赖BarService, 总是在BarService之后注册listener
+     */
+    @Override
+    public boolean isShardSafe() {
+        return true;
+    }
+
     public void addInstrumentDef(InstrumentDef instrumentDef) {
         instrumentDefs.put(instrumentDef.key, instrumentDef);
     }
@@ -160,7 +180,7 @@ public class BarServiceImpl implements BarService, MarketDataListener {
         }
     }
 
-    private BarAccessImpl buildTechAccess(Exchangeable instrument) {
+    private synchronized BarAccessImpl buildTechAccess(Exchangeable instrument) {
         BarAccessImpl result = accessors.get(instrument);
         if ( result==null) {
             String key = instrument.contract()+"."+instrument.exchange().name();
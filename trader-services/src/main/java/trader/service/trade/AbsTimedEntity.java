@@ -4,6 +4,7 @@ import java.lang.ref.WeakReference;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.gson.JsonElement;
@@ -12,6 +13,7 @@ import com.google.gson.JsonObject;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.util.DateUtil;
 import trader.common.util.JsonEnabled;
+import trader.service.repository.BORepository;
 
 public class AbsTimedEntity  implements TimedEntity, JsonEnabled {
 
@@ -71,16 +73,23 @@ public class AbsTimedEntity  implements TimedEntity, JsonEnabled {
         return json;
     }
 
-    private static final Map<String, WeakReference<AbsTimedEntity>> cachedEntities = new HashMap<>();
+    /**
+     * 按BORepository区分的实体缓存, 并行回测时每个回测有独立的Repository, 实体ID可能相同
+     */
+    private static final Map<BORepository, Map<String, WeakReference<AbsTimedEntity>>> cachedEntities = new WeakHashMap<>();
     private static final ReentrantLock cacheLock = new ReentrantLock();
-    public static AbsTimedEntity cacheGet(String entityId) {
+    public static AbsTimedEntity cacheGet(BORepository repository, String entityId) {
         AbsTimedEntity result = null;
         while(!cacheLock.tryLock());
         try {
-            WeakReference<AbsTimedEntity> entityRef = cachedEntities.get(entityId);
+            Map<String, WeakReference<AbsTimedEntity>> entities = cachedEntities.get(repository);
+            WeakReference<AbsTimedEntity> entityRef = null;
+            if ( entities!=null ) {
+                entityRef = entities.get(entityId);
+            }
             if ( entityRef!=null ) {
                 if ( (result =entityRef.get())==null ) {
-                    cachedEntities.remove(entityId);
+                    entities.remove(entityId);
                 }
             }
         }finally {
@@ -89,10 +98,15 @@ public class AbsTimedEntity  implements TimedEntity, JsonEnabled {
         return result;
     }
 
-    public static void cachePut(AbsTimedEntity entity) {
+    public static void cachePut(BORepository repository, AbsTimedEntity entity) {
         while(!cacheLock.tryLock());
         try {
-            cachedEntities.put(entity.getId(), new WeakReference<AbsTimedEntity>(entity));
+            Map<String, WeakReference<AbsTimedEntity>> entities = cachedEntities.get(repository);
+            if ( entities==null ) {
+                entities = new HashMap<>();
+                cachedEntities.put(repository, entities);
+            }
+            entities.put(entity.getId(), new WeakReference<AbsTimedEntity>(entity));
         }finally {
             cacheLock.unlock();
         }
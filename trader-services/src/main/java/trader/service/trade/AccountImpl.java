@@ -46,6 +46,7 @@ import trader.service.ServiceErrorConstants;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataListener;
 import trader.service.md.MarketDataService;
+import trader.service.md.TickLatencyTracker;
 import trader.service.repository.BOEntity;
 import trader.service.repository.BOEntityIterator;
 import trader.service.repository.BORepository;
@@ -75,6 +76,14 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     private Properties connectionProps;
     private List<AccountListener> listeners = new ArrayList<>();
     private Map<Exchangeable, PositionImpl> positions = new HashMap<>();
+    /**
+     * 账户资金已经按持仓完整计算过, 之后行情更新只需要累加持仓盈亏和保证金的变化
+     */
+    private boolean moneyOnMarketComputed;
+    /**
+     * 调试检查: 每次行情更新后与完整计算的结果比较
+     */
+    private boolean reconcileOnMarket;
     private Map<String, OrderImpl> ordersByRef = new ConcurrentHashMap<>();
     private Map<String, OrderImpl> ordersById = new ConcurrentHashMap<>();
     private List<TransactionImpl> txns = new ArrayList<>(100);
@@ -260,6 +269,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                 }
                 //异步发送
                 txnSession.asyncSendOrder(order);
+                TickLatencyTracker.onOrderSent();
                 return order;
             }catch(AppException t) {
                 //回退本地已冻结资金和仓位
@@ -342,6 +352,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             }
             //查询账户
             money = txnSession.syncQryAccounts();
+            moneyOnMarketComputed = false;
             //查询持仓
             positions = loadPositions();
             //加载品种的交易数据
@@ -378,6 +389,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         Properties connectionProps2 = configIni.getSection("connectionProps").getProperties();
         if ( !connectionProps2.equals(connectionProps) ) {
             this.connectionProps = connectionProps2;
+            reconcileOnMarket = ConversionUtil.toBoolean(connectionProps.getProperty("reconcileOnMarket"));
             result = true;
         }
         return result;
@@ -615,13 +627,29 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         if ( state!=AccountState.Ready ) {
             return;
         }
-        boolean priceChanged = false;
         PositionImpl pos = positions.get(marketData.instrument);
-        if( pos!=null ) {
-            priceChanged = pos.onMarketData(marketData);
+        if( pos==null ) {
+            return;
         }
-        if ( priceChanged ) {
-            updateAccountMoneyOnMarket();
+        positionLock.lock();
+        try {
+            long posProfit0 = pos.getMoney(PosMoney.PositionProfit);
+            long posProfitToday0 = pos.getMoney(PosMoney.PositionProfitToday);
+            long margin0 = pos.getMoney(PosMoney.UseMargin);
+            if ( pos.onMarketData(marketData) ) {
+                if ( moneyOnMarketComputed ) {
+                    updateAccountMoneyOnMarket(pos.getMoney(PosMoney.PositionProfit)-posProfit0,
+                            pos.getMoney(PosMoney.PositionProfitToday)-posProfitToday0,
+                            pos.getMoney(PosMoney.UseMargin)-margin0);
+                } else {
+                    updateAccountMoneyOnMarket();
+                }
+                if ( reconcileOnMarket ) {
+                    reconcileMoney();
+                }
+            }
+        }finally {
+            positionLock.unlock();
         }
     }
 
@@ -681,6 +709,9 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             String commissionsExchange = txnSession.syncLoadFeeEvaluator(subscriptions);
             FutureFeeEvaluator feeEvaluator = FutureFeeEvaluator.fromJson(JsonParser.parseString(commissionsExchange).getAsJsonObject());
             this.feeEvaluator = feeEvaluator;
+        } else if ( txnSession.getFeeRateCacheKey()!=null ) {
+            FeeRateCache feeRateCache = createFeeRateCache();
+            this.feeEvaluator = feeRateCache.load(txnSession, subscriptions);
         } else {
             File commissionsJson = new File(tradingWorkDir, id+".commissions.json");
             if ( commissionsJson.exists() ) {
@@ -695,6 +726,24 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         }
     }
 
+    /**
+     * 期货公司费率调整后, 使缓存的费率失效并重新加载. instruments为null时全部重新查询
+     */
+    public void invalidateFeeRates(Collection<Exchangeable> instruments) throws Exception
+    {
+        if ( txnSession.getFeeRateCacheKey()!=null ) {
+            createFeeRateCache().invalidate(instruments);
+        }
+        loadFeeEvaluator();
+    }
+
+    private FeeRateCache createFeeRateCache() {
+        File cacheDir = new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_CACHE), "feeRates");
+        FeeRateCache result = new FeeRateCache(cacheDir, txnSession.getFeeRateCacheKey(), mtService.getTradingDay());
+        result.setMaxAgeDays(ConversionUtil.toInt(connectionProps.getProperty("feeRateCacheDays"), FeeRateCache.DEFAULT_MAX_AGE_DAYS));
+        return result;
+    }
+
     private Map<Exchangeable, PositionImpl> loadPositions() throws Exception
     {
         Map<Exchangeable, PositionImpl> positions = new HashMap<>();
@@ -847,9 +896,51 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
     /**
-     * 更新账户资金的持仓盈亏
+     * 单个持仓的盈亏和保证金变化时, 增量更新账户资金
+     */
+    private void updateAccountMoneyOnMarket(long posProfitDelta, long posProfitTodayDelta, long marginDelta) {
+        addMoney(AccMoney.PositionProfit, posProfitDelta);
+        addMoney(AccMoney.PositionProfitToday, posProfitTodayDelta);
+        addMoney(AccMoney.Balance, posProfitTodayDelta);
+        addMoney(AccMoney.CurrMargin, marginDelta);
+        addMoney(AccMoney.Available, posProfitTodayDelta-marginDelta);
+    }
+
+    /**
+     * 调试检查: 按全部持仓完整计算账户资金到临时数组, 与增量更新的结果比较, 不修改账户和持仓数据
+     */
+    public boolean reconcileMoney() {
+        boolean result = true;
+        positionLock.lock();
+        try {
+            for(PositionImpl pos:positions.values()) {
+                result &= pos.reconcile();
+            }
+            long[] money2 = computeAccountMoneyOnMarket();
+            for(AccMoney mny:new AccMoney[] {AccMoney.Balance, AccMoney.PositionProfit, AccMoney.PositionProfitToday, AccMoney.Available, AccMoney.CurrMargin}) {
+                if ( money2[mny.ordinal()]!=getMoney(mny) ) {
+                    logger.error("账户资金 "+mny+" 增量计算 "+PriceUtil.long2str(getMoney(mny))+" 与完整计算 "+PriceUtil.long2str(money2[mny.ordinal()])+" 不一致");
+                    result = false;
+                }
+            }
+        }finally {
+            positionLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 按全部持仓计算账户资金的持仓盈亏
      */
     private void updateAccountMoneyOnMarket() {
+        money = computeAccountMoneyOnMarket();
+        moneyOnMarketComputed = true;
+    }
+
+    /**
+     * 按全部持仓完整计算账户资金, 结果保存在新的数组中返回
+     */
+    private long[] computeAccountMoneyOnMarket() {
         long frozenCommission=0;
         long commission=0;
         long frozenMargin=0;
@@ -871,15 +962,16 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         long reserve = getMoney(AccMoney.Reserve);
         long avail = balance-margin-frozenMargin-frozenCommission-reserve;
 
-        setMoney(AccMoney.Balance, balance);
-        setMoney(AccMoney.PositionProfit, posProfit);
-        setMoney(AccMoney.PositionProfitToday, posProfitToday);
-        setMoney(AccMoney.Available, avail);
-        setMoney(AccMoney.FrozenMargin, frozenMargin);
-        setMoney(AccMoney.CurrMargin, margin);
-        setMoney(AccMoney.FrozenCommission, frozenCommission);
-        setMoney(AccMoney.Commission, commission);
-
+        long[] result = getMoneys();
+        result[AccMoney.Balance.ordinal()] = balance;
+        result[AccMoney.PositionProfit.ordinal()] = posProfit;
+        result[AccMoney.PositionProfitToday.ordinal()] = posProfitToday;
+        result[AccMoney.Available.ordinal()] = avail;
+        result[AccMoney.FrozenMargin.ordinal()] = frozenMargin;
+        result[AccMoney.CurrMargin.ordinal()] = margin;
+        result[AccMoney.FrozenCommission.ordinal()] = frozenCommission;
+        result[AccMoney.Commission.ordinal()] = commission;
+        return result;
     }
 
     /**
@@ -936,6 +1028,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             try{
                 //查询账户
                 money = txnSession.syncQryAccounts();
+                moneyOnMarketComputed = false;
                 //查询持仓
                 positions = loadPositions();
             }catch(Throwable t) {
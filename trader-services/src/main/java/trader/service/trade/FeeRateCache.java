@@ -0,0 +1,190 @@
+package trader.service.trade;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+import trader.service.trade.spi.AbsTxnSession;
+
+/**
+ * 持久化的保证金率/手续费率缓存, 每个交易日一个文件: 缓存目录/期货公司-资金账户/yyyyMMdd.json
+ * <BR>当天有缓存时直接加载; 缺省不沿用之前交易日的费率, 设置maxAgeDays(账户配置feeRateCacheDays)后沿用最近交易日缓存中不超过maxAgeDays天的费率.
+ * <BR>交易通道只查询缓存中缺少的合约, 费率变化后可以通过invalidate使缓存失效
+ */
+public class FeeRateCache {
+    private static final Logger logger = LoggerFactory.getLogger(FeeRateCache.class);
+
+    /**
+     * 沿用之前交易日费率的缺省最长天数: 不沿用, 交易所或期货公司调整保证金率后当天就会生效
+     */
+    public static final int DEFAULT_MAX_AGE_DAYS = 0;
+
+    /**
+     * 费率查询日期, 沿用的费率保留原始查询日期
+     */
+    private static final String PROP_QUERY_DAY = "queryDay";
+
+    private final File dir;
+    private final LocalDate tradingDay;
+    private int maxAgeDays = DEFAULT_MAX_AGE_DAYS;
+
+    public FeeRateCache(File cacheDir, String key, LocalDate tradingDay) {
+        this.dir = new File(cacheDir, key);
+        this.tradingDay = tradingDay;
+    }
+
+    public File getFile() {
+        return new File(dir, DateUtil.date2str(tradingDay)+".json");
+    }
+
+    public int getMaxAgeDays() {
+        return maxAgeDays;
+    }
+
+    /**
+     * 沿用之前交易日费率的最长天数, 0表示不沿用
+     */
+    public void setMaxAgeDays(int maxAgeDays) {
+        this.maxAgeDays = maxAgeDays;
+    }
+
+    /**
+     * 加载缓存, 由交易通道查询缓存中缺少的合约, 保存后返回费率计算
+     */
+    public FutureFeeEvaluator load(AbsTxnSession txnSession, Collection<Exchangeable> subscriptions) throws Exception {
+        JsonObject cachedFeeInfos = loadFeeInfos();
+        JsonObject json = JsonParser.parseString(txnSession.syncLoadFeeEvaluator(subscriptions, cachedFeeInfos)).getAsJsonObject();
+        JsonObject feeInfos = json.getAsJsonObject("feeInfos");
+        String tradingDayStr = DateUtil.date2str(tradingDay);
+        int cachedCount = 0;
+        for(String key:feeInfos.keySet()) {
+            JsonObject info = feeInfos.getAsJsonObject(key);
+            JsonObject cachedInfo = cachedFeeInfos.getAsJsonObject(key);
+            if ( cachedInfo!=null && cachedInfo.has(PROP_QUERY_DAY) && isComplete(cachedInfo) ) {
+                info.add(PROP_QUERY_DAY, cachedInfo.get(PROP_QUERY_DAY));
+                cachedCount++;
+            } else {
+                info.addProperty(PROP_QUERY_DAY, tradingDayStr);
+            }
+        }
+        save(feeInfos);
+        logger.info("费率缓存 "+getFile()+" 合约 "+feeInfos.size()+", 使用缓存 "+cachedCount);
+        return FutureFeeEvaluator.fromJson(json);
+    }
+
+    /**
+     * 加载缓存的费率: 当天的缓存, 或者最近交易日缓存中未过期的费率
+     */
+    public JsonObject loadFeeInfos() {
+        JsonObject result = new JsonObject();
+        try {
+            File file = getFile();
+            if ( file.exists() ) {
+                return readFeeInfos(file);
+            }
+            if ( maxAgeDays<=0 ) {
+                return result;
+            }
+            File lastFile = null;
+            for(File f:listFiles().values()) {
+                if ( f.getName().compareTo(file.getName())<0 ) {
+                    lastFile = f;
+                }
+            }
+            if ( lastFile==null ) {
+                return result;
+            }
+            String minQueryDay = DateUtil.date2str(tradingDay.minusDays(maxAgeDays));
+            JsonObject feeInfos = readFeeInfos(lastFile);
+            for(String key:feeInfos.keySet()) {
+                JsonObject info = feeInfos.getAsJsonObject(key);
+                if ( info.has(PROP_QUERY_DAY) && info.get(PROP_QUERY_DAY).getAsString().compareTo(minQueryDay)>=0 ) {
+                    result.add(key, info);
+                }
+            }
+        }catch(Throwable t) {
+            logger.error("加载费率缓存 "+dir+" 失败", t);
+        }
+        return result;
+    }
+
+    /**
+     * 保存当天的费率, 同时删除过期的缓存文件
+     */
+    public void save(JsonObject feeInfos) throws Exception {
+        dir.mkdirs();
+        JsonObject json = new JsonObject();
+        json.add("feeInfos", feeInfos);
+        File file = getFile();
+        FileUtil.save(file, json.toString());
+        String minFileName = DateUtil.date2str(tradingDay.minusDays(Math.max(maxAgeDays, 1)))+".json";
+        for(File f:listFiles().values()) {
+            if ( f.getName().compareTo(minFileName)<0 ) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * 使合约的缓存费率失效, 下次加载时重新查询. instruments为null时全部失效
+     */
+    public void invalidate(Collection<Exchangeable> instruments) throws Exception {
+        for(File f:listFiles().values()) {
+            if ( instruments==null ) {
+                f.delete();
+                continue;
+            }
+            JsonObject feeInfos = readFeeInfos(f);
+            List<String> keys = new ArrayList<>();
+            for(Exchangeable e:instruments) {
+                if ( feeInfos.remove(e.toString())!=null ) {
+                    keys.add(e.toString());
+                }
+            }
+            if ( !keys.isEmpty() ) {
+                JsonObject json = new JsonObject();
+                json.add("feeInfos", feeInfos);
+                FileUtil.save(f, json.toString());
+                logger.info("费率缓存 "+f+" 失效合约: "+keys);
+            }
+        }
+    }
+
+    private static boolean isComplete(JsonObject info) {
+        return info.has("marginRatios") && info.has("commissionRatios");
+    }
+
+    private static JsonObject readFeeInfos(File file) throws Exception {
+        JsonObject json = JsonParser.parseString(FileUtil.read(file)).getAsJsonObject();
+        return json.getAsJsonObject("feeInfos");
+    }
+
+    /**
+     * 按文件名(交易日)排序的缓存文件
+     */
+    private TreeMap<String, File> listFiles(){
+        TreeMap<String, File> result = new TreeMap<>();
+        File[] files = dir.listFiles();
+        if ( files!=null ) {
+            for(File f:files) {
+                if ( f.isFile() && f.getName().endsWith(".json") ) {
+                    result.put(f.getName(), f);
+                }
+            }
+        }
+        return result;
+    }
+
+}
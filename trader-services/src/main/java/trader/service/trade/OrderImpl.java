@@ -323,7 +323,7 @@ public class OrderImpl extends AbsTimedEntity implements Order, JsonEnabled {
     }
 
     public static OrderImpl load(BORepository repository, String orderId, String data){
-        OrderImpl result = (OrderImpl)cacheGet(orderId);
+        OrderImpl result = (OrderImpl)cacheGet(repository, orderId);
         if ( null==result ) {
             String json = data;
             if (null==json) {
@@ -331,7 +331,7 @@ public class OrderImpl extends AbsTimedEntity implements Order, JsonEnabled {
             }
             if ( !StringUtil.isEmpty(json) ) {
                 result = new OrderImpl(repository, (JsonObject)JsonParser.parseString(json));
-                cachePut(result);
+                cachePut(repository, result);
             }
         }
         return result;
@@ -1,13 +1,19 @@
 package trader.service.trade;
 
 import java.time.LocalDate;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import trader.common.beans.BeansContainer;
+import trader.common.config.ConfigUtil;
 import trader.common.util.ConversionUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.JsonEnabled;
@@ -20,68 +26,161 @@ import trader.service.trade.TradeConstants.TradeServiceType;
  * <LI>OrderRef ID顺序生成
  * <LI>每交易日唯一
  * <LI>基于KVStore实现序列化和反序列化
+ * <LI>按块预留: 只保存已预留的最大ID, 每blockSize个ID保存一次; 已用ID过半时在后台线程保存下一块, 块内生成ID不加锁
+ * <LI>返回的ID总是不大于已保存的最大ID: 用完已保存的范围时等待后台保存完成. 不使用BORepository.asynSave, 它不能确认何时写入
+ * <LI>重启后从保存的最大ID之后开始, 跳过上次未用完的部分
  */
 public class OrderRefGenImpl implements OrderRefGen, JsonEnabled {
+    private static final Logger logger = LoggerFactory.getLogger(OrderRefGenImpl.class);
+
+    public static final String ITEM_BLOCK_SIZE = "/TradeService/orderRefBlockSize";
+
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+    /**
+     * 最少6位, 不足时补0
+     */
+    private static final int REF_MIN_LENGTH = 6;
+    private static final char[] REF_ZEROS = "0000000000".toCharArray();
+
     private AtomicInteger refId = new AtomicInteger();
+    /**
+     * 已预留并保存的最大ID
+     */
+    private volatile int reservedRefId;
+    /**
+     * 后台正在保存的预留ID, 0代表没有
+     */
+    private volatile int reservingRefId;
+    private final int blockSize;
+    private final Executor executor;
 
     private String tradingDay;
     private String entityId=null;
     private BORepository boRepository = null;
 
     public OrderRefGenImpl(TradeService tradeService, LocalDate tradingDay, BeansContainer beansContainer)
+    {
+        this(tradeService.getType()==TradeServiceType.RealTime?beansContainer.getBean(BORepository.class):null,
+                tradingDay, ConfigUtil.getInt(ITEM_BLOCK_SIZE, DEFAULT_BLOCK_SIZE), beansContainer.getBean(ExecutorService.class));
+    }
+
+    /**
+     * @param boRepository 为null时不保存
+     */
+    public OrderRefGenImpl(BORepository boRepository, LocalDate tradingDay, int blockSize)
+    {
+        this(boRepository, tradingDay, blockSize, null);
+    }
+
+    /**
+     * @param boRepository 为null时不保存
+     * @param executor 后台保存下一块预留ID, 为null时在调用线程同步保存
+     */
+    public OrderRefGenImpl(BORepository boRepository, LocalDate tradingDay, int blockSize, Executor executor)
     {
         this.tradingDay = DateUtil.date2str(tradingDay);
-        boRepository = beansContainer.getBean(BORepository.class);
-        if ( null!=boRepository && tradeService.getType()==TradeServiceType.RealTime ) {
+        this.blockSize = Math.max(1, blockSize);
+        this.boRepository = boRepository;
+        this.executor = executor;
+        if ( null!=boRepository ) {
             entityId = DateUtil.date2str(tradingDay)+":OdrRef";
-        }
-        if ( null!=entityId ) {
             String savedRefJson = boRepository.load(BOEntityType.Default, entityId);
             if( !StringUtil.isEmpty(savedRefJson)) {
                 JsonObject json = (JsonObject)JsonParser.parseString(savedRefJson);
                 if ( json.has("refId") ) {
-                    refId.set(ConversionUtil.toInt(json.get("refId"), true));
+                    int savedRefId = ConversionUtil.toInt(json.get("refId"), true);
+                    refId.set(savedRefId);
+                    reservedRefId = savedRefId;
                 }
             }
         }
     }
 
+    public int getBlockSize() {
+        return blockSize;
+    }
+
     @Override
     public String nextRefId(String accountId) {
         int ref0 = refId.incrementAndGet();
-        //多线程方式设置 000xxx 格式的OrderRef
-        StringBuilder builder = new StringBuilder();
-        String ref0Str = Integer.toString(ref0);
-        int prefix0 = 6-ref0Str.length();
-        switch(prefix0) {
-        case 5:
-            builder.append("00000");
-            break;
-        case 4:
-            builder.append("0000");
-            break;
-        case 3:
-            builder.append("000");
-            break;
-        case 2:
-            builder.append("00");
-            break;
-        case 1:
-            builder.append("0");
-            break;
+        if ( null!=entityId && ref0>reservedRefId-blockSize/2 && (reservingRefId==0 || ref0>reservedRefId) ) {
+            reserve(ref0);
+        }
+        return formatRef(ref0);
+    }
+
+    /**
+     * 多线程方式设置 000xxx 格式的OrderRef
+     */
+    static String formatRef(int ref0) {
+        char[] buf = REF_ZEROS.clone();
+        int pos = buf.length;
+        while( ref0>0 ) {
+            buf[--pos] = (char)('0'+ref0%10);
+            ref0 /= 10;
+        }
+        int start = Math.min(pos, buf.length-REF_MIN_LENGTH);
+        return new String(buf, start, buf.length-start);
+    }
+
+    /**
+     * 预留下一块ID. 还在已保存的范围内时交给后台线程保存, 不等待;
+     * 超出已保存的范围时等待后台保存完成, 仍然不够再同步保存. 串行化执行, 同时只有一个保存
+     */
+    private synchronized void reserve(int ref0) {
+        if ( ref0<=reservedRefId && executor!=null ) {
+            if ( reservingRefId==0 ) {
+                int reserved2 = reservedRefId+blockSize;
+                reservingRefId = reserved2;
+                executor.execute(()->{
+                    asyncSave(reserved2);
+                });
+            }
+            return;
+        }
+        while( reservingRefId!=0 && ref0>reservedRefId ) {
+            try {
+                wait();
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
         }
-        if ( null!=entityId ) {
-            boRepository.asynSave(BOEntityType.Default, entityId, this);
+        //后台保存失败或者预留范围不够时同步保存
+        if ( reservingRefId==0 && ref0>reservedRefId-blockSize/2 ) {
+            int reserved2 = Math.max(reservedRefId, ref0)+blockSize;
+            boRepository.save(BOEntityType.Default, entityId, toJson(reserved2));
+            reservedRefId = reserved2;
+        }
+    }
+
+    private void asyncSave(int reserved2) {
+        try {
+            boRepository.save(BOEntityType.Default, entityId, toJson(reserved2));
+            synchronized(this) {
+                reservedRefId = Math.max(reservedRefId, reserved2);
+            }
+        }catch(Throwable t) {
+            logger.error("Save order ref "+reserved2+" failed", t);
+        }finally {
+            synchronized(this) {
+                reservingRefId = 0;
+                notifyAll();
+            }
         }
-        return builder.append(ref0Str).toString();
     }
 
     @Override
     public JsonElement toJson() {
+        return toJson(reservedRefId);
+    }
+
+    private JsonElement toJson(int reservedRefId) {
         JsonObject json = new JsonObject();
         json.addProperty("id", entityId);
         json.addProperty("tradingDay", tradingDay);
-        json.addProperty("refId", refId.get());
+        json.addProperty("refId", reservedRefId);
         return json;
     }
 
@@ -2,6 +2,7 @@ package trader.service.trade;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -39,6 +40,18 @@ public class PositionImpl implements Position, TradeConstants {
 
     private long lastPrice;
 
+    /**
+     * 按多/空方向汇总的持仓明细, 下标为 PosDirection.Long/Short 的 detailIndex.
+     * <BR>持仓数量, 开仓价值, 今日盈亏的基准价值(昨仓使用昨结算价). 只在持仓明细变化时重新汇总, 行情更新时不需要重新计算开仓价值
+     */
+    private int[] detailVolumes = new int[2];
+    private long[] detailOpenValues = new long[2];
+    private long[] detailTodayBaseValues = new long[2];
+    /**
+     * 需要重新汇总持仓明细: 加载持仓时费率计算可能还没有准备好
+     */
+    private boolean detailsDirty;
+
     public PositionImpl(AccountImpl account, Exchangeable e, PosDirection direction, long[] money, int[] volumes, List<PositionDetailImpl> details) {
         this(account, e);
         this.direction = direction;
@@ -46,6 +59,7 @@ public class PositionImpl implements Position, TradeConstants {
         this.volumes = volumes;
         this.details.addAll(details);
         Collections.sort(this.details);
+        detailsDirty = true;
     }
 
     public PositionImpl(AccountImpl account, Exchangeable e) {
@@ -215,7 +229,10 @@ public class PositionImpl implements Position, TradeConstants {
         if ( marketData.lastPrice!=lastPrice ) {
             lastPrice = marketData.lastPrice;
             if ( details.size()>0 ) {
-                computePositionProfit(false);
+                if ( detailsDirty ) {
+                    computeDetails(false);
+                }
+                computePositionProfit();
                 result = true;
             }
         }
@@ -271,7 +288,8 @@ public class PositionImpl implements Position, TradeConstants {
         addMoney(PosMoney.FrozenCommission, -1*odrUnfreezeCommission );
 
         //计算持仓利润
-        computePositionProfit(true);
+        computeDetails(true);
+        computePositionProfit();
         //计算持仓方向
         computeDirection();
     }
@@ -364,24 +382,139 @@ public class PositionImpl implements Position, TradeConstants {
     }
 
     /**
-     * 计算持仓盈亏
+     * 重新汇总持仓明细: 多空方向的数量和价值, 以及持仓数量
+     */
+    private void computeDetails(boolean updateVolumes) {
+        int[] detailVolumes = new int[2];
+        long[] detailOpenValues = new long[2];
+        long[] detailTodayBaseValues = new long[2];
+        boolean feeEvalReady = sumDetails(detailVolumes, detailOpenValues, detailTodayBaseValues);
+        this.detailVolumes = detailVolumes;
+        this.detailOpenValues = detailOpenValues;
+        this.detailTodayBaseValues = detailTodayBaseValues;
+        detailsDirty = !feeEvalReady;
+        if( updateVolumes ) {
+            computeVolumes();
+        }
+    }
+
+    /**
+     * 按多空方向汇总持仓明细的数量和价值到参数数组, 不修改持仓数据
+     *
+     * @return false 如果费率计算还没有准备好, 价值没有计算
      */
-    private void computePositionProfit(boolean updateVolumes) {
+    private boolean sumDetails(int[] detailVolumes, long[] detailOpenValues, long[] detailTodayBaseValues) {
         TxnFeeEvaluator feeEval = account.getFeeEvaluator();
+        for(PositionDetailImpl detail:details) {
+            PosDirection detailDirection = detail.getDirection();
+            int detailVolume = detail.getVolume();
+            int idx = detailIndex(detailDirection);
+            detailVolumes[idx] += detailVolume;
+            if ( null!=feeEval ) {
+                long posValue = feeEval.compute(instrument, detailVolume, detail.getPrice(), detailDirection)[1];
+                long posValueToday = posValue;
+                if ( !detail.isToday() ) {
+                    posValueToday = feeEval.compute(instrument, detailVolume, getMoney(PosMoney.PreSettlementPrice), detailDirection)[1];
+                }
+                detailOpenValues[idx] += posValue;
+                detailTodayBaseValues[idx] += posValueToday;
+            }
+        }
+        return feeEval!=null;
+    }
+
+    /**
+     * 从持仓明细计算持仓数量和开仓均价
+     */
+    private void computeVolumes() {
         int longPos = 0, shortPos = 0;
         int longTodayPos = 0, shortTodayPos=0;
         int longYdPos = 0, shortYdPos = 0;
+        long openCost= 0;
+        for(PositionDetailImpl detail:details) {
+            int detailVolume = detail.getVolume();
+            openCost += detail.getPrice()*detail.getVolume();;
+            if ( detail.getDirection()==PosDirection.Long ) {
+                //多仓
+                longPos += detailVolume;
+                if ( detail.isToday() ) {
+                    longTodayPos += detailVolume;
+                }else {
+                    longYdPos += detailVolume;
+                }
+            }else {
+                shortPos += detail.getVolume();
+                if ( detail.isToday() ) {
+                    shortTodayPos += detailVolume;
+                }else {
+                    shortYdPos += detailVolume;
+                }
+            }
+        }
+        if ( (longPos+shortPos)!=0) {
+            openCost /= (longPos+shortPos);
+        }
+        setMoney(PosMoney.OpenCost, openCost);
+
+        setVolume(PosVolume.LongPosition, longPos);
+        setVolume(PosVolume.LongTodayPosition, longTodayPos);
+        setVolume(PosVolume.LongYdPosition, longYdPos);
+        setVolume(PosVolume.ShortPosition, shortPos);
+        setVolume(PosVolume.ShortTodayPosition, shortTodayPos);
+        setVolume(PosVolume.ShortYdPosition, shortYdPos);
+        setVolume(PosVolume.TodayPosition, Math.max(longTodayPos, shortTodayPos));
+        setVolume(PosVolume.YdPosition, Math.max(longYdPos, shortYdPos));
+        setVolume(PosVolume.Position, Math.max(longPos, shortPos));
+    }
+
+    /**
+     * 使用多空汇总的开仓价值计算持仓盈亏和保证金
+     */
+    private void computePositionProfit() {
+        long[] result = computePositionProfit(detailOpenValues, detailTodayBaseValues);
+        setMoney(PosMoney.PositionProfit, result[0]);
+        setMoney(PosMoney.PositionProfitToday, result[1]);
+        setMoney(PosMoney.LongUseMargin, result[2]);
+        setMoney(PosMoney.ShortUseMargin, result[3]);
+        setMoney(PosMoney.UseMargin, Math.max(result[2], result[3]));
+    }
+
+    /**
+     * 最新价的价值和保证金按每条持仓明细计算后汇总, 与保证金按明细取整的结果一致; 开仓价值使用汇总数据
+     *
+     * @return 持仓盈亏, 今日持仓盈亏, 多仓保证金, 空仓保证金
+     */
+    private long[] computePositionProfit(long[] detailOpenValues, long[] detailTodayBaseValues) {
+        TxnFeeEvaluator feeEval = account.getFeeEvaluator();
+        long[] lastValues = new long[2];
+        long[] useMargins = new long[2];
+        for(PositionDetailImpl detail:details) {
+            int idx = detailIndex(detail.getDirection());
+            long[] lastMarginValue = feeEval.compute(instrument, detail.getVolume(), lastPrice, detail.getDirection());
+            useMargins[idx] += lastMarginValue[0];
+            lastValues[idx] += lastMarginValue[1];
+        }
+        //空仓盈亏方向相反
+        long posProfit = (lastValues[0]-detailOpenValues[0]) - (lastValues[1]-detailOpenValues[1]);
+        long posProfitToday = (lastValues[0]-detailTodayBaseValues[0]) - (lastValues[1]-detailTodayBaseValues[1]);
+        return new long[] {posProfit, posProfitToday, useMargins[0], useMargins[1]};
+    }
+
+    /**
+     * 按每条持仓明细完整计算持仓盈亏和保证金, 不使用任何汇总数据, 用于调试检查
+     *
+     * @return 持仓盈亏, 今日持仓盈亏, 多仓保证金, 空仓保证金
+     */
+    private long[] computeDetailsProfit() {
+        TxnFeeEvaluator feeEval = account.getFeeEvaluator();
         long posProfit = 0;
         long posProfitToday = 0;
-        long openCost= 0;
         long longUseMargin=0;
         long shortUseMargin=0;
-        for(int i=0;i<details.size();i++) {
-            PositionDetail detail = details.get(i);
+        for(PositionDetailImpl detail:details) {
             PosDirection detailDirection = detail.getDirection();
             int detailVolume = detail.getVolume();
             long[] lastMarginValue = feeEval.compute(instrument, detailVolume, lastPrice, detailDirection);
-
             long posValue = feeEval.compute(instrument, detailVolume, detail.getPrice(), detailDirection)[1];
             long posValueToday = posValue;
             if ( !detail.isToday() ) {
@@ -392,54 +525,45 @@ public class PositionImpl implements Position, TradeConstants {
             long valueDiffUnit = 1;
             if ( detailDirection==PosDirection.Short ) {
                 valueDiffUnit = -1;
-                shortUseMargin += lastMarginValue[0];;
+                shortUseMargin += lastMarginValue[0];
             }else{
                 longUseMargin += lastMarginValue[0];
             }
             posProfit += valueDiff*valueDiffUnit;
             posProfitToday += valueDiffToday*valueDiffUnit;
-            if ( updateVolumes ) {
-                openCost += detail.getPrice()*detail.getVolume();;
-                if ( detail.getDirection()==PosDirection.Long ) {
-                    //多仓
-                    longPos += detailVolume;
-                    if ( detail.isToday() ) {
-                        longTodayPos += detailVolume;
-                    }else {
-                        longYdPos += detailVolume;
-                    }
-                }else {
-                    shortPos += detail.getVolume();
-                    if ( detail.isToday() ) {
-                        shortTodayPos += detailVolume;
-                    }else {
-                        shortYdPos += detailVolume;
-                    }
-                }
-            }
         }
+        return new long[] {posProfit, posProfitToday, longUseMargin, shortUseMargin};
+    }
 
-        setMoney(PosMoney.PositionProfit, posProfit);
-        setMoney(PosMoney.PositionProfitToday, posProfitToday);
-        setMoney(PosMoney.LongUseMargin, longUseMargin);
-        setMoney(PosMoney.ShortUseMargin, shortUseMargin);
-        setMoney(PosMoney.UseMargin, Math.max(longUseMargin, shortUseMargin));
-        if( updateVolumes ) {
-            if ( (longPos+shortPos)!=0) {
-                openCost /= (longPos+shortPos);
-            }
-            setMoney(PosMoney.OpenCost, openCost);
-
-            setVolume(PosVolume.LongPosition, longPos);
-            setVolume(PosVolume.LongTodayPosition, longTodayPos);
-            setVolume(PosVolume.LongYdPosition, longYdPos);
-            setVolume(PosVolume.ShortPosition, shortPos);
-            setVolume(PosVolume.ShortTodayPosition, shortTodayPos);
-            setVolume(PosVolume.ShortYdPosition, shortYdPos);
-            setVolume(PosVolume.TodayPosition, Math.max(longTodayPos, shortTodayPos));
-            setVolume(PosVolume.YdPosition, Math.max(longYdPos, shortYdPos));
-            setVolume(PosVolume.Position, Math.max(longPos, shortPos));
+    /**
+     * 调试检查: 从持仓明细完整重新计算到临时数组, 与增量维护的汇总数据比较; 盈亏和保证金按每条持仓明细重新计算后比较. 不修改持仓数据
+     */
+    boolean reconcile() {
+        if ( detailsDirty ) {
+            //持仓明细还没有汇总过, 没有增量维护的数据
+            return true;
+        }
+        int[] volumes = new int[2];
+        long[] openValues = new long[2];
+        long[] todayBaseValues = new long[2];
+        sumDetails(volumes, openValues, todayBaseValues);
+        boolean result = Arrays.equals(volumes, detailVolumes) && Arrays.equals(openValues, detailOpenValues) && Arrays.equals(todayBaseValues, detailTodayBaseValues);
+        if ( result && lastPrice!=0 && !details.isEmpty() ) {
+            long[] profits = computeDetailsProfit();
+            result = profits[0]==getMoney(PosMoney.PositionProfit)
+                    && profits[1]==getMoney(PosMoney.PositionProfitToday)
+                    && profits[2]==getMoney(PosMoney.LongUseMargin)
+                    && profits[3]==getMoney(PosMoney.ShortUseMargin)
+                    && Math.max(profits[2], profits[3])==getMoney(PosMoney.UseMargin);
+        }
+        if ( !result ) {
+            logger.error("合约 "+instrument+" 持仓盈亏与持仓明细不一致: "+this);
         }
+        return result;
+    }
+
+    private static int detailIndex(PosDirection direction) {
+        return direction==PosDirection.Short?1:0;
     }
 
     /**
@@ -150,7 +150,7 @@ public class TransactionImpl extends AbsTimedEntity implements Transaction, Json
      * 加载并恢复数据
      */
     public static TransactionImpl load(BORepository repository, String txnId, String data) {
-        TransactionImpl result = (TransactionImpl)cacheGet(txnId);
+        TransactionImpl result = (TransactionImpl)cacheGet(repository, txnId);
         if ( null==result ){
             String jsonText = data;
             if (null==jsonText) {
@@ -159,7 +159,7 @@ public class TransactionImpl extends AbsTimedEntity implements Transaction, Json
             if ( !StringUtil.isEmpty(jsonText)) {
                 JsonObject json = (JsonObject)JsonParser.parseString(jsonText);
                 result = new TransactionImpl(repository, json);
-                cachePut(result);
+                cachePut(repository, result);
             }
         }
         return result;
@@ -975,6 +975,15 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
      */
     @Override
     public String syncLoadFeeEvaluator(Collection<Exchangeable> subscriptions) throws Exception
+    {
+        return syncLoadFeeEvaluator(subscriptions, new JsonObject());
+    }
+
+    /**
+     * 加载费率计算, 只查询缓存中没有的合约的保证金率和手续费率
+     */
+    @Override
+    public String syncLoadFeeEvaluator(Collection<Exchangeable> subscriptions, JsonObject cachedFeeInfos) throws Exception
     {
         long t0 = System.currentTimeMillis();
         TreeSet<Exchangeable> filter = new TreeSet<>(subscriptions);
@@ -1027,12 +1036,23 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
             }
         }
         {//查询手续费使用, 每天只加载一次
-            int count=0;
+            int count=0, queryCount=0;
             for(Exchangeable e:allInstruments) {
                 JsonObject info = (JsonObject)feeInfos.get(e.toString());
                 if ( info==null ) {
                     continue;
                 }
+                JsonObject cachedInfo = (JsonObject)cachedFeeInfos.get(e.toString());
+                if ( cachedInfo!=null ) {
+                    for(String key:new String[] {"marginRatios", "commissionRatios"}) {
+                        if ( cachedInfo.has(key) ) {
+                            info.add(key, cachedInfo.get(key));
+                        }
+                    }
+                }
+                if ( !info.has("marginRatios") || !info.has("commissionRatios") ) {
+                    queryCount++;
+                }
                 if ( !info.has("marginRatios")) {
                     double[] marginRatios = reqInstrumentMarginRatio(e);
                     if ( null!=marginRatios ) {
@@ -1051,13 +1071,18 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
                 }
             }
             long t1 = System.currentTimeMillis();
-            logger.info("加载 "+feeInfos.size()+" 合约手续费信息, 耗时 "+(t1-t0)/1000+" 秒");
+            logger.info("加载 "+feeInfos.size()+" 合约手续费信息, 查询 "+queryCount+" 合约, 耗时 "+(t1-t0)/1000+" 秒");
         }
         JsonObject result = new JsonObject();
         result.add("feeInfos", feeInfos);
         return result.toString();
     }
 
+    @Override
+    public String getFeeRateCacheKey() {
+        return brokerId+"-"+userId;
+    }
+
     private double[] reqInstrumentMarginRatio(Exchangeable e) throws Exception
     {
         double[] marginRatios = null;
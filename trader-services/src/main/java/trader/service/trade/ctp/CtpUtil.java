@@ -1,14 +1,12 @@
 package trader.service.trade.ctp;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.jctp.JctpConstants;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableRegistry;
 import trader.common.util.StringUtil;
 import trader.service.trade.TradeConstants.OrderDirection;
 import trader.service.trade.TradeConstants.OrderOffsetFlag;
@@ -202,17 +200,15 @@ public class CtpUtil implements JctpConstants{
     }
 
 
-    private static Map<String, Exchangeable> instrumentMap = new ConcurrentHashMap<>();
-
     /**
      * 从CTP TICK数据找到Instrument对象
+     * <BR>按InstrumentID直接在ExchangeableRegistry中查找, 多线程安全, 已注册时不分配对象
      */
     public static Exchangeable ctp2instrument(String exchangeId, String instrumentId)
     {
-        Exchangeable r = instrumentMap.get(instrumentId);
+        Exchangeable r = ExchangeableRegistry.get(instrumentId);
         if ( r==null ){
-            r = Exchangeable.create(Exchange.getInstance(exchangeId), instrumentId);
-            instrumentMap.put(instrumentId, r);
+            r = ExchangeableRegistry.intern(instrumentId, Exchangeable.create(Exchange.getInstance(exchangeId), instrumentId));
         }
         return r;
     }
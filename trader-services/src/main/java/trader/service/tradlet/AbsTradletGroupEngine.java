@@ -10,6 +10,7 @@ import trader.common.beans.Lifecycle;
 import trader.common.exchangeable.Exchangeable;
 import trader.service.ServiceConstants.AccountState;
 import trader.service.md.MarketData;
+import trader.service.md.TickLatencyTracker;
 import trader.service.ta.LeveledBarSeries;
 import trader.service.ta.BarListener;
 import trader.service.ta.BarService;
@@ -130,6 +131,7 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
     protected void processTick(MarketData tick) {
         List<TradletHolder> tradletHolders = group.getTradletHolders();
 
+        TickLatencyTracker.beginTradletTick(tick);
         for(int i=0;i<tradletHolders.size();i++) {
             TradletHolder holder = tradletHolders.get(i);
             try{
@@ -141,6 +143,7 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
             }
         }
         group.updateOnTick(tick);
+        TickLatencyTracker.endTradletTick();
     }
 
     protected void processBar(LeveledBarSeries series) {
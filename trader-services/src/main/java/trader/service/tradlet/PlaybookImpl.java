@@ -790,7 +790,7 @@ public class PlaybookImpl extends AbsTimedEntity implements Playbook, JsonEnable
     }
 
     public static PlaybookImpl load(BORepository repository, String pbId, String pbData) {
-        PlaybookImpl result = (PlaybookImpl)cacheGet(pbId);
+        PlaybookImpl result = (PlaybookImpl)cacheGet(repository, pbId);
         if ( null==result ) {
             String json = pbData;
             if (null==json) {
@@ -798,7 +798,7 @@ public class PlaybookImpl extends AbsTimedEntity implements Playbook, JsonEnable
             }
             if ( !StringUtil.isEmpty(json) ) {
                 result = new PlaybookImpl(repository, (JsonObject)JsonParser.parseString(json));
-                cachePut(result);
+                cachePut(repository, result);
             }
         }
         return result;
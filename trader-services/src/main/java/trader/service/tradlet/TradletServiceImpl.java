@@ -36,6 +36,7 @@ import trader.common.util.StringUtil;
 import trader.service.ServiceErrorConstants;
 import trader.service.beans.DiscoverableRegistry;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataListener;
 import trader.service.md.MarketDataService;
 import trader.service.plugin.Plugin;
 import trader.service.plugin.PluginListener;
@@ -96,8 +97,18 @@ public class TradletServiceImpl extends AbsTradletService implements TradletCons
         pluginService.registerListener((List<Plugin> updatedPlugins)->{
             onPluginChanged(updatedPlugins);
         });
-        mdService.addListener((MarketData tick)->{
-            queueTickEvent(tick);
+        mdService.addListener(new MarketDataListener() {
+            @Override
+            public void onMarketData(MarketData tick) {
+                queueTickEvent(tick);
+            }
+            /**
+             * TradletGroupEngine的RingBuffer支持多线程发布, 可以直接在行情分片线程中排队
+             */
+            @Override
+            public boolean isShardSafe() {
+                return true;
+            }
         });
         Set<String> allTradletIds = new TreeSet<>();
         Set<String> updatedPluginIds = new TreeSet<>();
@@ -381,10 +392,15 @@ public class TradletServiceImpl extends AbsTradletService implements TradletCons
      * 派发行情事件到交易组
      */
     private void queueTickEvent(MarketData md) {
+        MarketData md0 = null;
         for(int i=0;i<groupEngines.size();i++) {
             TradletGroupEngine groupEngine = groupEngines.get(i);
             if ( groupEngine.getGroup().interestOn(md.instrument) ) {
-                groupEngine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md);
+                //交易组在独立线程异步处理, 池化TICK使用与其它listener共享的复制
+                if ( md0==null ) {
+                    md0 = md.detach();
+                }
+                groupEngine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md0);
             }
         }
     }
@@ -0,0 +1,125 @@
+package trader.service.tradlet.script;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.num.Num;
+
+/**
+ * 只包含已完成Bar的只读视图, 不包含正在生成的最后一个Bar.
+ * <BR>不复制数据, 原序列增长后视图自动增长, 基于视图的CachedIndicator缓存可以一直使用
+ */
+class CompletedBarSeries implements BarSeries {
+    private static final long serialVersionUID = 5519337810963315287L;
+
+    private final BarSeries series;
+
+    CompletedBarSeries(BarSeries series) {
+        this.series = series;
+    }
+
+    public BarSeries getSeries() {
+        return series;
+    }
+
+    @Override
+    public String getName() {
+        return series.getName();
+    }
+
+    @Override
+    public Bar getBar(int i) {
+        return series.getBar(i);
+    }
+
+    @Override
+    public int getBarCount() {
+        return Math.max(0, series.getBarCount()-1);
+    }
+
+    @Override
+    public List<Bar> getBarData() {
+        List<Bar> bars = series.getBarData();
+        return bars.subList(0, Math.max(0, bars.size()-1));
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return series.getBeginIndex();
+    }
+
+    @Override
+    public int getEndIndex() {
+        return series.getEndIndex()-1;
+    }
+
+    @Override
+    public int getMaximumBarCount() {
+        return series.getMaximumBarCount();
+    }
+
+    @Override
+    public void setMaximumBarCount(int maximumBarCount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getRemovedBarsCount() {
+        return series.getRemovedBarsCount();
+    }
+
+    @Override
+    public void addBar(Bar bar, boolean replace) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addBar(ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addTrade(Num tradeVolume, Num tradePrice) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addPrice(Num price) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BarSeries getSubSeries(int startIndex, int endIndex) {
+        return series.getSubSeries(startIndex, Math.min(endIndex, getEndIndex()+1));
+    }
+
+    @Override
+    public Num numOf(Number number) {
+        return series.numOf(number);
+    }
+
+    @Override
+    public Function<Number, Num> function() {
+        return series.function();
+    }
+
+}
@@ -0,0 +1,95 @@
+package trader.service.tradlet.script;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 可缓存的函数调用结果, Key为函数名+参数.
+ * <BR>每个序列分别计数onNewBar, 只在所属序列的onNewBar结束时清除最近两个Bar都没有使用的结果.
+ * <BR>不同级别的序列更新频率不同, 例如MIN1每分钟一个Bar, MIN15每15分钟一个Bar, 共用一个计数会清除只在MIN15上使用的结果
+ */
+class FuncCallCache {
+
+    private static class CallSite {
+        final Object result;
+        /**
+         * 最近一次使用时的序列名称和Bar计数
+         */
+        String series;
+        long lastBarSeq;
+
+        CallSite(Object result, String series, long lastBarSeq){
+            this.result = result;
+            this.series = series;
+            this.lastBarSeq = lastBarSeq;
+        }
+    }
+
+    private Map<String, CallSite> callSites = new HashMap<>();
+    /**
+     * 每个序列的onNewBar调用次数
+     */
+    private Map<String, long[]> barSeqs = new HashMap<>();
+    /**
+     * 当前(或最近一次)onNewBar的序列和计数, onTick中的函数调用也归属于这个序列
+     */
+    private String currSeries;
+    private long currBarSeq;
+
+    /**
+     * onNewBar开始时调用
+     */
+    public void beginBar(String series) {
+        long[] barSeq = barSeqs.get(series);
+        if ( barSeq==null ) {
+            barSeq = new long[1];
+            barSeqs.put(series, barSeq);
+        }
+        currSeries = series;
+        currBarSeq = ++barSeq[0];
+    }
+
+    /**
+     * onNewBar结束时调用, 清除当前序列最近两个Bar都没有使用的结果
+     */
+    public void endBar() {
+        for(Iterator<CallSite> it=callSites.values().iterator(); it.hasNext();) {
+            CallSite callSite = it.next();
+            if ( Objects.equals(callSite.series, currSeries) && callSite.lastBarSeq<currBarSeq-1 ) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 返回缓存的结果, 同时标记为当前序列使用
+     */
+    public Object get(String key) {
+        CallSite callSite = callSites.get(key);
+        if ( callSite==null ) {
+            return null;
+        }
+        callSite.series = currSeries;
+        callSite.lastBarSeq = currBarSeq;
+        return callSite.result;
+    }
+
+    public void put(String key, Object result) {
+        callSites.put(key, new CallSite(result, currSeries, currBarSeq));
+    }
+
+    public boolean containsKey(String key) {
+        return callSites.containsKey(key);
+    }
+
+    public int size() {
+        return callSites.size();
+    }
+
+    public void clear() {
+        callSites.clear();
+    }
+
+}
@@ -16,11 +16,26 @@ import trader.service.tradlet.script.func.FuncHelper;
  * Indicator多周期变量在Groovy中的包装
  */
 public class GroovyIndicatorValue extends GroovyObjectSupport implements Comparable {
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
 
     private Indicator<Num> indicator;
 
+    /**
+     * 表达式的缓存Key, 例如 EMA(AP010-MIN1.CLOSE,12). 为null表示这个值是数据的复制, 不能缓存
+     */
+    private String key;
+
     public GroovyIndicatorValue(Indicator<Num> indicator) {
+        this(indicator, null);
+    }
+
+    public GroovyIndicatorValue(Indicator<Num> indicator, String key) {
         this.indicator = indicator;
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
     }
 
     public Number getValue() {
@@ -93,26 +108,32 @@ public class GroovyIndicatorValue extends GroovyObjectSupport implements Compara
     }
 
     /**
-     * 四则运算
+     * 四则运算, 结果在访问时才计算
      */
     private GroovyIndicatorValue arithmetic(Object o, int method) {
         BarSeries series = indicator.getBarSeries();
-        List<Num> values = new ArrayList<>(series.getBarCount());
+        Indicator<Num> result = null;
+        String key2 = null;
         if ( o instanceof GroovyIndicatorValue ) {
             //序列+序列
-            Indicator<Num> indicator2 = ((GroovyIndicatorValue)o).getIndicator();
-            values = FuncHelper.forEach(indicator, indicator2, (Num num, Num num2)->{
+            GroovyIndicatorValue value2 = (GroovyIndicatorValue)o;
+            result = FuncHelper.combine(indicator, value2.getIndicator(), (Num num, Num num2)->{
                 return arithmeti(num, num2, method);
             });
+            key2 = value2.getKey();
         } else {
             //序列+数值
-            Num num2 = series.numOf( FuncHelper.obj2number(o) );
-            for(int i=series.getBeginIndex(); i<=series.getEndIndex();i++) {
-                Num num = indicator.getValue(i);
-                values.add(arithmeti(num, num2, method));
-            }
+            Number number = FuncHelper.obj2number(o);
+            result = FuncHelper.combine(indicator, series.numOf(number), (Num num, Num num2)->{
+                return arithmeti(num, num2, method);
+            });
+            key2 = number.toString();
         }
-        return new GroovyIndicatorValue(new SimpleIndicator(series, values));
+        String resultKey = null;
+        if ( key!=null && key2!=null ) {
+            resultKey = "("+key+OPERATORS[method]+key2+")";
+        }
+        return new GroovyIndicatorValue(result, resultKey);
     }
 
     private static Num arithmeti(Num num, Num num2,int method) {
@@ -23,7 +23,8 @@ import trader.service.plugin.Plugin;
 import trader.service.plugin.PluginService;
 import trader.service.ta.FutureBar;
 import trader.service.ta.LeveledBarSeries;
-import trader.service.ta.indicators.SimpleIndicator;
+import trader.service.ta.indicators.BarValueIndicator;
+import trader.service.ta.indicators.SimpleIndicator.BarValueGetter;
 import trader.service.trade.Order;
 import trader.service.trade.Transaction;
 import trader.service.tradlet.Playbook;
@@ -44,6 +45,7 @@ import trader.service.tradlet.script.func.SMAFunc;
 
 /**
  * 基于GROOVY脚本的Tradlet
+ * <BR>OHLC变量和EMA/SMA等函数调用结果在Bar之间保持不变, 每个新的Bar只需要计算最后的值
  */
 @Discoverable(interfaceClass = Tradlet.class, purpose = "GROOVY")
 public class GroovyTradletImpl implements Tradlet, ScriptContext {
@@ -55,6 +57,14 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
     private Map<String, TradletScriptFunction> functions = new HashMap<>();
 
     private Map<String, Object> variables = new HashMap<>();
+    /**
+     * 每个序列的OHLC变量, Key为序列名称
+     */
+    private Map<String, Map<String, GroovyIndicatorValue>> seriesVars = new HashMap<>();
+    /**
+     * 可缓存的函数调用结果, 按序列清除不再使用的结果
+     */
+    private FuncCallCache funcCallCache = new FuncCallCache();
 
     private GroovyClassLoader scriptLoader;
     private Class<GroovyScriptBase> scriptClass;
@@ -135,7 +145,9 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
     public void onNewBar(LeveledBarSeries series) {
         //准备变量
         if ( methodOnNewBar!=null && prepareBarVars(series) ) {
+            funcCallCache.beginBar(series.getName());
             methodOnNewBar.invoke(new Object[] {series});
+            funcCallCache.endBar();
         }
     }
 
@@ -170,12 +182,26 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
     @Override
     public Object funcInvoke(String funcName, Object[] args) {
         TradletScriptFunction func = getOrCreateFuncton(funcName);
+        String callKey = null;
+        if ( func.isCacheable(args) ) {
+            callKey = funcCallKey(funcName, args);
+        }
+        if ( callKey!=null ) {
+            Object cachedResult = funcCallCache.get(callKey);
+            if ( cachedResult!=null ) {
+                return cachedResult;
+            }
+        }
         Object result;
         try {
             result = func.invoke(args);
         } catch (Exception e) {
             throw new InvokerInvocationException(e);
         }
+        if ( callKey!=null && result instanceof GroovyIndicatorValue ) {
+            result = new GroovyIndicatorValue(((GroovyIndicatorValue)result).getIndicator(), callKey);
+            funcCallCache.put(callKey, result);
+        }
         if ( logger.isDebugEnabled() ) {
             logger.debug("Tradlet group "+group.getId()+" invokes function "+funcName+" "+Arrays.asList(args)+" returns: "+result);
         }
@@ -189,6 +215,7 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
 
     /**
      * 准备OHLC标准变量. 这个方法忽略新创建的Bar, 只返回已完成的KBAR
+     * <BR>每个序列的变量只创建一次, 基于已完成Bar的视图, 序列增长后不需要重新创建, 指标缓存可以一直使用
      */
     private boolean prepareBarVars(LeveledBarSeries series) {
         if ( series.getBarCount()<=1 ) {
@@ -201,31 +228,66 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
             variables.remove("AVERAGE");
             return false;
         }
-        BarSeries subSeries = series.getSubSeries(series.getBeginIndex(), series.getEndIndex());
-        variables.put("OPEN", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (FutureBar bar)->{
-            return bar.getOpenPrice();
-        })));
-        variables.put("CLOSE", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (FutureBar bar)->{
-            return bar.getClosePrice();
-        })));
-        variables.put("HIGH", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (FutureBar bar)->{
-            return bar.getHighPrice();
-        })));
-        variables.put("LOW", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (FutureBar bar)->{
-            return bar.getLowPrice();
-        })));
-        variables.put("VOLUME", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (FutureBar bar)->{
-            return bar.getVolume();
-        })));
-        variables.put("AMOUNT", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (FutureBar bar)->{
-            return bar.getAmount();
-        })));
-        variables.put("AVERAGE", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (FutureBar bar)->{
-            return bar.getAvgPrice();
-        })));
+        Map<String, GroovyIndicatorValue> vars = seriesVars.get(series.getName());
+        if ( vars==null || ((CompletedBarSeries)vars.get("CLOSE").getIndicator().getBarSeries()).getSeries()!=series ) {
+            //同名序列被替换后(例如新的交易日), 之前的函数调用结果都不能再使用
+            if ( vars!=null ) {
+                funcCallCache.clear();
+            }
+            vars = createBarVars(series);
+            seriesVars.put(series.getName(), vars);
+        }
+        variables.putAll(vars);
         return true;
     }
 
+    private static Map<String, GroovyIndicatorValue> createBarVars(LeveledBarSeries series){
+        BarSeries completedSeries = new CompletedBarSeries(series);
+        Map<String, GroovyIndicatorValue> result = new HashMap<>();
+        result.put("OPEN", createBarVar(completedSeries, "OPEN", FutureBar::getOpenPrice));
+        result.put("CLOSE", createBarVar(completedSeries, "CLOSE", FutureBar::getClosePrice));
+        result.put("HIGH", createBarVar(completedSeries, "HIGH", FutureBar::getHighPrice));
+        result.put("LOW", createBarVar(completedSeries, "LOW", FutureBar::getLowPrice));
+        result.put("VOLUME", createBarVar(completedSeries, "VOLUME", FutureBar::getVolume));
+        result.put("AMOUNT", createBarVar(completedSeries, "AMOUNT", FutureBar::getAmount));
+        result.put("AVERAGE", createBarVar(completedSeries, "AVERAGE", FutureBar::getAvgPrice));
+        return result;
+    }
+
+    private static GroovyIndicatorValue createBarVar(BarSeries series, String varName, BarValueGetter valueGetter) {
+        //序列名称包含合约和级别, 保证不同序列的函数调用Key不同
+        return new GroovyIndicatorValue(new BarValueIndicator(series, valueGetter), series.getName()+"."+varName);
+    }
+
+    /**
+     * 函数调用的Key, 参数中有不能缓存的值时返回null
+     */
+    private static String funcCallKey(String funcName, Object[] args) {
+        StringBuilder key = new StringBuilder(64);
+        key.append(funcName).append("(");
+        for(int i=0;i<args.length;i++) {
+            Object arg = args[i];
+            if ( i>0 ) {
+                key.append(",");
+            }
+            if ( arg instanceof GroovyIndicatorValue ) {
+                String argKey = ((GroovyIndicatorValue)arg).getKey();
+                if ( argKey==null ) {
+                    return null;
+                }
+                key.append(argKey);
+            } else if ( arg instanceof Number || arg instanceof Boolean ) {
+                key.append(arg);
+            } else if ( arg instanceof CharSequence ) {
+                key.append("'").append(arg).append("'");
+            } else {
+                return null;
+            }
+        }
+        key.append(")");
+        return key.toString();
+    }
+
     /**
      * 按需访问变量
      */
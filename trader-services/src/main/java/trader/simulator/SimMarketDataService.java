@@ -12,6 +12,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -26,9 +27,7 @@ import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableData.DataInfo;
 import trader.common.exchangeable.ExchangeableTradingTimes;
-import trader.common.util.CSVDataSet;
-import trader.common.util.CSVMarshallHelper;
-import trader.common.util.CSVUtil;
+import trader.common.util.DateUtil;
 import trader.common.util.FileUtil;
 import trader.common.util.StringUtil;
 import trader.common.util.TraderHomeUtil;
@@ -39,6 +38,8 @@ import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
 import trader.service.md.MarketDataServiceImpl;
+import trader.service.md.MarketDataTickCache;
+import trader.service.ta.BarSeriesLoader;
 import trader.service.util.SimpleBeansContainer;
 
 /**
@@ -47,9 +48,10 @@ import trader.service.util.SimpleBeansContainer;
 public class SimMarketDataService implements MarketDataService, SimMarketTimeAware {
     private final static Logger logger = LoggerFactory.getLogger(SimMarketDataService.class);
 
-    private static class SimMDInfo {
+    private static class SimMDInfo implements Comparable<SimMDInfo> {
+        Exchangeable instrument;
         ExchangeableTradingTimes tradingTimes;
-        List<MarketData> ticks = new ArrayList<>();
+        List<MarketData> ticks = Collections.emptyList();
         int nextDataIndex = 0;
 
 
@@ -91,6 +93,28 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
             return result;
         }
 
+        /**
+         * 下一个待发送的行情时间, 没有返回null
+         */
+        public LocalDateTime nextUpdateTime() {
+            if ( nextDataIndex<ticks.size() ) {
+                return ticks.get(nextDataIndex).updateTime;
+            }
+            return null;
+        }
+
+        /**
+         * 按下一个行情时间排序, 相同时间按合约排序
+         */
+        @Override
+        public int compareTo(SimMDInfo o) {
+            int result = nextUpdateTime().compareTo(o.nextUpdateTime());
+            if ( result==0 ) {
+                result = instrument.compareTo(o.instrument);
+            }
+            return result;
+        }
+
     }
 
     private BeansContainer beansContainer;
@@ -100,8 +124,21 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
     protected Map<Exchangeable, List<MarketDataListener>> listeners = new HashMap<>();
     protected Set<Exchangeable> subscriptions = new TreeSet<>();
     protected Map<Exchangeable, SimMDInfo> mdInfos = new HashMap<>();
+    /**
+     * 按下一个行情时间排序的合约队列(多路归并), 每个时间片只需要检查队列头部
+     */
+    protected PriorityQueue<SimMDInfo> pendingMDInfos = new PriorityQueue<>();
+    private List<SimMDInfo> readyMDInfos = new ArrayList<>();
 
     protected LocalDateTime lastTime;
+    /**
+     * 共享的TICK数据缓存
+     */
+    private MarketDataTickCache tickCache;
+    /**
+     * 加载TICK数据后, 在后台预加载下一交易日的数据, 直到这个交易日为止. null表示不预加载
+     */
+    private LocalDate tickPrefetchEndDay;
 
     @Override
     public ServiceState getState() {
@@ -160,12 +197,17 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
         }
     }
 
+    public void setTickPrefetchEndDay(LocalDate tickPrefetchEndDay) {
+        this.tickPrefetchEndDay = tickPrefetchEndDay;
+    }
+
     /**
      * 从Repository 加载测试时间段的数据
      */
     public void init(BeansContainer beansContainer) throws Exception {
         this.beansContainer = beansContainer;
         mtService = beansContainer.getBean(SimMarketTimeService.class);
+        tickCache = BarSeriesLoader.getTickCache(beansContainer);
         loadSubScriptions();
         if ( mtService!=null ) {
             mtService.addListener(this);
@@ -179,30 +221,64 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
         if ( lastTime==null ) {
             //第一次调用, 需要加载数据
             loadMarketData(tradingDay);
-        }
-        for(Exchangeable e:subscriptions) {
-            SimMDInfo mdInfo = mdInfos.get(e);
-            if ( mdInfo==null ) {
-                continue;
+            for(Exchangeable e:subscriptions) {
+                SimMDInfo mdInfo = mdInfos.get(e);
+                if ( mdInfo==null ) {
+                    continue;
+                }
+                notifyMarketData(mdInfo, actionTime, timestamp);
             }
-            MarketData md = mdInfo.seek(lastTime, actionTime, timestamp);
-            if ( md==null ) {
-                continue;
+        } else {
+            //只有队列头部的行情时间<=actionTime, 才需要发送
+            readyMDInfos.clear();
+            while(!pendingMDInfos.isEmpty() && pendingMDInfos.peek().nextUpdateTime().compareTo(actionTime)<=0) {
+                readyMDInfos.add(pendingMDInfos.poll());
             }
-            md.postProcess(mdInfo.tradingTimes);
-            for(MarketDataListener listener:genericListeners) {
-                listener.onMarketData(md);
+            //保持与订阅顺序相同的通知顺序
+            if ( readyMDInfos.size()>1 ) {
+                readyMDInfos.sort((SimMDInfo o1, SimMDInfo o2)->o1.instrument.compareTo(o2.instrument));
             }
-            List<MarketDataListener> eListeners = listeners.get(e);
-            if ( eListeners!=null ) {
-                for(MarketDataListener listener:eListeners) {
-                    listener.onMarketData(md);
-                }
+            for(int i=0;i<readyMDInfos.size();i++) {
+                notifyMarketData(readyMDInfos.get(i), actionTime, timestamp);
             }
         }
         lastTime = actionTime;
     }
 
+    /**
+     * 下一个行情数据的时间
+     */
+    @Override
+    public long nextEventMillis() {
+        if ( lastTime==null || mtService==null ) {
+            return Long.MIN_VALUE;
+        }
+        SimMDInfo mdInfo = pendingMDInfos.peek();
+        if ( mdInfo==null ) {
+            return Long.MAX_VALUE;
+        }
+        return DateUtil.localdatetime2long(mtService.getTimeZone(), mdInfo.nextUpdateTime());
+    }
+
+    private void notifyMarketData(SimMDInfo mdInfo, LocalDateTime actionTime, long timestamp) {
+        MarketData md = mdInfo.seek(lastTime, actionTime, timestamp);
+        if ( mdInfo.nextUpdateTime()!=null ) {
+            pendingMDInfos.add(mdInfo);
+        }
+        if ( md==null ) {
+            return;
+        }
+        for(MarketDataListener listener:genericListeners) {
+            listener.onMarketData(md);
+        }
+        List<MarketDataListener> eListeners = listeners.get(mdInfo.instrument);
+        if ( eListeners!=null ) {
+            for(MarketDataListener listener:eListeners) {
+                listener.onMarketData(md);
+            }
+        }
+    }
+
     private void loadSubScriptions() {
         String configPrefix = MarketDataService.class.getSimpleName()+".";
         String text = StringUtil.trim(ConfigUtil.getString(configPrefix+MarketDataServiceImpl.ITEM_SUBSCRIPTIONS));
@@ -250,53 +326,25 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
 
     private void loadMarketData(LocalDate tradingDay) {
         ExchangeableData data = TraderHomeUtil.getExchangeableData();
+        DataInfo tickInfo = ExchangeableData.TICK_CTP;
+        MarketDataProducerFactory factory = producerFactories.get(tickInfo.provider());
         for(Exchangeable e:subscriptions) {
             SimMDInfo mdInfo  =new SimMDInfo();
+            mdInfo.instrument = e;
             mdInfo.tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
-            DataInfo tickInfo = ExchangeableData.TICK_CTP;
-            String tickCsv = null;
             try{
-                tickCsv = data.load(e, tickInfo, tradingDay);
+                //缓存的TICK被并行的多个回测共享, 直接回调给listener, 不复制
+                mdInfo.ticks = tickCache.getTicks(e, tradingDay, tickInfo, (Exchangeable e0, LocalDate day, DataInfo dataInfo)->{
+                    return BarSeriesLoader.loadTicks(beansContainer, data, factory, e0, day, dataInfo);
+                }, tickPrefetchEndDay);
             }catch(Throwable t) {
                 logger.error("加载 "+e+" 交易日 "+tradingDay+" TICK行情数据失败", t);
                 throw new RuntimeException(t);
             }
-
-            CSVMarshallHelper csvMarshallHelper = createCSVMarshallHelper(tickInfo);
-            MarketDataProducer mdProducer = createMarketDataProducer(tickInfo);
-
-            CSVDataSet csvDataSet = CSVUtil.parse(tickCsv);
-            while(csvDataSet.next()) {
-                MarketData marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
-                mdInfo.ticks.add(marketData);
-            }
-            postprocessTicks(mdInfo.ticks);
             mdInfos.put(e, mdInfo);
         }
     }
 
-    private CSVMarshallHelper createCSVMarshallHelper(DataInfo tickInfo) {
-        String provider = tickInfo.provider();
-        if (!StringUtil.isEmpty(provider)) {
-            MarketDataProducerFactory factory = producerFactories.get(provider);
-            if ( factory!=null ) {
-                return factory.createCSVMarshallHelper();
-            }
-        }
-        return null;
-    }
-
-    private MarketDataProducer createMarketDataProducer(DataInfo tickInfo) {
-        String provider = tickInfo.provider();
-        if (!StringUtil.isEmpty(provider)) {
-            MarketDataProducerFactory factory = producerFactories.get(provider);
-            if ( factory!=null ) {
-                return factory.create(beansContainer, Collections.emptyMap());
-            }
-        }
-        return null;
-    }
-
     public static Map<String, MarketDataProducerFactory> discoverProducerFactories(){
         LogServiceImpl.setLogLevel("trader.service.plugin", "ERROR");
         SimpleBeansContainer beansContainer = new SimpleBeansContainer();
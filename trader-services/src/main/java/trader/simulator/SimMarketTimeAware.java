@@ -10,4 +10,12 @@ public interface SimMarketTimeAware {
 
     public void onTimeChanged(LocalDate tradingDay, LocalDateTime actionTime, long timestamp);
 
+    /**
+     * 下一次需要时间通知的时间(EpochMillis), 用于事件驱动模式下跳过空闲的时间片.
+     * <BR>Long.MIN_VALUE 表示下一个时间片必须通知, Long.MAX_VALUE 表示没有后续事件
+     */
+    public default long nextEventMillis() {
+        return Long.MIN_VALUE;
+    }
+
 }
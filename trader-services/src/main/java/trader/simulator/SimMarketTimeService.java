@@ -29,6 +29,17 @@ public class SimMarketTimeService implements MarketTimeService {
      */
     private int minTimeInterval = 100;
 
+    /**
+     * 事件驱动模式: 直接跳到下一个有行情/定时任务/回报的时间片, 跳过空闲的时间片.
+     * <BR>跳转的目标仍然对齐到时间片, 与逐个时间片模式的结果完全相同
+     */
+    private boolean eventDriven;
+
+    /**
+     * 实际通知的时间片数量
+     */
+    private long timePieceCount;
+
     @Override
     public long currentTimeMillis() {
         Instant instant = time.atZone(timeZone).toInstant();
@@ -45,6 +56,22 @@ public class SimMarketTimeService implements MarketTimeService {
         return tradingDay;
     }
 
+    public ZoneId getTimeZone() {
+        return timeZone;
+    }
+
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    public long getTimePieceCount() {
+        return timePieceCount;
+    }
+
     public void addListener(SimMarketTimeAware timeAware) {
         timeListeners.add(timeAware);
     }
@@ -67,6 +94,9 @@ public class SimMarketTimeService implements MarketTimeService {
      */
     public boolean nextTimePiece()
     {
+        if ( eventDriven && time!=null ) {
+            skipIdleTimePieces();
+        }
         if ( timeRangeIndex>=timeRanges.length) {
             return false;
         }
@@ -83,9 +113,30 @@ public class SimMarketTimeService implements MarketTimeService {
         for(SimMarketTimeAware c:timeListeners)
             c.onTimeChanged(tradingDay, dt, timestamp);
         time = time.plus(minTimeInterval, ChronoUnit.MILLIS);
+        timePieceCount++;
         return true;
     }
 
+    /**
+     * 取所有监听者的下一个事件时间, 跳到不早于该时间的第一个时间片
+     */
+    private void skipIdleTimePieces() {
+        long nextEventMillis = Long.MAX_VALUE;
+        for(int i=0;i<timeListeners.size();i++) {
+            nextEventMillis = Math.min(nextEventMillis, timeListeners.get(i).nextEventMillis());
+        }
+        if ( nextEventMillis==Long.MAX_VALUE ) { //没有后续事件
+            timeRangeIndex = timeRanges.length;
+            return;
+        }
+        long currMillis = currentTimeMillis();
+        if ( nextEventMillis<=currMillis ) {
+            return;
+        }
+        long pieces = (nextEventMillis-currMillis+minTimeInterval-1)/minTimeInterval;
+        time = time.plus(pieces*minTimeInterval, ChronoUnit.MILLIS);
+    }
+
     public String toString() {
         return DateUtil.date2str(time);
     }
@@ -1,5 +1,6 @@
 package trader.simulator;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -23,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Lifecycle;
+import trader.common.util.DateUtil;
 
 public class SimScheduledExecutorService implements ScheduledExecutorService, Lifecycle, SimMarketTimeAware {
     private static final Logger logger = LoggerFactory.getLogger(SimScheduledExecutorService.class);
@@ -41,6 +43,10 @@ public class SimScheduledExecutorService implements ScheduledExecutorService, Li
             this.periodMillis = unit.toMillis(period);
         }
 
+        public long getNextTriggerMillis() {
+            return nextTriggerMillis;
+        }
+
         public void onTimeChanged(LocalDateTime time) {
             long currMillis = time.atZone(zoneId).toInstant().toEpochMilli();
 
@@ -65,9 +71,11 @@ public class SimScheduledExecutorService implements ScheduledExecutorService, Li
 
     private ExecutorService executorService;
 
+    private SimMarketTimeService mtService;
+
     @Override
     public void init(BeansContainer beansContainer) throws Exception {
-        SimMarketTimeService mtService = beansContainer.getBean(SimMarketTimeService.class);
+        mtService = beansContainer.getBean(SimMarketTimeService.class);
         if ( mtService!=null ) {
             mtService.addListener(this);
         }
@@ -178,4 +186,25 @@ public class SimScheduledExecutorService implements ScheduledExecutorService, Li
         }
     }
 
+    /**
+     * 最早的定时任务触发时间, 未初始化的定时任务需要下一个时间片
+     */
+    @Override
+    public long nextEventMillis() {
+        long result = Long.MAX_VALUE;
+        for(int i=0;i<schedulerEntries.size();i++) {
+            long nextTriggerMillis = schedulerEntries.get(i).getNextTriggerMillis();
+            if ( nextTriggerMillis==0 ) {
+                return Long.MIN_VALUE;
+            }
+            result = Math.min(result, nextTriggerMillis);
+        }
+        if ( result!=Long.MAX_VALUE && null!=mtService ) {
+            //转换为市场时间的时区
+            LocalDateTime triggerTime = Instant.ofEpochMilli(result).atZone(zoneId).toLocalDateTime();
+            result = DateUtil.localdatetime2long(mtService.getTimeZone(), triggerTime);
+        }
+        return result;
+    }
+
 }
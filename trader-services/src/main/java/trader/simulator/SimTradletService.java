@@ -53,6 +53,14 @@ public class SimTradletService extends AbsTradletService implements TradletServi
 
     private Map<String, TradletInfo> tradletInfos = new HashMap<>();
     private List<SimTradletGroupEngine> groupEngines = new ArrayList<>();
+    /**
+     * 回测参数, 替换交易组配置中的 ${参数名}
+     */
+    private Map<String, String> groupParams = Collections.emptyMap();
+
+    public void setGroupParams(Map<String, String> groupParams) {
+        this.groupParams = groupParams;
+    }
 
     public void init(BeansContainer beansContainer) throws Exception
     {
@@ -65,10 +73,7 @@ public class SimTradletService extends AbsTradletService implements TradletServi
         if ( pluginService!=null ) {
             tradletPlugins = TradletServiceImpl.filterTradletPlugins(pluginService.getPlugins());
         }
-        if ( staticTradletInfos==null ) {
-            staticTradletInfos = TradletServiceImpl.reloadTradletInfos(TradletServiceImpl.loadStandardTradlets(), tradletPlugins, null, null, null);
-        }
-        tradletInfos = staticTradletInfos;
+        tradletInfos = loadStaticTradletInfos(tradletPlugins);
         //加载TradletGroup
         groupEngines = loadGroups();
         mdService.addListener((MarketData tick)->{
@@ -154,6 +159,17 @@ public class SimTradletService extends AbsTradletService implements TradletServi
         }
     }
 
+    /**
+     * 并行回测时多个线程同时初始化
+     */
+    private static synchronized Map<String, TradletInfo> loadStaticTradletInfos(List<Plugin> tradletPlugins)
+    {
+        if ( staticTradletInfos==null ) {
+            staticTradletInfos = TradletServiceImpl.reloadTradletInfos(TradletServiceImpl.loadStandardTradlets(), tradletPlugins, null, null, null);
+        }
+        return staticTradletInfos;
+    }
+
     private List<SimTradletGroupEngine> loadGroups()  throws AppException
     {
         List<SimTradletGroupEngine> result = new ArrayList<>();
@@ -170,6 +186,9 @@ public class SimTradletService extends AbsTradletService implements TradletServi
     {
         String groupId = ConversionUtil.toString(groupElem.get("id"));
         String groupConfig = ConversionUtil.toString( groupElem.get("text") );
+        for(Map.Entry<String, String> param:groupParams.entrySet()) {
+            groupConfig = groupConfig.replace("${"+param.getKey()+"}", param.getValue());
+        }
         TradletGroupImpl group = new TradletGroupImpl(this, beansContainer, groupId);
         group.init(TradletGroupTemplate.parse(beansContainer, group, groupConfig));
         return group;
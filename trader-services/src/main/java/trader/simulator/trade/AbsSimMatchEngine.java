@@ -0,0 +1,118 @@
+package trader.simulator.trade;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.md.MarketData;
+import trader.service.trade.TradeConstants;
+import trader.simulator.trade.SimOrderBook.Level;
+
+/**
+ * 撮合引擎基类, 按合约维护SimOrderBook.
+ * <BR>每个行情只访问可能成交的价位, 从最优价开始, 遇到第一个不能成交的价位停止
+ */
+public abstract class AbsSimMatchEngine implements SimMatchEngine, TradeConstants {
+
+    protected Map<Exchangeable, SimOrderBook> books = new HashMap<>();
+
+    @Override
+    public void addOrder(SimOrder order, MarketData lastMd) {
+        SimOrderBook book = books.get(order.getInstrument());
+        if ( book==null ) {
+            book = new SimOrderBook(order.getInstrument());
+            if ( lastMd!=null ) {
+                book.lastVolume = lastMd.volume;
+            }
+            books.put(order.getInstrument(), book);
+        }
+        book.add(order, initQueueAhead(order, lastMd));
+    }
+
+    @Override
+    public boolean removeOrder(SimOrder order) {
+        SimOrderBook book = books.get(order.getInstrument());
+        if ( book!=null ) {
+            return book.remove(order);
+        }
+        return false;
+    }
+
+    @Override
+    public void match(MarketData md, FillListener listener) {
+        SimOrderBook book = books.get(md.instrument);
+        if ( book==null ) {
+            return;
+        }
+        long volumeDelta = 0;
+        if ( book.lastVolume>=0 && md.volume>book.lastVolume ) {
+            volumeDelta = md.volume-book.lastVolume;
+        }
+        book.lastVolume = md.volume;
+        if ( !book.isEmpty() ) {
+            match(book, md, volumeDelta, listener);
+        }
+    }
+
+    /**
+     * 新挂单前面的排队量
+     */
+    protected long initQueueAhead(SimOrder order, MarketData lastMd) {
+        return 0;
+    }
+
+    protected abstract void match(SimOrderBook book, MarketData md, long volumeDelta, FillListener listener);
+
+    /**
+     * 报单成交
+     */
+    protected void fill(SimOrder order, long price, int volume, FillListener listener) {
+        order.addTradeVolume(volume);
+        listener.onFill(order, price, volume);
+    }
+
+    /**
+     * 按价格优先顺序访问一侧挂单, 直到visitor返回false; 全部成交的报单和空的价位会被删除
+     */
+    protected void visitLevels(SimOrderBook book, OrderDirection direction, LevelVisitor visitor) {
+        TreeMap<Long, Level> levels = book.getLevels(direction);
+        for(Iterator<Map.Entry<Long, Level>> it=levels.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Long, Level> levelEntry = it.next();
+            Level level = levelEntry.getValue();
+            if ( !visitor.visit(levelEntry.getKey(), level) ) {
+                break;
+            }
+            book.removeCompleted(level.iterator());
+            if ( level.isEmpty() ) {
+                it.remove();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    protected static interface LevelVisitor {
+        /**
+         * @return false 如果本价位没有成交, 后面的价位不再需要访问
+         */
+        public boolean visit(long price, Level level);
+    }
+
+    /**
+     * 有效的行情深度, 价格为0的档位代表没有挂单
+     */
+    protected static int depthOf(long[] prices, MarketData md) {
+        if ( prices==null ) {
+            return 0;
+        }
+        int depth = Math.min(md.depth, prices.length);
+        for(int i=0;i<depth;i++) {
+            if ( prices[i]==0 ) {
+                return i;
+            }
+        }
+        return depth;
+    }
+
+}
@@ -0,0 +1,45 @@
+package trader.simulator.trade;
+
+import trader.service.md.MarketData;
+import trader.simulator.trade.SimOrderBook.Entry;
+
+/**
+ * 缺省撮合: 对手价穿过报单价时按报单价全部成交, 不考虑挂单量和排队位置.
+ * <BR>市价单按对手价加减一个priceTick全部成交
+ */
+public class LastPriceMatchEngine extends AbsSimMatchEngine {
+
+    @Override
+    protected void match(SimOrderBook book, MarketData md, long volumeDelta, FillListener listener) {
+        long askPrice = md.lastAskPrice(), bidPrice = md.lastBidPrice();
+        for(Entry entry:book.marketOrders) {
+            SimOrder order = entry.order;
+            if ( order.getDirection()==OrderDirection.Buy ) {
+                fill(order, askPrice+md.instrument.getPriceTick(), order.getVolumeLeft(), listener);
+            } else {
+                fill(order, bidPrice-md.instrument.getPriceTick(), order.getVolumeLeft(), listener);
+            }
+        }
+        book.removeCompleted(book.marketOrders.iterator());
+
+        visitLevels(book, OrderDirection.Buy, (price, level)->{
+            if ( price<askPrice ) {
+                return false;
+            }
+            for(Entry entry:level) {
+                fill(entry.order, price, entry.order.getVolumeLeft(), listener);
+            }
+            return true;
+        });
+        visitLevels(book, OrderDirection.Sell, (price, level)->{
+            if ( price>bidPrice ) {
+                return false;
+            }
+            for(Entry entry:level) {
+                fill(entry.order, price, entry.order.getVolumeLeft(), listener);
+            }
+            return true;
+        });
+    }
+
+}
@@ -0,0 +1,218 @@
+package trader.simulator.trade;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+import trader.service.md.MarketData;
+import trader.simulator.trade.SimOrderBook.Entry;
+import trader.simulator.trade.SimOrderBook.Level;
+
+/**
+ * 考虑行情挂单量和排队位置的撮合, 支持部分成交.
+ * <UL>
+ * <LI>对手价穿过报单价: 按对手盘各档价格和挂单量成交, 超出可见深度的部分继续挂单
+ * <LI>成交价穿过报单价: 本价位报单排在市场成交之前, 按成交量增量成交
+ * <LI>成交价等于报单价: 成交量增量先消耗排在前面的市场挂单, 剩余部分按先后成交
+ * </UL>
+ * 新报单的排队量为报单时同价位的挂单量, 价位不在可见深度内时排在最后, 直到价位进入可见深度.
+ * <BR>挂单量减少时视为前面的挂单撤单, 排队量不超过当前价位的挂单量.
+ * <BR>排队量的变化记录在价位上(SimOrderBook.Level), 每个行情只更新可见深度内的价位, 不逐个更新报单.
+ */
+public class OrderBookMatchEngine extends AbsSimMatchEngine {
+
+    /**
+     * 对手盘可成交的档位和剩余量
+     */
+    private static class OppositeDepth {
+        long[] prices;
+        int[] volumes;
+        int depth;
+        int index;
+        long volumeLeft;
+
+        OppositeDepth(long[] prices, int[] volumes, int depth) {
+            this.prices = prices;
+            this.volumes = volumes;
+            this.depth = depth;
+            if ( depth>0 ) {
+                volumeLeft = volumes[0];
+            }
+        }
+
+        boolean crosses(OrderDirection direction, long price) {
+            if ( index>=depth ) {
+                return false;
+            }
+            if ( direction==OrderDirection.Buy ) {
+                return price>=prices[index];
+            } else {
+                return price<=prices[index];
+            }
+        }
+
+        void consume(long volume) {
+            volumeLeft -= volume;
+            while( volumeLeft<=0 && index<depth ) {
+                index++;
+                volumeLeft = index<depth?volumes[index]:0;
+            }
+        }
+    }
+
+    @Override
+    protected long initQueueAhead(SimOrder order, MarketData lastMd) {
+        if ( lastMd==null || SimOrderBook.isMarketOrder(order) ) {
+            return 0;
+        }
+        long[] prices = lastMd.bidPrices;
+        int[] volumes = lastMd.bidVolumes;
+        if ( order.getDirection()==OrderDirection.Sell ) {
+            prices = lastMd.askPrices;
+            volumes = lastMd.askVolumes;
+        }
+        int depth = depthOf(prices, lastMd);
+        if ( depth==0 ) {
+            return 0;
+        }
+        long price = order.getLimitPrice();
+        for(int i=0;i<depth;i++) {
+            if ( prices[i]==price ) {
+                return volumes[i];
+            }
+        }
+        if ( isBetter(order.getDirection(), price, prices[depth-1]) ) {
+            //比最优价更优, 或者在可见深度中间的空价位
+            return 0;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    protected void match(SimOrderBook book, MarketData md, long volumeDelta, FillListener listener) {
+        matchSide(book, md, OrderDirection.Buy, volumeDelta, listener);
+        matchSide(book, md, OrderDirection.Sell, volumeDelta, listener);
+        updateQueueAhead(book, OrderDirection.Buy, md.bidPrices, md.bidVolumes, depthOf(md.bidPrices, md));
+        updateQueueAhead(book, OrderDirection.Sell, md.askPrices, md.askVolumes, depthOf(md.askPrices, md));
+    }
+
+    private void matchSide(SimOrderBook book, MarketData md, OrderDirection direction, long volumeDelta, FillListener listener) {
+        OppositeDepth opposite = direction==OrderDirection.Buy
+                ?new OppositeDepth(md.askPrices, md.askVolumes, depthOf(md.askPrices, md))
+                :new OppositeDepth(md.bidPrices, md.bidVolumes, depthOf(md.bidPrices, md));
+        //市价单优先
+        for(Entry entry:book.marketOrders) {
+            if ( entry.order.getDirection()==direction ) {
+                while( entry.order.getVolumeLeft()>0 && opposite.index<opposite.depth ) {
+                    fillOpposite(entry, opposite, listener);
+                }
+            }
+        }
+        book.removeCompleted(book.marketOrders.iterator());
+
+        long[] tradeBudget = new long[] {volumeDelta};
+        visitLevels(book, direction, (price, level)->{
+            if ( opposite.crosses(direction, price) ) {
+                for(Entry entry:level) {
+                    while( entry.order.getVolumeLeft()>0 && opposite.crosses(direction, price) ) {
+                        fillOpposite(entry, opposite, listener);
+                    }
+                    entry.queueAhead = 0;
+                }
+                return true;
+            }
+            if ( tradeBudget[0]<=0 || md.lastPrice==0 ) {
+                return false;
+            }
+            if ( md.lastPrice==price ) {
+                tradeBudget[0] = matchQueue(level, price, tradeBudget[0], listener);
+                return true;
+            }
+            if ( isBetter(direction, price, md.lastPrice) ) {
+                //成交价穿过报单价, 本价位的报单都应该先于市场成交
+                for(Entry entry:level) {
+                    entry.queueAhead = 0;
+                    int volume = (int)Math.min(entry.order.getVolumeLeft(), tradeBudget[0]);
+                    if ( volume>0 ) {
+                        tradeBudget[0] -= volume;
+                        fill(entry.order, price, volume, listener);
+                    }
+                }
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 成交价等于报单价, 按排队顺序成交
+     *
+     * @return 剩余成交量
+     */
+    private long matchQueue(Level level, long price, long tradeBudget, FillListener listener) {
+        //本次消耗的排在前面的市场挂单量
+        long consumed = 0;
+        for(Entry entry:level) {
+            if ( tradeBudget<=0 ) {
+                break;
+            }
+            long need = level.getQueueAhead(entry)-consumed;
+            if ( need>0 ) {
+                long volume = Math.min(tradeBudget, need);
+                tradeBudget -= volume;
+                consumed += volume;
+                if ( volume<need ) {
+                    break;
+                }
+            }
+            int volume = (int)Math.min(entry.order.getVolumeLeft(), tradeBudget);
+            if ( volume>0 ) {
+                tradeBudget -= volume;
+                fill(entry.order, price, volume, listener);
+            }
+        }
+        level.consumeQueueAhead(consumed);
+        return tradeBudget;
+    }
+
+    private void fillOpposite(Entry entry, OppositeDepth opposite, FillListener listener) {
+        int volume = (int)Math.min(entry.order.getVolumeLeft(), opposite.volumeLeft);
+        long price = opposite.prices[opposite.index];
+        opposite.consume(volume);
+        if ( volume>0 ) {
+            fill(entry.order, price, volume, listener);
+        }
+    }
+
+    /**
+     * 可见深度内的价位, 排队量不超过当前挂单量; 可见深度中间消失的价位排队量为0
+     */
+    private void updateQueueAhead(SimOrderBook book, OrderDirection direction, long[] prices, int[] volumes, int depth) {
+        if ( depth==0 ) {
+            return;
+        }
+        NavigableMap<Long, Level> levels = book.getLevels(direction).subMap(prices[0], true, prices[depth-1], true);
+        for(Map.Entry<Long, Level> levelEntry:levels.entrySet()) {
+            long price = levelEntry.getKey();
+            long volume = 0;
+            for(int i=0;i<depth;i++) {
+                if ( prices[i]==price ) {
+                    volume = volumes[i];
+                    break;
+                }
+            }
+            levelEntry.getValue().capQueueAhead(volume);
+        }
+    }
+
+    /**
+     * price是否比price2更优: 买价更高, 卖价更低
+     */
+    private static boolean isBetter(OrderDirection direction, long price, long price2) {
+        if ( direction==OrderDirection.Buy ) {
+            return price>price2;
+        } else {
+            return price<price2;
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package trader.simulator.trade;
+
+import trader.service.md.MarketData;
+
+/**
+ * 模拟撮合引擎, 维护每个合约的挂单, 根据行情撮合成交
+ */
+public interface SimMatchEngine {
+
+    /**
+     * 成交回调, 回调前报单的成交量已经更新
+     */
+    @FunctionalInterface
+    public static interface FillListener {
+        public void onFill(SimOrder order, long price, int volume);
+    }
+
+    /**
+     * 新的挂单
+     *
+     * @param lastMd 报单时的最新行情, 用于估计排队位置
+     */
+    public void addOrder(SimOrder order, MarketData lastMd);
+
+    /**
+     * 撤单或改单时从挂单中删除
+     */
+    public boolean removeOrder(SimOrder order);
+
+    /**
+     * 根据最新行情撮合该合约的挂单
+     */
+    public void match(MarketData md, FillListener listener);
+
+}
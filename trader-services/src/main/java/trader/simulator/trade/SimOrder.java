@@ -15,7 +15,7 @@ import trader.service.trade.TradeConstants;
 
 /**
  * 模拟报单. 报单状态改变后, 需要下一个时间片发送回报
- * <BR>目前模拟报单不支持部分成交, 不支持市价
+ * <BR>部分成交时状态保持Placed, 全部成交后为Completed
  */
 public class SimOrder implements TradeConstants, JsonEnabled {
 
@@ -44,6 +44,7 @@ public class SimOrder implements TradeConstants, JsonEnabled {
     private SimOrderState state;
     private LocalDateTime[] stateTimes;
     private int volume;
+    private int tradeVolume;
     private long limitPrice;
     private OrderPriceType priceType;
     private long frozenMargin;
@@ -66,6 +67,19 @@ public class SimOrder implements TradeConstants, JsonEnabled {
         assert(instrument!=null);
     }
 
+    public SimOrder(String ref, Exchangeable instrument, OrderDirection direction, OrderOffsetFlag offsetFlag, OrderPriceType priceType, long limitPrice, int volume, LocalDateTime time) {
+        this.ref = ref;
+        this.instrument = instrument;
+        this.direction = direction;
+        this.offsetFlag = offsetFlag;
+        this.priceType = priceType;
+        this.limitPrice = limitPrice;
+        this.volume = volume;
+        stateTimes = new LocalDateTime[SimOrderState.values().length];
+        setState(SimOrderState.Placed, time);
+        sysId = nextSysId();
+    }
+
     public String getRef() {
         return ref;
     }
@@ -102,6 +116,25 @@ public class SimOrder implements TradeConstants, JsonEnabled {
         return volume;
     }
 
+    public int getTradeVolume() {
+        return tradeVolume;
+    }
+
+    /**
+     * 未成交数量
+     */
+    public int getVolumeLeft() {
+        return volume-tradeVolume;
+    }
+
+    /**
+     * 由撮合引擎调用, 增加成交量
+     */
+    void addTradeVolume(int volume) {
+        assert(tradeVolume+volume<=this.volume);
+        tradeVolume += volume;
+    }
+
     public long getFrozenMargin() {
         return frozenMargin;
     }
@@ -150,6 +183,7 @@ public class SimOrder implements TradeConstants, JsonEnabled {
         json.addProperty("offsetFlag", offsetFlag.name());
         json.addProperty("state", state.name());
         json.addProperty("volume", volume);
+        json.addProperty("tradeVolume", tradeVolume);
 
         json.addProperty("limitPrice", limitPrice);
         json.addProperty("priceType", priceType.name());
@@ -0,0 +1,184 @@
+package trader.simulator.trade;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.trade.TradeConstants;
+
+/**
+ * 单个合约的模拟挂单, 按价格索引.
+ * <BR>买单价格从高到低, 卖单价格从低到高, 同价格按报单先后排队; 市价单单独保存
+ */
+class SimOrderBook implements TradeConstants {
+
+    static class Entry {
+        final SimOrder order;
+        /**
+         * 排在前面的市场挂单量, 不包含模拟报单. 价位上尚未计算的变化由 Level.getQueueAhead() 计算
+         */
+        long queueAhead;
+
+        Entry(SimOrder order, long queueAhead) {
+            this.order = order;
+            this.queueAhead = queueAhead;
+        }
+    }
+
+    /**
+     * 同价位的报单队列.
+     * <BR>挂单量截断和成交量消耗对价位上所有报单的排队量相同, 先记录在价位上, 读取时再计算, 每个行情的开销与报单数量无关:
+     * <BR>queueAhead = max(0, min(entry.queueAhead, queueCap)-queueConsumed)
+     */
+    static class Level implements Iterable<Entry> {
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private long queueCap = Long.MAX_VALUE;
+        private long queueConsumed;
+
+        long getQueueAhead(Entry entry) {
+            return Math.max(0, Math.min(entry.queueAhead, queueCap)-queueConsumed);
+        }
+
+        /**
+         * 排队量不超过价位的挂单量
+         */
+        void capQueueAhead(long volume) {
+            if ( volume+queueConsumed<queueCap ) {
+                queueCap = volume+queueConsumed;
+            }
+        }
+
+        /**
+         * 排在前面的市场挂单成交了volume
+         */
+        void consumeQueueAhead(long volume) {
+            queueConsumed += volume;
+        }
+
+        boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return entries.iterator();
+        }
+
+        /**
+         * 新报单的排队量是加入时的值, 不受之前记录的变化影响, 所以先把变化计算到已有报单
+         */
+        private Entry add(SimOrder order, long queueAhead) {
+            if ( queueCap!=Long.MAX_VALUE || queueConsumed!=0 ) {
+                for(Entry entry:entries) {
+                    entry.queueAhead = getQueueAhead(entry);
+                }
+                queueCap = Long.MAX_VALUE;
+                queueConsumed = 0;
+            }
+            Entry last = entries.peekLast();
+            if ( last!=null ) {
+                queueAhead = Math.max(queueAhead, last.queueAhead);
+            }
+            Entry entry = new Entry(order, queueAhead);
+            entries.add(entry);
+            return entry;
+        }
+    }
+
+    final Exchangeable instrument;
+    final TreeMap<Long, Level> bids = new TreeMap<>(Collections.reverseOrder());
+    final TreeMap<Long, Level> asks = new TreeMap<>();
+    final List<Entry> marketOrders = new ArrayList<>();
+    /**
+     * 上一个行情的累计成交量, -1代表未知
+     */
+    long lastVolume = -1;
+    private int size;
+
+    SimOrderBook(Exchangeable instrument) {
+        this.instrument = instrument;
+    }
+
+    boolean isEmpty() {
+        return size==0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    TreeMap<Long, Level> getLevels(OrderDirection direction){
+        return direction==OrderDirection.Buy?bids:asks;
+    }
+
+    static boolean isMarketOrder(SimOrder order) {
+        return order.getPriceType()!=OrderPriceType.LimitPrice;
+    }
+
+    /**
+     * 同价位后来的报单排在之前报单的后面
+     */
+    Entry add(SimOrder order, long queueAhead) {
+        Entry entry = null;
+        if ( isMarketOrder(order) ) {
+            entry = new Entry(order, 0);
+            marketOrders.add(entry);
+        } else {
+            Level level = getLevels(order.getDirection()).computeIfAbsent(order.getLimitPrice(), (k)->new Level());
+            entry = level.add(order, queueAhead);
+        }
+        size++;
+        return entry;
+    }
+
+    boolean remove(SimOrder order) {
+        boolean result = false;
+        if ( isMarketOrder(order) ) {
+            result = removeEntry(marketOrders.iterator(), order);
+        } else {
+            TreeMap<Long, Level> levels = getLevels(order.getDirection());
+            Level level = levels.get(order.getLimitPrice());
+            if ( level!=null ) {
+                result = removeEntry(level.iterator(), order);
+                if ( level.isEmpty() ) {
+                    levels.remove(order.getLimitPrice());
+                }
+            }
+        }
+        if ( result ) {
+            size--;
+        }
+        return result;
+    }
+
+    /**
+     * 删除已经全部成交的报单
+     */
+    void removeCompleted(Iterator<Entry> it) {
+        while(it.hasNext()) {
+            if ( it.next().order.getVolumeLeft()<=0 ) {
+                it.remove();
+                size--;
+            }
+        }
+    }
+
+    private static boolean removeEntry(Iterator<Entry> it, SimOrder order) {
+        while(it.hasNext()) {
+            if ( it.next().order==order ) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
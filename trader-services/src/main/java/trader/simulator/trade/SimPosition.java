@@ -104,6 +104,7 @@ public class SimPosition implements JsonEnabled, TradeConstants {
         for(Iterator<SimOrder> it=orders.iterator(); it.hasNext();) {
             SimOrder o=it.next();
             if ( o.getRef().equals(ref)) {
+                it.remove();
                 return o;
             }
         }
@@ -133,7 +134,9 @@ public class SimPosition implements JsonEnabled, TradeConstants {
         }
         long txnProfit = 0;
         SimOrder order = txn.getOrder();
-        orders.remove(order);
+        if ( order.getVolumeLeft()==0 ) {
+            orders.remove(order);
+        }
 
         //手续费
         long orderValues[] = session.getFeeEvaluator().compute(instrument, txn.getVolume(), txn.getPrice(), order.getDirection(), order.getOffsetFlag());
@@ -224,7 +227,7 @@ public class SimPosition implements JsonEnabled, TradeConstants {
         }
         for(SimOrder o:orders) {
             if ( o.getOffsetFlag()==OrderOffsetFlag.OPEN ) {
-                long[] orderValues = session.getFeeEvaluator().compute(instrument, o.getVolume(), o.getLimitPrice(), o.getDirection(), o.getOffsetFlag());
+                long[] orderValues = session.getFeeEvaluator().compute(instrument, o.getVolumeLeft(), o.getLimitPrice(), o.getDirection(), o.getOffsetFlag());
                 frozenCommission += orderValues[1];
                 //开仓
                 if ( o.getDirection()==OrderDirection.Buy ) {
@@ -237,10 +240,10 @@ public class SimPosition implements JsonEnabled, TradeConstants {
             } else {
                 if ( o.getDirection()==OrderDirection.Sell ) {
                     //平多
-                    longFrozenPos += o.getVolume();
+                    longFrozenPos += o.getVolumeLeft();
                 }else {
                     //平空
-                    shortFrozenPos += o.getVolume();
+                    shortFrozenPos += o.getVolumeLeft();
                 }
             }
         }
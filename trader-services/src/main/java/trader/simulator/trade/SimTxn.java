@@ -17,10 +17,14 @@ public class SimTxn {
     private LocalDateTime time;
 
     public SimTxn(SimOrder order, long price, LocalDateTime time) {
+        this(order, order.getVolume(), price, time);
+    }
+
+    public SimTxn(SimOrder order, int volume, long price, LocalDateTime time) {
         this.order = order;
         id = nextTxnId();
         this.direction = order.getDirection();
-        this.volume = order.getVolume();
+        this.volume = volume;
         this.price = price;
         this.time = time;
     }
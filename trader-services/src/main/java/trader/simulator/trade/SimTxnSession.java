@@ -53,10 +53,16 @@ import trader.simulator.trade.SimResponse.ResponseType;
 
 /**
  * 模拟行情连接
+ * <BR>连接参数matchEngine=orderBook时使用OrderBookMatchEngine, 考虑排队位置和部分成交; 缺省使用LastPriceMatchEngine
  */
 public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeConstants, SimMarketTimeAware, MarketDataListener {
     private final static Logger logger = LoggerFactory.getLogger(SimTxnSession.class);
 
+    /**
+     * 计算账户资金需要的持仓资金项
+     */
+    private static final PosMoney[] ACCOUNT_POS_MONEY = {PosMoney.UseMargin, PosMoney.FrozenMargin, PosMoney.FrozenCommission, PosMoney.PositionProfit, PosMoney.Commission, PosMoney.CloseProfit};
+
     private BORepository repository;
     private MarketDataService mdService;
     private long[] money = new long[AccMoney.values().length];
@@ -66,6 +72,11 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
     private List<SimTxn> allTxns = new ArrayList<>();
     private List<SimResponse> pendingResponses = new ArrayList<>();
     private TxnFeeEvaluator feeEvaluator;
+    private SimMatchEngine matchEngine = new LastPriceMatchEngine();
+    /**
+     * 所有持仓的资金合计, 持仓变化时增量更新
+     */
+    private long[] posMoney = new long[PosMoney.values().length];
 
     public SimTxnSession(BeansContainer beansContainer, Account account, TxnSessionListener listener) {
         super(beansContainer, account, listener);
@@ -147,6 +158,9 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
                 commissionsFile = (new File(traderConfigFile.getParent(), commissionsFile)).getAbsolutePath();
             }
             feeEvaluator = FutureFeeEvaluator.fromJson((JsonObject)(new JsonParser()).parse(FileUtil.read(new File(commissionsFile))));
+            if ( "orderBook".equalsIgnoreCase(connProps.getProperty("matchEngine")) ) {
+                matchEngine = new OrderBookMatchEngine();
+            }
             //从KVStore加载数据
             if ( !loadData() ) {
                 initData(connProps);
@@ -199,11 +213,15 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         long currTime= DateUtil.localdatetime2long(order0.getInstrument().exchange().getZoneId(), mtService.getMarketTime());
         if ( order.getState()==SimOrderState.Placed ) {
             SimPosition pos = getPosition(instrument, true);
+            MarketData lastMd = mdService.getLastData(instrument);
             pos.addOrder(order);
+            matchEngine.addOrder(order, lastMd);
             //更新账户数据
             //listener.changeOrderState(order0, new OrderStateTuple(OrderState.Submitting, OrderSubmitState.InsertSubmitting, currTime), null);
             listener.onOrderStateChanged(order0, new OrderStateTuple(OrderState.Submitted, OrderSubmitState.InsertSubmitted, currTime), null);
-            pos.updateOnMarketData(mdService.getLastData(instrument).lastPrice);
+            addPosMoney(pos, -1);
+            pos.updateOnMarketData(lastMd.lastPrice);
+            addPosMoney(pos, 1);
             updateAccount();
             respondLater(instrument, ResponseType.RtnOrder, order, new OrderStateTuple(OrderState.Accepted, OrderSubmitState.Accepted, currTime+2, "未成交"));
         }else {
@@ -222,11 +240,18 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         if ( order!=null ) {
             long currTime= DateUtil.localdatetime2long(order0.getInstrument().exchange().getZoneId(), mtService.getMarketTime());
             listener.onOrderStateChanged(order0, new OrderStateTuple(OrderState.Accepted, OrderSubmitState.CancelSubmitted, currTime), null);
+            matchEngine.removeOrder(order);
             cancelOrder(order);
             //更新账户数据
+            addPosMoney(pos, -1);
             pos.updateOnMarketData(mdService.getLastData(instrument).lastPrice);
+            addPosMoney(pos, 1);
             updateAccount();
-            respondLater(instrument, ResponseType.RtnOrder, order, new OrderStateTuple(OrderState.Canceled, OrderSubmitState.Accepted, currTime+2, "已撤单"));
+            if ( order.getTradeVolume()>0 ) {
+                respondLater(instrument, ResponseType.RtnOrder, order, new OrderStateTuple(OrderState.PartiallyDeleted, OrderSubmitState.Accepted, currTime+2, "部分成交已撤单"));
+            } else {
+                respondLater(instrument, ResponseType.RtnOrder, order, new OrderStateTuple(OrderState.Canceled, OrderSubmitState.Accepted, currTime+2, "已撤单"));
+            }
         }else {
             //返回无对应报单错误
             respondLater(instrument, ResponseType.RspOrderAction, order0);
@@ -243,7 +268,10 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         }
         if ( order!=null ) {
             long currTime= DateUtil.localdatetime2long(order0.getInstrument().exchange().getZoneId(), mtService.getMarketTime());
+            //改价后重新排队
+            matchEngine.removeOrder(order);
             order.modify(builder);
+            matchEngine.addOrder(order, mdService.getLastData(instrument));
             respondLater(instrument, ResponseType.RtnOrder, order, new OrderStateTuple(OrderState.Accepted, OrderSubmitState.ModifySubmitted, currTime));
         }else {
             //返回无对应报单错误
@@ -265,19 +293,22 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         }
         SimPosition pos = positions.get(md.instrument);
         if ( pos!=null ) {
-            List<SimOrder> orders = new ArrayList<>(pos.getOrders());
-            for(SimOrder order:orders) {
-                SimTxn txn = completeOrder(order, md);
-                if ( txn!=null ) {
-                    pos.updateOnTxn(txn, md.updateTime);
-                    long currTime= md.updateTimestamp;
+            addPosMoney(pos, -1);
+            matchEngine.match(md, (order, price, volume)->{
+                SimTxn txn = completeOrder(order, price, volume);
+                pos.updateOnTxn(txn, md.updateTime);
+                long currTime= md.updateTimestamp;
+                if ( order.getState()==SimOrderState.Completed ) {
                     respondLater(order.getInstrument(), ResponseType.RtnOrder, order, new OrderStateTuple(OrderState.Complete, OrderSubmitState.Accepted, currTime, "全部成交"));
-                    respondLater(order.getInstrument(), ResponseType.RtnTrade, txn);
+                } else {
+                    respondLater(order.getInstrument(), ResponseType.RtnOrder, order, new OrderStateTuple(OrderState.ParticallyComplete, OrderSubmitState.Accepted, currTime, "部分成交"));
                 }
-            }
+                respondLater(order.getInstrument(), ResponseType.RtnTrade, txn);
+            });
             pos.updateOnMarketData(md.lastPrice);
+            addPosMoney(pos, 1);
+            updateAccount();
         }
-        updateAccount();
         sendResponses();
     }
 
@@ -286,6 +317,17 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         sendResponses();
     }
 
+    /**
+     * 有待发送的回报时, 需要下一个时间片
+     */
+    @Override
+    public long nextEventMillis() {
+        if ( pendingResponses.isEmpty() ) {
+            return Long.MAX_VALUE;
+        }
+        return Long.MIN_VALUE;
+    }
+
     /**
      * 加载数据
      */
@@ -306,6 +348,7 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         for(int i=0;i<jsonPos.size();i++) {
             SimPosition pos = SimPosition.loadFromJson(this, jsonPos.get(i).getAsJsonObject());
             positions.put(pos.getInstrument(), pos);
+            addPosMoney(pos, 1);
             margin += pos.getMoney(PosMoney.UseMargin);
             posprofit += pos.getMoney(PosMoney.PositionProfit);
         }
@@ -489,18 +532,24 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
     }
 
     /**
-     * 更新账户的可用资金等
+     * 持仓资金变化前后各调用一次, 先减去旧值(sign=-1)再加上新值(sign=1)
      */
-    private void updateAccount() {
-        long totalUseMargins = 0, totalFrozenMargins=0, totalFrozenCommission=0, totalPosProfit=0, totalCommission=0, totalCloseProfit=0;
-        for(SimPosition p:this.positions.values()) {
-            totalUseMargins += p.getMoney(PosMoney.UseMargin);
-            totalFrozenMargins += p.getMoney(PosMoney.FrozenMargin);
-            totalFrozenCommission += p.getMoney(PosMoney.FrozenCommission);
-            totalPosProfit += p.getMoney(PosMoney.PositionProfit);
-            totalCommission += p.getMoney(PosMoney.Commission);
-            totalCloseProfit += p.getMoney(PosMoney.CloseProfit);
+    private void addPosMoney(SimPosition pos, int sign) {
+        for(PosMoney mny:ACCOUNT_POS_MONEY) {
+            posMoney[mny.ordinal()] += sign*pos.getMoney(mny);
         }
+    }
+
+    /**
+     * 根据持仓资金合计更新账户的可用资金等
+     */
+    private void updateAccount() {
+        long totalUseMargins = posMoney[PosMoney.UseMargin.ordinal()];
+        long totalFrozenMargins = posMoney[PosMoney.FrozenMargin.ordinal()];
+        long totalFrozenCommission = posMoney[PosMoney.FrozenCommission.ordinal()];
+        long totalPosProfit = posMoney[PosMoney.PositionProfit.ordinal()];
+        long totalCommission = posMoney[PosMoney.Commission.ordinal()];
+        long totalCloseProfit = posMoney[PosMoney.CloseProfit.ordinal()];
 
         setMoney(AccMoney.Commission, totalCommission);
         setMoney(AccMoney.CloseProfit, totalCloseProfit);
@@ -521,38 +570,15 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
     }
 
     /**
-     * 根据最新行情成交报单
+     * 撮合引擎成交后生成成交记录
      */
-    private SimTxn completeOrder(SimOrder order, MarketData md) {
-        SimTxn result = null;
-        long txnPrice = 0;
-        if ( order.getState()==SimOrderState.Placed ) {
-            long orderPrice = order.getLimitPrice();
-            switch(order.getPriceType()) {
-            case LimitPrice:
-                if ( order.getDirection()==OrderDirection.Buy && orderPrice>=md.lastAskPrice() ) {
-                    txnPrice = orderPrice;
-                }
-                if (order.getDirection()==OrderDirection.Sell && orderPrice<=md.lastBidPrice() ){
-                    txnPrice = orderPrice;
-                }
-                break;
-            case BestPrice:
-            case AnyPrice:
-                if ( order.getDirection()==OrderDirection.Buy ) {
-                    txnPrice = md.lastAskPrice()+md.instrument.getPriceTick();
-                } else if (order.getDirection()==OrderDirection.Sell ) {
-                    txnPrice = md.lastBidPrice()-md.instrument.getPriceTick();
-                }
-                break;
-            }
-        }
-        if ( txnPrice!=0 ) {
-            result = new SimTxn(order, txnPrice, mtService.getMarketTime());
+    private SimTxn completeOrder(SimOrder order, long price, int volume) {
+        SimTxn result = new SimTxn(order, volume, price, mtService.getMarketTime());
+        if ( order.getVolumeLeft()==0 ) {
             order.setState(SimOrderState.Completed, mtService.getMarketTime());
-            allTxns.add(result);
-            assert(result.getVolume()>0);
         }
+        allTxns.add(result);
+        assert(result.getVolume()>0);
         return result;
     }
 
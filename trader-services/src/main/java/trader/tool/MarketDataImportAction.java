@@ -34,6 +34,7 @@ import com.google.gson.JsonParser;
 
 import net.jctp.CThostFtdcDepthMarketDataField;
 import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.CtpTickColumnStore;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
@@ -193,6 +194,10 @@ public class MarketDataImportAction implements CmdAction {
     private String dataDir;
     private boolean moveToTrash;
     private boolean merge=true;
+    /**
+     * 导入时同时保存二进制列存格式
+     */
+    private boolean binary;
     private ThreadPoolExecutor executorService;
 
     public MarketDataImportAction() {
@@ -206,8 +211,8 @@ public class MarketDataImportAction implements CmdAction {
 
     @Override
     public void usage(PrintWriter writer) {
-        writer.println("marketData import [--producer=ctp|jinshuyuan|sqlite|mdshare] [--datadir=DATA_DIR] [--instruments=e1,e2,e3] [--move=trash|none] [--merge=true]");
-        writer.println("\t导入行情数据");
+        writer.println("marketData import [--producer=ctp|jinshuyuan|sqlite|mdshare|binary] [--datadir=DATA_DIR] [--instruments=e1,e2,e3] [--move=trash|none] [--merge=true] [--binary=false]");
+        writer.println("\t导入行情数据. producer=binary 将已有的CTP TICK CSV数据转换为二进制列存格式");
     }
 
     @Override
@@ -225,6 +230,8 @@ public class MarketDataImportAction implements CmdAction {
             importMdshare();
         } else if ( StringUtil.equals(producer, "ctp")) {
             importFromCtpDir();
+        } else if ( StringUtil.equals(producer, "binary")) {
+            convertToBinary();
         } else {
             throw new Exception("未知的producer: "+producer);
         }
@@ -778,6 +785,44 @@ public class MarketDataImportAction implements CmdAction {
         }
     }
 
+    /**
+     * 将已有的CTP TICK CSV数据转换为二进制列存格式, 已经转换过的交易日跳过.
+     * <BR>无法无损转换的交易日保留CSV格式, 加载时会自动回退
+     */
+    private void convertToBinary() throws Exception
+    {
+        writer.println("转换TICK数据为二进制格式: "+data.getDataDir().getAbsolutePath());writer.flush();
+        for(Exchange exchange:data.getExchanges()) {
+            if ( !exchange.isFuture() ) {
+                continue;
+            }
+            for(Exchangeable instrument:data.listHistoryExchangeableIds(exchange)) {
+                if ( !acceptInstrument(instrument) ) {
+                    continue;
+                }
+                List<LocalDate> tradingDays = data.list(instrument, ExchangeableData.TICK_CTP);
+                tradingDays.removeAll(data.list(instrument, ExchangeableData.TICK_CTP_BIN));
+                if ( tradingDays.isEmpty() ) {
+                    continue;
+                }
+                writer.print(instrument+" : "); writer.flush();
+                List<java.util.concurrent.Future<Boolean>> convertFutures = new ArrayList<>();
+                for(LocalDate tradingDay:tradingDays) {
+                    convertFutures.add(executorService.submit(()->{
+                        return CtpTickColumnStore.convert(data, instrument, tradingDay);
+                    }));
+                }
+                int converted = 0;
+                for(java.util.concurrent.Future<Boolean> f:convertFutures) {
+                    if ( f.get() ) {
+                        converted++;
+                    }
+                }
+                writer.println(converted+"/"+tradingDays.size()); writer.flush();
+            }
+        }
+    }
+
     private void moveToTrash(File trashDir, File dailyDir) throws IOException
     {
         trashDir.mkdirs();
@@ -954,6 +999,10 @@ public class MarketDataImportAction implements CmdAction {
         String mergedData = csvWriter.toString();
         if ( mergedTicks.size()>0 && !StringUtil.equals(mergedData, existsData) ) {
             data.save(mdInfo.exchangeable, dataInfo, date, mergedData);
+            //已有的二进制数据需要同步更新
+            if ( binary || data.exists(mdInfo.exchangeable, ExchangeableData.TICK_CTP_BIN, date) ) {
+                CtpTickColumnStore.convert(data, mdInfo.exchangeable, date);
+            }
             //写入MIN1数据
             saveBars(data, mdInfo.exchangeable, ExchangeableData.MIN1, date, mergedTicks);
             //写入每天日线数据
@@ -1135,6 +1184,9 @@ public class MarketDataImportAction implements CmdAction {
             case "merge":
                 merge = ConversionUtil.toBoolean(kv.v);
                 break;
+            case "binary":
+                binary = ConversionUtil.toBoolean(kv.v);
+                break;
             case "instrument":
                 instrumentFilters.add(kv.v);
                 break;
@@ -8,10 +8,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +34,7 @@ import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableTradingTimes;
 import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.ConversionUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.FileUtil;
 import trader.common.util.JsonUtil;
@@ -36,6 +44,7 @@ import trader.common.util.StringUtil.KVPair;
 import trader.common.util.TraderHomeUtil;
 import trader.service.concurrent.OrderedExecutor;
 import trader.service.md.MarketDataService;
+import trader.service.md.MarketDataTickCache;
 import trader.service.plugin.PluginService;
 import trader.service.plugin.PluginServiceImpl;
 import trader.service.repository.BORepository;
@@ -67,6 +76,8 @@ import trader.simulator.trade.SimTradeService;
 public class TraderEvalAction implements CmdAction {
     private static final String TIME_MODE_TRADING = "trading";
     private static final String TIME_MODE_NATURAL = "natural";
+    private static final String CLOCK_MODE_EVENT = "event";
+    private static final String CLOCK_MODE_SLICE = "slice";
 
     protected PrintWriter writer;
     protected LocalDate beginDate;
@@ -75,7 +86,42 @@ public class TraderEvalAction implements CmdAction {
      * 时间模式: 自然时间, 交易日时间
      */
     protected String timeMode = "trading";
+    /**
+     * 时钟模式: 事件驱动跳过空闲时间片, 逐个时间片
+     */
+    protected String clockMode = CLOCK_MODE_EVENT;
     protected String statsFile = "";
+    /**
+     * 参数网格文件, 每个参数组合独立回测
+     */
+    protected String paramGridFile = "";
+    /**
+     * 参数网格回测的并行数量
+     */
+    protected int parallel = Runtime.getRuntime().availableProcessors();
+    /**
+     * TICK数据缓存大小(MB), 缺省使用1/4的堆内存
+     */
+    protected long tickCacheSize = 0;
+    /**
+     * 回测逐日进行, 加载TICK数据后在后台预加载下一交易日, 不超过回测结束日期
+     */
+    protected boolean tickPrefetch = true;
+    private MarketDataTickCache tickCache;
+
+    /**
+     * 单次回测: 参数组合和独立的全局运行环境
+     */
+    private static class EvalRun {
+        final int id;
+        final Map<String, String> params;
+        SimpleBeansContainer globalBeans;
+
+        EvalRun(int id, Map<String, String> params){
+            this.id = id;
+            this.params = params;
+        }
+    }
 
     @Override
     public String getCommand() {
@@ -84,8 +130,9 @@ public class TraderEvalAction implements CmdAction {
 
     @Override
     public void usage(PrintWriter writer) {
-        writer.println("eval -Dtrader.configFile=TRADE_XML --beginDate=YYYYMMDD --endDate=YYYYMMDD --timeMode=natural|trading");
+        writer.println("eval -Dtrader.configFile=TRADE_XML --beginDate=YYYYMMDD --endDate=YYYYMMDD --timeMode=natural|trading --clockMode=event|slice [--paramGrid=GRID_FILE --parallel=N] [--tickCacheSize=MB] [--tickPrefetch=true|false]");
         writer.println("\t回测");
+        writer.println("\t参数网格文件每行格式: 参数名=取值1,取值2,..., 交易组配置中的 ${参数名} 会被替换, 所有参数组合并行回测");
     }
 
     @Override
@@ -103,17 +150,110 @@ public class TraderEvalAction implements CmdAction {
         }
         writer.println("回测时间: "+DateUtil.date2str(beginDate)+" - "+DateUtil.date2str(endDate) +", 共 "+MarketDayUtil.getMarketDays(null, beginDate, endDate).length+" 交易日 ");
         long bt=System.currentTimeMillis();
-        SimpleBeansContainer globalBeans = createGlobalBeans();
+        tickCache = createTickCache();
+        if ( StringUtil.isEmpty(paramGridFile) ) {
+            EvalRun run = new EvalRun(0, Collections.emptyMap());
+            run.globalBeans = createGlobalBeans(createPluginService(), tickCache);
+            evalRun(run, tradingDay);
+            //输出交易统计
+            FileUtil.save(new File(statsFile), JsonUtil.json2str(createStats(run.globalBeans), true));
+        } else {
+            evalParamGrid(tradingDay);
+        }
+        long et=System.currentTimeMillis();
+        writer.println("回测结束, 耗时: "+(et-bt)/1000+" s, TICK缓存: "+tickCache);
+        return 0;
+    }
+
+    /**
+     * 从开始交易日开始逐日回测
+     */
+    private void evalRun(EvalRun run, LocalDate beginTradingDay) throws Exception
+    {
+        LocalDate tradingDay = beginTradingDay;
         while(!tradingDay.isAfter(endDate)) {
             //模拟每日交易
-            var dailyInstruments = tradeDaily(globalBeans, tradingDay);
+            var dailyInstruments = tradeDaily(run, tradingDay);
             tradingDay = MarketDayUtil.nextMarketDay(dailyInstruments.get(0).exchange(), tradingDay);
         }
-        //输出交易统计
-        saveStats(globalBeans);
-        long et=System.currentTimeMillis();
-        writer.println("回测结束, 耗时: "+(et-bt)/1000+" s");
-        return 0;
+    }
+
+    /**
+     * 参数网格回测: 每个参数组合有独立的Repository/交易/策略服务, 共享插件和TICK数据缓存, 并行运行
+     * <BR>缓存中的TICK直接回调给各个回测的listener, listener不能修改TICK
+     */
+    private void evalParamGrid(LocalDate beginTradingDay) throws Exception
+    {
+        List<Map<String, String>> paramSets = parseParamGrid(FileUtil.read(new File(paramGridFile)));
+        writer.println("参数组合: "+paramSets.size()+", 并行: "+parallel); writer.flush();
+        PluginService pluginService = createPluginService();
+        ThreadPoolExecutor executorService = new ThreadPoolExecutor(parallel, parallel, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        List<Future<JsonObject>> futures = new ArrayList<>();
+        for(int i=0;i<paramSets.size();i++) {
+            EvalRun run = new EvalRun(i, paramSets.get(i));
+            futures.add(executorService.submit(()->{
+                run.globalBeans = createGlobalBeans(pluginService, tickCache);
+                evalRun(run, beginTradingDay);
+                JsonObject runJson = createStats(run.globalBeans);
+                runJson.addProperty("id", run.id);
+                runJson.add("params", JsonUtil.object2json(run.params));
+                return runJson;
+            }));
+        }
+        Logger logger = LoggerFactory.getLogger(TraderEvalAction.class);
+        JsonArray runs = new JsonArray();
+        try {
+            for(int i=0;i<futures.size();i++) {
+                JsonObject runJson = null;
+                try {
+                    runJson = futures.get(i).get();
+                }catch(ExecutionException ee) {
+                    logger.error("回测 "+i+" 参数 "+paramSets.get(i)+" 失败", ee.getCause());
+                    runJson = new JsonObject();
+                    runJson.addProperty("id", i);
+                    runJson.add("params", JsonUtil.object2json(paramSets.get(i)));
+                    runJson.addProperty("error", ee.getCause().toString());
+                }
+                runs.add(runJson);
+                writer.println("回测 "+(i+1)+"/"+paramSets.size()+" "+paramSets.get(i)+" 完成"); writer.flush();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("beginDate", DateUtil.date2str(beginDate));
+        json.addProperty("endDate", DateUtil.date2str(endDate));
+        json.add("runs", runs);
+        FileUtil.save(new File(statsFile), JsonUtil.json2str(json, true));
+    }
+
+    /**
+     * 解析参数网格, 每行格式: 参数名=取值1,取值2,...
+     * <BR>返回所有参数取值的组合
+     */
+    static List<Map<String, String>> parseParamGrid(String text) {
+        List<Map<String, String>> result = new ArrayList<>();
+        result.add(new LinkedHashMap<>());
+        for(String line:StringUtil.text2lines(text, true, true)) {
+            if ( line.startsWith("#")) {
+                continue;
+            }
+            int idx = line.indexOf('=');
+            if ( idx<=0 ) {
+                continue;
+            }
+            String name = line.substring(0, idx).trim();
+            List<Map<String, String>> result2 = new ArrayList<>();
+            for(Map<String, String> params:result) {
+                for(String value:StringUtil.split(line.substring(idx+1), ",|;")) {
+                    Map<String, String> params2 = new LinkedHashMap<>(params);
+                    params2.put(name, value.trim());
+                    result2.add(params2);
+                }
+            }
+            result = result2;
+        }
+        return result;
     }
 
     private boolean parseOptions(List<KVPair> options) {
@@ -132,8 +272,24 @@ public class TraderEvalAction implements CmdAction {
             case "timemode":
                 timeMode = kv.v;
                 break;
+            case "clockmode":
+                clockMode = kv.v;
+                break;
             case "statsfile":
                 statsFile = kv.v;
+                break;
+            case "paramgrid":
+                paramGridFile = kv.v;
+                break;
+            case "parallel":
+                parallel = ConversionUtil.toInt(kv.v);
+                break;
+            case "tickcachesize":
+                tickCacheSize = ConversionUtil.toLong(kv.v);
+                break;
+            case "tickprefetch":
+                tickPrefetch = ConversionUtil.toBoolean(kv.v);
+                break;
             }
         }
         if ( endDate==null && beginDate==null ) {
@@ -149,12 +305,13 @@ public class TraderEvalAction implements CmdAction {
     /**
      * 每日交易
      */
-    private List<Exchangeable> tradeDaily(SimpleBeansContainer globalBeans, LocalDate tradingDay) throws Exception
+    private List<Exchangeable> tradeDaily(EvalRun run, LocalDate tradingDay) throws Exception
     {
+        SimpleBeansContainer globalBeans = run.globalBeans;
         List<Exchangeable> dailyInstruments  = new ArrayList<>();
         if ( StringUtil.equalsIgnoreCase(timeMode, TIME_MODE_TRADING)) { //交易日
             //创建当日环境
-            SimpleBeansContainer dailyBeans = createDailyBeans(globalBeans, tradingDay, null);
+            SimpleBeansContainer dailyBeans = createDailyBeans(run, tradingDay, null);
             SimMarketDataService mdService = dailyBeans.getBean(SimMarketDataService.class);
             SimMarketTimeService mtService = dailyBeans.getBean(SimMarketTimeService.class);
             dailyInstruments = new ArrayList<>(mdService.getSubscriptions());
@@ -182,7 +339,7 @@ public class TraderEvalAction implements CmdAction {
 
             //日盘
             {
-                SimpleBeansContainer dailyBeans = createDailyBeans(globalBeans, tradingDay, dayTimes.toArray(new LocalDateTime[dayTimes.size()]));
+                SimpleBeansContainer dailyBeans = createDailyBeans(run, tradingDay, dayTimes.toArray(new LocalDateTime[dayTimes.size()]));
                 SimMarketTimeService mtService = dailyBeans.getBean(SimMarketTimeService.class);
                 //时间片段循环
                 while(mtService.nextTimePiece());
@@ -207,7 +364,7 @@ public class TraderEvalAction implements CmdAction {
                 }
             }
             if (nightTimes.size()>0) {
-                SimpleBeansContainer dailyBeans = createDailyBeans(globalBeans, tradingDay2, nightTimes.toArray(new LocalDateTime[nightTimes.size()]));
+                SimpleBeansContainer dailyBeans = createDailyBeans(run, tradingDay2, nightTimes.toArray(new LocalDateTime[nightTimes.size()]));
                 SimMarketTimeService mtService = dailyBeans.getBean(SimMarketTimeService.class);
                 while(mtService.nextTimePiece());
                 destroyDailyBeans(globalBeans, dailyBeans);
@@ -218,9 +375,9 @@ public class TraderEvalAction implements CmdAction {
     }
 
     /**
-     * 保存交易统计数据
+     * 交易统计数据
      */
-    private void saveStats(SimpleBeansContainer beansContainer) throws Exception
+    private JsonObject createStats(SimpleBeansContainer beansContainer) throws Exception
     {
         BORepository repository = beansContainer.getBean(BORepository.class);
         JsonObject json = new JsonObject();
@@ -241,40 +398,66 @@ public class TraderEvalAction implements CmdAction {
         json.add("orders", orders);
         json.add("playbooks", playbooks);
         json.add("account", accountJson);
-        FileUtil.save(new File(statsFile), JsonUtil.json2str(json, true));
+        return json;
     }
 
     /**
      * 创建一些跨越交易日的服务
      */
-    private SimpleBeansContainer createGlobalBeans() throws Exception
+    private SimpleBeansContainer createGlobalBeans(PluginService pluginService, MarketDataTickCache tickCache) throws Exception
     {
         SimpleBeansContainer globalBeans = new SimpleBeansContainer();
         //插件
-        PluginServiceImpl pluginService = new PluginServiceImpl();
-        pluginService.setBeansContainer(globalBeans);
         globalBeans.addBean(PluginService.class, pluginService);
-        pluginService.init();
+        //TICK数据缓存
+        globalBeans.addBean(MarketDataTickCache.class, tickCache);
         //全局的临时存储
         SimBORepository repository = new SimBORepository();
         globalBeans.addBean(BORepository.class, repository);
         return globalBeans;
     }
 
+    /**
+     * TICK数据缓存, 多个回测共享
+     */
+    private MarketDataTickCache createTickCache() {
+        MarketDataTickCache result = MarketDataTickCache.getDefault();
+        if ( tickCacheSize>0 ) {
+            result = new MarketDataTickCache(tickCacheSize*1024*1024);
+        }
+        return result;
+    }
+
+    /**
+     * 插件服务, 多个回测共享
+     */
+    private PluginService createPluginService() throws Exception
+    {
+        SimpleBeansContainer pluginBeans = new SimpleBeansContainer();
+        PluginServiceImpl pluginService = new PluginServiceImpl();
+        pluginService.setBeansContainer(pluginBeans);
+        pluginBeans.addBean(PluginService.class, pluginService);
+        pluginService.init();
+        return pluginService;
+    }
+
     /**
      * 为某个交易日创建运行环境
      */
-    private SimpleBeansContainer createDailyBeans(SimpleBeansContainer globalBeans, LocalDate tradingDay, LocalDateTime[] marketTimes)
+    private SimpleBeansContainer createDailyBeans(EvalRun run, LocalDate tradingDay, LocalDateTime[] marketTimes)
         throws Exception
     {
+        SimpleBeansContainer globalBeans = run.globalBeans;
         SimpleBeansContainer beansContainer = new SimpleBeansContainer(globalBeans);
         SimMarketTimeService mtService = new SimMarketTimeService();
+        mtService.setEventDriven(!StringUtil.equalsIgnoreCase(clockMode, CLOCK_MODE_SLICE));
         SimOrderedExecutor orderedExecutor = new SimOrderedExecutor();
         SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
         SimMarketDataService mdService = new SimMarketDataService();
         SimTradeService tradeService = new SimTradeService();
         BarServiceImpl barService = new BarServiceImpl();
         SimTradletService tradletService = new SimTradletService();
+        tradletService.setGroupParams(run.params);
 
         beansContainer.addBean(MarketTimeService.class, mtService);
         beansContainer.addBean(OrderedExecutor.class, orderedExecutor);
@@ -285,6 +468,7 @@ public class TraderEvalAction implements CmdAction {
         beansContainer.addBean(TradletService.class, tradletService);
 
         mtService.setTradingDay(tradingDay);
+        mdService.setTickPrefetchEndDay(tickPrefetch?endDate:null);
         mdService.init(beansContainer);
         //根据交易日自动选择最长交易时间
         if ( null==marketTimes ) {
@@ -0,0 +1,164 @@
+package trader.api.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import trader.common.beans.ServiceState;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.common.util.JsonUtil;
+import trader.common.util.StringUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketDataService;
+import trader.service.ta.BarAccess;
+import trader.service.ta.BarListener;
+import trader.service.ta.BarSeriesLoader;
+import trader.service.ta.BarService;
+import trader.service.ta.LeveledBarSeries;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.SimMarketDataService;
+
+/**
+ * 流式返回的K线数据与 BaseLeveledBarSeries.toJson() 一致
+ */
+public class TAControllerTest {
+
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static LeveledBarSeries min1Series;
+
+    @BeforeClass
+    public static void loadSeries() throws Exception {
+        LocalDate tradingDay = DateUtil.str2localdate("20200803");
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketDataService mdService = new SimMarketDataService();
+        mdService.init(beansContainer);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        BarSeriesLoader loader= new BarSeriesLoader(beansContainer, TraderHomeUtil.getExchangeableData());
+        loader
+            .setInstrument(AP010)
+            .setStartTradingDay(tradingDay)
+            .setEndTradingDay(tradingDay)
+            .setLevel(PriceLevel.MIN1);
+        min1Series = loader.load();
+        assertTrue(min1Series.getBarCount()>0);
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        TAController controller = createController();
+        ResponseEntity<StreamingResponseBody> resp = controller.getLevelBars(AP010.toString(), PriceLevel.MIN1.toString(), false, null);
+        assertEquals(MediaType.APPLICATION_JSON, resp.getHeaders().getContentType());
+        JsonElement json = JsonParser.parseString(write(resp));
+        assertEquals(JsonUtil.object2json(min1Series), json);
+
+        //pretty格式化不改变内容
+        resp = controller.getLevelBars(AP010.toString(), PriceLevel.MIN1.toString(), true, null);
+        String text = write(resp);
+        assertTrue(text.contains("\n"));
+        assertEquals(json, JsonParser.parseString(text));
+    }
+
+    @Test
+    public void testNdjson() throws Exception {
+        TAController controller = createController();
+        ResponseEntity<StreamingResponseBody> resp = controller.getLevelBars(AP010.toString(), PriceLevel.MIN1.toString(), false, "ndjson");
+        assertEquals("application/x-ndjson", resp.getHeaders().getContentType().toString());
+        String[] lines = write(resp).split("\n");
+        JsonArray bars = JsonUtil.object2json(min1Series).getAsJsonObject().getAsJsonArray("bars");
+        assertEquals(min1Series.getBarCount(), lines.length);
+        for(int i=0;i<lines.length;i++) {
+            assertEquals(bars.get(i), JsonParser.parseString(lines[i]));
+        }
+    }
+
+    private static String write(ResponseEntity<StreamingResponseBody> resp) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resp.getBody().writeTo(out);
+        return new String(out.toByteArray(), StringUtil.UTF8);
+    }
+
+    private static TAController createController() throws Exception {
+        BarAccess barAccess = new BarAccess() {
+            @Override
+            public Exchangeable getInstrument() {
+                return AP010;
+            }
+            @Override
+            public ExchangeableTradingTimes getTradingTimes() {
+                return null;
+            }
+            @Override
+            public LeveledBarSeries getSeries(PriceLevel level) {
+                return level==PriceLevel.MIN1?min1Series:null;
+            }
+            @Override
+            public List<PriceLevel> getLevels() {
+                return Collections.singletonList(PriceLevel.MIN1);
+            }
+            @Override
+            public PriceLevel getVoldailyLevel() {
+                return null;
+            }
+            @Override
+            public Object getOption(String option) {
+                return null;
+            }
+            @Override
+            public BarSeriesLoader getSeriesLoader() {
+                return null;
+            }
+            @Override
+            public JsonElement toJson() {
+                return null;
+            }
+        };
+        BarService barService = new BarService() {
+            @Override
+            public ServiceState getState() {
+                return ServiceState.Ready;
+            }
+            @Override
+            public BarAccess forInstrument(Exchangeable instrument) {
+                return AP010.equals(instrument)?barAccess:null;
+            }
+            @Override
+            public Collection<Exchangeable> getInstruments() {
+                return Collections.singletonList(AP010);
+            }
+            @Override
+            public boolean registerListener(List<Exchangeable> instruments, BarListener listener) {
+                return false;
+            }
+        };
+        TAController controller = new TAController();
+        Field field = TAController.class.getDeclaredField("technicalAnalysisService");
+        field.setAccessible(true);
+        field.set(controller, barService);
+        return controller;
+    }
+
+}
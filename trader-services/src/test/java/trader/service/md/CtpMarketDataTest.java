@@ -1,19 +1,28 @@
 package trader.service.md;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
 import com.google.gson.JsonElement;
 
 import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.MarketDayUtil;
 import trader.common.util.CSVDataSet;
 import trader.common.util.CSVUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.ctp.CtpDayTimeBase;
 import trader.service.md.ctp.CtpMarketData;
 
 public class CtpMarketDataTest {
@@ -94,5 +103,104 @@ public class CtpMarketDataTest {
         assertTrue(jsonTick.askPrices[0]==ctpTick.askPrices[0]);
     }
 
-}
+    @Test
+    public void testPooledUpdate() {
+        CtpCSVMarshallHelper helper = new CtpCSVMarshallHelper();
+        CSVDataSet ds = CSVUtil.parse(csvText);
+        CtpMarketData pooledTick = CtpMarketData.createPooled();
+        assertTrue(pooledTick.isPooled());
+        MarketData lastCopy = null;
+        long lastCopyVolume = 0;
+        while(ds.next()) {
+            CThostFtdcDepthMarketDataField tick = helper.unmarshall(ds.getRow());
+            CtpMarketData ctpTick = new CtpMarketData("ctp", SR001, tick, tradingDay);
+            long[] askPrices = pooledTick.askPrices;
+            pooledTick.update("ctp", SR001, tick, CtpDayTimeBase.of(tradingDay));
+            if ( askPrices!=null ) {
+                assertTrue(askPrices==pooledTick.askPrices);
+            }
+            assertTrue(pooledTick.tradingDay.equals(ctpTick.tradingDay));
+            assertTrue(pooledTick.updateTime.equals(ctpTick.updateTime));
+            assertTrue(pooledTick.updateTimestamp==ctpTick.updateTimestamp);
+            assertTrue(MarketData.equals(pooledTick, ctpTick));
+
+            MarketData copy = pooledTick.copy();
+            assertFalse(copy.isPooled());
+            assertTrue(copy.askPrices!=pooledTick.askPrices);
+            assertTrue(MarketData.equals(copy, pooledTick));
+            //复制对象不受后续原地更新的影响
+            if ( lastCopy!=null ) {
+                assertTrue(lastCopy.volume==lastCopyVolume);
+            }
+            lastCopy = copy;
+            lastCopyVolume = copy.volume;
+
+            //同一次填充的多次detach共享一个复制, 重新填充后创建新的复制
+            MarketData detached = pooledTick.detach();
+            assertFalse(detached.isPooled());
+            assertTrue(detached==pooledTick.detach());
+            assertTrue(MarketData.equals(detached, pooledTick));
+            assertTrue(copy.detach()==copy);
+            pooledTick.update("ctp", SR001, tick, CtpDayTimeBase.of(tradingDay));
+            assertTrue(detached!=pooledTick.detach());
+        }
+    }
 
+    /**
+     * 池化模式下最新行情是独立的复制, 不会被后续TICK原地修改
+     */
+    @Test
+    public void testPooledLastData() {
+        CtpCSVMarshallHelper helper = new CtpCSVMarshallHelper();
+        CSVDataSet ds = CSVUtil.parse(csvText);
+        ds.next();
+        ds.next();
+        ds.next();
+        CThostFtdcDepthMarketDataField tick = helper.unmarshall(ds.getRow());
+        CtpMarketData pooledTick = CtpMarketData.createPooled();
+        MarketDataRuntimeData runtimeData = new MarketDataRuntimeData(SR001, tradingDay, true);
+        List<MarketData> lastDatas = new ArrayList<>();
+        for(int i=0;i<25;i++) {
+            tick.Volume++;
+            pooledTick.update("ctp", SR001, tick, CtpDayTimeBase.of(tradingDay));
+            assertTrue(runtimeData.checkTick(pooledTick));
+            runtimeData.postProcess(pooledTick);
+            MarketData lastData = runtimeData.getLastData();
+            assertFalse(lastData.isPooled());
+            assertTrue(lastData==pooledTick.detach());
+            assertTrue(lastData.mktStage==pooledTick.mktStage);
+            assertTrue(lastData.mktTime==pooledTick.mktTime);
+            lastDatas.add(lastData);
+        }
+        for(int i=0;i<lastDatas.size();i++) {
+            assertEquals(tick.Volume-lastDatas.size()+1+i, lastDatas.get(i).volume);
+        }
+    }
+
+    /**
+     * 重新加载交易日历后, 缓存的前后交易日重新计算
+     */
+    @Test
+    public void testDayTimeBaseReload() {
+        CtpDayTimeBase dayBase = CtpDayTimeBase.of(LocalDate.of(2019, 9, 30));
+        assertEquals(LocalDate.of(2019, 10, 8), dayBase.nextMarketDay(Exchange.DCE).getDay());
+        try {
+            MarketDayUtil.reload(new ByteArrayInputStream("dce\n20190101\n".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(LocalDate.of(2019, 10, 1), dayBase.nextMarketDay(Exchange.DCE).getDay());
+            assertEquals(LocalDate.of(2019, 10, 7), CtpDayTimeBase.of(LocalDate.of(2019, 10, 8)).prevMarketDay(Exchange.DCE).getDay());
+        } finally {
+            MarketDayUtil.reload();
+        }
+        assertEquals(LocalDate.of(2019, 10, 8), dayBase.nextMarketDay(Exchange.DCE).getDay());
+        assertEquals(LocalDate.of(2019, 9, 30), CtpDayTimeBase.of(LocalDate.of(2019, 10, 8)).prevMarketDay(Exchange.DCE).getDay());
+    }
+
+    @Test
+    public void testSecondOfDay() {
+        assertTrue(CtpDayTimeBase.time2int("09:00:00")==DateUtil.time2int("09:00:00"));
+        assertTrue(CtpDayTimeBase.time2int("9:00:01")==DateUtil.time2int("9:00:01"));
+        assertTrue(CtpDayTimeBase.time2int("23:29:59")==DateUtil.time2int("23:29:59"));
+        assertTrue(CtpDayTimeBase.secondOfDay("")==0);
+    }
+
+}
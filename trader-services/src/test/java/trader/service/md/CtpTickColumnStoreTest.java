@@ -0,0 +1,112 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.CtpTickColumnStore;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+
+public class CtpTickColumnStoreTest {
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static LocalDate tradingDay = DateUtil.str2localdate("20200803");
+
+    @Test
+    public void testConvertAndLoad() throws Exception {
+        File dataDir = Files.createTempDirectory("ctpTickColumns").toFile();
+        try {
+            File instrumentDir = new File(dataDir, "czce/AP010");
+            instrumentDir.mkdirs();
+            File zipFile = new File(CtpTickColumnStoreTest.class.getClassLoader().getResource("data/czce/AP010/tick-ctp.zip").toURI());
+            Files.copy(zipFile.toPath(), new File(instrumentDir, "tick-ctp.zip").toPath());
+            ExchangeableData data = new ExchangeableData(dataDir, false);
+
+            //没有二进制文件时回退到CSV
+            assertFalse(data.exists(AP010, ExchangeableData.TICK_CTP_BIN, tradingDay));
+            List<CThostFtdcDepthMarketDataField> csvTicks = CtpTickColumnStore.load(data, AP010, tradingDay);
+            assertTrue(csvTicks.size()>0);
+
+            assertTrue(CtpTickColumnStore.convert(data, AP010, tradingDay));
+            assertTrue(data.exists(AP010, ExchangeableData.TICK_CTP_BIN, tradingDay));
+            assertTrue(data.list(AP010, ExchangeableData.TICK_CTP_BIN).contains(tradingDay));
+            assertFalse(data.list(AP010, ExchangeableData.TICK_CTP).isEmpty());
+
+            ByteBuffer buf = data.loadBinary(AP010, ExchangeableData.TICK_CTP_BIN, tradingDay);
+            assertNotNull(buf);
+            List<CThostFtdcDepthMarketDataField> binTicks = CtpTickColumnStore.decode(buf);
+            assertEquals(csvTicks.size(), binTicks.size());
+            CtpCSVMarshallHelper helper = new CtpCSVMarshallHelper();
+            for(int i=0;i<csvTicks.size();i++) {
+                String csvRow = String.join(",", helper.marshall(csvTicks.get(i)));
+                String binRow = String.join(",", helper.marshall(binTicks.get(i)));
+                assertEquals(csvRow, binRow);
+            }
+
+            //二进制文件损坏时回退到CSV
+            byte[] corrupted = new byte[64];
+            data.saveBinary(AP010, ExchangeableData.TICK_CTP_BIN, tradingDay, corrupted);
+            assertEquals(csvTicks.size(), CtpTickColumnStore.load(data, AP010, tradingDay).size());
+        }finally {
+            FileUtil.deleteDirectory(dataDir);
+        }
+    }
+
+    @Test
+    public void testUnsupportedUpdateTime() {
+        CThostFtdcDepthMarketDataField tick = new CThostFtdcDepthMarketDataField();
+        tick.UpdateTime = "9:00:00";
+        try {
+            CtpTickColumnStore.encode(List.of(tick));
+            fail("Unsupported UpdateTime should be rejected");
+        }catch(IllegalArgumentException e) {}
+    }
+
+    /**
+     * 价格超出PriceUtil的精度时不能无损编码, 不保存二进制文件
+     */
+    @Test
+    public void testUnsupportedPrice() throws Exception {
+        CThostFtdcDepthMarketDataField tick = new CThostFtdcDepthMarketDataField();
+        tick.UpdateTime = "09:00:00";
+        tick.LastPrice = 7890.5;
+        tick.AskPrice1 = Double.MAX_VALUE;
+        CtpTickColumnStore.encode(List.of(tick));
+
+        tick.AveragePrice = 7890.123456;
+        try {
+            CtpTickColumnStore.encode(List.of(tick));
+            fail("Unsupported price should be rejected");
+        }catch(IllegalArgumentException e) {}
+        tick.AveragePrice = Double.NaN;
+        try {
+            CtpTickColumnStore.encode(List.of(tick));
+            fail("Unsupported price should be rejected");
+        }catch(IllegalArgumentException e) {}
+
+        File dataDir = Files.createTempDirectory("ctpTickColumns").toFile();
+        try {
+            ExchangeableData data = new ExchangeableData(dataDir, false);
+            assertFalse(CtpTickColumnStore.save(data, AP010, tradingDay, List.of(tick)));
+            assertFalse(data.exists(AP010, ExchangeableData.TICK_CTP_BIN, tradingDay));
+        }finally {
+            FileUtil.deleteDirectory(dataDir);
+        }
+    }
+
+}
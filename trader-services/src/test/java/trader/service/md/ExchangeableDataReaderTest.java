@@ -0,0 +1,73 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+
+/**
+ * ExchangeableData.openReader 流式读取ZIP中的数据文件
+ */
+public class ExchangeableDataReaderTest {
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static LocalDate tradingDay = DateUtil.str2localdate("20200803");
+
+    @Test
+    public void testOpenReader() throws Exception {
+        File dataDir = Files.createTempDirectory("ctpTickReader").toFile();
+        try {
+            File instrumentDir = new File(dataDir, "czce/AP010");
+            instrumentDir.mkdirs();
+            File zipFile = new File(ExchangeableDataReaderTest.class.getClassLoader().getResource("data/czce/AP010/tick-ctp.zip").toURI());
+            Files.copy(zipFile.toPath(), new File(instrumentDir, "tick-ctp.zip").toPath());
+            ExchangeableData data = new ExchangeableData(dataDir, false);
+
+            //流式读取与整体加载的内容一致
+            List<String> lines = new ArrayList<>();
+            try(BufferedReader reader = data.openReader(AP010, ExchangeableData.TICK_CTP, tradingDay);){
+                String line = null;
+                while( (line=reader.readLine())!=null ) {
+                    lines.add(line);
+                }
+            }
+            assertTrue(lines.size()>1);
+            assertEquals(data.load(AP010, ExchangeableData.TICK_CTP, tradingDay).trim(), String.join("\n", lines).trim());
+        }finally {
+            FileUtil.deleteDirectory(dataDir);
+        }
+    }
+
+    @Test
+    public void testOpenReaderNotExists() throws Exception {
+        File dataDir = Files.createTempDirectory("ctpTickReader").toFile();
+        try {
+            File instrumentDir = new File(dataDir, "czce/AP010");
+            instrumentDir.mkdirs();
+            File zipFile = new File(ExchangeableDataReaderTest.class.getClassLoader().getResource("data/czce/AP010/tick-ctp.zip").toURI());
+            Files.copy(zipFile.toPath(), new File(instrumentDir, "tick-ctp.zip").toPath());
+            ExchangeableData data = new ExchangeableData(dataDir, false);
+
+            try(BufferedReader reader = data.openReader(AP010, ExchangeableData.TICK_CTP, tradingDay.minusYears(1));){
+                fail("Data of "+tradingDay.minusYears(1)+" should not exist");
+            }catch(IOException e) {}
+        }finally {
+            FileUtil.deleteDirectory(dataDir);
+        }
+    }
+
+}
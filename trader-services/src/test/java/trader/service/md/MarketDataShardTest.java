@@ -0,0 +1,162 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.ta4j.core.Bar;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.MarketTimeStage;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.event.AsyncEventServiceImpl;
+import trader.service.stats.StatsCollectorImpl;
+import trader.service.ta.BarAccess;
+import trader.service.ta.BarSeriesLoader;
+import trader.service.ta.BarServiceImpl;
+import trader.service.ta.LeveledBarSeries;
+import trader.service.trade.MarketTimeService;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.SimMarketDataService;
+import trader.simulator.SimMarketTimeService;
+
+/**
+ * 行情分片模式下的TICK顺序: 同一合约的TICK按顺序回调; 交易小程序收到TICK时KBar已经更新.
+ * <BR>使用真实的AsyncEventServiceImpl分片派发, 不通过Spring启动
+ */
+public class MarketDataShardTest {
+
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    private static final int SHARDS = 3;
+
+    @Test
+    public void testShardOrdering() throws Exception {
+        LocalDate tradingDay = DateUtil.str2localdate("20200803");
+        Exchangeable AP010 = Exchangeable.fromString("AP010");
+        List<Exchangeable> instruments = Arrays.asList(AP010, Exchangeable.fromString("AP011"), Exchangeable.fromString("AP012"), Exchangeable.fromString("AP101"));
+        List<MarketData> ticks = loadTicks(AP010, tradingDay);
+        assertTrue(ticks.size()>0);
+
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        mtService.setTradingDay(tradingDay);
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        AsyncEventServiceImpl asyncEventService = new AsyncEventServiceImpl();
+        inject(asyncEventService, "executorService", executorService);
+        inject(asyncEventService, "statsCollector", new StatsCollectorImpl());
+        invoke(asyncEventService, "start", new Class[] {int.class, String.class, int.class}, 1024, "blockingwait", SHARDS);
+        assertEquals(SHARDS, asyncEventService.getMarketDataShards());
+        MarketDataServiceImpl mdService = new MarketDataServiceImpl();
+        inject(mdService, "mtService", mtService);
+        inject(mdService, "executorService", executorService);
+        inject(mdService, "asyncEventService", asyncEventService);
+        invoke(mdService, "registerEventFilters", new Class[0]);
+
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        BarServiceImpl barService = new BarServiceImpl();
+        barService.init(beansContainer);
+        barService.registerListener(Collections.singletonList(AP010), (Exchangeable e, LeveledBarSeries series)->{});
+        BarAccess barAccess = barService.forInstrument(AP010);
+
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        Map<Exchangeable, List<MarketData>> tradletTicks = new ConcurrentHashMap<>();
+        Map<Exchangeable, List<MarketData>> unsafeTicks = new ConcurrentHashMap<>();
+        //分片安全, 在BarService之后注册, 与TradletService相同
+        mdService.addListener(new MarketDataListener() {
+            @Override
+            public void onMarketData(MarketData tick) {
+                tradletTicks.computeIfAbsent(tick.instrument, (e)->new ArrayList<>()).add(tick);
+                if ( tick.instrument.equals(AP010) && tick.mktStage==MarketTimeStage.MarketOpen ) {
+                    Bar lastBar = barAccess.getSeries(PriceLevel.MIN1).getLastBar();
+                    if ( PriceUtil.long2price(tick.lastPrice)!=lastBar.getClosePrice().doubleValue() ) {
+                        errors.add("Bar is not updated before tradlet tick "+tick);
+                    }
+                }
+            }
+            @Override
+            public boolean isShardSafe() {
+                return true;
+            }
+        });
+        //非分片安全, 转发到MD主线程
+        mdService.addListener((MarketData tick)->{
+            unsafeTicks.computeIfAbsent(tick.instrument, (e)->new ArrayList<>()).add(tick);
+        });
+
+        for(MarketData tick:ticks) {
+            for(Exchangeable instrument:instruments) {
+                MarketData tick0 = tick.copy();
+                tick0.instrument = instrument;
+                asyncEventService.publishMarketData(tick0);
+            }
+        }
+        //先停止分片, 再停止MD主线程, 等待全部TICK处理完成
+        invoke(asyncEventService, "destroy0", new Class[0]);
+        executorService.shutdown();
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        List<MarketData> AP010Ticks = tradletTicks.get(AP010);
+        assertTrue(AP010Ticks.size()>0);
+        for(Exchangeable instrument:instruments) {
+            List<MarketData> instrumentTicks = tradletTicks.get(instrument);
+            assertEquals(AP010Ticks.size(), instrumentTicks.size());
+            for(int i=0;i<instrumentTicks.size();i++) {
+                MarketData tick = instrumentTicks.get(i);
+                assertEquals(AP010Ticks.get(i).updateTimestamp, tick.updateTimestamp);
+                if ( i>0 ) {
+                    assertTrue(tick.updateTimestamp>instrumentTicks.get(i-1).updateTimestamp);
+                }
+            }
+            assertEquals(instrumentTicks, unsafeTicks.get(instrument));
+        }
+    }
+
+    private static List<MarketData> loadTicks(Exchangeable instrument, LocalDate tradingDay) throws Exception
+    {
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketDataService mdService = new SimMarketDataService();
+        mdService.init(beansContainer);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        BarSeriesLoader loader= new BarSeriesLoader(beansContainer, TraderHomeUtil.getExchangeableData());
+        loader
+            .setInstrument(instrument)
+            .setStartTradingDay(tradingDay)
+            .setEndTradingDay(tradingDay)
+            .setLevel(PriceLevel.MIN1);
+        return loader.loadMarketDataTicks(tradingDay, ExchangeableData.TICK_CTP);
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static void invoke(Object target, String methodName, Class[] paramTypes, Object... params) throws Exception {
+        Method method = target.getClass().getDeclaredMethod(methodName, paramTypes);
+        method.setAccessible(true);
+        method.invoke(target, params);
+    }
+
+}
@@ -0,0 +1,159 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.util.StringUtil;
+import trader.service.md.web.WebQuoteFetcher;
+import trader.service.md.web.WebQuoteFormat;
+import trader.service.md.web.WebQuoteParser;
+import trader.simulator.SimWebQuoteServer;
+
+public class WebQuoteFetcherTest {
+
+    @Test
+    public void testParser() throws Exception {
+        List<String> items = createItems(50);
+        Map<WebQuoteFormat, List<CThostFtdcDepthMarketDataField>> formatFields = new EnumMap<>(WebQuoteFormat.class);
+        for(WebQuoteFormat format:WebQuoteFormat.values()) {
+            StringBuilder text = new StringBuilder();
+            for(String item:items) {
+                if ( format==WebQuoteFormat.Sina ) {
+                    SimWebQuoteServer.sinaQuote(text, item, 3);
+                } else {
+                    SimWebQuoteServer.tencentQuote(text, item, 3);
+                }
+            }
+            List<CThostFtdcDepthMarketDataField> fields = new ArrayList<>();
+            WebQuoteParser parser = new WebQuoteParser(format, items, (itemIndex, field)->{
+                assertEquals(items.get(itemIndex), field.InstrumentID);
+                fields.add(field);
+            });
+            //按随机长度分块, 会从GBK双字节字符中间切开
+            byte[] data = text.toString().getBytes(StringUtil.GBK);
+            feed(parser, data, new Random(format.ordinal()));
+            assertEquals(items.size(), parser.finish());
+            assertEquals(items.size(), parser.getChangedCount());
+
+            formatFields.put(format, fields);
+
+            //行情时间不变, 不再返回
+            parser.reset();
+            feed(parser, data, new Random(1));
+            assertEquals(items.size(), parser.finish());
+            assertEquals(0, parser.getChangedCount());
+        }
+
+        //新浪和腾讯格式的同一行情, 价格和日期相同
+        List<CThostFtdcDepthMarketDataField> sinaFields = formatFields.get(WebQuoteFormat.Sina);
+        List<CThostFtdcDepthMarketDataField> tencentFields = formatFields.get(WebQuoteFormat.Tencent);
+        for(int i=0;i<items.size();i++) {
+            CThostFtdcDepthMarketDataField sina = sinaFields.get(i), tencent = tencentFields.get(i);
+            assertEquals(sina.LastPrice, tencent.LastPrice, 0.0);
+            assertEquals(sina.PreClosePrice, tencent.PreClosePrice, 0.0);
+            assertEquals(sina.OpenPrice, tencent.OpenPrice, 0.0);
+            assertEquals(sina.HighestPrice, tencent.HighestPrice, 0.0);
+            assertEquals(sina.LowestPrice, tencent.LowestPrice, 0.0);
+            assertEquals(sina.BidPrice1, tencent.BidPrice1, 0.0);
+            assertEquals(sina.AskPrice1, tencent.AskPrice1, 0.0);
+            assertEquals("20201012", sina.ActionDay);
+            assertEquals(sina.ActionDay, tencent.ActionDay);
+            assertEquals(sina.UpdateTime.replace(":", ""), tencent.UpdateTime);
+        }
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        List<String> items = createItems(500);
+        try(SimWebQuoteServer server = new SimWebQuoteServer();){
+            for(WebQuoteFormat format:WebQuoteFormat.values()) {
+                ConcurrentHashMap<String, AtomicInteger> quoteCounts = new ConcurrentHashMap<>();
+                String url = format==WebQuoteFormat.Sina?server.getSinaUrl():server.getTencentUrl();
+                WebQuoteFetcher fetcher = new WebQuoteFetcher(format, url, null, (item, field)->{
+                    quoteCounts.computeIfAbsent(item, k->new AtomicInteger()).incrementAndGet();
+                });
+                fetcher.setItemsPerRequest(60);
+                fetcher.setMaxConcurrentRequests(3);
+                fetcher.setSubscriptions(items);
+                for(int round=1;round<=3;round++) {
+                    CompletableFuture<Integer> future = fetcher.fetch();
+                    //上一轮没有结束时不开始新一轮
+                    assertNull(fetcher.fetch());
+                    assertEquals(items.size(), future.get(10, TimeUnit.SECONDS).intValue());
+                    assertEquals(items.size(), quoteCounts.size());
+                    for(AtomicInteger count:quoteCounts.values()) {
+                        assertEquals(round, count.get());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveInterval() throws Exception {
+        List<String> items = createItems(100);
+        try(SimWebQuoteServer server = new SimWebQuoteServer();){
+            WebQuoteFetcher fetcher = new WebQuoteFetcher(WebQuoteFormat.Sina, server.getSinaUrl(), null, (item, field)->{});
+            fetcher.setItemsPerRequest(50);
+            fetcher.setFetchInterval(100);
+            fetcher.setSubscriptions(items);
+
+            //限流时间隔加倍
+            server.failNextRequests(Integer.MAX_VALUE);
+            fetcher.fetch().get(10, TimeUnit.SECONDS);
+            assertEquals(200, fetcher.getInterval());
+            fetcher.fetch().get(10, TimeUnit.SECONDS);
+            assertEquals(400, fetcher.getInterval());
+            for(int i=0;i<10;i++) {
+                fetcher.fetch().get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(WebQuoteFetcher.MAX_INTERVAL, fetcher.getInterval());
+
+            //恢复后逐步减小到fetchInterval
+            server.failNextRequests(0);
+            fetcher.fetch().get(10, TimeUnit.SECONDS);
+            assertTrue(fetcher.getInterval()<WebQuoteFetcher.MAX_INTERVAL);
+            for(int i=0;i<30;i++) {
+                fetcher.fetch().get(10, TimeUnit.SECONDS);
+            }
+            assertTrue(fetcher.getInterval()<200);
+        }
+    }
+
+    private static void feed(WebQuoteParser parser, byte[] data, Random random) {
+        int offset = 0;
+        while(offset<data.length) {
+            int len = Math.min(data.length-offset, 1+random.nextInt(97));
+            parser.feed(ByteBuffer.wrap(data, offset, len));
+            offset += len;
+        }
+    }
+
+    private static List<String> createItems(int count){
+        List<String> result = new ArrayList<>();
+        for(int i=0;i<count;i++) {
+            if ( i%2==0 ) {
+                result.add("sh"+(600000+i));
+            } else {
+                result.add("sz"+String.format("%06d", i));
+            }
+        }
+        return result;
+    }
+
+}
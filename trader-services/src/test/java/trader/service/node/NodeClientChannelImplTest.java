@@ -0,0 +1,98 @@
+package trader.service.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.web.socket.TextMessage;
+
+import com.google.gson.JsonObject;
+
+import trader.common.exception.AppException;
+import trader.common.util.ConversionUtil;
+
+public class NodeClientChannelImplTest implements NodeConstants {
+
+    /**
+     * 不连接Broker, 发送的消息放入队列, 由测试代码模拟Broker返回
+     */
+    static class TestClientChannel extends NodeClientChannelImpl {
+        LinkedBlockingQueue<NodeMessage> sentMessages = new LinkedBlockingQueue<>();
+
+        TestClientChannel(){
+            defaultTimeout = 5000;
+        }
+
+        @Override
+        protected void doSend(NodeMessage message) throws AppException {
+            sentMessages.add(message);
+        }
+
+        /**
+         * 模拟Broker返回JSON消息
+         */
+        void reply(NodeMessage req, int n, boolean withReqId) throws Exception {
+            NodeMessage resp = req.createResponse();
+            resp.setField("n", n);
+            JsonObject json = (JsonObject)resp.toJson();
+            if ( !withReqId ) {
+                //旧版本Broker不返回reqId
+                json.remove(NodeMessage.FIELD_REQID);
+            }
+            handleMessage(null, new TextMessage(json.toString()));
+        }
+    }
+
+    @Test
+    public void testReplyWithReqId() throws Exception {
+        TestClientChannel channel = new TestClientChannel();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<NodeMessage> resp1 = executor.submit(()->channel.doSendAndWait(new NodeMessage(TYPE_TOPICSUB_REQ), 0));
+            NodeMessage req1 = channel.sentMessages.poll(5, TimeUnit.SECONDS);
+            Future<NodeMessage> resp2 = executor.submit(()->channel.doSendAndWait(new NodeMessage(TYPE_TOPICSUB_REQ), 0));
+            NodeMessage req2 = channel.sentMessages.poll(5, TimeUnit.SECONDS);
+            //乱序返回
+            channel.reply(req2, 2, true);
+            channel.reply(req1, 1, true);
+            assertEquals(1, ConversionUtil.toInt(resp1.get().getField("n")));
+            assertEquals(2, ConversionUtil.toInt(resp2.get().getField("n")));
+            assertTrue(channel.pendingReqs.isEmpty());
+        }finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 旧版本Broker的返回消息没有reqId, 按发送顺序匹配
+     */
+    @Test
+    public void testReplyWithoutReqId() throws Exception {
+        TestClientChannel channel = new TestClientChannel();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<NodeMessage> resp1 = executor.submit(()->channel.doSendAndWait(new NodeMessage(TYPE_TOPICSUB_REQ), 0));
+            NodeMessage req1 = channel.sentMessages.poll(5, TimeUnit.SECONDS);
+            Future<NodeMessage> resp2 = executor.submit(()->channel.doSendAndWait(new NodeMessage(TYPE_TOPICPUB_REQ), 0));
+            NodeMessage req2 = channel.sentMessages.poll(5, TimeUnit.SECONDS);
+            channel.reply(req1, 1, false);
+            channel.reply(req2, 2, false);
+            NodeMessage rep1 = resp1.get(), rep2 = resp2.get();
+            assertEquals(0, rep1.getReqId());
+            assertEquals(TYPE_TOPICSUB_REP, rep1.getType());
+            assertEquals(1, ConversionUtil.toInt(rep1.getField("n")));
+            assertEquals(TYPE_TOPICPUB_REP, rep2.getType());
+            assertEquals(2, ConversionUtil.toInt(rep2.getField("n")));
+            assertTrue(channel.pendingReqs.isEmpty());
+        }finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package trader.service.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import trader.common.util.FileUtil;
+
+public class PluginScanIndexTest {
+
+    @Test
+    public void testIndex() throws Exception {
+        File workDir = Files.createTempDirectory("pluginScanIndex").toFile();
+        try {
+            File pluginDir = new File(workDir, "plugin/test");
+            File indexDir = new File(workDir, "index");
+            new File(pluginDir, "jars").mkdirs();
+            FileUtil.save(new File(pluginDir, Plugin.FILE_DESCRIPTOR), "id=test\n");
+            File jarFile = new File(pluginDir, "jars/test.jar");
+            buildJar(workDir, jarFile, "Bean1");
+
+            //第一次扫描, 生成索引
+            PluginImpl plugin = new PluginImpl(null, pluginDir, indexDir);
+            assertFalse(plugin.isIndexed());
+            assertEquals(new TreeSet<>(List.of("Bean1")), plugin.getBeanClasses(Runnable.class).keySet());
+            File indexFile = PluginScanIndex.getIndexFile(indexDir, pluginDir, "test");
+            assertTrue(indexFile.exists());
+            assertEquals(1, PluginScanIndex.load(indexFile).getBeans().size());
+            plugin.close();
+
+            //jar没有变化, 从索引加载
+            plugin = new PluginImpl(null, pluginDir, indexDir);
+            assertTrue(plugin.isIndexed());
+            Map<String, Class<Runnable>> beanClasses = plugin.getBeanClasses(Runnable.class);
+            assertEquals(new TreeSet<>(List.of("Bean1")), beanClasses.keySet());
+            assertEquals(plugin.getClassLoader(), beanClasses.get("Bean1").getClassLoader());
+            plugin.close();
+
+            //只修改时间变化, 内容相同
+            jarFile.setLastModified(jarFile.lastModified()-10000);
+            plugin = new PluginImpl(null, pluginDir, indexDir);
+            assertTrue(plugin.isIndexed());
+            plugin.close();
+
+            //jar内容变化, 重新扫描
+            buildJar(workDir, jarFile, "Bean1", "Bean2");
+            plugin = new PluginImpl(null, pluginDir, indexDir);
+            assertFalse(plugin.isIndexed());
+            assertEquals(new TreeSet<>(List.of("Bean1", "Bean2")), plugin.getBeanClasses(Runnable.class).keySet());
+            assertEquals(2, PluginScanIndex.load(indexFile).getBeans().size());
+            plugin.close();
+        } finally {
+            FileUtil.deleteDirectory(workDir);
+        }
+    }
+
+    /**
+     * 编译Discoverable实现类并打包为jar
+     */
+    private static void buildJar(File workDir, File jarFile, String... beanNames) throws Exception {
+        File srcDir = new File(workDir, "src");
+        File classesDir = new File(workDir, "classes");
+        FileUtil.deleteDirectory(srcDir);
+        FileUtil.deleteDirectory(classesDir);
+        new File(srcDir, "testplugin").mkdirs();
+        classesDir.mkdirs();
+        List<String> args = new ArrayList<>(List.of("-d", classesDir.getAbsolutePath(), "-cp", System.getProperty("java.class.path")));
+        for(String beanName:beanNames) {
+            File srcFile = new File(srcDir, "testplugin/"+beanName+".java");
+            FileUtil.save(srcFile, "package testplugin;\n"
+                    +"@trader.common.beans.Discoverable(interfaceClass = Runnable.class, purpose = \""+beanName+"\")\n"
+                    +"public class "+beanName+" implements Runnable {\n"
+                    +"    public void run() {}\n"
+                    +"}\n");
+            args.add(srcFile.getAbsolutePath());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, args.toArray(new String[args.size()])));
+        try(JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile));){
+            for(String beanName:beanNames) {
+                jos.putNextEntry(new JarEntry("testplugin/"+beanName+".class"));
+                jos.write(Files.readAllBytes(new File(classesDir, "testplugin/"+beanName+".class").toPath()));
+                jos.closeEntry();
+            }
+        }
+    }
+
+}
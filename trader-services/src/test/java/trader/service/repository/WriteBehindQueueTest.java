@@ -0,0 +1,109 @@
+package trader.service.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.gson.JsonPrimitive;
+
+import trader.service.repository.BORepositoryConstants.BOEntityType;
+import trader.service.repository.WriteBehindQueue.PendingSave;
+
+public class WriteBehindQueueTest {
+
+    @Test
+    public void testCoalesce() {
+        WriteBehindQueue queue = new WriteBehindQueue(2, 1000);
+        assertTrue(queue.put(BOEntityType.Order, "1", new JsonPrimitive(1)));
+        assertFalse(queue.put(BOEntityType.Order, "1", new JsonPrimitive(2)));
+        assertFalse(queue.put(BOEntityType.Playbook, "1", new JsonPrimitive(3)));
+        assertFalse(queue.put(BOEntityType.Order, "2", new JsonPrimitive(4)));
+        assertEquals(3, queue.getQueueDepth());
+        assertEquals(1, queue.getTotalCoalesced());
+
+        //攒够一批不等待
+        List<PendingSave> batch = queue.take(true);
+        assertEquals(2, batch.size());
+        assertEquals("1", batch.get(0).getId());
+        assertEquals(2, batch.get(0).getValue().getAsInt());
+        assertEquals(BOEntityType.Playbook, batch.get(1).getEntityType());
+        queue.batchDone(1000);
+
+        batch = queue.take(false);
+        assertEquals(1, batch.size());
+        assertEquals(4, batch.get(0).getValue().getAsInt());
+        queue.batchDone(1000);
+
+        assertTrue(queue.take(false).isEmpty());
+        //队列空后写线程退出, 下次加入需要重新启动
+        assertTrue(queue.put(BOEntityType.Order, "1", new JsonPrimitive(5)));
+    }
+
+    @Test
+    public void testFlushInterval() {
+        WriteBehindQueue queue = new WriteBehindQueue(100, 50);
+        queue.put(BOEntityType.Order, "1", new JsonPrimitive(1));
+        long t0 = System.currentTimeMillis();
+        List<PendingSave> batch = queue.take(true);
+        long t1 = System.currentTimeMillis();
+        assertEquals(1, batch.size());
+        assertTrue((t1-t0)>=40);
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(10, 60*1000);
+        ConcurrentHashMap<String, Integer> saved = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        List<Integer> batchSizes = new ArrayList<>();
+        try {
+            for(int i=0;i<1005;i++) {
+                String id = ""+(i%50);
+                if ( queue.put(BOEntityType.Order, id, new JsonPrimitive(i)) ) {
+                    executor.execute(()->{
+                        while(true) {
+                            List<PendingSave> batch = queue.take(true);
+                            if ( batch.isEmpty() ) {
+                                break;
+                            }
+                            synchronized(batchSizes) {
+                                batchSizes.add(batch.size());
+                            }
+                            for(PendingSave save:batch) {
+                                saved.put(save.getId(), save.getValue().getAsInt());
+                            }
+                            queue.batchDone(1000);
+                        }
+                    });
+                }
+            }
+            //flush不需要等待flushInterval
+            long t0 = System.currentTimeMillis();
+            assertTrue(queue.awaitFlushed(10*1000));
+            assertTrue((System.currentTimeMillis()-t0)<10*1000);
+            assertEquals(0, queue.getQueueDepth());
+            assertEquals(50, saved.size());
+            for(int i=955;i<1005;i++) {
+                assertEquals(i, saved.get(""+(i%50)).intValue());
+            }
+            synchronized(batchSizes) {
+                for(int size:batchSizes) {
+                    assertTrue(size<=10);
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+}
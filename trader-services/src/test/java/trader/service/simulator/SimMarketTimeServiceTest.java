@@ -0,0 +1,95 @@
+package trader.service.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.util.DateUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketDataService;
+import trader.service.trade.MarketTimeService;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.SimMarketDataService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.SimScheduledExecutorService;
+
+/**
+ * 事件驱动时钟与逐个时间片的结果必须完全相同
+ */
+public class SimMarketTimeServiceTest {
+
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static Exchangeable AP101 = Exchangeable.fromString("AP101");
+    static LocalDate tradingDay = DateUtil.str2localdate("20200803");
+
+    @Test
+    public void testEventDrivenSameAsSliced() throws Exception {
+        //模拟时间与行情时间需要在同一时区
+        ZoneId zoneId = DateUtil.getDefaultZoneId();
+        DateUtil.setDefaultZoneId(AP010.exchange().getZoneId());
+        List<String> slicedEvents = new ArrayList<>();
+        List<String> eventEvents = new ArrayList<>();
+        SimMarketTimeService slicedTime = null, eventTime = null;
+        try {
+            slicedTime = run(false, slicedEvents);
+            eventTime = run(true, eventEvents);
+        }finally {
+            DateUtil.setDefaultZoneId(zoneId);
+        }
+
+        assertTrue(slicedEvents.stream().anyMatch((e)->e.startsWith(AP101.toString())));
+        assertEquals(slicedEvents, eventEvents);
+        assertTrue(eventTime.getTimePieceCount()<slicedTime.getTimePieceCount());
+    }
+
+    private SimMarketTimeService run(boolean eventDriven, List<String> events) throws Exception {
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        mtService.setEventDriven(eventDriven);
+        SimMarketDataService mdService = new SimMarketDataService() {
+            @Override
+            public void init(BeansContainer beansContainer) throws Exception {
+                super.init(beansContainer);
+                //只保留有测试数据的合约
+                subscriptions.retainAll(Arrays.asList(AP010, AP101));
+            }
+        };
+        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+
+        ExchangeableTradingTimes tradingTimes = AP010.exchange().getTradingTimes(AP010, tradingDay);
+        mtService.setTimeRanges(tradingDay, tradingTimes.getMarketTimes());
+        mdService.addSubscriptions(Arrays.asList(AP010, AP101));
+        mdService.init(beansContainer);
+        scheduledExecutorService.init(beansContainer);
+
+        mdService.addListener((md)->{
+            events.add(md.instrument+" "+md.updateTime+" "+mtService.getMarketTime());
+        });
+        scheduledExecutorService.scheduleAtFixedRate(()->{
+            events.add("timer "+mtService.getMarketTime());
+        }, 1000, 5000, TimeUnit.MILLISECONDS);
+
+        while(mtService.nextTimePiece());
+        return mtService;
+    }
+
+}
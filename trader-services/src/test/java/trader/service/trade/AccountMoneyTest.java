@@ -0,0 +1,232 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.ServiceConstants.AccountState;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.SimMarketDataService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.SimScheduledExecutorService;
+import trader.simulator.trade.SimTxnSession;
+
+/**
+ * 不依赖行情数据文件: 直接回调构造的行情和成交, 比较持仓/账户资金的增量计算与完整计算
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class AccountMoneyTest implements TradeConstants {
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    /**
+     * au1906 每手1000克
+     */
+    private static final int VOLUME_MULTIPLE = 1000;
+
+    private static class TestMarketData extends MarketData {
+
+        TestMarketData(Exchangeable instrument, long lastPrice){
+            this.instrument = instrument;
+            this.lastPrice = lastPrice;
+            this.highestPrice = lastPrice;
+            this.lowestPrice = lastPrice;
+            this.upperLimitPrice = PriceUtil.price2long(400);
+            this.lowerLimitPrice = PriceUtil.price2long(200);
+        }
+
+        @Override
+        public String getCsvHead() {
+            return null;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+        }
+
+        @Override
+        public MarketData clone() {
+            return null;
+        }
+
+        @Override
+        protected MarketData newInstance() {
+            return null;
+        }
+    }
+
+    /**
+     * 最新行情由测试代码设置, 不加载数据文件
+     */
+    private static class TestMarketDataService extends SimMarketDataService {
+        MarketData lastData;
+
+        @Override
+        public MarketData getLastData(Exchangeable e) {
+            return lastData;
+        }
+    }
+
+    LocalDateTime beginTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 8, 50);
+    LocalDateTime endTime = LocalDateTime.of(2018, Month.DECEMBER, 28, 15, 04);
+    Exchangeable au1906 = Exchangeable.fromString("au1906");
+    LocalDate tradingDay = au1906.exchange().detectTradingTimes(au1906, beginTime).getTradingDay();
+
+    SimMarketTimeService mtService;
+    TestMarketDataService mdService;
+    AccountImpl account;
+    int txnCount;
+
+    @Before
+    public void testInit() throws Exception {
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        mtService = new SimMarketTimeService();
+        mdService = new TestMarketDataService();
+        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
+
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+        scheduledExecutorService.init(beansContainer);
+        mtService.setTimeRanges(tradingDay, new LocalDateTime[]{beginTime, endTime} );
+        //到9:01:00, 可以报单
+        while(mtService.nextTimePiece()) {
+            LocalDateTime time = mtService.getMarketTime();
+            if ( time.getHour()==9 && time.getMinute()==1 ) {
+                break;
+            }
+        }
+
+        Map config = new HashMap<>();
+        String text =
+                "[connectionProps]\n"+
+                "initMoney=500000.00\n" +
+                "commissionsFile="+TraderHomeUtil.getTraderHome()+"/etc/sim-account1.commissions.json";
+        config.put("id", "sim-account1");
+        config.put("provider", TxnSession.PROVIDER_SIM);
+        config.put("text", text);
+        account = new AccountImpl(new TradeServiceTest(beansContainer), beansContainer, config);
+        //模拟交易连接不接收时间片, 成交由测试代码直接回调
+        SimTxnSession txnSession = (SimTxnSession)account.getSession();
+        txnSession.connect(account.getConnectionProps());
+        assertEquals(AccountState.Ready, account.getState());
+    }
+
+    @Test
+    public void testIncrementalMoney() throws Exception
+    {
+        //280.0003不是有效价格, 这时按每条持仓明细取整的保证金之和与按汇总数量计算的保证金不同
+        double[] prices = {280.00, 280.50, 281.20, 279.80, 279.80, 282.35, 280.0003};
+        onMarketData(280.00);
+        long open1 = PriceUtil.price2long(280.05);
+        long open2 = PriceUtil.price2long(280.50);
+        long open3 = PriceUtil.price2long(281.00);
+        //开多2手
+        trade(OrderDirection.Buy, OrderOffsetFlag.OPEN, open1, 2);
+        Position pos = account.getPosition(au1906);
+        assertEquals(2, pos.getVolume(PosVolume.LongPosition));
+        assertTrue(account.reconcileMoney());
+        for(double price:prices) {
+            onMarketData(price);
+            checkMoney(pos, 2*(PriceUtil.price2long(price)-open1), 0);
+        }
+        //开空1手, 再开多1手
+        trade(OrderDirection.Sell, OrderOffsetFlag.OPEN, open2, 1);
+        trade(OrderDirection.Buy, OrderOffsetFlag.OPEN, open3, 1);
+        assertEquals(3, pos.getVolume(PosVolume.LongPosition));
+        assertEquals(1, pos.getVolume(PosVolume.ShortPosition));
+        for(double price:prices) {
+            onMarketData(price);
+            long lastPrice = PriceUtil.price2long(price);
+            checkMoney(pos, 2*(lastPrice-open1)+(lastPrice-open3)-(lastPrice-open2), 0);
+        }
+        //平最早的多仓1手, 平空1手
+        long close1 = PriceUtil.price2long(282.00);
+        trade(OrderDirection.Sell, OrderOffsetFlag.CLOSE_TODAY, close1, 1);
+        trade(OrderDirection.Buy, OrderOffsetFlag.CLOSE_TODAY, close1, 1);
+        assertEquals(2, pos.getVolume(PosVolume.LongPosition));
+        assertEquals(0, pos.getVolume(PosVolume.ShortPosition));
+        long closeProfit = (close1-open1)-(close1-open2);
+        for(double price:prices) {
+            onMarketData(price);
+            long lastPrice = PriceUtil.price2long(price);
+            checkMoney(pos, (lastPrice-open1)+(lastPrice-open3), closeProfit);
+        }
+        //全部平仓
+        trade(OrderDirection.Sell, OrderOffsetFlag.CLOSE_TODAY, close1, 2);
+        assertEquals(0, pos.getVolume(PosVolume.Position));
+        onMarketData(283.00);
+        checkMoney(pos, 0, closeProfit+(close1-open1)+(close1-open3));
+        assertEquals(0, account.getMoney(AccMoney.CurrMargin));
+    }
+
+    /**
+     * 持仓盈亏/平仓盈亏与按价格直接计算一致, reconcileMoney() 通过并且不修改账户和持仓数据
+     */
+    private void checkMoney(Position pos, long priceDiff, long closePriceDiff) {
+        long[] accMoney0 = account.getMoneys();
+        long[] posMoney0 = ((PositionImpl)pos).getMoneys();
+        assertTrue(account.reconcileMoney());
+        assertArrayEquals(accMoney0, account.getMoneys());
+        assertArrayEquals(posMoney0, ((PositionImpl)pos).getMoneys());
+
+        assertEquals(priceDiff*VOLUME_MULTIPLE, pos.getMoney(PosMoney.PositionProfit));
+        assertEquals(priceDiff*VOLUME_MULTIPLE, account.getMoney(AccMoney.PositionProfit));
+        assertEquals(closePriceDiff*VOLUME_MULTIPLE, account.getMoney(AccMoney.CloseProfit));
+        assertEquals(pos.getMoney(PosMoney.UseMargin), account.getMoney(AccMoney.CurrMargin));
+        //保证金按每条持仓明细计算后汇总
+        long[] useMargins = new long[2];
+        for(PositionDetail detail:pos.getDetails()) {
+            useMargins[detail.getDirection()==PosDirection.Long?0:1] += account.getFeeEvaluator().compute(au1906, detail.getVolume(), mdService.lastData.lastPrice, detail.getDirection())[0];
+        }
+        assertEquals(useMargins[0], pos.getMoney(PosMoney.LongUseMargin));
+        assertEquals(useMargins[1], pos.getMoney(PosMoney.ShortUseMargin));
+        long balance = PriceUtil.price2long(500000)+account.getMoney(AccMoney.CloseProfit)+account.getMoney(AccMoney.PositionProfitToday)-account.getMoney(AccMoney.Commission);
+        assertEquals(balance, account.getMoney(AccMoney.Balance));
+        assertEquals(balance-account.getMoney(AccMoney.CurrMargin), account.getMoney(AccMoney.Available));
+    }
+
+    private void onMarketData(double price) {
+        mdService.lastData = new TestMarketData(au1906, PriceUtil.price2long(price));
+        account.onMarketData(mdService.lastData);
+    }
+
+    /**
+     * 报单后直接回调全部成交
+     */
+    private void trade(OrderDirection direction, OrderOffsetFlag offsetFlag, long price, int volume) throws Exception {
+        OrderBuilder odrBuilder = new OrderBuilder()
+                .setDirection(direction)
+                .setExchagneable(au1906)
+                .setLimitPrice(price)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setOffsetFlag(offsetFlag)
+                .setVolume(volume)
+                ;
+        Order order = account.createOrder(odrBuilder);
+        long txnTime = DateUtil.localdatetime2long(au1906.exchange().getZoneId(), mtService.getMarketTime());
+        account.onTransaction("txn"+(++txnCount), au1906, order.getRef(), direction, offsetFlag, price, volume, txnTime, null);
+        assertEquals(OrderState.Complete, order.getStateTuple().getState());
+        assertEquals(0, account.getMoney(AccMoney.FrozenMargin));
+        assertEquals(0, account.getMoney(AccMoney.FrozenCommission));
+    }
+
+}
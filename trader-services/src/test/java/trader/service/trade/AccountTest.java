@@ -226,6 +226,8 @@ public class AccountTest implements TradeConstants {
 
             assertTrue(pos.getMoney(PosMoney.PositionProfit)!=posProfit0);
             assertTrue(account.getMoney(AccMoney.Available)!=accAvail0);
+            //行情增量更新的持仓盈亏和账户资金, 与完整计算一致
+            assertTrue(account.reconcileMoney());
 
             MarketData md = mdService.getLastData(au1906);
             assertTrue(md!=null);
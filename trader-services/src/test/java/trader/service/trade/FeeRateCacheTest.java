@@ -0,0 +1,120 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.FileUtil;
+import trader.common.util.PriceUtil;
+import trader.service.trade.TradeConstants.PosDirection;
+
+public class FeeRateCacheTest {
+
+    File cacheDir;
+    RateLimitedFeeTxnSession txnSession;
+    List<Exchangeable> instruments = new ArrayList<>();
+    LocalDate tradingDay = LocalDate.of(2020, 10, 12);
+
+    @Before
+    public void setup() throws Exception {
+        cacheDir = Files.createTempDirectory("fee-rate-cache").toFile();
+        txnSession = new RateLimitedFeeTxnSession("fee-account", 1, 5);
+        for(String commodity:new String[] {"ru", "zn", "cu", "al", "au"}) {
+            instruments.add(Exchangeable.fromString(commodity+"2101"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteDirectory(cacheDir);
+    }
+
+    @Test
+    public void testIncrementalLoad() throws Exception {
+        //第一次全部查询
+        FutureFeeEvaluator feeEvaluator = createCache(tradingDay).load(txnSession, instruments);
+        assertEquals(instruments.size(), feeEvaluator.getInstruments().size());
+        assertEquals(2*instruments.size(), txnSession.getQueryCount());
+        assertTrue(createCache(tradingDay).getFile().exists());
+
+        //当天重新启动, 不再查询
+        txnSession.resetQueryCount();
+        feeEvaluator = createCache(tradingDay).load(txnSession, instruments);
+        assertEquals(instruments.size(), feeEvaluator.getInstruments().size());
+        assertEquals(0, txnSession.getQueryCount());
+
+        //新增合约, 只查询新合约
+        instruments.add(Exchangeable.fromString("ag2012"));
+        feeEvaluator = createCache(tradingDay).load(txnSession, instruments);
+        assertEquals(instruments.size(), feeEvaluator.getInstruments().size());
+        assertEquals(2, txnSession.getQueryCount());
+    }
+
+    @Test
+    public void testCarryOver() throws Exception {
+        int maxAgeDays = 7;
+        createCache(tradingDay).load(txnSession, instruments);
+
+        //缺省不沿用, 下一个交易日重新查询
+        txnSession.resetQueryCount();
+        createCache(tradingDay.plusDays(1)).load(txnSession, instruments);
+        assertEquals(2*instruments.size(), txnSession.getQueryCount());
+
+        //下一个交易日沿用未过期的费率
+        txnSession.resetQueryCount();
+        FeeRateCache cache = createCache(tradingDay.plusDays(2));
+        cache.setMaxAgeDays(maxAgeDays);
+        cache.load(txnSession, instruments);
+        assertEquals(0, txnSession.getQueryCount());
+
+        //超过maxAgeDays, 按照原始查询日期过期
+        cache = createCache(tradingDay.plusDays(2+maxAgeDays));
+        cache.setMaxAgeDays(maxAgeDays);
+        cache.load(txnSession, instruments);
+        assertEquals(2*instruments.size(), txnSession.getQueryCount());
+
+        //不沿用
+        txnSession.resetQueryCount();
+        cache = createCache(tradingDay.plusDays(20));
+        cache.setMaxAgeDays(0);
+        cache.load(txnSession, instruments);
+        assertEquals(2*instruments.size(), txnSession.getQueryCount());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        Exchangeable ru2101 = instruments.get(0);
+        createCache(tradingDay).load(txnSession, instruments);
+        long margin = createCache(tradingDay).load(txnSession, instruments).compute(ru2101, 1, PriceUtil.price2long(10000), PosDirection.Long)[0];
+
+        //费率调整后缓存不变, 失效后重新查询
+        txnSession.setMarginRatio(ru2101, 0.2);
+        txnSession.resetQueryCount();
+        createCache(tradingDay).invalidate(Arrays.asList(ru2101));
+        FutureFeeEvaluator feeEvaluator = createCache(tradingDay).load(txnSession, instruments);
+        assertEquals(2, txnSession.getQueryCount());
+        assertEquals(2*margin, feeEvaluator.compute(ru2101, 1, PriceUtil.price2long(10000), PosDirection.Long)[0]);
+
+        //全部失效
+        txnSession.resetQueryCount();
+        createCache(tradingDay).invalidate(null);
+        createCache(tradingDay).load(txnSession, instruments);
+        assertEquals(2*instruments.size(), txnSession.getQueryCount());
+    }
+
+    private FeeRateCache createCache(LocalDate day) {
+        return new FeeRateCache(cacheDir, txnSession.getFeeRateCacheKey(), day);
+    }
+
+}
@@ -0,0 +1,194 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import trader.service.repository.BORepositoryConstants.BOEntityType;
+import trader.simulator.SimBORepository;
+
+public class OrderRefGenImplTest {
+
+    LocalDate tradingDay = LocalDate.of(2020, 10, 12);
+
+    @Test
+    public void testFormat() {
+        assertEquals("000001", OrderRefGenImpl.formatRef(1));
+        assertEquals("012345", OrderRefGenImpl.formatRef(12345));
+        assertEquals("999999", OrderRefGenImpl.formatRef(999999));
+        assertEquals("1000000", OrderRefGenImpl.formatRef(1000000));
+        assertEquals(Integer.toString(Integer.MAX_VALUE), OrderRefGenImpl.formatRef(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testBlockSave() {
+        CountingBORepository repository = new CountingBORepository();
+        OrderRefGenImpl refGen = new OrderRefGenImpl(repository, tradingDay, 100);
+        for(int i=1;i<=1000;i++) {
+            assertEquals(OrderRefGenImpl.formatRef(i), refGen.nextRefId("acc"));
+        }
+        //每块只保存一次
+        assertTrue(repository.saveCount<=1000/100+1);
+        //已预留的ID总是多于已用的ID
+        assertTrue(savedRefId(repository)>=1000+50);
+    }
+
+    /**
+     * 每个返回的ID都已经包含在保存的预留范围内, 不依赖异步保存
+     */
+    @Test
+    public void testDurableBeforeReturn() throws Exception {
+        CountingBORepository repository = new CountingBORepository();
+        OrderRefGenImpl refGen = new OrderRefGenImpl(repository, tradingDay, 100);
+        for(int i=1;i<=250;i++) {
+            String ref = refGen.nextRefId("acc");
+            assertTrue(savedRefId(repository)>=Integer.parseInt(ref));
+        }
+        //重启后从保存的预留范围继续
+        refGen = new OrderRefGenImpl(repository, tradingDay, 100);
+        for(int i=1;i<=250;i++) {
+            String ref = refGen.nextRefId("acc");
+            assertTrue(savedRefId(repository)>=Integer.parseInt(ref));
+        }
+        assertEquals(0, repository.asyncSaveCount);
+    }
+
+    /**
+     * 已用ID过半时在后台保存下一块, 还在已保存的范围内时不等待
+     */
+    @Test
+    public void testAsyncReserve() {
+        CountingBORepository repository = new CountingBORepository();
+        List<Runnable> tasks = new ArrayList<>();
+        OrderRefGenImpl refGen = new OrderRefGenImpl(repository, tradingDay, 100, tasks::add);
+        //第一块没有已保存的范围, 同步保存
+        assertEquals("000001", refGen.nextRefId("acc"));
+        assertEquals(1, repository.saveCount);
+        assertEquals(101, savedRefId(repository));
+        for(int i=2;i<=101;i++) {
+            assertEquals(OrderRefGenImpl.formatRef(i), refGen.nextRefId("acc"));
+        }
+        //过半后只提交一次后台保存, 调用线程不保存
+        assertEquals(1, tasks.size());
+        assertEquals(1, repository.saveCount);
+        tasks.get(0).run();
+        assertEquals(2, repository.saveCount);
+        assertEquals(201, savedRefId(repository));
+        assertEquals("000102", refGen.nextRefId("acc"));
+        assertEquals(0, repository.asyncSaveCount);
+    }
+
+    /**
+     * 后台保存较慢时, 超出已保存范围的ID等待保存完成后再返回
+     */
+    @Test
+    public void testAsyncSlowSave() throws Exception {
+        CountingBORepository repository = new CountingBORepository();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            OrderRefGenImpl refGen = new OrderRefGenImpl(repository, tradingDay, 10, (task)->{
+                executor.execute(()->{
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {}
+                    task.run();
+                });
+            });
+            for(int i=1;i<=200;i++) {
+                String ref = refGen.nextRefId("acc");
+                assertEquals(OrderRefGenImpl.formatRef(i), ref);
+                assertTrue(savedRefId(repository)>=i);
+            }
+            assertEquals(0, repository.asyncSaveCount);
+        }finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testResume() {
+        CountingBORepository repository = new CountingBORepository();
+        OrderRefGenImpl refGen = new OrderRefGenImpl(repository, tradingDay, 100);
+        String lastRef = null;
+        for(int i=0;i<130;i++) {
+            lastRef = refGen.nextRefId("acc");
+        }
+        //未正常关闭, 重启后跳过已预留的ID
+        int saved = savedRefId(repository);
+        assertTrue(saved>Integer.parseInt(lastRef));
+        refGen = new OrderRefGenImpl(repository, tradingDay, 100);
+        assertEquals(OrderRefGenImpl.formatRef(saved+1), refGen.nextRefId("acc"));
+
+        //其它交易日从头开始
+        refGen = new OrderRefGenImpl(repository, tradingDay.plusDays(1), 100);
+        assertEquals("000001", refGen.nextRefId("acc"));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        CountingBORepository repository = new CountingBORepository();
+        OrderRefGenImpl refGen = new OrderRefGenImpl(repository, tradingDay, 64);
+        int threads = 4, count = 10000;
+        Set<String> refs = ConcurrentHashMap.newKeySet();
+        List<Thread> threadList = new ArrayList<>();
+        for(int t=0;t<threads;t++) {
+            Thread thread = new Thread(()->{
+                for(int i=0;i<count;i++) {
+                    refs.add(refGen.nextRefId("acc"));
+                }
+            });
+            threadList.add(thread);
+            thread.start();
+        }
+        for(Thread thread:threadList) {
+            thread.join();
+        }
+        assertEquals(threads*count, refs.size());
+        assertTrue(savedRefId(repository)>=threads*count);
+
+        OrderRefGenImpl refGen2 = new OrderRefGenImpl(repository, tradingDay, 64);
+        assertTrue(!refs.contains(refGen2.nextRefId("acc")));
+    }
+
+    private int savedRefId(CountingBORepository repository) {
+        String json = repository.load(BOEntityType.Default, "20201012:OdrRef");
+        return JsonParser.parseString(json).getAsJsonObject().get("refId").getAsInt();
+    }
+
+    /**
+     * 异步保存不写入, 模拟写入前的延迟
+     */
+    static class CountingBORepository extends SimBORepository {
+        int saveCount;
+        int asyncSaveCount;
+
+        @Override
+        public synchronized void asynSave(BOEntityType entityType, String id, Object json) {
+            asyncSaveCount++;
+        }
+
+        @Override
+        public synchronized void save(BOEntityType entityType, String id, JsonElement json) {
+            saveCount++;
+            super.save(entityType, id, json);
+        }
+
+        @Override
+        public synchronized String load(BOEntityType entityType, String entityId) {
+            return super.load(entityType, entityId);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+package trader.service.trade;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.google.gson.JsonObject;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
+import trader.service.trade.spi.AbsTxnSession;
+import trader.service.util.SimpleBeansContainer;
+
+/**
+ * 模拟CTP流控的交易通道, 只实现费率查询.
+ * <BR>每次保证金率/手续费率查询耗时queryMillis, 相邻两次查询间隔不小于intervalMillis
+ */
+public class RateLimitedFeeTxnSession extends AbsTxnSession implements TradeConstants {
+
+    private final long queryMillis;
+    private final long intervalMillis;
+    private long lastQueryTime;
+    private int queryCount;
+    private Map<Exchangeable, Double> marginRatios = new HashMap<>();
+
+    public RateLimitedFeeTxnSession(String accountId, long queryMillis, long intervalMillis) {
+        super(new SimpleBeansContainer(), createAccount(accountId), null);
+        this.queryMillis = queryMillis;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * 修改合约的保证金率, 模拟期货公司调整费率
+     */
+    public void setMarginRatio(Exchangeable e, double marginRatio) {
+        marginRatios.put(e, marginRatio);
+    }
+
+    /**
+     * 保证金率和手续费率的查询次数
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    public void resetQueryCount() {
+        queryCount = 0;
+    }
+
+    @Override
+    public String getProvider() {
+        return "rate-limited";
+    }
+
+    @Override
+    public AccClassification getClassification() {
+        return AccClassification.Future;
+    }
+
+    @Override
+    public String getFeeRateCacheKey() {
+        return "test-"+id;
+    }
+
+    @Override
+    public void connect(Properties connProps) {
+    }
+
+    @Override
+    public String syncLoadFeeEvaluator(Collection<Exchangeable> subscriptions) throws Exception {
+        return syncLoadFeeEvaluator(subscriptions, new JsonObject());
+    }
+
+    @Override
+    public String syncLoadFeeEvaluator(Collection<Exchangeable> subscriptions, JsonObject cachedFeeInfos) throws Exception {
+        JsonObject feeInfos = new JsonObject();
+        for(Exchangeable e:subscriptions) {
+            JsonObject info = new JsonObject();
+            info.addProperty("priceTick", PriceUtil.long2str(e.getPriceTick()));
+            info.addProperty("volumeMultiple", e.getVolumeMutiplier());
+            JsonObject cachedInfo = cachedFeeInfos.getAsJsonObject(e.toString());
+            if ( cachedInfo!=null ) {
+                for(String key:new String[] {"marginRatios", "commissionRatios"}) {
+                    if ( cachedInfo.has(key) ) {
+                        info.add(key, cachedInfo.get(key));
+                    }
+                }
+            }
+            if ( !info.has("marginRatios") ) {
+                query();
+                double marginRatio = marginRatios.getOrDefault(e, 0.1);
+                info.add("marginRatios", JsonUtil.object2json(new double[] {marginRatio, 0, marginRatio, 0}));
+            }
+            if ( !info.has("commissionRatios") ) {
+                query();
+                info.add("commissionRatios", JsonUtil.object2json(new double[] {0.0001, 0, 0.0001, 0, 0.0001, 0}));
+            }
+            feeInfos.add(e.toString(), info);
+        }
+        JsonObject result = new JsonObject();
+        result.add("feeInfos", feeInfos);
+        return result.toString();
+    }
+
+    private void query() throws InterruptedException {
+        long wait = lastQueryTime+intervalMillis-System.currentTimeMillis();
+        if ( wait>0 ) {
+            Thread.sleep(wait);
+        }
+        Thread.sleep(queryMillis);
+        lastQueryTime = System.currentTimeMillis();
+        queryCount++;
+    }
+
+    @Override
+    public Collection<Exchangeable> syncQueryInstruments() throws Exception {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String[] syncConfirmSettlement() throws Exception {
+        return null;
+    }
+
+    @Override
+    public long[] syncQryAccounts() throws Exception {
+        return new long[AccMoney.values().length];
+    }
+
+    @Override
+    public String syncQryPositions() throws Exception {
+        return "{}";
+    }
+
+    @Override
+    public String syncQryOrders() throws Exception {
+        return "[]";
+    }
+
+    @Override
+    public void asyncSendOrder(Order order) throws AppException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void asyncCancelOrder(Order order) throws AppException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void asyncModifyOrder(Order order, OrderBuilder builder) throws AppException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void closeImpl() {
+    }
+
+    /**
+     * 只提供ID和日志分类的账户
+     */
+    private static Account createAccount(String accountId) {
+        return (Account)Proxy.newProxyInstance(Account.class.getClassLoader(), new Class[] {Account.class}, (proxy, method, args)->{
+            switch(method.getName()) {
+            case "getId":
+                return accountId;
+            case "getLoggerCategory":
+                return "trader.account."+accountId;
+            default:
+                return null;
+            }
+        });
+    }
+
+}
@@ -1,5 +1,6 @@
 package trader.service.tradlet.script;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -106,9 +107,82 @@ public class ScriptFuncTests {
         }
     }
 
+    /**
+     * REF和四则运算的结果不复制数据, 序列增长后自动计算新值
+     */
+    @Test
+    public void test_incremental() throws Exception
+    {
+        List<Num> values = new ArrayList<>();
+        GroovyIndicatorValue v1 = string2value("100, 101, 102", values);
+        GroovyIndicatorValue ref = (GroovyIndicatorValue)new REFFunc().invoke(new Object[] {v1, 1});
+        GroovyIndicatorValue diff = v1.minus(ref);
+        assertTrue(ref.getValue().intValue()==101);
+        assertTrue(diff.getValue().intValue()==1);
+        values.add(LongNum.valueOf(105));
+        assertTrue(ref.getValue().intValue()==102);
+        assertTrue(diff.getValue().intValue()==3);
+
+        //只有可以缓存的值才有Key
+        assertTrue(diff.getKey()==null);
+        GroovyIndicatorValue close = new GroovyIndicatorValue(v1.getIndicator(), "CLOSE");
+        assertEquals("((CLOSE-1)*2)", close.minus(1).multiply(2).getKey());
+        assertTrue(close.minus(diff).getKey()==null);
+    }
+
+    /**
+     * 函数调用结果按序列清除: MIN1的Bar不会清除只在MIN15上使用的结果
+     */
+    @Test
+    public void test_funcCallCache() throws Exception
+    {
+        FuncCallCache cache = new FuncCallCache();
+        GroovyIndicatorValue min15Ema = string2value("100, 101, 102");
+        GroovyIndicatorValue min1Ema = string2value("200, 201, 202");
+        GroovyIndicatorValue min1Ref = string2value("300, 301, 302");
+
+        cache.beginBar("AP010.min15");
+        assertTrue(cache.get("EMA(AP010.min15.CLOSE,5)")==null);
+        cache.put("EMA(AP010.min15.CLOSE,5)", min15Ema);
+        cache.endBar();
+
+        cache.beginBar("AP010.min1");
+        cache.put("EMA(AP010.min1.CLOSE,5)", min1Ema);
+        cache.put("REF(AP010.min1.CLOSE,1)", min1Ref);
+        cache.endBar();
+        //MIN1每个Bar都使用EMA, REF只在第一个Bar使用
+        for(int i=0;i<14;i++) {
+            cache.beginBar("AP010.min1");
+            assertTrue(cache.get("EMA(AP010.min1.CLOSE,5)")==min1Ema);
+            cache.endBar();
+            if ( i==0 ) {
+                assertTrue(cache.containsKey("REF(AP010.min1.CLOSE,1)"));
+            }
+        }
+        assertTrue(!cache.containsKey("REF(AP010.min1.CLOSE,1)"));
+        assertTrue(cache.containsKey("EMA(AP010.min15.CLOSE,5)"));
+
+        //下一个MIN15 Bar命中缓存
+        cache.beginBar("AP010.min15");
+        assertTrue(cache.get("EMA(AP010.min15.CLOSE,5)")==min15Ema);
+        cache.endBar();
+        assertEquals(2, cache.size());
+
+        //连续两个MIN15 Bar没有使用后清除
+        cache.beginBar("AP010.min15");
+        cache.endBar();
+        assertTrue(cache.containsKey("EMA(AP010.min15.CLOSE,5)"));
+        cache.beginBar("AP010.min15");
+        cache.endBar();
+        assertTrue(!cache.containsKey("EMA(AP010.min15.CLOSE,5)"));
+        assertTrue(cache.containsKey("EMA(AP010.min1.CLOSE,5)"));
+    }
 
     private static GroovyIndicatorValue string2value(String str) {
-        final List<Num> values = new ArrayList<>();
+        return string2value(str, new ArrayList<>());
+    }
+
+    private static GroovyIndicatorValue string2value(String str, List<Num> values) {
         for(String v:StringUtil.split(str, ",|;")) {
             values.add(LongNum.valueOf(ConversionUtil.toDouble(v)));
         }
@@ -0,0 +1,134 @@
+package trader.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.common.util.JsonUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.md.MarketDataTickCache;
+import trader.service.ta.BarServiceImpl;
+import trader.service.ta.LeveledBarSeries;
+import trader.service.trade.MarketTimeService;
+import trader.service.util.SimpleBeansContainer;
+
+/**
+ * 多个回测共享TICK缓存时, 并行运行与顺序运行的结果一致, 并且回放的是缓存中的TICK, 没有复制
+ */
+public class SimMarketDataServiceTest {
+
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    private static final int RUNS = 3;
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static LocalDate tradingDay = DateUtil.str2localdate("20200804");
+
+    /**
+     * 模拟时间使用缺省时区, 需要与交易所时区一致
+     */
+    @Test
+    public void testParallelRuns() throws Exception {
+        ZoneId zoneId = DateUtil.getDefaultZoneId();
+        DateUtil.setDefaultZoneId(AP010.exchange().getZoneId());
+        try {
+            testParallelRuns0();
+        }finally {
+            DateUtil.setDefaultZoneId(zoneId);
+        }
+    }
+
+    private void testParallelRuns0() throws Exception {
+        MarketDataTickCache tickCache = new MarketDataTickCache(256*1024*1024);
+        List<String> results = new ArrayList<>();
+        List<List<MarketData>> runTicks = new ArrayList<>();
+        for(int i=0;i<RUNS;i++) {
+            List<MarketData> ticks = new ArrayList<>();
+            results.add(run(tickCache, ticks));
+            runTicks.add(ticks);
+        }
+        String result0 = results.get(0);
+        assertTrue(result0.length()>0);
+        for(String result:results) {
+            assertEquals(result0, result);
+        }
+        List<MarketData> ticks0 = runTicks.get(0);
+        for(List<MarketData> ticks:runTicks) {
+            assertEquals(ticks0.size(), ticks.size());
+            for(int i=0;i<ticks.size();i++) {
+                assertSame(ticks0.get(i), ticks.get(i));
+            }
+        }
+        long misses = tickCache.getMisses();
+
+        tickCache = new MarketDataTickCache(256*1024*1024);
+        ExecutorService executorService = Executors.newFixedThreadPool(RUNS);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for(int i=0;i<RUNS;i++) {
+                MarketDataTickCache tickCache0 = tickCache;
+                futures.add(executorService.submit(()->run(tickCache0, new ArrayList<>())));
+            }
+            for(Future<String> future:futures) {
+                assertEquals(result0, future.get());
+            }
+        }finally {
+            executorService.shutdown();
+        }
+        //并行运行也只加载一次
+        assertEquals(misses, tickCache.getMisses());
+    }
+
+    /**
+     * 运行一个交易时段: KBar服务和一个记录收到的TICK的listener, 返回收到的TICK和MIN1 KBar
+     */
+    private static String run(MarketDataTickCache tickCache, List<MarketData> received) throws Exception {
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        SimMarketDataService mdService = new SimMarketDataService();
+        BarServiceImpl barService = new BarServiceImpl();
+        beansContainer.addBean(MarketDataTickCache.class, tickCache);
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(MarketDataService.class, mdService);
+
+        mtService.setEventDriven(true);
+        mtService.setTradingDay(tradingDay);
+        mdService.init(beansContainer);
+        //只回放AP010
+        mdService.subscriptions.clear();
+        barService.init(beansContainer);
+        barService.registerListener(Collections.singletonList(AP010), (Exchangeable e, LeveledBarSeries series)->{});
+        StringBuilder ticks = new StringBuilder();
+        mdService.addListener((MarketData tick)->{
+            ticks.append(tick.updateTimestamp).append(",").append(tick.lastPrice).append(",").append(tick.volume).append("\n");
+            received.add(tick);
+        }, AP010);
+        //只回放第一个交易时段
+        LocalDateTime[] marketTimes = AP010.exchange().getTradingTimes(AP010, tradingDay).getMarketTimes();
+        mtService.setTimeRanges(tradingDay, new LocalDateTime[] {marketTimes[0], marketTimes[1]});
+        while(mtService.nextTimePiece());
+
+        LeveledBarSeries min1Series = barService.forInstrument(AP010).getSeries(PriceLevel.MIN1);
+        return ticks+JsonUtil.object2json(min1Series).toString();
+    }
+
+}
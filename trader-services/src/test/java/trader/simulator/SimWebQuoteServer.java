@@ -0,0 +1,213 @@
+package trader.simulator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import trader.common.util.StringUtil;
+
+/**
+ * 本地模拟的新浪/腾讯股票行情网站, 用于WebQuoteFetcher的测试和性能测试.
+ * <BR>新浪: /list=sh600000,sz000001 ; 腾讯: /q=sh600000,sz000001
+ * <BR>返回GBK编码的行情, 每次请求行情时间前进1秒, 价格随时间变化
+ */
+public class SimWebQuoteServer implements AutoCloseable {
+
+    public static final String PATH_SINA = "/list=";
+    public static final String PATH_TENCENT = "/q=";
+
+    /**
+     * 股票名称, 包含第二个字节为 ~ (0x7E) 的GBK字符
+     */
+    private static final String[] NAMES = {"工商银行", "梸晘科技", "贵州茅台", "平安银行", "亊倊股份"};
+    /**
+     * 开始时间: 2020-10-12 09:30:00
+     */
+    private static final int BEGIN_SECONDS = 9*3600+30*60;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicInteger failRequests = new AtomicInteger();
+
+    public SimWebQuoteServer() throws IOException {
+        //响应头和响应体分开发送, 不关闭Nagle算法时每个请求会等待客户端的延迟ACK
+        if ( System.getProperty("sun.net.httpserver.nodelay")==null ) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * 新浪行情URL, 后面拼接合约列表
+     */
+    public String getSinaUrl() {
+        return "http://127.0.0.1:"+server.getAddress().getPort()+PATH_SINA;
+    }
+
+    /**
+     * 腾讯行情URL, 后面拼接合约列表
+     */
+    public String getTencentUrl() {
+        return "http://127.0.0.1:"+server.getAddress().getPort()+PATH_TENCENT;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 之后的count个请求返回HTTP 503, 模拟限流
+     */
+    public void failNextRequests(int count) {
+        failRequests.set(count);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long seq = requestCount.incrementAndGet();
+        try {
+            exchange.getRequestBody().readAllBytes();
+            if ( failRequests.getAndUpdate(v->v>0?v-1:0)>0 ) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8);
+            boolean sina = path.startsWith(PATH_SINA);
+            if ( !sina && !path.startsWith(PATH_TENCENT) ) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String[] items = path.substring(sina?PATH_SINA.length():PATH_TENCENT.length()).split(",");
+            StringBuilder text = new StringBuilder(items.length*(sina?300:500));
+            for(String item:items) {
+                if ( sina ) {
+                    sinaQuote(text, item, seq);
+                } else {
+                    tencentQuote(text, item, seq);
+                }
+            }
+            byte[] body = text.toString().getBytes(StringUtil.GBK);
+            exchange.getResponseHeaders().set("Content-Type", "application/javascript; charset=GBK");
+            exchange.sendResponseHeaders(200, body.length);
+            try(OutputStream os = exchange.getResponseBody();){
+                os.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * var hq_str_sh601398="工商银行,5.660,5.680,5.660,5.680,5.650,5.650,5.660,99667109,564217383.000,12196100,5.650,...,2019-07-05,14:19:34,00";
+     */
+    public static void sinaQuote(StringBuilder text, String item, long seq) {
+        int hash = item.hashCode()&0xFFFF;
+        long price = 1000+hash%5000+(seq%20);
+        text.append("var hq_str_").append(item).append("=\"").append(NAMES[hash%NAMES.length]);
+        //今开, 昨收, 当前, 最高, 最低, 买一, 卖一
+        appendPrice(text.append(','), price-5);
+        appendPrice(text.append(','), price-8);
+        appendPrice(text.append(','), price);
+        appendPrice(text.append(','), price+30);
+        appendPrice(text.append(','), price-30);
+        appendPrice(text.append(','), price-1);
+        appendPrice(text.append(','), price);
+        text.append(',').append(1000000+seq*100).append(',').append(12345678+seq*1000).append(".000");
+        for(int i=0;i<5;i++) {
+            text.append(',').append(100*(i+1)+hash%100);
+            appendPrice(text.append(','), price-1-i);
+        }
+        for(int i=0;i<5;i++) {
+            text.append(',').append(200*(i+1)+hash%100);
+            appendPrice(text.append(','), price+i);
+        }
+        text.append(",2020-10-12,");
+        appendTime(text, seq, true);
+        text.append(",00\";\n");
+    }
+
+    /**
+     * v_sh601398="1~工商银行~601398~5.66~5.68~5.66~...~20190705141934~...";
+     */
+    public static void tencentQuote(StringBuilder text, String item, long seq) {
+        int hash = item.hashCode()&0xFFFF;
+        long price = 1000+hash%5000+(seq%20);
+        text.append("v_").append(item).append("=\"1~").append(NAMES[hash%NAMES.length]).append('~').append(item.substring(2));
+        //3 当前, 4 昨收, 5 今开, 6 成交量, 7 外盘, 8 内盘
+        appendPrice(text.append('~'), price);
+        appendPrice(text.append('~'), price-8);
+        appendPrice(text.append('~'), price-5);
+        text.append('~').append(10000+seq).append('~').append(5000).append('~').append(5000+seq);
+        //9-18 买盘, 19-28 卖盘
+        for(int i=0;i<5;i++) {
+            appendPrice(text.append('~'), price-1-i);
+            text.append('~').append(10*(i+1)+hash%10);
+        }
+        for(int i=0;i<5;i++) {
+            appendPrice(text.append('~'), price+i);
+            text.append('~').append(20*(i+1)+hash%10);
+        }
+        //29 最近成交, 30 时间
+        text.append("~~20201012");
+        appendTime(text, seq, false);
+        //31 涨跌, 32 涨跌幅, 33 最高, 34 最低, 35 价格/成交量/成交额, 36 成交量(手), 37 成交额(万)
+        text.append("~0.08~0.50");
+        appendPrice(text.append('~'), price+30);
+        appendPrice(text.append('~'), price-30);
+        text.append("~0/0/0~").append(10000+seq).append('~').append(1234+seq);
+        for(int i=38;i<50;i++) {
+            text.append("~");
+        }
+        text.append("\";\n");
+    }
+
+    private static void appendPrice(StringBuilder text, long cents) {
+        text.append(cents/100).append('.');
+        long fraction = cents%100;
+        if ( fraction<10 ) {
+            text.append('0');
+        }
+        text.append(fraction).append('0');
+    }
+
+    private static void appendTime(StringBuilder text, long seq, boolean colon) {
+        int seconds = (int)(BEGIN_SECONDS+seq%(5*3600));
+        appendTwoDigits(text, seconds/3600);
+        if ( colon ) {
+            text.append(':');
+        }
+        appendTwoDigits(text, (seconds/60)%60);
+        if ( colon ) {
+            text.append(':');
+        }
+        appendTwoDigits(text, seconds%60);
+    }
+
+    private static void appendTwoDigits(StringBuilder text, int v) {
+        if ( v<10 ) {
+            text.append('0');
+        }
+        text.append(v);
+    }
+
+}
@@ -0,0 +1,216 @@
+package trader.simulator.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+import trader.service.trade.TradeConstants.OrderDirection;
+import trader.service.trade.TradeConstants.OrderOffsetFlag;
+import trader.service.trade.TradeConstants.OrderPriceType;
+
+/**
+ * 撮合结果必须是确定的
+ */
+public class OrderBookMatchEngineTest {
+
+    static Exchangeable AP010 = Exchangeable.fromString("AP010");
+    static LocalDateTime time = LocalDateTime.of(2020, 8, 3, 9, 0);
+
+    private static class TestMarketData extends MarketData {
+
+        TestMarketData(long volume, double lastPrice, double[] bids, int[] bidVolumes, double[] asks, int[] askVolumes){
+            instrument = AP010;
+            this.volume = volume;
+            this.lastPrice = PriceUtil.price2long(lastPrice);
+            depth = bids.length;
+            bidPrices = new long[depth];
+            askPrices = new long[depth];
+            for(int i=0;i<depth;i++) {
+                bidPrices[i] = PriceUtil.price2long(bids[i]);
+                askPrices[i] = PriceUtil.price2long(asks[i]);
+            }
+            this.bidVolumes = bidVolumes;
+            this.askVolumes = askVolumes;
+        }
+
+        @Override
+        public String getCsvHead() {
+            return null;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+        }
+
+        @Override
+        public MarketData clone() {
+            return null;
+        }
+
+        @Override
+        protected MarketData newInstance() {
+            return null;
+        }
+    }
+
+    private static class Fill {
+        SimOrder order;
+        long price;
+        int volume;
+    }
+
+    private static MarketData md(long volume, double lastPrice, double bid, int bidVolume, double ask, int askVolume) {
+        return new TestMarketData(volume, lastPrice, new double[] {bid}, new int[] {bidVolume}, new double[] {ask}, new int[] {askVolume});
+    }
+
+    private static SimOrder order(String ref, OrderDirection direction, double price, int volume) {
+        return new SimOrder(ref, AP010, direction, OrderOffsetFlag.OPEN, OrderPriceType.LimitPrice, PriceUtil.price2long(price), volume, time);
+    }
+
+    private static List<Fill> match(SimMatchEngine engine, MarketData md) {
+        List<Fill> fills = new ArrayList<>();
+        engine.match(md, (order, price, volume)->{
+            Fill fill = new Fill();
+            fill.order = order;
+            fill.price = price;
+            fill.volume = volume;
+            fills.add(fill);
+        });
+        return fills;
+    }
+
+    @Test
+    public void testQueuePosition() {
+        OrderBookMatchEngine engine = new OrderBookMatchEngine();
+        MarketData md = md(1000, 100, 100, 10, 101, 5);
+        SimOrder buy = order("1", OrderDirection.Buy, 100, 3);
+        engine.addOrder(buy, md);
+
+        //成交6手, 前面还有4手
+        assertTrue(match(engine, md(1006, 100, 100, 8, 101, 5)).isEmpty());
+        //挂单减少到2手, 视为撤单
+        assertTrue(match(engine, md(1006, 100, 100, 2, 101, 5)).isEmpty());
+        //成交3手, 2手消耗排队, 1手成交
+        List<Fill> fills = match(engine, md(1009, 100, 100, 1, 101, 5));
+        assertEquals(1, fills.size());
+        assertEquals(1, fills.get(0).volume);
+        assertEquals(PriceUtil.price2long(100), fills.get(0).price);
+        assertEquals(2, buy.getVolumeLeft());
+        //成交价不在报单价位
+        assertTrue(match(engine, md(1019, 101, 100, 1, 101, 5)).isEmpty());
+        //剩余2手全部成交
+        fills = match(engine, md(1029, 100, 100, 1, 101, 5));
+        assertEquals(1, fills.size());
+        assertEquals(2, fills.get(0).volume);
+        assertEquals(0, buy.getVolumeLeft());
+        //全部成交后不再撮合
+        assertTrue(match(engine, md(1039, 99, 99, 1, 100, 5)).isEmpty());
+    }
+
+    /**
+     * 挂单量截断后加入的报单, 排队量按加入时的挂单量计算
+     */
+    @Test
+    public void testQueueAfterCap() {
+        OrderBookMatchEngine engine = new OrderBookMatchEngine();
+        SimOrder buy1 = order("1", OrderDirection.Buy, 100, 1);
+        engine.addOrder(buy1, md(1000, 100, 100, 10, 101, 5));
+        //挂单减少到2手, 之后增加到20手
+        assertTrue(match(engine, md(1000, 100, 100, 2, 101, 5)).isEmpty());
+        MarketData md = md(1000, 100, 100, 20, 101, 5);
+        assertTrue(match(engine, md).isEmpty());
+        SimOrder buy2 = order("2", OrderDirection.Buy, 100, 1);
+        engine.addOrder(buy2, md);
+        //成交5手: 2手排队, 1手给buy1, 剩余2手消耗buy2前面的排队
+        List<Fill> fills = match(engine, md(1005, 100, 100, 20, 101, 5));
+        assertEquals(1, fills.size());
+        assertTrue(fills.get(0).order==buy1);
+        //buy2前面还有16手
+        assertTrue(match(engine, md(1021, 100, 100, 20, 101, 5)).isEmpty());
+        fills = match(engine, md(1022, 100, 100, 20, 101, 5));
+        assertEquals(1, fills.size());
+        assertTrue(fills.get(0).order==buy2);
+    }
+
+    @Test
+    public void testSamePriceFifo() {
+        OrderBookMatchEngine engine = new OrderBookMatchEngine();
+        MarketData md = md(1000, 100, 99, 10, 100, 2);
+        SimOrder sell1 = order("1", OrderDirection.Sell, 100, 2);
+        SimOrder sell2 = order("2", OrderDirection.Sell, 100, 2);
+        engine.addOrder(sell1, md);
+        engine.addOrder(sell2, md);
+        //成交3手: 2手排队, 1手给第一个报单
+        List<Fill> fills = match(engine, md(1003, 100, 99, 10, 100, 1));
+        assertEquals(1, fills.size());
+        assertTrue(fills.get(0).order==sell1);
+        assertEquals(1, fills.get(0).volume);
+        fills = match(engine, md(1006, 100, 99, 10, 100, 1));
+        assertEquals(2, fills.size());
+        assertTrue(fills.get(0).order==sell1);
+        assertEquals(1, fills.get(0).volume);
+        assertTrue(fills.get(1).order==sell2);
+        assertEquals(2, fills.get(1).volume);
+    }
+
+    @Test
+    public void testCrossDepth() {
+        OrderBookMatchEngine engine = new OrderBookMatchEngine();
+        MarketData md = new TestMarketData(1000, 100, new double[] {100, 99}, new int[] {5, 5}, new double[] {101, 102}, new int[] {2, 3});
+        SimOrder buy1 = order("1", OrderDirection.Buy, 102, 4);
+        SimOrder buy2 = order("2", OrderDirection.Buy, 101, 4);
+        engine.addOrder(buy1, md);
+        engine.addOrder(buy2, md);
+        //价格优先: buy1先吃掉101的2手和102的2手, buy2只能等待
+        List<Fill> fills = match(engine, md);
+        assertEquals(2, fills.size());
+        assertTrue(fills.get(0).order==buy1);
+        assertEquals(PriceUtil.price2long(101), fills.get(0).price);
+        assertEquals(2, fills.get(0).volume);
+        assertEquals(PriceUtil.price2long(102), fills.get(1).price);
+        assertEquals(2, fills.get(1).volume);
+        assertEquals(4, buy2.getVolumeLeft());
+
+        //撤单后不会成交
+        assertTrue(engine.removeOrder(buy2));
+        assertTrue(match(engine, md(1000, 100, 100, 5, 101, 10)).isEmpty());
+    }
+
+    @Test
+    public void testTradeThrough() {
+        OrderBookMatchEngine engine = new OrderBookMatchEngine();
+        MarketData md = md(1000, 100, 100, 10, 101, 5);
+        //价位在可见深度之外, 排在最后
+        SimOrder sell = order("1", OrderDirection.Sell, 103, 5);
+        engine.addOrder(sell, md);
+        assertTrue(match(engine, md(1010, 103, 102, 1, 103, 20)).isEmpty());
+        //成交价穿过报单价
+        List<Fill> fills = match(engine, md(1013, 104, 102, 1, 104, 20));
+        assertEquals(1, fills.size());
+        assertEquals(3, fills.get(0).volume);
+        assertEquals(PriceUtil.price2long(103), fills.get(0).price);
+        assertEquals(2, sell.getVolumeLeft());
+    }
+
+    @Test
+    public void testLastPrice() {
+        LastPriceMatchEngine engine = new LastPriceMatchEngine();
+        MarketData md = md(1000, 100, 100, 10, 101, 5);
+        SimOrder buy = order("1", OrderDirection.Buy, 100, 3);
+        engine.addOrder(buy, md);
+        assertTrue(match(engine, md(1010, 100, 100, 1, 101, 5)).isEmpty());
+        List<Fill> fills = match(engine, md(1011, 100, 99, 1, 100, 1));
+        assertEquals(1, fills.size());
+        assertEquals(3, fills.get(0).volume);
+        assertEquals(PriceUtil.price2long(100), fills.get(0).price);
+    }
+
+}
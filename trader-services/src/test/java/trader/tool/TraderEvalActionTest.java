@@ -0,0 +1,26 @@
+package trader.tool;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TraderEvalActionTest {
+
+    @Test
+    public void testParamGrid() {
+        String text = "#参数网格\nfast=5,8,12\n\nstop = 10;20\n";
+        List<Map<String, String>> paramSets = TraderEvalAction.parseParamGrid(text);
+        assertEquals(6, paramSets.size());
+        assertEquals("5", paramSets.get(0).get("fast"));
+        assertEquals("10", paramSets.get(0).get("stop"));
+        assertEquals("20", paramSets.get(1).get("stop"));
+        assertEquals("12", paramSets.get(5).get("fast"));
+        assertEquals("20", paramSets.get(5).get("stop"));
+
+        assertEquals(1, TraderEvalAction.parseParamGrid("").size());
+    }
+
+}